@@ -31,18 +31,21 @@ import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.openide.util.Pair;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import org.netbeans.core.output2.options.OutputOptions;
 import org.openide.filesystems.FileUtil;
 import org.openide.util.Exceptions;
 import org.openide.util.Mutex;
+import org.openide.util.RequestProcessor;
 import org.openide.windows.IOColors;
 import org.openide.windows.OutputListener;
 /**
@@ -52,6 +55,11 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     private static final Logger LOG =
             Logger.getLogger(AbstractLines.class.getName());
 
+    /** Offsets of the UTF-16 view of the output are ints, so the number of
+     * characters is limited independently of the output limits. The margin
+     * leaves room for the lines written before the next check. */
+    private static final int MAX_CHARS = Integer.MAX_VALUE / 2 - 64 * 1024 * 1024;
+
     private OutputLimits outputLimits = OutputLimits.getDefault();
 
     /** A collections-like lineStartList that maps file positions to getLine numbers */
@@ -66,26 +74,32 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     /** longest line length (in chars)*/
     private int longestLineLen = 0;
 
-    private int knownCharsPerLine = -1;
-
     /** cache of logical (wrapped) lines count, used to transform logical (wrapped)
      * line index to physical (real) line index */
-    private SparseIntList knownLogicalLineCounts = null;
+    private IntSumList wrappedLineCounts = null;
+    /** Characters per line of {@link #wrappedLineCounts} */
+    private int wrappedLineCountsWidth = -1;
 
     /** Offset positions of tabs */
     private IntList tabCharOffsets = new IntList(128);
     /** Sums of length of all preceding tabs (length of extra spaces) */
     private IntListSimple tabLengthSums = new IntListSimple(128);
 
-    private final IntListSimple foldOffsets = new IntListSimple(16);
-    private final IntListSimple visibleList = new IntListSimple(128);
-    private final IntListSimple visibleToRealLine = new IntListSimple(128);
-    private final IntListSimple realToVisibleLine = new IntListSimple(128);
-    private int hiddenLines = 0;
+    private final Folds folds = new Folds();
 
-    private int currentFoldStart = -1;
     /** last storage size (after dispose), in bytes */
     private int lastStorageSize = -1;
+    /** number of lines forgotten because of output limits */
+    private int removedLineCount = 0;
+
+    /** Keep text of lines removed because of output limits on disk, see
+     * {@link SpilledLines}. Disabled by -Dnb.output.spill=false */
+    private static final boolean SPILL_REMOVED_LINES =
+        !"false".equals(System.getProperty("nb.output.spill")); //NOI18N
+    /** Text of removed lines, null if no lines were spilled yet */
+    private SpilledLines spilledLines = null;
+    /** True if spilling failed, the history is not complete then */
+    private boolean spillFailed = false;
 
     AbstractLines() {
         if (Controller.LOG) Controller.log ("Creating a new AbstractLines");
@@ -185,6 +199,12 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
 
     void onDispose(int lastStorageSize) {
         this.lastStorageSize = lastStorageSize;
+        synchronized (readLock()) {
+            if (spilledLines != null) {
+                spilledLines.dispose();
+                spilledLines = null;
+            }
+        }
     }
 
     int getByteSize() {
@@ -243,14 +263,27 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         }
     }
 
+    /** Set while a change event is posted to the event queue */
+    private final AtomicBoolean firePending = new AtomicBoolean(false);
+
+    /**
+     * Notify the listener. Events fired from other threads are coalesced, so
+     * that there is at most one pending event in the event queue. The
+     * listener computes the changed line range itself.
+     */
     public void fire() {
         if (Controller.LOG) Controller.log (this + ": Writer firing " + getStorage().size() + " bytes written");
         if (listener != null) {
-            Mutex.EVENT.readAccess(this);
+            if (SwingUtilities.isEventDispatchThread()) {
+                run();
+            } else if (firePending.compareAndSet(false, true)) {
+                Mutex.EVENT.readAccess(this);
+            }
         }
     }
 
     public void run() {
+        firePending.set(false);
         if (listener != null) {
             listener.stateChanged(new ChangeEvent(this));
         }
@@ -293,7 +326,7 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     }
 
     private void init() {
-        knownLogicalLineCounts = null;
+        wrappedLineCounts = null;
         lineStartList = new IntList(128);
         lineStartList.add(0);
         lineCharLengthListWithTabs = new IntListSimple(100);
@@ -538,10 +571,9 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         if (logicalLineIdx == 0) {
             return 0;
         }
-        if (charsPerLine != knownCharsPerLine || knownLogicalLineCounts == null) {
-            calcLogicalLineCount(charsPerLine);
+        synchronized (readLock()) {
+            return getWrappedLineCounts(charsPerLine).findIndex(logicalLineIdx);
         }
-        return knownLogicalLineCounts.getNextKey(logicalLineIdx);
     }
 
     /**
@@ -554,10 +586,9 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         if (charsPerLine >= longestLineLen) {
             return realToVisibleLine(line);
         }
-        if (charsPerLine != knownCharsPerLine || knownLogicalLineCounts == null) {
-            calcLogicalLineCount(charsPerLine);
+        synchronized (readLock()) {
+            return getWrappedLineCounts(charsPerLine).sum(line);
         }
-        return knownLogicalLineCounts.get(line - 1);
     }
 
     /**
@@ -573,10 +604,7 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
             return 0;
         }
         synchronized (readLock()) {
-            if (charsPerLine != knownCharsPerLine || knownLogicalLineCounts == null) {
-                calcLogicalLineCount(charsPerLine);
-            }
-            return knownLogicalLineCounts.get(lineCount-1);
+            return getWrappedLineCounts(charsPerLine).total();
         }
     }
 
@@ -686,33 +714,65 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     }
 
     /**
-     * We use SparseIntList to create a cache which only actually holds
-     * the counts for lines that *are* wrapped, and interpolates the rest, so
-     * we don't need to create an int[]  as big as the number of lines we have.
-     * This presumes that most lines don't wrap.
+     * Get the cache of logical line counts for the specified width. It is only
+     * built again if the width has changed, or if the cache has been
+     * invalidated. Caller must hold the read lock.
      */
-    private void calcLogicalLineCount(int width) {
-        synchronized (readLock()) {
-            int lineCount = getLineCount();
-            knownLogicalLineCounts = new SparseIntList(30);
-
-            int val = 0;
-            for (int i = 0; i < lineCount; i++) {
-                if (!isVisible(i)) {
-                    knownLogicalLineCounts.add(i, val);
-                    continue;
-                }
-                int len = lengthWithTabs(i);
+    private IntSumList getWrappedLineCounts(int width) {
+        if (wrappedLineCounts == null || wrappedLineCountsWidth != width) {
+            wrappedLineCounts = calcLogicalLineCount(width);
+            wrappedLineCountsWidth = width;
+        }
+        return wrappedLineCounts;
+    }
 
-                if (len > width) {
-                    val += lengthToLineCount(len, width);
-                    knownLogicalLineCounts.add(i, val);
-                } else {
-                    val++;
-                }
-            }
-            knownCharsPerLine = width;
+    private IntSumList calcLogicalLineCount(int width) {
+        int lineCount = getLineCount();
+        int[] weights = new int[Math.max(16, lineCount * 2)];
+        int last = lineCount - 1;
+        for (int i = 0; i < last; i++) {
+            weights[i] = isVisible(i)
+                    ? lengthToLineCount(lengthWithTabs(i), width)
+                    : 0;
+        }
+        if (last >= 0) {
+            weights[last] = lastLineWeight(lengthWithTabs(last), width);
+        }
+        return new IntSumList(weights, lineCount);
+    }
+
+    /**
+     * Update logical line counts of lines whose visibility has changed.
+     *
+     * @param from Index of the first changed line.
+     * @param to Index after the last changed line.
+     */
+    private void updateLogicalLineCounts(int from, int to) {
+        IntSumList counts = wrappedLineCounts;
+        if (counts == null) {
+            return;
+        }
+        int last = getLineCount() - 1;
+        for (int i = from; i < to && i < last; i++) {
+            counts.set(i, isVisible(i)
+                    ? lengthToLineCount(lengthWithTabs(i), wrappedLineCountsWidth)
+                    : 0);
+        }
+        if (to > last && last >= 0) {
+            counts.set(last, lastLineWeight(lengthWithTabs(last),
+                    wrappedLineCountsWidth));
+        }
+    }
+
+    /**
+     * Logical line count of the last line. The last line is hidden if it
+     * belongs to a collapsed fold.
+     */
+    private int lastLineWeight(int lengthWithTabs, int width) {
+        if (folds.isNextLineHidden()) {
+            return 0;
         }
+        return lengthToLineCount(lengthWithTabs, width);
     }
 
     static int lengthToLineCount(int len, int charsPerLine) {
@@ -733,126 +793,134 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
 
     // lineLength with tabs
     private void updateLastLine(int lineIdx, int lineLength) {
+        longestLineLen = Math.max(longestLineLen, lineLength);
+        IntSumList counts = wrappedLineCounts;
+        if (counts != null) {
+            counts.set(lineIdx, lastLineWeight(lineLength, wrappedLineCountsWidth));
+        }
+    }
+
+    public void lineUpdated(int lineStart, int lineLength, int charLengthWithTabs, boolean isFinished) {
         synchronized (readLock()) {
-            longestLineLen = Math.max(longestLineLen, lineLength);
-            if (knownLogicalLineCounts == null) {
-                return;
-            }
-            if (currentFoldStart >= 0 && (visibleList.get(currentFoldStart) == 0
-                    || !isVisible(currentFoldStart))) {
-                if (knownLogicalLineCounts.lastIndex() != lineIdx) {
-                    knownLogicalLineCounts.add(lineIdx,
-                            knownLogicalLineCounts.get(lineIdx - 1));
-                }
-                return;
-            };
-            // nummber of logical lines above for knownLogicalLineCounts
-            int aboveLineCount;
-            boolean alreadyAdded = knownLogicalLineCounts.lastIndex() == lineIdx;
-            if (alreadyAdded) {
-                assert lastLineFinished == false;
-                if (lineLength <= knownCharsPerLine) {
-                    knownLogicalLineCounts.removeLast();
-                } else {
-                    aboveLineCount = knownLogicalLineCounts.lastAdded()
-                            - lengthToLineCount(lastCharLengthWithTabs, knownCharsPerLine)
-                            + lengthToLineCount(lineLength, knownCharsPerLine);
-                    knownLogicalLineCounts.updateLast(lineIdx, aboveLineCount);
-                }
+            if (isFinished) {
+                finishLastLine(lineStart + lineLength, charLengthWithTabs);
             } else {
-                if (lineLength <= knownCharsPerLine) {
-                    return;
-                }
-                if (knownLogicalLineCounts.lastIndex() != -1) {
-                    //If the cache already has some entries, calculate the
-                    //values from the last entry - this is less expensive
-                    //than looking it up
-                    aboveLineCount = (lineIdx - (knownLogicalLineCounts.lastIndex() + 1)) + knownLogicalLineCounts.lastAdded();
-                } else {
-                    //Otherwise, it's just the number of lines above this
-                    //one - it's the first entry
-                    aboveLineCount = Math.max(0, lineIdx-1);
-                }
-                //Add in the number of times this getLine will wrap
-                aboveLineCount += lengthToLineCount(lineLength, knownCharsPerLine);
-                knownLogicalLineCounts.add(lineIdx, aboveLineCount);
+                updateUnfinishedLine(toCharIndex(lineLength), charLengthWithTabs);
             }
         }
+        if (isFinished) {
+            updateMatchIndexIfNeeded();
+        }
+        markDirty();
     }
 
-    public void lineUpdated(int lineStart, int lineLength, int charLengthWithTabs, boolean isFinished) {
+    /**
+     * Batch version of {@link #addTabAt(int, int)} and
+     * {@link #lineUpdated(int, int, int, boolean)}. Tabs and lines from one
+     * block of written text are recorded in one critical section, and the
+     * output is marked dirty once.
+     *
+     * @param tabOffsets Char offsets of tabs.
+     * @param tabLengths Lengths of tabs, including the tab character.
+     * @param lineEnds Byte offsets where the finished lines end.
+     * @param lengthsWithTabs Lengths with tabs of the finished lines.
+     * @param lastLineLength Byte length of the unfinished last line, or -1 if
+     * it has not been written to.
+     * @param lastLineLengthWithTabs Length with tabs of the unfinished last
+     * line.
+     */
+    void linesAppended(IntListSimple tabOffsets, IntListSimple tabLengths,
+            IntListSimple lineEnds, IntListSimple lengthsWithTabs,
+            int lastLineLength, int lastLineLengthWithTabs) {
+        int finished = lineEnds.size();
         synchronized (readLock()) {
-            int charLineLength = toCharIndex(lineLength);
-            if (isFinished) {
-                charLineLength -= 1;
+            for (int i = 0; i < tabOffsets.size(); i++) {
+                appendTab(tabOffsets.get(i), tabLengths.get(i) - 1);
             }
-            int lineIndex = lineStartList.size() - 1;
-            updateLastLine(lineIndex, charLengthWithTabs);
-            if (isFinished) {
-                lineStartList.add(lineStart + lineLength);
-                updateFolds(lineIndex);
-                lineCharLengthListWithTabs.add(charLengthWithTabs);
+            for (int i = 0; i < finished; i++) {
+                finishLastLine(lineEnds.get(i), lengthsWithTabs.get(i));
             }
-            lastLineFinished = isFinished;
-            lastLineLength = isFinished ? -1 : charLineLength;
-            lastCharLengthWithTabs = isFinished ? -1 : charLengthWithTabs;
+            if (lastLineLength >= 0) {
+                updateUnfinishedLine(toCharIndex(lastLineLength),
+                        lastLineLengthWithTabs);
+            }
+        }
+        if (finished > 0) {
+            updateMatchIndexIfNeeded();
         }
         markDirty();
     }
 
     /**
-     * Update data structures with info about folds. Called after a new line is
-     * finished.
+     * Finish the last line. Caller must hold the read lock.
+     *
+     * @param lineEnd Byte offset where the line ends (including the line
+     * separator).
      */
-    private void updateFolds(int lineIndex) {
-        if (currentFoldStart >= visibleList.size()) {
-            LOG.log(Level.FINE, "currentFoldStart = {0}, visibleList" //NOI18N
-                    + ".size() = {1}: Forgetting current fold.", //NOI18N
-                    new Object[]{currentFoldStart, visibleList.size()});
-            currentFoldStart = -1; // #229544, caused e.g. by invalid FoldHandle
-        }
-        if (currentFoldStart == -1) {
-            foldOffsets.add(0);
-        } else {
-            foldOffsets.add(lineIndex - currentFoldStart);
+    private void finishLastLine(int lineEnd, int charLengthWithTabs) {
+        int lineIndex = lineStartList.size() - 1;
+        updateLastLine(lineIndex, charLengthWithTabs);
+        lineStartList.add(lineEnd);
+        folds.lineAdded();
+        lineCharLengthListWithTabs.add(charLengthWithTabs);
+        IntSumList counts = wrappedLineCounts;
+        if (counts != null) {
+            counts.add(lastLineWeight(0, wrappedLineCountsWidth));
         }
-        if (currentFoldStart != -1 && (visibleList.get(currentFoldStart) == 0
-                || !isVisible(currentFoldStart))) {
-            hiddenLines++;
-            realToVisibleLine.add(-1);
-        } else {
-            visibleToRealLine.add(lineIndex);
-            realToVisibleLine.add(lineIndex - hiddenLines);
-        }
-        visibleList.add(1);
+        lastLineFinished = true;
+        lastLineLength = -1;
+        lastCharLengthWithTabs = -1;
+    }
+
+    /**
+     * Update length of the unfinished last line. Caller must hold the read
+     * lock.
+     */
+    private void updateUnfinishedLine(int charLineLength, int charLengthWithTabs) {
+        updateLastLine(lineStartList.size() - 1, charLengthWithTabs);
+        lastLineFinished = false;
+        lastLineLength = charLineLength;
+        lastCharLengthWithTabs = charLengthWithTabs;
     }
 
     void setCurrentFoldStart(int foldStart) {
         synchronized (readLock()) {
-            if (foldStart > -1 && foldStart + 1 < foldOffsets.size()
-                    && foldOffsets.get(foldStart + 1) != 1) {
+            if (!folds.setCurrentFoldStart(foldStart)) {
                 LOG.log(Level.FINE, "Ignoring currentFoldStart at " //NOI18N
-                        + "{0}, because foldOffset at {1} is {2}", //NOI18N
-                        new Object[]{foldStart, foldStart + 1, foldOffsets.get(
-                            foldStart + 1)});
-                this.currentFoldStart = -1;
-            } else if (foldStart >= foldOffsets.size()) {
-                LOG.log(Level.FINE, "Ignoring currentFoldStart at " //NOI18N
-                        + "{0}, foldOffsets.size() is only {1}", //NOI18N
-                        new Object[]{foldStart, foldOffsets.size()});
-                this.currentFoldStart = -1;
-            } else {
-                this.currentFoldStart = foldStart;
+                        + "{0}, line count is {1}", //NOI18N
+                        new Object[]{foldStart, folds.getLineCount()});
+                folds.setCurrentFoldStart(-1);
             }
         }
     }
 
-    IntListSimple getFoldOffsets() {
-        return this.foldOffsets;
+    /**
+     * Get distance of a line from the start line of the innermost fold that
+     * contains it.
+     *
+     * @param realLineIndex Real index of a finished line.
+     * @return The distance, or 0 if the line is not inside any fold.
+     * @throws IndexOutOfBoundsException If the line is not finished.
+     */
+    int getFoldOffset(int realLineIndex) {
+        synchronized (readLock()) {
+            return folds.getOffset(realLineIndex);
+        }
+    }
+
+    /**
+     * Check whether a fold with at least one line starts at a line.
+     */
+    boolean isFoldStart(int realLineIndex) {
+        synchronized (readLock()) {
+            return folds.isFoldStart(realLineIndex);
+        }
     }
 
     /** Convert an index from chars to byte count (*2).  Simple math, but it
-     * makes the intent clearer when encountered in code */
+     * makes the intent clearer when encountered in code. Byte indexes are
+     * logical (UTF-16) offsets, the storage may keep the data in a more
+     * compact form, see {@link CompactStorage}. */
     static int toByteIndex (int charIndex) {
         return charIndex << 1;
     }
@@ -878,8 +946,9 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
             Charset charset = Charset.forName (encoding); //NOI18N
             CharsetEncoder encoder = charset.newEncoder ();
             String ls = System.getProperty("line.separator");
-            FileChannel ch = fos.getChannel();
+            final FileChannel ch = fos.getChannel();
             ByteBuffer lsbb = encoder.encode(CharBuffer.wrap(ls));
+            saveSpilledLines(ch, encoder, ls);
             for (int i = 0; i < getLineCount(); i++) {
                 int lineStart = getCharLineStart(i);
                 int lineLength = length(i);
@@ -962,10 +1031,229 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     }
 
     private static final int MAX_FIND_SIZE = 16*1024;
-    private Pattern pattern;
+    private static final RequestProcessor MATCH_INDEX_RP =
+            new RequestProcessor("Output Match Index", 2); //NOI18N
+    /** Size of line-aligned chunks that are searched in parallel, in chars */
+    private static final int FIND_CHUNK_SIZE = 1024 * 1024;
+    /** Max number of matches remembered for find next/previous */
+    private static final int MAX_FIND_MATCHES = 1024 * 1024;
+    /** Amount of unsearched text (in chars) that triggers indexing */
+    private static final int MATCH_INDEX_BATCH = 64 * 1024;
+
+    /** Matches of the last searched pattern, null if nothing searched yet */
+    private volatile MatchIndex matchIndex;
+    /** Notified after the match index has been extended in background */
+    private volatile Runnable matchIndexListener;
+    /** Extends the active match index in background */
+    private final RequestProcessor.Task matchIndexTask = MATCH_INDEX_RP.create(new Runnable() {
+        @Override
+        public void run() {
+            MatchIndex mi = matchIndex;
+            if (mi != null) {
+                updateMatchIndex(mi);
+                Runnable l = matchIndexListener;
+                if (l != null && mi == matchIndex) {
+                    l.run();
+                }
+            }
+        }
+    });
+
+    /**
+     * Make the index of matches of the pattern the active one. Text that has
+     * not been searched yet is indexed in background, see
+     * {@link #setMatchIndexListener(Runnable)}.
+     *
+     * @return The index, check {@link MatchIndex#isOverflow()} before using
+     * it.
+     */
+    MatchIndex activateMatchIndex(String pattern, boolean regExp, boolean matchCase) {
+        MatchIndex mi = matchIndex;
+        if (mi == null || !mi.getFinder().isFor(pattern, regExp, matchCase)) {
+            mi = new MatchIndex(new OutputFind(pattern, regExp, matchCase),
+                    MAX_FIND_MATCHES);
+            matchIndex = mi;
+        }
+        scheduleMatchIndexUpdate(mi);
+        return mi;
+    }
+
+    /**
+     * Get index of matches of the last searched pattern. It is not updated
+     * in the calling thread, so it may not cover the latest output yet, text
+     * that has not been searched is indexed in background.
+     *
+     * @return The index, or null if nothing has been searched yet or if the
+     * output contains too many matches.
+     */
+    MatchIndex getMatchIndex() {
+        MatchIndex mi = matchIndex;
+        if (mi == null) {
+            return null;
+        }
+        scheduleMatchIndexUpdate(mi);
+        return mi.isOverflow() ? null : mi;
+    }
+
+    /**
+     * Set listener notified (in a background thread) after the match index
+     * has been extended, e.g. to repaint highlighted matches.
+     */
+    void setMatchIndexListener(Runnable listener) {
+        matchIndexListener = listener;
+    }
+
+    private void scheduleMatchIndexUpdate(MatchIndex mi) {
+        if (!mi.isOverflow() && mi.getSearchedTo() < getCharCount()) {
+            matchIndexTask.schedule(0);
+        }
+    }
 
-    private boolean regExpChanged(String pattern, boolean matchCase) {
-        return this.pattern != null && (!this.pattern.toString().equals(pattern) || (this.pattern.flags() == Pattern.CASE_INSENSITIVE) == matchCase);
+    /**
+     * Search text that has been added since the last update of the index.
+     * The last line is always searched again, as it may be unfinished. If
+     * the index is changed concurrently (by another update or by removal of
+     * old lines), the search is repeated.
+     * Chunks of the text are searched in the common fork-join pool.
+     */
+    private void updateMatchIndex(MatchIndex mi) {
+        while (!mi.isOverflow()) {
+            int from;
+            int to;
+            int lastLineStart;
+            int generation;
+            synchronized (readLock()) {
+                from = mi.getScannedTo();
+                to = getCharCount();
+                if (mi.getSearchedTo() >= to) {
+                    return;
+                }
+                lastLineStart = getLineStart(getLineAt(to));
+                generation = mi.getGeneration();
+            }
+            int[] chunks = splitToChunks(from, to);
+            final FindTask[] tasks = new FindTask[chunks.length - 1];
+            for (int i = 0; i < tasks.length; i++) {
+                tasks[i] = new FindTask(mi.getFinder(), chunks[i], chunks[i + 1]);
+            }
+            if (tasks.length > 1) {
+                ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        invokeAll(tasks);
+                    }
+                });
+            } else {
+                for (FindTask t : tasks) {
+                    t.invoke();
+                }
+            }
+            int[] found = joinResults(tasks);
+            if (mi.update(from, generation, found, lastLineStart, to)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Concatenate matches found by the tasks.
+     *
+     * @return Start and end offsets, or null if there are too many matches.
+     */
+    private static int[] joinResults(FindTask[] tasks) {
+        int total = 0;
+        for (FindTask t : tasks) {
+            int[] found = t.getRawResult();
+            if (found == null) {
+                return null;
+            }
+            total += found.length;
+        }
+        if (total / 2 > MAX_FIND_MATCHES) {
+            return null;
+        }
+        int[] result = new int[total];
+        int pos = 0;
+        for (FindTask t : tasks) {
+            int[] found = t.getRawResult();
+            System.arraycopy(found, 0, result, pos, found.length);
+            pos += found.length;
+        }
+        return result;
+    }
+
+    /**
+     * Index matches of the active pattern in background if enough unsearched
+     * text has been written. Called by the writing thread.
+     */
+    private void updateMatchIndexIfNeeded() {
+        MatchIndex mi = matchIndex;
+        if (mi != null && !mi.isOverflow()
+                && getCharCount() - mi.getSearchedTo() > MATCH_INDEX_BATCH) {
+            matchIndexTask.schedule(0);
+        }
+    }
+
+    /**
+     * Split text range [start, end) to line-aligned chunks.
+     *
+     * @return Chunk boundaries, starting with start and ending with end.
+     */
+    private int[] splitToChunks(int start, int end) {
+        IntListSimple bounds = new IntListSimple(16);
+        synchronized (readLock()) {
+            int pos = start;
+            bounds.add(start);
+            while (pos < end) {
+                int next = pos + FIND_CHUNK_SIZE;
+                if (next >= end) {
+                    next = end;
+                } else {
+                    int l = getLineAt(next);
+                    next = getLineStart(l);
+                    if (next <= pos) {
+                        next = l + 1 < getLineCount() ? getLineStart(l + 1) : end;
+                    }
+                }
+                bounds.add(next);
+                pos = next;
+            }
+        }
+        int[] result = new int[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Search for all matches in one chunk of the output.
+     */
+    private class FindTask extends RecursiveTask<int[]> {
+
+        private final OutputFind f;
+        private final int start;
+        private final int end;
+
+        FindTask(OutputFind f, int start, int end) {
+            this.f = f;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected int[] compute() {
+            BufferResource<CharBuffer> br = getCharBuffer(start, end - start);
+            if (br == null) {
+                return new int[0];
+            }
+            try {
+                CharBuffer cb = br.getBuffer();
+                return f.findAll(cb, 0, cb.remaining(), start, MAX_FIND_MATCHES);
+            } finally {
+                br.releaseBuffer();
+            }
+        }
     }
 
     public int[] find(int start, String pattern, boolean regExp, boolean matchCase) {
@@ -973,12 +1261,15 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         if (storage == null) {
             return null;
         }
-        if (regExp && regExpChanged(pattern, matchCase)) {
-            this.pattern = null;
-        }
-        if (!regExp && !matchCase) {
-            pattern = pattern.toLowerCase();
+        // The index is built in background, the output is searched directly
+        // unless the match is in the indexed text already.
+        MatchIndex mi = activateMatchIndex(pattern, regExp, matchCase);
+        int[] known = mi.nextKnownMatch(start);
+        if (known != null) {
+            return known;
         }
+        OutputFind f = mi.getFinder();
+        int[] range = new int[2];
         while (true) {
             BufferResource<ByteBuffer> br = null;
             int size = getCharCount() - start;
@@ -999,23 +1290,8 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
                 if (buff == null) {
                     break;
                 }
-                if (regExp) {
-                    if (this.pattern == null) {
-                        this.pattern = matchCase
-                                ? Pattern.compile(pattern)
-                                : Pattern.compile(pattern,
-                                Pattern.CASE_INSENSITIVE);
-                    }
-                    Matcher matcher = this.pattern.matcher(buff);
-                    if (matcher.find()) {
-                        return new int[]{start + matcher.start(), start + matcher.end()};
-                    }
-                } else {
-                    int idx = matchCase ? buff.toString().indexOf(pattern)
-                            : buff.toString().toLowerCase().indexOf(pattern);
-                    if (idx != -1) {
-                        return new int[]{start + idx, start + idx + pattern.length()};
-                    }
+                if (f.findFirst(buff, 0, buff.length(), range)) {
+                    return new int[]{start + range[0], start + range[1]};
                 }
                 start += buff.length();
             } finally {
@@ -1032,12 +1308,13 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         if (storage == null) {
             return null;
         }
-        if (regExp && regExpChanged(pattern, matchCase)) {
-            this.pattern = null;
-        }
-        if (!regExp && !matchCase) {
-            pattern = pattern.toLowerCase();
+        MatchIndex mi = activateMatchIndex(pattern, regExp, matchCase);
+        int[] known = mi.previousKnownMatch(start);
+        if (known != null) {
+            return known;
         }
+        OutputFind f = mi.getFinder();
+        int[] range = new int[2];
         while (true) {
             int end = start;
             start = end - MAX_FIND_SIZE;
@@ -1062,28 +1339,8 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
                 if (buff == null) {
                     break;
                 }
-                if (regExp) {
-                    if (this.pattern == null) {
-                        this.pattern = matchCase
-                                ? Pattern.compile(pattern)
-                                : Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
-                    }
-                    Matcher matcher = this.pattern.matcher(buff);
-                    int mStart = -1;
-                    int mEnd = -1;
-                    while (matcher.find()) {
-                        mStart = matcher.start();
-                        mEnd = matcher.end();
-                    }
-                    if (mStart != -1) {
-                        return new int[]{start + mStart, start + mEnd};
-                    }
-                } else {
-                    int idx = matchCase ? buff.toString().lastIndexOf(pattern)
-                            : buff.toString().toLowerCase().lastIndexOf(pattern);
-                    if (idx != -1) {
-                        return new int[]{start + idx, start + idx + pattern.length()};
-                    }
+                if (f.findLast(buff, 0, buff.length(), range)) {
+                    return new int[]{start + range[0], start + range[1]};
                 }
             } finally {
                 if (br != null) {
@@ -1217,13 +1474,15 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         synchronized (readLock()) {
             int lines = getLineCount();
             int chars = getCharCount();
+            int bytes = getStorage().storedSize();
             int infos = linesToInfos.size();
             if (lines >= outputLimits.getMaxLines()
-                    || chars >= outputLimits.getMaxChars()
+                    || bytes >= outputLimits.getMaxBytes()
+                    || chars >= MAX_CHARS
                     || infos >= 524288) { // #239445
                 LOG.log(Level.INFO, "Removing old lines: lines: {0},"   //NOI18N
-                        + " chars: {1}, infos: {2}", new Object[]{      //NOI18N
-                            lines, chars, infos});
+                        + " chars: {1}, bytes: {2}, infos: {3}",        //NOI18N
+                        new Object[]{lines, chars, bytes, infos});
                 return removeOldLines();
             } else {
                 return 0;
@@ -1231,9 +1490,77 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         }
     }
 
+    /**
+     * Write the text of removed lines that were kept on disk, with line ends
+     * replaced by the line separator.
+     */
+    private void saveSpilledLines(final FileChannel ch,
+            final CharsetEncoder encoder, final String ls) throws IOException {
+        SpilledLines spilled;
+        synchronized (readLock()) {
+            spilled = spilledLines;
+        }
+        if (spilled == null) {
+            return;
+        }
+        spilled.read(new SpilledLines.SegmentConsumer() {
+            @Override
+            public void segment(CharBuffer text) throws IOException {
+                String s = text.toString();
+                if (!"\n".equals(ls)) { //NOI18N
+                    s = s.replace("\n", ls); //NOI18N
+                }
+                ByteBuffer bb = encoder.encode(CharBuffer.wrap(s));
+                while (bb.hasRemaining()) {
+                    ch.write(bb);
+                }
+            }
+        });
+    }
+
+    /**
+     * Write text of the first characters, which are going to be removed, to
+     * the {@link SpilledLines}. Caller must hold the read lock. The cost is
+     * proportional to the removed text only.
+     */
+    private void spill(int charCount) {
+        if (!SPILL_REMOVED_LINES || spillFailed || charCount == 0) {
+            return;
+        }
+        if (spilledLines == null) {
+            spilledLines = new SpilledLines();
+        }
+        for (int start = 0; start < charCount; start += SpilledLines.SEGMENT_CHARS) {
+            int len = Math.min(SpilledLines.SEGMENT_CHARS, charCount - start);
+            BufferResource<CharBuffer> br = getCharBuffer(start, len);
+            try {
+                if (br == null) {
+                    throw new IOException("Text not available"); //NOI18N
+                }
+                spilledLines.add(br.getBuffer());
+            } catch (IOException e) {
+                LOG.log(Level.INFO, "Cannot keep removed lines on disk", e); //NOI18N
+                spillFailed = true;
+                spilledLines.dispose();
+                spilledLines = null;
+                return;
+            } finally {
+                if (br != null) {
+                    br.releaseBuffer();
+                }
+            }
+        }
+        LOG.log(Level.FINE, "Lines kept on disk: {0}", //NOI18N
+                spilledLines.getLineCount());
+    }
+
     /**
      * Tell the storage that oldest bytes can be forgotten, and update all data
-     * structures.
+     * structures. The text of the removed lines is kept on disk, see
+     * {@link SpilledLines}. The line, tab and match indexes only move their first item
+     * and base, so the cost does not grow with the number of kept lines. Only
+     * if lines were hidden in collapsed folds, the wrapped line counts are
+     * computed again when they are needed next time.
      */
     private int removeOldLines() {
         int newFirstLine = Math.min(outputLimits.getRemoveLines(),
@@ -1245,6 +1572,10 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         linesToInfos.decrementKeys(newFirstLine);
 
         int firstCharOffset = toCharIndex(firstByteOffset);
+        MatchIndex mi = matchIndex;
+        if (mi != null) {
+            mi.shift(firstCharOffset);
+        }
         int firstTabIndex = tabCharOffsets.findNearest(firstCharOffset);
         tabCharOffsets.compact(Math.max(0, firstTabIndex), firstCharOffset);
         if (firstTabIndex > 0) {
@@ -1253,42 +1584,31 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         }
         int firstImportantLine = importantLines.findNearest(newFirstLine);
         importantLines.compact(Math.max(0, firstImportantLine), newFirstLine);
-        knownLogicalLineCounts = null;
-        foldOffsets.compact(newFirstLine, 0);
-        int foIndex = 0;
-        while (foIndex < foldOffsets.size() && foldOffsets.get(foIndex) != 0) {
-            foldOffsets.set(foIndex, 0);
-            foIndex++;
-        }
-        visibleList.compact(newFirstLine, 0);
-        visibleList.set(0, 1);
-        realToVisibleLine.compact(newFirstLine, 0);
-        currentFoldStart = Math.max(-1, currentFoldStart - newFirstLine);
-        recomputeRealToVisibleLine();
-        updateVisibleToRealLines(0);
+        if (folds.getHiddenLineCount() == 0) {
+            if (wrappedLineCounts != null) {
+                wrappedLineCounts.removeFirst(newFirstLine);
+            }
+        } else {
+            // Lines of removed folds become visible.
+            wrappedLineCounts = null;
+        }
+        folds.removeFirstLines(newFirstLine);
+        spill(firstCharOffset);
         getStorage().shiftStart(firstByteOffset);
+        removedLineCount += newFirstLine;
         fire();
         return firstByteOffset;
     }
 
-    private void recomputeRealToVisibleLine() {
-        int currentVisibleLine = 0;
-        int currentHiddenLineCount = 0;
-        int hiddenFoldStart = -1;
-        for (int i = 0; i < realToVisibleLine.size(); i++) {
-            if (hiddenFoldStart == -1 && visibleList.get(i) == 0) {
-                hiddenFoldStart = i;
-                realToVisibleLine.set(i, currentVisibleLine++);
-            } else if (hiddenFoldStart > -1 &&foldOffsets.get(i) > 0
-                    && foldOffsets.get(i) <= i - hiddenFoldStart) {
-                realToVisibleLine.set(i, -1);
-                currentHiddenLineCount++;
-            } else {
-                realToVisibleLine.set(i, currentVisibleLine++);
-                hiddenFoldStart = -1;
-            }
+    /**
+     * Get number of lines that have been removed from the beginning of the
+     * output because an output limit was reached. Adding this value to a line
+     * index gives an index that is stable across removals.
+     */
+    int getRemovedLineCount() {
+        synchronized (readLock()) {
+            return removedLineCount;
         }
-        hiddenLines = currentHiddenLineCount;
     }
 
     /**
@@ -1302,15 +1622,24 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         tabLength--;    // substract the tab character as such, to have the extra length
         synchronized (readLock()) {
             LOG.log(Level.FINEST, "addTabAt: i = {0}", i);   // #201450 //NOI18N
-            tabCharOffsets.add(i);
-            int n = tabLengthSums.size();
-            if (n > 0) {
-                tabLength += tabLengthSums.get(n - 1);
-            }
-            tabLengthSums.add(tabLength);
+            appendTab(i, tabLength);
         }
     }
 
+    /**
+     * Caller must hold the read lock.
+     *
+     * @param extraLength Length of the tab without the tab character.
+     */
+    private void appendTab(int i, int extraLength) {
+        tabCharOffsets.add(i);
+        int n = tabLengthSums.size();
+        if (n > 0) {
+            extraLength += tabLengthSums.get(n - 1);
+        }
+        tabLengthSums.add(extraLength);
+    }
+
     /**
      * Remove last tab.
      *
@@ -1335,10 +1664,6 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
         }
     }
 
-    private boolean isFoldStartValid(int foldStartIndex) {
-        return foldStartIndex >= 0 && foldStartIndex < foldOffsets.size();
-    }
-
     /**
      * Character buffer resource for a Byte buffer resource. At most one
      * CharBufferResource can exists for a ByteBufferResource.
@@ -1368,8 +1693,8 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     @Override
     public void showFold(int foldStartIndex) {
         synchronized (readLock()) {
-            if (isFoldStartValid(foldStartIndex)) {
-                setFoldExpanded(foldStartIndex, true);
+            if (folds.setCollapsed(foldStartIndex, false)) {
+                foldVisibilityUpdated(foldStartIndex);
             }
         }
     }
@@ -1377,39 +1702,8 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     @Override
     public void hideFold(int foldStartIndex) {
         synchronized (readLock()) {
-            if (isFoldStartValid(foldStartIndex)) {
-                setFoldExpanded(foldStartIndex, false);
-            }
-        }
-    }
-
-    /**
-     * @param foldStartIndex Real index of the first line of the fold.
-     */
-    private void setFoldExpanded(int foldStartIndex, boolean expanded) {
-        synchronized (readLock()) {
-            if (visibleList.get(foldStartIndex) == (expanded ? 1 : 0)) {
-                return;
-            }
-            visibleList.set(foldStartIndex, expanded ? 1 : 0);
-            if (!isVisible(foldStartIndex)) {
-                return; // No need to recompute any mapping.
-            }
-            int len = foldLength(foldStartIndex);
-            if (len > 0) {
-                int changed = updateRealToVisibleIndexesInFold(foldStartIndex,
-                        len, expanded);
-                for (int i = foldStartIndex + len + 1;
-                        i < realToVisibleLine.size(); i++) {
-                    int currentValue = realToVisibleLine.get(i);
-                    if (currentValue != -1) {
-                        realToVisibleLine.set(i,
-                                currentValue + (expanded ? changed : -changed));
-                    }
-                }
-                hiddenLines += expanded ? -changed : changed;
-                updateVisibleToRealLines(foldStartIndex);
-                foldVisibilityUpdated();
+            if (folds.setCollapsed(foldStartIndex, true)) {
+                foldVisibilityUpdated(foldStartIndex);
             }
         }
     }
@@ -1417,50 +1711,24 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     @Override
     public void hideAllFolds() {
         synchronized (readLock()) {
-            int currentVisibleLine = 0;
-            int currentHiddenLineCount = 0;
-            for (int i = 0; i < foldOffsets.size(); i++) {
-                boolean isFoldStart = (i + 1 < foldOffsets.size()
-                        && foldOffsets.get(i + 1) == 1);
-                if (isFoldStart) {
-                    visibleList.set(i, 0);
-                }
-                if (foldOffsets.get(i) > 0) {
-                    realToVisibleLine.set(i, -1);
-                    currentHiddenLineCount++;
-                } else {
-                    realToVisibleLine.set(i, currentVisibleLine);
-                    currentVisibleLine++;
-                }
-            }
-            hiddenLines = currentHiddenLineCount;
-            updateVisibleToRealLines(0);
-            foldVisibilityUpdated();
+            folds.setAllCollapsed(true);
+            allFoldsVisibilityUpdated();
         }
     }
 
     @Override
     public void showAllFolds() {
         synchronized (readLock()) {
-            for (int i = 0; i < foldOffsets.size(); i++) {
-                boolean isFoldStart = (i + 1 < foldOffsets.size()
-                        && foldOffsets.get(i + 1) == 1);
-                if (isFoldStart) {
-                    visibleList.set(i, 1);
-                }
-                realToVisibleLine.set(i, i);
-            }
-            hiddenLines = 0;
-            updateVisibleToRealLines(0);
-            foldVisibilityUpdated();
+            folds.setAllCollapsed(false);
+            allFoldsVisibilityUpdated();
         }
     }
 
     @Override
     public void showFoldTree(int foldStartIndex) {
         synchronized (readLock()) {
-            if (isFoldStartValid(foldStartIndex)) {
-                setFoldTreeExpanded(foldStartIndex, true);
+            if (folds.setTreeCollapsed(foldStartIndex, false)) {
+                foldVisibilityUpdated(foldStartIndex);
             }
         }
     }
@@ -1468,12 +1736,9 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     @Override
     public void showFoldAndParentFolds(int foldStartIndex) {
         synchronized (readLock()) {
-            int foldOffset = getFoldOffsets().get(foldStartIndex);
-            if (foldOffset > 0) {
-                int parentFoldStart = foldStartIndex - foldOffset;
-                if (parentFoldStart >= 0) {
-                    showFoldAndParentFolds(parentFoldStart);
-                }
+            int parentFoldStart = getParentFoldStart(foldStartIndex);
+            if (parentFoldStart >= 0) {
+                showFoldAndParentFolds(parentFoldStart);
             }
             showFold(foldStartIndex);
         }
@@ -1490,130 +1755,39 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     @Override
     public void hideFoldTree(int foldStartIndex) {
         synchronized (readLock()) {
-            if (isFoldStartValid(foldStartIndex)) {
-                setFoldTreeExpanded(foldStartIndex, false);
-            }
-        }
-    }
-
-    private void setFoldTreeExpanded(int foldStartIndex, boolean expanded) {
-        int visibleValue = expanded ? 1 : 0;
-        synchronized (readLock()) {
-            assert isVisible(foldStartIndex);
-            visibleList.set(foldStartIndex, visibleValue);
-            int visibleFoldStartIndex = realToVisibleLine.get(foldStartIndex);
-            int delta = 0; // difference in count of visible lines
-            int lastUpdatedIndex = Integer.MAX_VALUE - 1;
-            for (int i = foldStartIndex + 1; i < foldOffsets.size(); i++) {
-                int offset = i - foldStartIndex;
-                if (foldOffsets.get(i) == 0 || foldOffsets.get(i) > offset) {
-                    break;
-                }
-                if (i + 1 < foldOffsets.size() && foldOffsets.get(i + 1) == 1) {
-                    visibleList.set(i, visibleValue);
-                }
-                int visibleIndex = realToVisibleLine.get(i);
-                if ((expanded && visibleIndex < 0)
-                        || (!expanded && visibleIndex >= 0)) {
-                    delta += expanded ? 1 : -1;
-                }
-                realToVisibleLine.set(i,
-                        expanded ? visibleFoldStartIndex + offset : -1);
-                lastUpdatedIndex = i;
-            }
-            for (int i = lastUpdatedIndex + 1; i < realToVisibleLine.size(); i++) {
-                realToVisibleLine.set(i, realToVisibleLine.get(i) + delta);
+            if (folds.setTreeCollapsed(foldStartIndex, true)) {
+                foldVisibilityUpdated(foldStartIndex);
             }
-            hiddenLines -= delta;
-            updateVisibleToRealLines(foldStartIndex);
-            foldVisibilityUpdated();
         }
     }
 
-    private void foldVisibilityUpdated() {
-        if (knownCharsPerLine > 0) {
-            calcLogicalLineCount(knownCharsPerLine);
-        }
-        markDirty();
-        delayedFire();
-    }
-
     /**
-     * Update realToVisibleLine indexes in a fold. Handle nested folds, keep
-     * their expanded/collapsed state.
-     *
-     * @param foldStart Real index of the first line of the fold.
-     * @param len Total length of the fold, including nested folds
-     * @param expanded True to expand the fold, false to collapse the fold.
-     *
-     * @return Number of newly hidden of shown lines.
+     * Lines of a fold have been hidden or shown.
      */
-    private int updateRealToVisibleIndexesInFold(
-            int foldStart, int len, boolean expanded) {
-
-        int changed = 0;
-        int nestedHidden = -1; // start index of currently processed hidden fold
-        for (int i = 0; i < len; i++) {
-            int lineIndex = foldStart + i + 1;
-            int foldOffset = foldOffsets.get(lineIndex);
-            if (i > 0 && foldOffset == 1 && visibleList.get(lineIndex - 1) == 0
-                    && nestedHidden == -1) {
-                // a nested hidden fold encountered
-                nestedHidden = lineIndex - 1;
-            } else if (foldOffset <= i + 1 && (nestedHidden == -1
-                    || foldOffset > lineIndex - nestedHidden)) {
-                assert !expanded || realToVisibleLine.get(lineIndex) == -1;
-                assert expanded || realToVisibleLine.get(lineIndex) != -1;
-                nestedHidden = -1;
-                changed++;
-                realToVisibleLine.set(lineIndex, expanded
-                        ? realToVisibleLine.get(foldStart) + changed
-                        : -1); // invisible: -1
-            } else if (foldOffset <= len + 1 && nestedHidden != -1) {
-                assert foldOffset <= lineIndex - nestedHidden;
-            } else {
-                assert false : "Only nested fold expected";             //NOI18N
-            }
-        }
-        return changed;
+    private void foldVisibilityUpdated(int foldStartIndex) {
+        updateLogicalLineCounts(foldStartIndex + 1,
+                folds.getFoldEnd(foldStartIndex));
+        markDirty();
+        delayedFire();
     }
 
-    private void updateVisibleToRealLines(int fromRealIndex) {
-        for (int i = fromRealIndex; i < getLineCount() - 1; i++) {
-            int visibleLine = realToVisibleLine.get(i);
-            if (visibleLine == -1) {
-                continue;
-            }
-            if (visibleLine >= visibleToRealLine.size()) {
-                visibleToRealLine.add(i);
-            } else {
-                visibleToRealLine.set(visibleLine, i);
-            }
-        }
-        if (visibleToRealLine.size() > realToVisibleLine.size() - hiddenLines) {
-            visibleToRealLine.shorten(realToVisibleLine.size() - hiddenLines);
-        }
+    private void allFoldsVisibilityUpdated() {
+        wrappedLineCounts = null;
+        markDirty();
+        delayedFire();
     }
 
     @Override
     public int visibleToRealLine(int visibleLineIndex) {
         synchronized (readLock()) {
-            if (visibleLineIndex >= visibleToRealLine.size()) {
-                return visibleLineIndex + hiddenLines;
-            } else if (visibleLineIndex < 0) {
-                return visibleLineIndex;
-            }
-            return visibleToRealLine.get(visibleLineIndex);
+            return folds.visibleToRealLine(visibleLineIndex);
         }
     }
 
     @Override
     public int realToVisibleLine(int realLineIndex) {
         synchronized (readLock()) {
-            if (realLineIndex >= realToVisibleLine.size()) {
-                return realLineIndex - hiddenLines;
-            }
-            return realToVisibleLine.get(realLineIndex);
+            return folds.realToVisibleLine(realLineIndex);
         }
     }
 
@@ -1623,27 +1797,7 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     @Override
     public boolean isVisible(int lineIndex) {
         synchronized (readLock()) {
-            if (lineIndex >= foldOffsets.size()) {
-                return true;
-            }
-            int fo = foldOffsets.get(lineIndex);
-            if (fo == 0) {
-                return true;
-            }
-            int parentFold = lineIndex - foldOffsets.get(lineIndex);
-            while (parentFold >= 0) {
-                if (visibleList.get(parentFold) == 0) {
-                    return false;
-                } else {
-                    fo = foldOffsets.get(parentFold);
-                    if (fo == 0) {
-                        break;
-                    } else {
-                        parentFold = parentFold - fo;
-                    }
-                }
-            }
-            return true;
+            return !folds.isHidden(lineIndex);
         }
     }
 
@@ -1651,33 +1805,28 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
      * @param foldStart Real fold start index.
      */
     int foldLength(int foldStart) {
-        int i = foldStart + 1;
-        while (i < foldOffsets.size()
-                && foldOffsets.get(i) > 0
-                && foldOffsets.get(i) <= i - foldStart) {
-            i++;
+        synchronized (readLock()) {
+            return folds.getFoldEnd(foldStart) - foldStart - 1;
         }
-        return i - foldStart - 1;
     }
 
     @Override
     public int getVisibleLineCount() {
         synchronized (readLock()) {
-            return getLineCount() - hiddenLines;
+            return getLineCount() - folds.getHiddenLineCount();
         }
     }
 
     @Override
     public int getFoldStart(int realLineIndex) {
         synchronized (readLock()) {
-            if (realLineIndex + 1 < foldOffsets.size()
-                    && foldOffsets.get(realLineIndex + 1) == 1) {
+            if (folds.isFoldStart(realLineIndex)) {
                 return realLineIndex;
             } else if (realLineIndex < 0
-                    || realLineIndex >= foldOffsets.size()) {
+                    || realLineIndex >= folds.getLineCount()) {
                 return Math.max(0, realLineIndex);
             } else {
-                return realLineIndex - foldOffsets.get(realLineIndex);
+                return realLineIndex - folds.getOffset(realLineIndex);
             }
         }
     }
@@ -1685,16 +1834,11 @@ abstract class AbstractLines implements Lines, Runnable, ActionListener {
     @Override
     public int getParentFoldStart(int realLineIndex) {
         synchronized (readLock()) {
-            if (realLineIndex < 0 || realLineIndex >= foldOffsets.size()) {
+            if (realLineIndex < 0 || realLineIndex >= folds.getLineCount()) {
                 return -1;
             } else {
-                int offset = foldOffsets.get(realLineIndex);
-                if (offset > 0) {
-                    int result = realLineIndex - offset;
-                    return result >= 0 ? result : -1;
-                } else {
-                    return -1;
-                }
+                int offset = folds.getOffset(realLineIndex);
+                return offset > 0 ? realLineIndex - offset : -1;
             }
         }
     }
@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.core.output2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Storage that stores Latin-1 characters in one byte per character.
+ *
+ * <p>Callers (OutWriter, AbstractLines) still see the usual UTF-16 view of
+ * the output - offsets passed to and returned from this storage are
+ * <em>logical</em> byte offsets, i.e. two bytes per character. Written data
+ * is split into runs of Latin-1 characters (stored as one byte each) and runs
+ * of other characters (stored as two bytes each) in the underlying storage.
+ * Adjacent runs of the same width are merged into one segment, so the segment
+ * index stays small for mostly-ASCII output.</p>
+ *
+ * <p>Output limits apply to {@link #storedSize()}, so mostly-ASCII output
+ * keeps nearly twice as many characters.</p>
+ */
+class CompactStorage implements Storage {
+
+    private static final int NARROW = 1;
+    private static final int WIDE = 2;
+
+    /** Storage holding the physical (compacted) bytes. */
+    private final Storage delegate;
+    /** Logical character offsets where segments start. */
+    private IntList segmentCharStarts = new IntList(64);
+    /** Physical byte offsets in the delegate where segments start. */
+    private IntListSimple segmentByteStarts = new IntListSimple(64);
+    /** Bytes per character of each segment, NARROW or WIDE. */
+    private IntListSimple segmentWidths = new IntListSimple(64);
+    /** Number of characters stored. */
+    private int charCount = 0;
+    /** Number of bytes stored in the delegate. */
+    private int physicalSize = 0;
+    /** Reusable buffer for logical (UTF-16) data being written. */
+    private ByteBuffer writeBuffer;
+
+    CompactStorage(Storage delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public BufferResource<ByteBuffer> getReadBuffer(
+            int start, int length) throws IOException {
+
+        // Look up the physical runs under the lock, but read them without it,
+        // so readers in the event queue do not wait for writes to the delegate.
+        int firstChar = AbstractLines.toCharIndex(start);
+        int charLen;
+        int[] runs;
+        synchronized (this) {
+            charLen = Math.max(0, Math.min(AbstractLines.toCharIndex(length),
+                    charCount - firstChar));
+            if (charLen == 0) {
+                return new HeapBufferResource(ByteBuffer.allocate(0));
+            }
+            runs = findRuns(firstChar, charLen);
+        }
+        if (runs.length == 3 && runs[2] == WIDE) {
+            // Wide data are stored as they are, no need to copy them.
+            return delegate.getReadBuffer(runs[0], runs[1] * WIDE);
+        }
+        ByteBuffer result = ByteBuffer.allocate(AbstractLines.toByteIndex(charLen));
+        CharBuffer out = result.asCharBuffer();
+        for (int r = 0; r < runs.length; r += 3) {
+            int chars = runs[r + 1];
+            int width = runs[r + 2];
+            BufferResource<ByteBuffer> br = delegate.getReadBuffer(
+                    runs[r], chars * width);
+            try {
+                ByteBuffer in = br.getBuffer();
+                if (width == NARROW) {
+                    int n = Math.min(chars, in.remaining());
+                    int p = in.position();
+                    for (int i = 0; i < n; i++) {
+                        out.put((char) (in.get(p + i) & 0xFF));
+                    }
+                } else {
+                    CharBuffer wide = in.asCharBuffer();
+                    if (wide.remaining() > chars) {
+                        wide.limit(chars);
+                    }
+                    out.put(wide);
+                }
+            } finally {
+                br.releaseBuffer();
+            }
+        }
+        return new HeapBufferResource(result);
+    }
+
+    /**
+     * Physical runs of a range of characters, as triples of physical offset,
+     * number of characters and width.
+     */
+    private int[] findRuns(int firstChar, int charLen) {
+        int seg = segmentCharStarts.findNearest(firstChar);
+        int end = firstChar + charLen;
+        IntListSimple runs = new IntListSimple(6);
+        int pos = firstChar;
+        while (pos < end) {
+            int to = Math.min(end, segmentEnd(seg));
+            runs.add(physicalOffset(seg, pos));
+            runs.add(to - pos);
+            runs.add(segmentWidths.get(seg));
+            pos = to;
+            seg++;
+        }
+        int[] result = new int[runs.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = runs.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Logical character offset where a segment ends (exclusive).
+     */
+    private int segmentEnd(int seg) {
+        return seg + 1 < segmentCharStarts.size()
+                ? segmentCharStarts.get(seg + 1)
+                : charCount;
+    }
+
+    /**
+     * Physical byte offset of a character that lies in the given segment.
+     */
+    private int physicalOffset(int seg, int charIndex) {
+        return segmentByteStarts.get(seg)
+                + (charIndex - segmentCharStarts.get(seg)) * segmentWidths.get(seg);
+    }
+
+    @Override
+    public ByteBuffer getWriteBuffer(int length) throws IOException {
+        if (writeBuffer == null || writeBuffer.capacity() < length) {
+            writeBuffer = ByteBuffer.allocate(length);
+        }
+        writeBuffer.clear();
+        return writeBuffer;
+    }
+
+    /**
+     * Writes are made by one thread at a time (the OutWriter is synchronized),
+     * only the segment index is guarded by this, so that readers are not
+     * blocked while the delegate writes.
+     */
+    @Override
+    public int write(ByteBuffer buf) throws IOException {
+        int position = size();
+        buf.flip();
+        CharBuffer chars = buf.asCharBuffer();
+        int len = chars.remaining();
+        int runStart = 0;
+        while (runStart < len) {
+            boolean wide = chars.get(runStart) > 0xFF;
+            int runEnd = runStart + 1;
+            while (runEnd < len && (chars.get(runEnd) > 0xFF) == wide) {
+                runEnd++;
+            }
+            appendRun(chars, runStart, runEnd, wide ? WIDE : NARROW);
+            runStart = runEnd;
+        }
+        return position;
+    }
+
+    private void appendRun(CharBuffer chars, int from, int to, int width)
+            throws IOException {
+
+        int byteLen = (to - from) * width;
+        ByteBuffer bb = delegate.getWriteBuffer(byteLen);
+        if (width == NARROW) {
+            for (int i = from; i < to; i++) {
+                bb.put((byte) chars.get(i));
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                bb.putChar(chars.get(i));
+            }
+        }
+        int before = delegate.size();
+        delegate.write(bb);
+        if (delegate.size() == before) {
+            return; // the delegate has been closed while writing
+        }
+        synchronized (this) {
+            int last = segmentWidths.size() - 1;
+            if (last < 0 || segmentWidths.get(last) != width) {
+                segmentCharStarts.add(charCount);
+                segmentByteStarts.add(physicalSize);
+                segmentWidths.add(width);
+            }
+            charCount += to - from;
+            physicalSize += byteLen;
+        }
+    }
+
+    @Override
+    public synchronized void removeBytesFromEnd(int length) throws IOException {
+        int chars = AbstractLines.toCharIndex(length);
+        while (chars > 0 && segmentWidths.size() > 0) {
+            int last = segmentWidths.size() - 1;
+            int segChars = charCount - segmentCharStarts.get(last);
+            int n = Math.min(chars, segChars);
+            int bytes = n * segmentWidths.get(last);
+            delegate.removeBytesFromEnd(bytes);
+            charCount -= n;
+            physicalSize -= bytes;
+            chars -= n;
+            if (n == segChars) {
+                segmentCharStarts.shorten(last);
+                segmentByteStarts.shorten(last);
+                segmentWidths.shorten(last);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void dispose() {
+        delegate.dispose();
+        segmentCharStarts = new IntList(64);
+        segmentByteStarts = new IntListSimple(64);
+        segmentWidths = new IntListSimple(64);
+        charCount = 0;
+        physicalSize = 0;
+        writeBuffer = null;
+    }
+
+    @Override
+    public synchronized int size() {
+        return AbstractLines.toByteIndex(charCount);
+    }
+
+    @Override
+    public synchronized int storedSize() {
+        return physicalSize;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public synchronized void shiftStart(int byteOffset) {
+        int chars = AbstractLines.toCharIndex(byteOffset);
+        if (chars == 0 || segmentWidths.size() == 0) {
+            return;
+        }
+        int seg = segmentCharStarts.findNearest(chars);
+        int physOffset = physicalOffset(seg, chars);
+        delegate.shiftStart(physOffset);
+        // The first remaining segment may start before the new origin, so its
+        // offsets become negative. That keeps physicalOffset() valid without
+        // having to rewrite the segment.
+        segmentCharStarts.compact(seg, chars);
+        segmentByteStarts.compact(seg, physOffset);
+        segmentWidths.compact(seg, 0);
+        charCount -= chars;
+        physicalSize -= physOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactStorage over " + delegate; //NOI18N
+    }
+
+    private static class HeapBufferResource implements BufferResource<ByteBuffer> {
+
+        private ByteBuffer buffer;
+
+        public HeapBufferResource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        public void releaseBuffer() {
+            buffer = null;
+        }
+    }
+}
@@ -41,6 +41,9 @@ class ExtPlainView extends PlainView {
     private final Segment SEGMENT = new Segment();
     private static final int MAX_LINE_LENGTH = 4096;
     private static final String LINE_TOO_LONG_MSG = org.openide.util.NbBundle.getMessage(ExtPlainView.class, "MSG_LINE_TOO_LONG");
+    /** Background of matches of the last searched pattern, translucent so
+     * that it works on light and dark backgrounds. */
+    static final Color MATCH_HIGHLIGHT = new Color(255, 200, 0, 96);
 
     /** set antialiasing hints when it's requested. */
     private static final boolean antialias = Boolean.getBoolean ("swing.aatext") || //NOI18N
@@ -88,6 +91,8 @@ class ExtPlainView extends PlainView {
             }
             int end = p0 + s.count;
             Lines lines = ((OutputDocument) doc).getLines();
+            MatchIndex matches = !selected && lines instanceof AbstractLines
+                    ? ((AbstractLines) lines).getMatchIndex() : null;
             int lineOffset;
             LineInfo info;
             synchronized (lines.readLock()) {
@@ -115,6 +120,9 @@ class ExtPlainView extends PlainView {
                     g.setColor(bg);
                     g.fillRect(x, y - h + metrics.getDescent(), w, h);
                 }
+                if (matches != null) {
+                    drawMatches(g, matches, s, x, y, p0);
+                }
                 g.setColor(ls.getColor());
                 int nx = Utilities.drawTabbedText(s, x, y, g, this, p0);
                 if (ls.getListener() != null) {
@@ -130,6 +138,29 @@ class ExtPlainView extends PlainView {
         }
     }
 
+    /**
+     * Paint background of matches of the last searched pattern that
+     * intersect the segment.
+     */
+    private void drawMatches(Graphics g, MatchIndex matches, Segment s,
+            int x, int y, int p0) {
+        int[] found = matches.getMatches(p0, p0 + s.count);
+        if (found.length == 0) {
+            return;
+        }
+        int count = s.count;
+        int h = metrics.getHeight();
+        g.setColor(MATCH_HIGHLIGHT);
+        for (int i = 0; i < found.length; i += 2) {
+            s.count = Math.max(found[i], p0) - p0;
+            int xa = x + Utilities.getTabbedTextWidth(s, metrics, x, this, p0);
+            s.count = Math.min(found[i + 1], p0 + count) - p0;
+            int xb = x + Utilities.getTabbedTextWidth(s, metrics, x, this, p0);
+            g.fillRect(xa, y - h + metrics.getDescent(), xb - xa, h);
+        }
+        s.count = count;
+    }
+
     @Override
     protected int drawSelectedText(Graphics g, int x, int y, int p0, int p1) throws BadLocationException {
         return drawText(g, x, y, p0, p1, true);
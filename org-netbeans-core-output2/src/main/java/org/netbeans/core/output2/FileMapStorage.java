@@ -26,7 +26,11 @@ import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Set;
 import org.openide.util.Exceptions;
 import org.openide.util.RequestProcessor;
@@ -34,6 +38,11 @@ import org.openide.util.RequestProcessor;
 /**
  * An implementation of the Storage interface over a memory mapped file.
  *
+ * <p>The file is read through a small LRU cache of mapped windows. Windows
+ * are {@link #WINDOW_SIZE} bytes long and start at multiples of
+ * {@link #WINDOW_STEP}, so each read of up to {@code WINDOW_STEP} bytes fits
+ * into one window. A window is unmapped when it has been evicted from the
+ * cache and all buffers leased from it have been released.</p>
  */
 class FileMapStorage implements Storage {
     /** A file channel for reading/writing the mapped file */
@@ -42,9 +51,17 @@ class FileMapStorage implements Storage {
      * needed. */
     private static final int BASE_BUFFER_SIZE = 8196;
     /**
-     * max possible range to map.. 1 MB
+     * Size of a mapped window, 8 MB.
      */
-    private static final long MAX_MAP_RANGE = 1024 * 1024;
+    private static final long WINDOW_SIZE = 8 * 1024 * 1024;
+    /**
+     * Distance between starts of windows. Windows overlap by this size.
+     */
+    private static final long WINDOW_STEP = WINDOW_SIZE / 2;
+    /**
+     * Max number of windows kept mapped.
+     */
+    private static final int MAX_WINDOWS = 8;
     /**
      * Own request processor
      */
@@ -60,19 +77,15 @@ class FileMapStorage implements Storage {
      * allocations.
      */
     private ByteBuffer master;
-    /** A byte getWriteBuffer mapped to the contents of the output file, from which
-     * content is read. */
-    private MappedBufferResource contents;
-    /** The number of bytes from the file that have been are currently mapped
-     * into the contents ByteBuffer.  This will be checked on calls that read,
-     * and if more than the currently mapped bytes are requested, the
-     * contents bufffer will be replaced by a larger one */
-    private long mappedRange;
-    
-    /**
-     * start of the mapped range..
-     */
-    private long mappedStart;
+    /** Mapped windows of the output file, keyed by window index, in access
+     * order. Guarded by itself, not by the storage monitor, so readers do not
+     * wait for writers. */
+    private final LinkedHashMap<Long, MappedWindow> windows =
+            new LinkedHashMap<Long, MappedWindow>(16, 0.75f, true);
+    /** Statistics of the window cache, guarded by windows */
+    private long windowHits = 0;
+    private long windowMisses = 0;
+    private long mappedBytes = 0;
     /**
      * The currently in use buffer.
      */
@@ -92,7 +105,7 @@ class FileMapStorage implements Storage {
      * Byte in the file that corresponds to logical start of the storage data.
      * Data before this offset are "forgotten".
      */
-    private long startOffset = 0;
+    private volatile long startOffset = 0;
 
     private boolean closed;
 
@@ -105,9 +118,7 @@ class FileMapStorage implements Storage {
             @Override
             public void run() {
                 for (FileMapStorage fms : undisposed) {
-                    if (fms.contents != null) {
-                        fms.contents.releaseBuffer();
-                    }
+                    fms.releaseWindows();
                     if (fms.fileChannel != null && fms.fileChannel.isOpen()) {
                         try {
                             fms.fileChannel.close();
@@ -128,9 +139,6 @@ class FileMapStorage implements Storage {
     }
 
     private void init() {
-        contents = null;
-        mappedRange = -1;
-        mappedStart = 0;
         master = ByteBuffer.allocateDirect (BASE_BUFFER_SIZE);
         fileChannel = null;
         buffer = null;
@@ -268,21 +276,17 @@ class FileMapStorage implements Storage {
         }
         final FileChannel oldChannel = fileChannel;
         final File oldFile = outfile;
-        final MappedBufferResource oldContents = contents;
         fileChannel = null;
         closed = true;
         outfile = null;
         buffer = null;
-        contents = null;
 
         if (oldChannel != null || oldFile != null) {
             RP.post(new Runnable() {
 
                 public void run() {
                     try {
-                        if (oldContents != null) {
-                            oldContents.releaseBuffer();
-                        }
+                        releaseWindows();
                         if (oldChannel != null && oldChannel.isOpen()) {
                             oldChannel.close();
                         }
@@ -319,71 +323,156 @@ class FileMapStorage implements Storage {
 
     /**
      * Get a byte buffer representing the a getText of the contents of the
-     * output file.  This is optimized to possibly map more of the output file
-     * into memory if it is not already mapped.
+     * output file. The buffer is a slice of a cached mapped window, or of a
+     * dedicated mapping if the requested range is larger than
+     * {@link #WINDOW_STEP}.
      */
     public BufferResource<ByteBuffer> getReadBuffer(int start, int byteCount)
             throws IOException {
 
-        ByteBuffer cont;
         long fileStart = startOffset + start;
-        synchronized (this) {
-            cont = this.contents == null ? null : this.contents.getBuffer();
-            if (cont == null || fileStart + byteCount > mappedRange || fileStart < mappedStart) {
-                FileChannel ch = fileChannel();
-                mappedStart = Math.max((long)0, fileStart - (MAX_MAP_RANGE /2));
-                long prevMappedRange = mappedRange;
-                long map = byteCount > (MAX_MAP_RANGE / 2) ? (byteCount + byteCount / 10) : (MAX_MAP_RANGE / 2);
-                mappedRange = Math.min(ch.size(), fileStart + map);
-                try {
-                    try {
-                        cont = ch.map(FileChannel.MapMode.READ_ONLY, mappedStart, mappedRange - mappedStart);
-                        updateContents(cont);
-                    } catch (IOException ioe) {
-                        Logger.getAnonymousLogger().info("Failed to memory map output file for reading. Trying to read it normally."); //NOI18N
-
-                        // Memory mapping failed, fallback to non-mapped
-                        cont = ByteBuffer.allocate((int) (mappedRange - mappedStart));
-                        ch.read(cont, mappedStart);
-                        updateContents(cont);
-                    }
-                } catch (Exception e) {
-                    String msg = MessageFormat.format(
-                            "Failed to read output file. Start:{0} bytes reqd={1}" //NOI18N
-                            + " mapped range={2} previous mapped range={3} " //NOI18N
-                            + "channel size: {4}", new Object[]{start, byteCount,
-                                mappedRange, prevMappedRange, ch.size()});
-                    throw new IOException(msg, e);
-                }
-            }
-            if (fileStart - mappedStart > cont.limit() - byteCount) {
-                cont.position(Math.max(0, cont.limit() - byteCount));
-            } else {
-                cont.position((int) (fileStart - mappedStart));
-            }
+        MappedWindow window = leaseWindow(fileStart, byteCount);
+        ByteBuffer cont = window.getBuffer().duplicate();
+        if (fileStart - window.start > cont.limit() - byteCount) {
+            cont.position(Math.max(0, cont.limit() - byteCount));
+        } else {
+            cont.position((int) (fileStart - window.start));
         }
         int limit = Math.min(cont.limit(), byteCount);
         try {
-            return new ChildBufferResource((ByteBuffer)cont.slice().limit(limit), this.contents);
+            return new ChildBufferResource((ByteBuffer)cont.slice().limit(limit), window);
         } catch (Exception e) {
+            window.decRefs();
             throw new IllegalStateException ("Error setting limit to " + limit //NOI18N
             + " contents size = " + cont.limit() + " requested: read " + //NOI18N
             "buffer from " + start + " to be " + byteCount + " bytes"); //NOI18N
         }
     }
 
-    private void updateContents(ByteBuffer buffer) {
-        if (this.contents != null) {
-            this.contents.decRefs();
+    /**
+     * Get a window containing the range, with its reference count already
+     * incremented.
+     */
+    private MappedWindow leaseWindow(long fileStart, int byteCount)
+            throws IOException {
+
+        FileChannel ch;
+        long fileEnd;
+        synchronized (this) {
+            ch = fileChannel();
+            fileEnd = startOffset + bytesWritten;
+        }
+        long requestEnd = Math.min(fileStart + byteCount, fileEnd);
+        if (byteCount > WINDOW_STEP) {
+            // Too large for a window, map it separately. The mapping is
+            // released together with the returned buffer.
+            MappedWindow w = mapWindow(ch, fileStart,
+                    byteCount + byteCount / 10);
+            w.evicted = true;
+            w.incRefs();
+            synchronized (windows) {
+                windowMisses++;
+            }
+            return w;
+        }
+        long index = fileStart / WINDOW_STEP;
+        synchronized (windows) {
+            MappedWindow w = windows.get(index);
+            if (w != null && w.start + w.length >= requestEnd) {
+                windowHits++;
+                w.incRefs();
+                return w;
+            }
+            windowMisses++;
+            if (w != null) {
+                // The file has grown since the window was mapped.
+                evict(windows.remove(index));
+            }
+            w = mapWindow(ch, index * WINDOW_STEP, WINDOW_SIZE);
+            w.incRefs();
+            windows.put(index, w);
+            mappedBytes += w.length;
+            Iterator<MappedWindow> it = windows.values().iterator();
+            while (windows.size() > MAX_WINDOWS && it.hasNext()) {
+                MappedWindow eldest = it.next();
+                it.remove();
+                evict(eldest);
+            }
+            if (Controller.LOG) {
+                Controller.log("FileMapStorage window cache: hits=" //NOI18N
+                        + windowHits + " misses=" + windowMisses //NOI18N
+                        + " windows=" + windows.size() //NOI18N
+                        + " mapped bytes=" + mappedBytes); //NOI18N
+            }
+            return w;
+        }
+    }
+
+    /**
+     * Map a region of the file, at most to the current end of the file.
+     */
+    private MappedWindow mapWindow(FileChannel ch, long start, long size)
+            throws IOException {
+
+        long end = Math.min(ch.size(), start + size);
+        long length = Math.max(0, end - start);
+        try {
+            ByteBuffer buf;
+            try {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, start, length);
+            } catch (IOException ioe) {
+                Logger.getAnonymousLogger().info("Failed to memory map output file for reading. Trying to read it normally."); //NOI18N
+
+                // Memory mapping failed, fallback to non-mapped
+                buf = ByteBuffer.allocate((int) length);
+                ch.read(buf, start);
+                buf.flip();
+            }
+            return new MappedWindow(buf, start, (int) length);
+        } catch (Exception e) {
+            String msg = MessageFormat.format(
+                    "Failed to read output file. Start:{0} bytes reqd={1}" //NOI18N
+                    + " channel size: {2}", new Object[]{start, size, //NOI18N
+                        ch.size()});
+            throw new IOException(msg, e);
+        }
+    }
+
+    /**
+     * Remove a window from the cache statistics and unmap it once it is not
+     * used. Caller must hold the windows lock.
+     */
+    private void evict(MappedWindow w) {
+        mappedBytes -= w.length;
+        w.evict();
+    }
+
+    /**
+     * Evict all windows.
+     */
+    private void releaseWindows() {
+        List<MappedWindow> all;
+        synchronized (windows) {
+            all = new ArrayList<MappedWindow>(windows.values());
+            windows.clear();
+            for (MappedWindow w : all) {
+                evict(w);
+            }
+            if (Controller.LOG) {
+                Controller.log("FileMapStorage window cache released: hits=" //NOI18N
+                        + windowHits + " misses=" + windowMisses); //NOI18N
+            }
         }
-        this.contents = new MappedBufferResource(buffer);
-        this.contents.incRefs();
     }
 
     public synchronized int size() {
         return bytesWritten;
     }
 
+    public int storedSize() {
+        return size();
+    }
+
     public void flush() throws IOException {
         if (buffer != null) {
             if (Controller.LOG) Controller.log("FILEMAP STORAGE flush(): " + outstandingBufferCount);
@@ -420,17 +509,14 @@ class FileMapStorage implements Storage {
         }
     }
 
-    private class ChildBufferResource implements BufferResource<ByteBuffer> {
+    private static class ChildBufferResource implements BufferResource<ByteBuffer> {
 
         private ByteBuffer buffer;
-        private MappedBufferResource parentResource;
-
-        public ChildBufferResource(
-                ByteBuffer buffer, MappedBufferResource parentResource) {
+        private MappedWindow window;
 
+        public ChildBufferResource(ByteBuffer buffer, MappedWindow window) {
             this.buffer = buffer;
-            this.parentResource = parentResource;
-            this.parentResource.incRefs();
+            this.window = window;
         }
 
         @Override
@@ -440,31 +526,33 @@ class FileMapStorage implements Storage {
 
         @Override
         public void releaseBuffer() {
-            buffer = null;
-            parentResource.decRefs();
+            if (window != null) {
+                buffer = null;
+                window.decRefs();
+                window = null;
+            }
         }
     }
 
-    private class MappedBufferResource
-            implements BufferResource<ByteBuffer> {
+    /**
+     * Mapped region of the output file. It is unmapped when it has been
+     * evicted from the cache and there are no leased buffers.
+     */
+    private static class MappedWindow {
 
-        private int refs = 0;
+        private final long start;
+        private final int length;
         private ByteBuffer buffer;
+        private int refs = 0;
+        private boolean evicted = false;
 
-        public MappedBufferResource(ByteBuffer buffer) {
+        MappedWindow(ByteBuffer buffer, long start, int length) {
             this.buffer = buffer;
+            this.start = start;
+            this.length = length;
         }
 
-        @Override
-        public void releaseBuffer() {
-            if (buffer != null) {
-                unmap(buffer);
-                buffer = null;
-            }
-        }
-
-        @Override
-        public ByteBuffer getBuffer() {
+        synchronized ByteBuffer getBuffer() {
             return buffer;
         }
 
@@ -475,7 +563,16 @@ class FileMapStorage implements Storage {
         synchronized void decRefs() {
             refs--;
             assert refs >= 0;
-            if (refs == 0) {
+            unmapIfUnused();
+        }
+
+        synchronized void evict() {
+            evicted = true;
+            unmapIfUnused();
+        }
+
+        private void unmapIfUnused() {
+            if (refs == 0 && evicted && buffer != null) {
                 unmap(buffer);
                 buffer = null;
             }
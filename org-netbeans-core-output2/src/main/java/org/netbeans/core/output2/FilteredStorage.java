@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.core.output2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Read-only storage for filtered output. It does not hold any text, only the
+ * numbers of source lines that passed the filter. Text is read from the source
+ * lines on demand.
+ *
+ * <p>Source line numbers are absolute, i.e. they are not decremented when the
+ * source output removes old lines (see
+ * {@link AbstractLines#getRemovedLineCount()}). Lines that have been removed
+ * from the source are read as zeros.</p>
+ */
+class FilteredStorage implements Storage {
+
+    private final AbstractLines source;
+    /** Absolute source line number of each filtered line. */
+    private IntListSimple sourceLines = new IntListSimple(128);
+    /** Character offset of each filtered line in this storage. */
+    private IntList lineStarts = new IntList(128);
+    private int charCount = 0;
+    private boolean closed = false;
+
+    FilteredStorage(AbstractLines source) {
+        this.source = source;
+    }
+
+    /**
+     * Append a source line to the filtered output.
+     *
+     * @param sourceLine Absolute index of the line in the source output.
+     * @param charLength Length of the line, including the line separator.
+     */
+    synchronized void addLine(int sourceLine, int charLength) {
+        if (charLength == 0) {
+            return;
+        }
+        sourceLines.add(sourceLine);
+        lineStarts.add(charCount);
+        charCount += charLength;
+        closed = false;
+    }
+
+    @Override
+    public synchronized BufferResource<ByteBuffer> getReadBuffer(
+            int start, int length) throws IOException {
+
+        int from = AbstractLines.toCharIndex(start);
+        int to = Math.min(charCount, from + AbstractLines.toCharIndex(length));
+        char[] chars = new char[Math.max(0, to - from)];
+        if (from < to) {
+            synchronized (source.readLock()) {
+                int removed = source.getRemovedLineCount();
+                int i = lineStarts.findNearest(from);
+                int pos = from;
+                while (pos < to) {
+                    int lineStart = lineStarts.get(i);
+                    int lineEnd = i + 1 < lineStarts.size()
+                            ? lineStarts.get(i + 1) : charCount;
+                    int end = Math.min(to, lineEnd);
+                    int srcLine = sourceLines.get(i) - removed;
+                    if (srcLine >= 0 && srcLine < source.getLineCount()) {
+                        int srcStart = source.getLineStart(srcLine)
+                                + (pos - lineStart);
+                        int srcEnd = Math.min(srcStart + (end - pos),
+                                source.getCharCount());
+                        if (srcEnd > srcStart) {
+                            source.getText(srcStart, srcEnd).getChars(
+                                    0, srcEnd - srcStart, chars, pos - from);
+                        }
+                    }
+                    pos = end;
+                    i++;
+                }
+            }
+        }
+        ByteBuffer bb = ByteBuffer.allocate(AbstractLines.toByteIndex(chars.length));
+        bb.asCharBuffer().put(chars);
+        return new HeapBufferResource(bb);
+    }
+
+    @Override
+    public ByteBuffer getWriteBuffer(int length) throws IOException {
+        throw new IOException("Filtered output is read-only"); //NOI18N
+    }
+
+    @Override
+    public int write(ByteBuffer buf) throws IOException {
+        throw new IOException("Filtered output is read-only"); //NOI18N
+    }
+
+    @Override
+    public void removeBytesFromEnd(int length) throws IOException {
+        throw new IOException("Filtered output is read-only"); //NOI18N
+    }
+
+    @Override
+    public synchronized void dispose() {
+        sourceLines = new IntListSimple(1);
+        lineStarts = new IntList(1);
+        charCount = 0;
+        closed = true;
+    }
+
+    @Override
+    public synchronized int size() {
+        return AbstractLines.toByteIndex(charCount);
+    }
+
+    @Override
+    public int storedSize() {
+        return size();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        //N/A
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+    }
+
+    @Override
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void shiftStart(int byteOffset) {
+        //N/A - filtered output is not limited
+    }
+
+    @Override
+    public String toString() {
+        return "FilteredStorage of " + sourceLines.size() + " lines"; //NOI18N
+    }
+
+    private static class HeapBufferResource implements BufferResource<ByteBuffer> {
+
+        private ByteBuffer buffer;
+
+        public HeapBufferResource(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+        @Override
+        public void releaseBuffer() {
+            buffer = null;
+        }
+    }
+}
@@ -191,9 +191,9 @@ public class FoldingSideBar extends JComponent {
         int currOffset;
         int nextOffset;
         try {
-            currOffset = lines.getFoldOffsets().get(line);
-            nextOffset = line + 1 < lines.getFoldOffsets().size()
-                    ? lines.getFoldOffsets().get(line + 1) : 0;
+            currOffset = lines.getFoldOffset(line);
+            nextOffset = line + 1 < lines.getLineCount() - 1
+                    ? lines.getFoldOffset(line + 1) : 0;
         } catch (IndexOutOfBoundsException ioobe) { // Some lines were removed.
             LOG.log(Level.FINE, null, ioobe);
             return;
@@ -244,13 +244,13 @@ public class FoldingSideBar extends JComponent {
     }
 
     private boolean isLastVisibleLineInFold(int line) {
-        if (lines.getFoldOffsets().get(line) > 0) {
+        if (lines.getFoldOffset(line) > 0) {
             int visibleLine = lines.realToVisibleLine(line);
             int nextVisibleRealIndex = lines.visibleToRealLine(visibleLine + 1);
-            if (nextVisibleRealIndex >= lines.getFoldOffsets().size()) {
+            if (nextVisibleRealIndex >= lines.getLineCount() - 1) {
                 return true;
             }
-            return lines.getFoldOffsets().get(nextVisibleRealIndex) > 0;
+            return lines.getFoldOffset(nextVisibleRealIndex) > 0;
         } else {
             return false;
         }
@@ -351,14 +351,14 @@ public class FoldingSideBar extends JComponent {
     private boolean isActive(int line) {
         int parent = line;
         while (parent != activeFold && parent >= 0) {
-            int foldOffset = lines.getFoldOffsets().get(parent);
+            int foldOffset = lines.getFoldOffset(parent);
             if (foldOffset == 0) {
                 break;
             } else {
                 parent = parent - foldOffset;
             }
         }
-        return parent == activeFold;
+        return parent >= 0 && parent == activeFold;
     }
 
     private class FoldingMouseListener extends MouseAdapter {
@@ -398,12 +398,11 @@ public class FoldingSideBar extends JComponent {
             int origActiveFold = activeFold;
             if (physicalLine < 0) {
                 activeFold = -1;
-            } else if (physicalLine + 1 < lines.getFoldOffsets().size()
-                    && lines.getFoldOffsets().get(physicalLine + 1) == 1) {
+            } else if (lines.isFoldStart(physicalLine)) {
                 activeFold = physicalLine;
-            } else if (physicalLine < lines.getFoldOffsets().size()) {
+            } else if (physicalLine < lines.getLineCount() - 1) {
                 activeFold = physicalLine
-                        - lines.getFoldOffsets().get(physicalLine);
+                        - lines.getFoldOffset(physicalLine);
             } else {
                 activeFold = -1;
             }
@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.core.output2;
+
+/**
+ * Folds of an output. Only folds are stored, not lines, so memory depends on
+ * the number of folds.
+ * <p>
+ * Folds are kept in the order of their start lines. Each fold contains lines
+ * after its start line, up to its end. Nested folds are inside their parent
+ * folds. The current fold and its parents are open, lines that are added to
+ * the output become part of them.
+ * <p>
+ * A line is hidden if it is inside a collapsed fold. Count of hidden lines of
+ * each fold that is collapsed and not inside another collapsed fold is kept in
+ * an {@link IntSumList}, so mapping between real and visible line indexes,
+ * and expanding or collapsing of a fold, takes logarithmic time (plus depth of
+ * fold nesting).
+ * <p>
+ * Caller is responsible for synchronization.
+ */
+final class Folds {
+
+    /** End of open folds, greater than any line index */
+    private static final int OPEN = Integer.MAX_VALUE;
+
+    /** Start line of each fold */
+    private final IntList starts = new IntList(16);
+    /** Index of the line after the last line of each fold */
+    private final IntListSimple ends = new IntListSimple(16);
+    /** Index of parent fold of each fold, negative for top-level folds */
+    private final IntListSimple parents = new IntListSimple(16);
+    /** 1 for collapsed folds, 0 for expanded folds */
+    private IntSumList collapsed = new IntSumList(16);
+    /**
+     * Count of hidden lines of each fold that is collapsed and is not inside
+     * another collapsed fold, 0 for other folds
+     */
+    private IntSumList hidden = new IntSumList(16);
+    /** Number of lines */
+    private int lineCount = 0;
+    /** Index of the current fold, or -1 */
+    private int current = -1;
+    /**
+     * Index of the outermost collapsed fold among the current fold and its
+     * parents, or -1. Lines added to the output are hidden in this fold.
+     */
+    private int openHidden = -1;
+
+    /**
+     * Number of lines, i.e. of finished lines of the output.
+     */
+    int getLineCount() {
+        return lineCount;
+    }
+
+    int getHiddenLineCount() {
+        return hidden.total();
+    }
+
+    /**
+     * Add a line to the current fold.
+     */
+    void lineAdded() {
+        if (openHidden >= 0) {
+            hidden.set(openHidden, hidden.get(openHidden) + 1);
+        }
+        lineCount++;
+    }
+
+    /**
+     * Check whether the next added line will be hidden.
+     */
+    boolean isNextLineHidden() {
+        return openHidden >= 0;
+    }
+
+    /**
+     * Set the current fold. A new fold can start at the last line only. An
+     * existing fold can become current again only if no lines have been added
+     * after its end.
+     *
+     * @param foldStart Index of the start line of the fold, or -1 if no fold
+     * should be current.
+     * @return False if the fold cannot be set, the current fold is not changed
+     * in this case.
+     */
+    boolean setCurrentFoldStart(int foldStart) {
+        if (foldStart < 0) {
+            open(-1);
+            return true;
+        } else if (foldStart >= lineCount) {
+            return false;
+        }
+        int fold = starts.indexOf(foldStart);
+        if (fold >= 0) {
+            if (end(fold) < lineCount) {
+                return false;
+            }
+            open(fold);
+            return true;
+        } else if (foldStart == lineCount - 1) {
+            int parent = innermostFold(foldStart);
+            starts.add(foldStart);
+            ends.add(OPEN);
+            parents.add(parent);
+            collapsed.add(0);
+            hidden.add(0);
+            open(starts.size() - 1);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Make a fold current. Close all open folds that are not its parents, and
+     * open the fold and its parents if they end at the last line.
+     */
+    private void open(int fold) {
+        for (int f = current; f >= 0; f = parent(f)) {
+            if (ends.get(f) == OPEN) {
+                ends.set(f, lineCount);
+            }
+        }
+        for (int f = fold; f >= 0 && ends.get(f) >= lineCount; f = parent(f)) {
+            ends.set(f, OPEN);
+        }
+        current = fold;
+        updateOpenHidden();
+    }
+
+    private void updateOpenHidden() {
+        openHidden = -1;
+        for (int f = current; f >= 0; f = parent(f)) {
+            if (collapsed.get(f) == 1) {
+                openHidden = f;
+            }
+        }
+    }
+
+    private int parent(int fold) {
+        int parent = parents.get(fold);
+        return parent < 0 ? -1 : parent;
+    }
+
+    private int end(int fold) {
+        return Math.min(ends.get(fold), lineCount);
+    }
+
+    private int lineCountInFold(int fold) {
+        return hasLines(fold) ? end(fold) - starts.get(fold) - 1 : 0;
+    }
+
+    /**
+     * Check whether a fold has lines and can be collapsed. Folds whose start
+     * line has been removed cannot be collapsed, see
+     * {@link #removeFirstLines(int)}.
+     */
+    private boolean hasLines(int fold) {
+        int start = starts.get(fold);
+        return start >= 0 && end(fold) > start + 1;
+    }
+
+    /**
+     * Index of the last fold that starts before a line.
+     */
+    private int lastFoldBefore(int line) {
+        return starts.findNearest(line - 1);
+    }
+
+    /**
+     * Index of the innermost fold that contains a line, or -1.
+     */
+    private int innermostFold(int line) {
+        int fold = lastFoldBefore(line);
+        while (fold >= 0 && line >= end(fold)) {
+            fold = parent(fold);
+        }
+        return fold;
+    }
+
+    /**
+     * Index of the last nested fold of a fold, or the fold itself if it has
+     * no nested folds.
+     */
+    private int lastNestedFold(int fold) {
+        return lastFoldBefore(end(fold));
+    }
+
+    /**
+     * Index of the fold that starts at a line and contains at least one line.
+     *
+     * @return Index of the fold, or -1.
+     */
+    private int foldAt(int line) {
+        int fold = starts.indexOf(line);
+        return fold >= 0 && hasLines(fold) ? fold : -1;
+    }
+
+    /**
+     * Get distance of a line from start of the innermost fold that contains
+     * it.
+     *
+     * @return The distance, or 0 if the line is not in any fold.
+     */
+    int getOffset(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + line //NOI18N
+                    + ", line count " + lineCount); //NOI18N
+        }
+        int fold = innermostFold(line);
+        return fold < 0 ? 0 : line - starts.get(fold);
+    }
+
+    /**
+     * Check whether a non-empty fold starts at a line.
+     */
+    boolean isFoldStart(int line) {
+        return foldAt(line) >= 0;
+    }
+
+    /**
+     * Get index of the line after the last line of a fold.
+     *
+     * @param foldStart Start line of a fold.
+     */
+    int getFoldEnd(int foldStart) {
+        int fold = starts.indexOf(foldStart);
+        return fold < 0 ? foldStart + 1 : end(fold);
+    }
+
+    boolean isHidden(int line) {
+        int fold = lastFoldBefore(line);
+        if (fold < 0) {
+            return false;
+        }
+        int sum = hidden.sum(fold + 1);
+        if (sum == 0) {
+            return false;
+        }
+        // Collapsed folds with hidden lines do not overlap, only the last of
+        // them that starts before the line can contain it.
+        return line < end(hidden.findIndex(sum - 1));
+    }
+
+    /**
+     * Get number of hidden lines before a line.
+     */
+    private int hiddenLinesBefore(int line) {
+        int fold = lastFoldBefore(line);
+        if (fold < 0) {
+            return 0;
+        }
+        int sum = hidden.sum(fold + 1);
+        if (sum == 0) {
+            return 0;
+        }
+        int last = hidden.findIndex(sum - 1);
+        int lastStart = starts.get(last);
+        int lastHidden = hidden.get(last);
+        return sum - lastHidden
+                + Math.min(lastHidden, Math.max(0, line - lastStart - 1));
+    }
+
+    /**
+     * @return Visible index of a line, or -1 if the line is hidden.
+     */
+    int realToVisibleLine(int line) {
+        if (isHidden(line)) {
+            return -1;
+        }
+        return line - hiddenLinesBefore(line);
+    }
+
+    int visibleToRealLine(int visibleLine) {
+        if (visibleLine < 0) {
+            return visibleLine;
+        }
+        // Find the first line whose visible lines up to and including it
+        // are more than visibleLine.
+        int low = visibleLine;
+        int high = visibleLine + hidden.total();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mid + 1 - hiddenLinesBefore(mid + 1) > visibleLine) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Expand or collapse a fold. Nested folds keep their state.
+     *
+     * @param foldStart Start line of the fold.
+     * @return True if some lines have been hidden or shown.
+     */
+    boolean setCollapsed(int foldStart, boolean collapse) {
+        int fold = foldStart < 0 ? -1 : starts.indexOf(foldStart);
+        if (fold < 0 || collapsed.get(fold) == (collapse ? 1 : 0)) {
+            return false;
+        }
+        collapsed.set(fold, collapse ? 1 : 0);
+        boolean changed = false;
+        if (!isHidden(foldStart)) {
+            if (collapse) {
+                clearHidden(fold + 1, lastNestedFold(fold));
+                hidden.set(fold, lineCountInFold(fold));
+            } else {
+                hidden.set(fold, 0);
+                restoreHidden(fold + 1, lastNestedFold(fold));
+            }
+            changed = end(fold) > foldStart + 1;
+        }
+        updateOpenHidden();
+        return changed;
+    }
+
+    /**
+     * Expand or collapse a fold and all its nested folds.
+     *
+     * @param foldStart Start line of the fold.
+     * @return True if some lines have been hidden or shown.
+     */
+    boolean setTreeCollapsed(int foldStart, boolean collapse) {
+        int fold = foldStart < 0 ? -1 : starts.indexOf(foldStart);
+        if (fold < 0) {
+            return false;
+        }
+        int last = lastNestedFold(fold);
+        collapsed.set(fold, collapse ? 1 : 0);
+        for (int f = fold + 1; f <= last; f++) {
+            if (hasLines(f)) {
+                collapsed.set(f, collapse ? 1 : 0);
+            }
+        }
+        boolean changed = false;
+        if (!isHidden(foldStart)) {
+            int hiddenBefore = hidden.sum(last + 1) - hidden.sum(fold);
+            clearHidden(fold, last);
+            if (collapse) {
+                hidden.set(fold, lineCountInFold(fold));
+            }
+            changed = hiddenBefore != hidden.get(fold);
+        }
+        updateOpenHidden();
+        return changed;
+    }
+
+    /**
+     * Expand or collapse all folds.
+     */
+    void setAllCollapsed(boolean collapse) {
+        int count = starts.size();
+        int[] collapsedItems = new int[Math.max(16, count * 2)];
+        int[] hiddenItems = new int[Math.max(16, count * 2)];
+        for (int f = 0; f < count; f++) {
+            if (hasLines(f)) {
+                collapsedItems[f] = collapse ? 1 : 0;
+            } else {
+                collapsedItems[f] = collapsed.get(f); // keep state of empty folds
+            }
+            // parents of clipped folds are clipped too, they are expanded
+            int parent = parents.get(f);
+            if (collapsedItems[f] == 1
+                    && (parent < 0 || starts.get(parent) < 0)) {
+                hiddenItems[f] = lineCountInFold(f);
+            }
+        }
+        collapsed = new IntSumList(collapsedItems, count);
+        hidden = new IntSumList(hiddenItems, count);
+        updateOpenHidden();
+    }
+
+    /**
+     * Set hidden line count to 0 for all folds in range [from, to].
+     */
+    private void clearHidden(int from, int to) {
+        int sum = hidden.sum(from);
+        while (hidden.sum(to + 1) > sum) {
+            hidden.set(hidden.findIndex(sum), 0);
+        }
+    }
+
+    /**
+     * Set hidden line counts of collapsed folds in range [from, to] that are
+     * not inside other collapsed folds of the range. Folds in the range must
+     * not be inside any other collapsed fold.
+     */
+    private void restoreHidden(int from, int to) {
+        int f = from;
+        while (f <= to) {
+            f = collapsed.findIndex(collapsed.sum(f));
+            if (f > to) {
+                break;
+            }
+            hidden.set(f, lineCountInFold(f));
+            f = lastNestedFold(f) + 1;
+        }
+    }
+
+    /**
+     * Forget the first lines. Folds that start and end in the removed lines
+     * are removed. Folds that start in the removed lines and continue after
+     * them are clipped: they keep their (now negative) start, so the
+     * remaining lines stay in them, but they cannot be collapsed any more, so
+     * their lines become visible. Each fold is clipped once, so the cost does
+     * not grow with the number of folds.
+     */
+    void removeFirstLines(int count) {
+        int removed = lastFoldBefore(count) + 1;
+        int clipped = innermostFold(count);
+        if (clipped >= 0) {
+            int outer = clipped;
+            while (parent(outer) >= 0) {
+                outer = parent(outer);
+            }
+            clipFolds(outer, removed);
+            // Folds before the outermost clipped fold end in the removed
+            // lines. Folds between it and the first kept fold are clipped or
+            // end in the removed lines too, they stay, so that indexes of
+            // parents do not change.
+            removed = outer;
+        }
+        starts.compact(removed, count);
+        ends.compact(removed, count);
+        parents.compact(removed, removed);
+        collapsed.removeFirst(removed);
+        hidden.removeFirst(removed);
+        lineCount -= count;
+        current = current >= removed ? current - removed : -1;
+        for (int f = current; f >= 0; f = parent(f)) {
+            ends.set(f, OPEN);
+        }
+        updateOpenHidden();
+    }
+
+    /**
+     * Expand folds [outer, end) that start in the removed lines. Lines of
+     * other folds inside them that were hidden by them are counted as hidden
+     * by these folds again.
+     *
+     * @param outer Outermost fold that continues after the removed lines.
+     * @param end Index of the first fold that starts after the removed lines.
+     */
+    private void clipFolds(int outer, int end) {
+        // folds with negative start have been clipped before
+        int first = Math.max(outer, lastFoldBefore(0) + 1);
+        boolean expanded = false;
+        for (int f = first; f < end; f++) {
+            if (collapsed.get(f) == 1) {
+                collapsed.set(f, 0);
+                expanded = true;
+            }
+        }
+        clearHidden(first, end - 1);
+        if (expanded) {
+            restoreHidden(end, lastNestedFold(outer));
+        }
+    }
+}
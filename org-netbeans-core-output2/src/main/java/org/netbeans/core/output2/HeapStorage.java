@@ -83,6 +83,10 @@ class HeapStorage implements Storage {
         return size;
     }
 
+    public int storedSize() {
+        return size();
+    }
+
     public void flush() throws IOException {
         //N/A
     }
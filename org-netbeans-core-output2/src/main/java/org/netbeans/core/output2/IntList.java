@@ -28,23 +28,31 @@ import java.util.Arrays;
 
 /** A collections-like lineStartList of primitive integers.  Entries may be added only
  * in ascending order.  This is used to map lines to file offsets.
+ * <p>
+ * Items are stored from index {@code head} of the array, decreased by
+ * {@code delta}, so {@link #compact(int, int)} only has to move the head and
+ * change the delta. Removing old lines therefore does not copy the list.
  *
  * @author  Tim Boudreau
  */
 final class IntList {
     private int[] array;
+    /** Index of the first item in the array */
+    private int head = 0;
     private int used = 0;
+    /** Value that has to be subtracted from stored values */
+    private int delta = 0;
     private int lastAdded = Integer.MIN_VALUE;
 
     /** Creates a new instance of IntMap */
     IntList(int capacity) {
-        array = allocArray (capacity);
+        array = new int[Math.max(1, capacity)];
     }
     
     /** Add an integer to the lineStartList.  Must be greater than the preceding value
      * or an exception is thrown. */
     public synchronized void add (int value) {
-        if (used > 0 && array[used - 1] == value) {
+        if (used > 0 && array[head + used - 1] - delta == value) {
             return;
         }
         if (value < lastAdded) {
@@ -52,66 +60,89 @@ final class IntList {
                 "added value " + value + " is less than preceding " + //NOI18N
                 "value " + lastAdded); //NOI18N
         }
-        if (used >= array.length) {
+        long stored = (long) value + delta;
+        if (stored > Integer.MAX_VALUE || stored < Integer.MIN_VALUE) {
+            rebase();
+        }
+        if (head + used >= array.length) {
             growArray();
         }
-        array[used++] = value;
+        array[head + used++] = value + delta;
         lastAdded = value;
     }
     
-    private int[] allocArray (int size) {
-        int[] result = new int[size];
-        //Fill it with Integer.MAX_VALUE so binarySearch works properly (must
-        //be sorted, cannot have 0's after the actual data
-        Arrays.fill(result, Integer.MAX_VALUE);
-        return result;
-    }
-    
     public synchronized int get(int index) {
         if (index >= used) {
             throw new ArrayIndexOutOfBoundsException("List contains " + used 
                 + " items, but tried to fetch item " + index);
         }
-        return array[index];
+        return array[head + index] - delta;
     }
     
-    public boolean contains (int val) {
-        return Arrays.binarySearch(array, val) >= 0;
+    public synchronized boolean contains (int val) {
+        return indexOf(val) >= 0;
     }
     
     /** Return the <strong>index</strong> of the value closest to but lower than
      * the passed value */
-    public int findNearest (int val) {
-        if (size() == 0) {
+    public synchronized int findNearest (int val) {
+        if (used == 0) {
             return -1;
         }
-        int pos = Arrays.binarySearch(array, val);
+        int pos = search(val);
         if (pos < 0) {
             pos = -pos - 2; 
         }
         return pos;
     }
 
-    public int indexOf (int val) {
-        int result = Arrays.binarySearch(array, val);
-        if (result < 0) {
-            result = -1;
-        }
-        if (result >= used) {
-            result = -1;
+    public synchronized int indexOf (int val) {
+        int result = search(val);
+        return result < 0 ? -1 : result;
+    }
+
+    /**
+     * Binary search among used items.
+     *
+     * @return Index of the value, or (-(insertion point) - 1).
+     */
+    private int search(int val) {
+        long stored = (long) val + delta;
+        if (stored > Integer.MAX_VALUE) {
+            return -used - 1;
+        } else if (stored < Integer.MIN_VALUE) {
+            return -1;
         }
-        return result;
+        int pos = Arrays.binarySearch(array, head, head + used, (int) stored);
+        return pos < 0 ? pos + head : pos - head;
     }
     
-    
     public synchronized int size() {
         return used;
     }
     
+    /**
+     * Make room at the end of the array. The array is only reallocated if
+     * less than a half of it is occupied by forgotten items.
+     */
     private void growArray() {
         int[] old = array;
-        array = allocArray(Math.round(array.length * 2));
-        System.arraycopy(old, 0, array, 0, old.length);
+        if (head < array.length / 2) {
+            array = new int[array.length * 2];
+        }
+        System.arraycopy(old, head, array, 0, used);
+        head = 0;
+    }
+
+    /**
+     * Store values with zero delta. Called when a value would not fit into
+     * the array with the current delta, which happens rarely.
+     */
+    private void rebase() {
+        for (int i = head; i < head + used; i++) {
+            array[i] -= delta;
+        }
+        delta = 0;
     }
     
     @Override
@@ -120,7 +151,7 @@ final class IntList {
         for (int i=0; i < used; i++) {
             result.append (i);
             result.append (':');
-            result.append (array[i]);
+            result.append (array[head + i] - delta);
             if (i != used-1) {
                 result.append(',');
             }
@@ -131,7 +162,8 @@ final class IntList {
     
     /**
      * Shift the list (to left). First {@code shift} items will be forgotten.
-     * Each item can be decremented by {@code decrement}.
+     * Each item can be decremented by {@code decrement}. This is a constant
+     * time operation.
      *
      * @param shift How many items should be removed. Item at index
      * {@code shift} will be at index 0 after this operation.
@@ -141,22 +173,25 @@ final class IntList {
         if (shift < 0 || shift > used) {
             throw new IllegalArgumentException();
         }
-        for (int i = shift; i < used; i++) {
-            array[i - shift] = array[i] - decrement;
+        if ((long) delta + decrement > Integer.MAX_VALUE
+                || (long) delta + decrement < Integer.MIN_VALUE) {
+            rebase();
         }
-        Arrays.fill(array, used - shift, used, Integer.MAX_VALUE);
-        if (used > 0) {
-            used -= shift;
-            lastAdded = (used == 0) ? Integer.MIN_VALUE : lastAdded - decrement;
+        head += shift;
+        used -= shift;
+        delta += decrement;
+        if (used == 0) {
+            head = 0;
+            delta = 0;
         }
+        lastAdded = (used == 0) ? Integer.MIN_VALUE : lastAdded - decrement;
     }
 
     public synchronized void shorten(int newSize) {
         if (newSize > used || newSize < 0) {
             throw new IllegalArgumentException();
         } else if (newSize < used) {
-            lastAdded = newSize == 0 ? Integer.MIN_VALUE : array[newSize - 1];
-            Arrays.fill(array, newSize, used, Integer.MAX_VALUE);
+            lastAdded = newSize == 0 ? Integer.MIN_VALUE : get(newSize - 1);
             used = newSize;
         }
     }
@@ -23,21 +23,28 @@ import java.util.Arrays;
 
 /**
  * A collections-like lineStartList of primitive integers.
+ * <p>
+ * Items are stored from index {@code head} of the array, decreased by
+ * {@code delta}, so that {@link #compact(int, int)} takes constant time.
  */
 final class IntListSimple {
     private int[] array;
+    /** Index of the first item in the array */
+    private int head = 0;
     private int used = 0;
+    /** Value that has to be subtracted from stored values */
+    private int delta = 0;
 
     /** Creates a new instance of IntMap */
     IntListSimple(int capacity) {
-        array = new int[capacity];
+        array = new int[Math.max(1, capacity)];
     }
     
     public synchronized void add (int value) {
-        if (used >= array.length) {
+        if (head + used >= array.length) {
             growArray();
         }
-        array[used++] = value;
+        array[head + used++] = value + delta;
     }
     
     public synchronized int get(int index) {
@@ -45,7 +52,7 @@ final class IntListSimple {
             throw new ArrayIndexOutOfBoundsException("List contains " + used 
                 + " items, but tried to fetch item " + index);
         }
-        return array[index];
+        return array[head + index] - delta;
     }
     
     public synchronized int size() {
@@ -56,7 +63,7 @@ final class IntListSimple {
         if (index >= used) {
             throw new IndexOutOfBoundsException();
         } else {
-            array[index] = value;
+            array[head + index] = value + delta;
         }
     }
 
@@ -68,10 +75,17 @@ final class IntListSimple {
         }
     }
 
+    /**
+     * Make room at the end of the array. The array is only reallocated if
+     * less than a half of it is occupied by forgotten items.
+     */
     private void growArray() {
         int[] old = array;
-        array = new int[Math.round(array.length * 2)];
-        System.arraycopy(old, 0, array, 0, old.length);
+        if (head < array.length / 2) {
+            array = new int[array.length * 2];
+        }
+        System.arraycopy(old, head, array, 0, used);
+        head = 0;
     }
     
     @Override
@@ -80,7 +94,7 @@ final class IntListSimple {
         for (int i=0; i < used; i++) {
             result.append (i);
             result.append (':');
-            result.append (array[i]);
+            result.append (array[head + i] - delta);
             if (i != used-1) {
                 result.append(',');
             }
@@ -91,20 +105,24 @@ final class IntListSimple {
     
     /**
      * Shift the list (to left). First {@code shift} items will be forgotten.
-     * Each item can be decremented by {@code decrement}.
+     * Each item can be decremented by {@code decrement}. This is a constant
+     * time operation.
      *
      * @param shift How many items should be removed. Item at index
      * {@code shift} will be at index 0 after this operation.
-     * @param increment The value each item should be decremented by.
+     * @param decrement The value each item should be decremented by.
      */
     public synchronized void compact(int shift, int decrement) {
         if (shift < 0 || shift > used) {
             throw new IllegalArgumentException();
         }
-        for (int i = shift; i < used; i++) {
-            array[i - shift] = array[i] - decrement;
-        }
-        Arrays.fill(array, used - shift, used, Integer.MAX_VALUE);
+        head += shift;
         used -= shift;
+        // Stored values wrap around on overflow, and so does the difference.
+        delta += decrement;
+        if (used == 0) {
+            head = 0;
+            delta = 0;
+        }
     }
 }
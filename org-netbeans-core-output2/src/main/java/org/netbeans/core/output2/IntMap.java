@@ -25,7 +25,6 @@
 package org.netbeans.core.output2;
 
 import java.util.Arrays;
-import org.openide.util.Exceptions;
 
 /**
  * Sparse array integer keyed map.  Similar to a standard Collections map,
@@ -44,108 +43,114 @@ final class IntMap {
         Integer.MAX_VALUE, Integer.MAX_VALUE};
         
     private Object[] vals = new Object[4];
+    /** Index of the first entry in the arrays */
+    private int head = 0;
+    /** Index of the last entry in the arrays, head - 1 if empty */
     private int last = -1;
+    /** Value added to keys when they are stored, see {@link #decrementKeys} */
+    private int base = 0;
     
     /** Creates a new instance of IntMap */
     IntMap() {
     }
     
     public int first() {
-        return isEmpty() ? -1 : keys[0];
+        return isEmpty() ? -1 : keys[head] - base;
     }
     
     public int nearest (int line, boolean backward) {
         if (isEmpty()) {
             return -1;
         }
-        if (last == 0) {
-            return keys[last];
+        if (last == head) {
+            return keys[last] - base;
         }
-        if (line < keys[0]) {
-            return backward ? keys[last] : keys[0];
+        if (line < keys[head] - base) {
+            return backward ? keys[last] - base : keys[head] - base;
         }
-        if (line > keys[last]) {
-            return backward ? keys[last] : keys[0];
+        if (line > keys[last] - base) {
+            return backward ? keys[last] - base : keys[head] - base;
         }
-        int idx = Arrays.binarySearch(keys, line);
+        int idx = Arrays.binarySearch(keys, head, last + 1, line + base);
         if (idx < 0) {
             idx = -idx + (backward ? -2 :- 1);
             if (idx > last) {
-                idx = backward ? last : 0;
-            } else if (idx < 0) {
-                idx = backward ? last : 0;
+                idx = backward ? last : head;
+            } else if (idx < head) {
+                idx = backward ? last : head;
             }
         }
-        return keys[idx];
+        return keys[idx] - base;
     }
 
     public int[] getKeys () {
-        if (last == -1) {
+        if (isEmpty()) {
             return new int[0];
         }
-        if (last == keys.length -1) {
-            growArrays();
-        }
-        int[] result = new int[last+1];
-        try {
-            System.arraycopy (keys, 0, result, 0, last+1);
-            return result;
-        } catch (ArrayIndexOutOfBoundsException aioobe) { //XXX temp diagnostics
-            ArrayIndexOutOfBoundsException e = new ArrayIndexOutOfBoundsException (
-                "AIOOBE in IntMap.getKeys() - last = " + last + " keys: " + 
-                i2s(keys) + " vals: " + Arrays.asList(vals) + " result length "
-                + result.length);
-            Exceptions.printStackTrace(e);
-            return new int[0];
+        int[] result = new int[size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = keys[head + i] - base;
         }
+        return result;
     }
 
-    /** Some temporary diagnostics re issue 48608 */
-    private static String i2s (int[] arr) {
-        StringBuffer sb = new StringBuffer(arr.length * 3);
-        sb.append ('[');
-        for (int i=0; i < arr.length; i++) {
-            if (arr[i] != Integer.MAX_VALUE) {
-                sb.append (arr[i]);
-                sb.append (',');
-            }
-        }
-        sb.append (']');
-        return sb.toString();
-    }
-    
     public Object get (int key) {
-        int idx = Arrays.binarySearch (keys, key);
-        if (idx > -1 && idx <= last) {
+        if (isEmpty()) {
+            return null;
+        }
+        int idx = Arrays.binarySearch (keys, head, last + 1, key + base);
+        if (idx > -1) {
             return vals[idx];
         }
         return null;
     }
     
     public void put (int key, Object val) {
-        if (last >= 0) {
-            if (keys[last] == key && vals[last] == val) {
+        if (!isEmpty()) {
+            if (keys[last] - base == key && vals[last] == val) {
                 return;
             }
-            assert key > keys[last]: "key=" + key + " last=" + keys[last];
+            assert key > keys[last] - base: "key=" + key + " last=" + (keys[last] - base);
+        }
+        if ((long) key + base > Integer.MAX_VALUE) {
+            rebase();
         }
         if (last == keys.length - 1) {
             growArrays();
         }
         last++;
-        keys[last] = key;
+        keys[last] = key + base;
         vals[last] = val;
     }
     
+    /**
+     * Make room at the end of the arrays. Removed entries at the start are
+     * reclaimed, the arrays are only reallocated if they are more than half
+     * full.
+     */
     private void growArrays() {
-        int newSize = keys.length * 2;
+        int size = size();
+        int newSize = size >= keys.length / 2 ? keys.length * 2 : keys.length;
         int[] newKeys = new int[newSize];
         Object[] newVals = new Object[newSize];
         Arrays.fill (newKeys, Integer.MAX_VALUE); //So binarySearch works
-        System.arraycopy (keys, 0, newKeys, 0, keys.length);
-        System.arraycopy (vals, 0, newVals, 0, vals.length);
+        System.arraycopy (keys, head, newKeys, 0, size);
+        System.arraycopy (vals, head, newVals, 0, size);
         keys = newKeys;
         vals = newVals;
+        head = 0;
+        last = size - 1;
+    }
+
+    /**
+     * Store keys without base. Called when a key would not fit into the
+     * array with the current base, which happens rarely.
+     */
+    private void rebase() {
+        for (int i = head; i <= last; i++) {
+            keys[i] -= base;
+        }
+        base = 0;
     }
     
     /**
@@ -154,9 +159,9 @@ final class IntMap {
     public int nextEntry (int entry) {
         int result = -1;
         if (!isEmpty()) {
-            int idx = Arrays.binarySearch (keys, entry);
+            int idx = Arrays.binarySearch (keys, head, last + 1, entry + base);
             if (idx >= 0) {
-                result = idx == keys.length -1 ? keys[0] : keys[idx+1];
+                result = (idx == last ? keys[head] : keys[idx+1]) - base;
             }
         }
         return result;
@@ -168,9 +173,9 @@ final class IntMap {
     public int prevEntry (int entry) {
         int result = -1;
         if (!isEmpty()) {
-            int idx = Arrays.binarySearch (keys, entry);
+            int idx = Arrays.binarySearch (keys, head, last + 1, entry + base);
             if (idx >= 0) {
-                result = idx == 0 -1 ? keys[keys.length-1] : keys[idx-1];
+                result = (idx == head ? keys[last] : keys[idx-1]) - base;
             }
         }
         return result;
@@ -178,11 +183,11 @@ final class IntMap {
     
     
     public boolean isEmpty() {
-        return last == -1;
+        return last < head;
     }
     
     public int size() {
-        return last + 1;
+        return last - head + 1;
     }
     
     @Override
@@ -190,9 +195,9 @@ final class IntMap {
         StringBuffer sb = new StringBuffer("IntMap@") //NOI18N
                 .append(System.identityHashCode(this));
         
-        for (int i=0; i < size(); i++) {
+        for (int i=head; i <= last; i++) {
             sb.append ("["); //NOI18N
-            sb.append (keys[i]);
+            sb.append (keys[i] - base);
             sb.append (":"); //NOI18N
             sb.append (vals[i]);
             sb.append ("]"); //NOI18N
@@ -205,6 +210,8 @@ final class IntMap {
 
     /**
      * Decrement keys in the map. Entries with negative keys will be removed.
+     * The keys are not rewritten, only the base is changed, so this takes
+     * logarithmic time.
      *
      * @param decrement Value the keys should be decremented by. Must be zero or
      * higher.
@@ -214,18 +221,25 @@ final class IntMap {
         if (decrement < 0) {
             throw new IllegalArgumentException();
         }
-
-        int shift = Arrays.binarySearch(keys, decrement);
-        if (shift < 0) {
-            shift = -shift - 1;
+        if (isEmpty()) {
+            return;
         }
 
-        for (int i = shift; i <= last; i++) {
-            keys[i - shift] = keys[i] - decrement;
-            vals[i - shift] = vals[i];
+        if ((long) decrement + base > Integer.MAX_VALUE) {
+            rebase();
+        }
+        int idx = Arrays.binarySearch(keys, head, last + 1, decrement + base);
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        Arrays.fill(vals, head, idx, null);
+        Arrays.fill(keys, head, idx, Integer.MAX_VALUE);
+        head = idx;
+        base += decrement;
+        if (isEmpty()) {
+            head = 0;
+            last = -1;
+            base = 0;
         }
-
-        Arrays.fill(keys, last - shift + 1, last + 1, Integer.MAX_VALUE);
-        last = last - shift;
     }
 }
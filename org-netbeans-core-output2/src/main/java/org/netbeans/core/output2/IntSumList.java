@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.core.output2;
+
+import java.util.Arrays;
+
+/**
+ * A list of non-negative integers that keeps sums of its items in a Fenwick
+ * tree. Sum of items before an index, and the index at which the sum exceeds
+ * a value, are found in O(log n) time. Items are appended and changed in
+ * O(log n) time, and removing of the first items takes amortized constant
+ * time.
+ * <p>
+ * Used for counts of logical (wrapped) lines of each line, and for counts of
+ * lines hidden by collapsed folds. Caller is responsible for synchronization.
+ */
+final class IntSumList {
+
+    /** Items, from index {@code head} */
+    private int[] items;
+    /** Fenwick tree over {@code items}, indexed from 1 */
+    private int[] tree;
+    /** Index of the first item in the arrays, items before it were removed */
+    private int head = 0;
+    /** Index after the last item in the arrays */
+    private int end;
+    /** Sum of removed items */
+    private int removedSum = 0;
+
+    IntSumList(int capacity) {
+        this(new int[Math.max(16, capacity)], 0);
+    }
+
+    /**
+     * Create a list with initial items. The tree is built in linear time.
+     *
+     * @param items Initial items. The array is used by the new instance, it
+     * must not be modified by the caller.
+     * @param count Number of initial items.
+     */
+    IntSumList(int[] items, int count) {
+        this.items = items.length > count ? items
+                : Arrays.copyOf(items, Math.max(16, count * 2));
+        this.tree = new int[this.items.length + 1];
+        this.end = count;
+        build();
+    }
+
+    int size() {
+        return end - head;
+    }
+
+    void add(int value) {
+        if (end == items.length) {
+            growArrays();
+        }
+        items[end] = value;
+        int i = end + 1;
+        tree[i] = value + prefix(end) - prefix(i - (i & -i));
+        end++;
+    }
+
+    int get(int index) {
+        checkIndex(index);
+        return items[head + index];
+    }
+
+    void set(int index, int value) {
+        checkIndex(index);
+        int pos = head + index;
+        int diff = value - items[pos];
+        if (diff == 0) {
+            return;
+        }
+        items[pos] = value;
+        for (int i = pos + 1; i <= end; i += i & -i) {
+            tree[i] += diff;
+        }
+    }
+
+    /**
+     * Get sum of items at indexes lower than {@code index}.
+     *
+     * @param index Index of an item, can be equal to {@link #size()}.
+     */
+    int sum(int index) {
+        return prefix(head + index) - removedSum;
+    }
+
+    int total() {
+        return sum(size());
+    }
+
+    /**
+     * Find the first index at which the sum of items, including the item at
+     * the index, is greater than {@code value}.
+     *
+     * @return Index of the item, or {@link #size()} if the total sum is not
+     * greater than the value.
+     */
+    int findIndex(int value) {
+        if (value < 0) {
+            return 0;
+        }
+        int remaining = value + removedSum;
+        int pos = 0;
+        for (int step = Integer.highestOneBit(Math.max(1, end)); step > 0;
+                step >>= 1) {
+            int next = pos + step;
+            if (next <= end && tree[next] <= remaining) {
+                pos = next;
+                remaining -= tree[next];
+            }
+        }
+        return Math.max(0, pos - head);
+    }
+
+    /**
+     * Forget the first items.
+     */
+    void removeFirst(int count) {
+        head = Math.min(end, head + count);
+        removedSum = prefix(head);
+        if (head > end - head) {
+            compact();
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || head + index >= end) {
+            throw new IndexOutOfBoundsException("Index " + index //NOI18N
+                    + ", size " + size()); //NOI18N
+        }
+    }
+
+    /**
+     * Sum of items at array indexes [0, pos).
+     */
+    private int prefix(int pos) {
+        int sum = 0;
+        for (int i = pos; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void growArrays() {
+        if (head > 0 && head >= items.length / 2) {
+            compact();
+        } else {
+            items = Arrays.copyOf(items, items.length * 2);
+            tree = Arrays.copyOf(tree, items.length + 1);
+        }
+    }
+
+    /**
+     * Move remaining items to the start of the arrays and rebuild the tree.
+     */
+    private void compact() {
+        System.arraycopy(items, head, items, 0, end - head);
+        end -= head;
+        head = 0;
+        removedSum = 0;
+        build();
+    }
+
+    private void build() {
+        for (int i = 1; i <= end; i++) {
+            tree[i] = items[i - 1];
+        }
+        for (int i = 1; i <= end; i++) {
+            int parent = i + (i & -i);
+            if (parent <= end) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
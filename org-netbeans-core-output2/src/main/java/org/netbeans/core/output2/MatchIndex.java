@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.core.output2;
+
+/**
+ * Sorted list of matches of the active search pattern in an output. Matches
+ * are stored as pairs of character offsets (start, end) in a primitive array.
+ * The index is extended in background as new output arrives (see
+ * {@link AbstractLines#getMatchIndex()}) and shifted when old lines are
+ * removed, so find next/previous and highlighting of matches do not need to
+ * search the whole output again.
+ */
+final class MatchIndex {
+
+    private final OutputFind finder;
+    private final int maxMatches;
+    /** Start and end offsets, two items per match, increased by base */
+    private int[] offsets = new int[32];
+    /** Index of the first match in offsets */
+    private int head = 0;
+    private int count = 0;
+    /** Value added to stored offsets, so that {@link #shift(int)} does not
+     * have to rewrite them */
+    private int base = 0;
+    private int scannedTo = 0;
+    private int searchedTo = 0;
+    /** Incremented on each change of existing offsets */
+    private int generation = 0;
+    private boolean overflow = false;
+
+    MatchIndex(OutputFind finder, int maxMatches) {
+        this.finder = finder;
+        this.maxMatches = maxMatches;
+    }
+
+    OutputFind getFinder() {
+        return finder;
+    }
+
+    /**
+     * Text before this offset has been searched, but matches after it are
+     * searched again on the next update. It is always a line start.
+     */
+    synchronized int getScannedTo() {
+        return scannedTo;
+    }
+
+    /**
+     * Text before this offset has been searched at least once.
+     */
+    synchronized int getSearchedTo() {
+        return searchedTo;
+    }
+
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return True if there are too many matches to be remembered. The index
+     * is not usable in this case.
+     */
+    synchronized boolean isOverflow() {
+        return overflow;
+    }
+
+    /**
+     * Number of matches.
+     */
+    synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Replace matches found after {@link #getScannedTo()} by a new result.
+     *
+     * @param from Value of {@link #getScannedTo()} when the search started.
+     * @param expectedGeneration Value of {@link #getGeneration()} when the
+     * search started.
+     * @param found Start and end offsets, two items per match, or null if
+     * there were too many matches.
+     * @param newScannedTo Start of the last searched line.
+     * @param newSearchedTo End of the searched text.
+     * @return False if the index has been changed since the search started,
+     * so the result cannot be used.
+     */
+    synchronized boolean update(int from, int expectedGeneration, int[] found,
+            int newScannedTo, int newSearchedTo) {
+        if (overflow) {
+            return true;
+        }
+        if (from != scannedTo || expectedGeneration != generation) {
+            return false;
+        }
+        count = firstStartingAt(scannedTo);
+        if (found == null || count + found.length / 2 > maxMatches) {
+            overflow = true;
+            offsets = new int[0];
+            head = 0;
+            count = 0;
+            return true;
+        }
+        if (found.length > 0 && (long) found[found.length - 1] + base > Integer.MAX_VALUE) {
+            rebase();
+        }
+        if (2 * (head + count) + found.length > offsets.length) {
+            // reclaim space of removed matches, grow if more than half full
+            int needed = 2 * count + found.length;
+            int[] old = offsets;
+            if (needed > offsets.length / 2) {
+                offsets = new int[Math.max(offsets.length * 2, needed)];
+            }
+            System.arraycopy(old, 2 * head, offsets, 0, 2 * count);
+            head = 0;
+        }
+        int pos = 2 * (head + count);
+        for (int i = 0; i < found.length; i++) {
+            offsets[pos + i] = found[i] + base;
+        }
+        count += found.length / 2;
+        scannedTo = newScannedTo;
+        searchedTo = newSearchedTo;
+        generation++;
+        return true;
+    }
+
+    /**
+     * Forget beginning of the output. Only the first remaining match and the
+     * base are changed, the offsets are not rewritten.
+     *
+     * @param charOffset Number of removed characters.
+     */
+    synchronized void shift(int charOffset) {
+        int first = firstStartingAt(charOffset);
+        if ((long) base + charOffset > Integer.MAX_VALUE) {
+            rebase();
+        }
+        head += first;
+        count -= first;
+        base += charOffset;
+        if (count == 0) {
+            head = 0;
+            base = 0;
+        }
+        scannedTo = Math.max(0, scannedTo - charOffset);
+        searchedTo = Math.max(0, searchedTo - charOffset);
+        generation++;
+    }
+
+    /**
+     * Get the last match that ends at or before the position.
+     *
+     * @return Start and end of the match, or null.
+     */
+    synchronized int[] previousMatch(int pos) {
+        int i = firstEndingAfter(pos);
+        return i > 0 ? new int[]{start(i - 1), end(i - 1)} : null;
+    }
+
+    /**
+     * Get the first match that starts at or after the position, if it is in
+     * text that has been searched completely.
+     *
+     * @return Start and end of the match, or null if it is not known.
+     */
+    synchronized int[] nextKnownMatch(int pos) {
+        if (overflow) {
+            return null;
+        }
+        int i = firstStartingAt(pos);
+        return i < count && start(i) < scannedTo
+                ? new int[]{start(i), end(i)} : null;
+    }
+
+    /**
+     * Get the last match that ends at or before the position, if the text
+     * before the position has been searched completely.
+     *
+     * @return Start and end of the match, or null if it is not known.
+     */
+    synchronized int[] previousKnownMatch(int pos) {
+        if (overflow || pos > scannedTo) {
+            return null;
+        }
+        return previousMatch(pos);
+    }
+
+    /**
+     * Get matches that intersect range [from, to).
+     *
+     * @return Start and end offsets, two items per match.
+     */
+    synchronized int[] getMatches(int from, int to) {
+        int first = firstEndingAfter(from);
+        int last = first;
+        while (last < count && start(last) < to) {
+            last++;
+        }
+        int[] result = new int[2 * (last - first)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets[2 * (head + first) + i] - base;
+        }
+        return result;
+    }
+
+    /**
+     * Get index of the match that starts exactly at the position.
+     *
+     * @return Index of the match, or -1.
+     */
+    synchronized int indexOf(int start) {
+        int i = firstStartingAt(start);
+        return i < count && start(i) == start ? i : -1;
+    }
+
+    private int start(int match) {
+        return offsets[2 * (head + match)] - base;
+    }
+
+    private int end(int match) {
+        return offsets[2 * (head + match) + 1] - base;
+    }
+
+    /**
+     * Store offsets without base. Called when an offset would not fit into
+     * the array with the current base, which happens rarely.
+     */
+    private void rebase() {
+        for (int i = 2 * head; i < 2 * (head + count); i++) {
+            offsets[i] -= base;
+        }
+        base = 0;
+    }
+
+    private int firstStartingAt(int pos) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start(mid) < pos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int firstEndingAfter(int pos) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (end(mid) <= pos) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
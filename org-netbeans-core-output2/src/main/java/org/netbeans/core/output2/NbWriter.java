@@ -58,6 +58,7 @@ class NbWriter extends OutputWriter {
      */
     public synchronized void reset() throws IOException {
         if (!out().isDisposed() && out().isEmpty()) {
+            out().discardPendingText();
             return;
         }
         if (out != null) {
@@ -27,12 +27,18 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.openide.util.Exceptions;
 import org.openide.util.Pair;
+import org.openide.util.RequestProcessor;
 import org.openide.util.Utilities;
 
 /**
@@ -58,6 +64,31 @@ class OutWriter extends PrintWriter {
         Utilities.OS_WIN98 || 
         Utilities.getOperatingSystem() == Utilities.OS_WIN95;
 
+    /** Store Latin-1 characters in one byte, see {@link CompactStorage}.
+     * Other characters are stored as they are, so no data are lost.
+     * Disabled by -Dnb.output.compact=false */
+    private static final boolean USE_COMPACT_STORAGE =
+        !"false".equals(System.getProperty("nb.output.compact")); //NOI18N
+
+    /** Pass lines written by several threads to one sequencer, see
+     * {@link #writeSequenced}. Enabled by -Dnb.output.sequenced=true */
+    private static final boolean SEQUENCED_WRITES =
+        Boolean.getBoolean("nb.output.sequenced"); //NOI18N
+
+    /** Max number of chars the sequencer writes in one doWrite call */
+    private static final int SEQUENCER_BATCH_SIZE = 64 * 1024;
+
+    /** Max number of queued lines. Writers that find the queue full write
+     * synchronously, so fast producers cannot let it grow without limit. */
+    private static final int SEQUENCER_QUEUE_SIZE = 16 * 1024;
+
+    /** Max number of lines a thread writes for other threads in one go, the
+     * rest is left to {@link #SEQUENCER_RP} */
+    private static final int SEQUENCER_DRAIN_SIZE = 1024;
+
+    private static final RequestProcessor SEQUENCER_RP =
+            new RequestProcessor("Output Sequencer", 1); //NOI18N
+
     /**
      * Byte array used to write the line separator after line writes.
      */
@@ -83,12 +114,64 @@ class OutWriter extends PrintWriter {
     private int lineLength;
     private int lineCharLengthWithTabs;
 
+    /**
+     * Lines finished in the write buffer: char offsets in the buffer where
+     * the lines end, and lengths with tabs of their parts in the buffer. They
+     * are passed to {@link AbstractLines#linesAppended} in one batch when the
+     * buffer is written.
+     */
+    private final IntListSimple batchLineEnds = new IntListSimple(64);
+    private final IntListSimple batchLineLengthsWithTabs = new IntListSimple(64);
+    /** Char offsets and lengths of tabs in the write buffer */
+    private final IntListSimple batchTabOffsets = new IntListSimple(64);
+    private final IntListSimple batchTabLengths = new IntListSimple(64);
+
+    /** Unfinished line of the current thread, sequenced mode only */
+    private final ThreadLocal<PendingText> pendingText = new ThreadLocal<PendingText>() {
+        @Override
+        protected PendingText initialValue() {
+            return new PendingText();
+        }
+    };
+
+    /** Non-empty pending texts of all threads, sequenced mode only */
+    private final Set<PendingText> pendingTexts = ConcurrentHashMap.newKeySet();
+
+    /** Complete lines waiting for the sequencer, in order of arrival */
+    private final ConcurrentLinkedQueue<String> sequencerQueue =
+            new ConcurrentLinkedQueue<String>();
+
+    /** Number of lines in the sequencer queue */
+    private final AtomicInteger sequencerQueueSize = new AtomicInteger();
+
+    /** Writes lines left in the queue by a capped drain */
+    private final RequestProcessor.Task sequencerTask = SEQUENCER_RP.create(new Runnable() {
+        @Override
+        public void run() {
+            runSequencer();
+        }
+    });
+
+    /** Set while a thread is writing queued lines */
+    private final AtomicBoolean sequencerBusy = new AtomicBoolean(false);
+
+    /** Set while queued lines are being written, guarded by this */
+    private boolean writingQueuedText = false;
+
     /** Creates a new instance of OutWriter */
     OutWriter(NbIO owner) {
         this();
         this.owner = owner;
     }
 
+    /**
+     * Create a writer over an existing storage, e.g. {@link FilteredStorage}.
+     */
+    OutWriter(Storage storage) {
+        this();
+        this.storage = storage;
+    }
+
     /**
      * Package constructor for unit tests
      */
@@ -104,8 +187,9 @@ class OutWriter extends PrintWriter {
             throw new IllegalStateException ("Output file has been disposed!");
         }
         if (storage == null) {
-            storage = USE_HEAP_STORAGE || lowDiskSpace ? 
+            Storage bytes = USE_HEAP_STORAGE || lowDiskSpace ?
                 new HeapStorage() : new FileMapStorage();
+            storage = USE_COMPACT_STORAGE ? new CompactStorage(bytes) : bytes;
         }
         return storage;
     }
@@ -145,13 +229,31 @@ class OutWriter extends PrintWriter {
     }
 
     /**
-     * Write the passed buffer to the backing storage, recording the line start in the mapping of lines to
-     * byte offsets.
+     * Write the passed buffer to the backing storage, recording the line starts in the mapping of lines to
+     * byte offsets. The buffer can contain several lines, see {@link #batchLineEnds}.
      *
      * @param bb
-     * @throws IOException
+     * @param lineCharLengthWithTabs Length with tabs of the text after the
+     * last finished line in the buffer
+     * @param tail True if the text after the last finished line should update
+     * the last line, even if it is empty
      */
-    private synchronized void write(ByteBuffer bb, int lineCharLengthWithTabs, boolean completeLine) {
+    private synchronized void write(ByteBuffer bb, int lineCharLengthWithTabs, boolean tail) {
+        try {
+            writeBatch(bb, lineCharLengthWithTabs, tail);
+        } finally {
+            clearBatch();
+        }
+    }
+
+    private void clearBatch() {
+        batchLineEnds.shorten(0);
+        batchLineLengthsWithTabs.shorten(0);
+        batchTabOffsets.shorten(0);
+        batchTabLengths.shorten(0);
+    }
+
+    private void writeBatch(ByteBuffer bb, int lineCharLengthWithTabs, boolean tail) {
         if (checkError()) {
             return;
         }
@@ -188,17 +290,34 @@ class OutWriter extends PrintWriter {
             return;
         }
         int length = bb.limit();
-        lineLength = lineLength + length;
-        this.lineCharLengthWithTabs += lineCharLengthWithTabs;
-        if (start >= 0 && lineStart == -1) {
-            lineStart = start;
-        }
-        lines.lineUpdated(lineStart, lineLength, this.lineCharLengthWithTabs, completeLine);
-        if (completeLine) {
+        int prev = 0; // byte offset of the current line in the buffer
+        int count = batchLineEnds.size();
+        for (int i = 0; i < count; i++) {
+            int end = AbstractLines.toByteIndex(batchLineEnds.get(i));
+            if (start >= 0 && lineStart == -1) {
+                lineStart = start + prev;
+            }
+            lineLength += end - prev;
+            batchLineEnds.set(i, lineStart + lineLength);
+            batchLineLengthsWithTabs.set(i,
+                    this.lineCharLengthWithTabs + batchLineLengthsWithTabs.get(i));
             lineStart = -1;
             lineLength = 0;
             this.lineCharLengthWithTabs = 0;
+            prev = end;
+        }
+        int lastLineLength = -1;
+        if (tail) {
+            if (start >= 0 && lineStart == -1) {
+                lineStart = start + prev;
+            }
+            lineLength += length - prev;
+            this.lineCharLengthWithTabs += lineCharLengthWithTabs;
+            lastLineLength = lineLength;
         }
+        lines.linesAppended(batchTabOffsets, batchTabLengths, batchLineEnds,
+                batchLineLengthsWithTabs, lastLineLength,
+                this.lineCharLengthWithTabs);
         if (owner != null && owner.isStreamClosed()) {
             owner.setStreamClosed(false);
             lines.fire();
@@ -233,6 +352,7 @@ class OutWriter extends PrintWriter {
             return;
         }
         if (Controller.LOG) Controller.log (this + ": OutWriter.dispose - owner is " + (owner == null ? "null" : owner.getName()));
+        discardPendingText();
         clearListeners();
         if (storage != null) {
             lines.onDispose(storage.size());
@@ -283,6 +403,7 @@ class OutWriter extends PrintWriter {
     private boolean closed = false;
     @Override
     public synchronized void close() {
+        flushPendingText();
         closed = true;
         try {
             //#49955 - possible (but difficult) to end up with close()
@@ -315,9 +436,16 @@ class OutWriter extends PrintWriter {
     }
 
     @Override
-    public synchronized void println(String s) {
-        doWrite(s, null, 0, s.length());
-        println();
+    public void println(String s) {
+        if (SEQUENCED_WRITES) {
+            writeSequenced(s, 0, s.length());
+            writeSequenced(LINE_SEPARATOR, 0, 1);
+            return;
+        }
+        synchronized (this) {
+            doWrite(s, null, 0, s.length());
+            println();
+        }
     }
 
     @Override
@@ -325,6 +453,7 @@ class OutWriter extends PrintWriter {
         if (checkError()) {
             return;
         }
+        flushPendingText();
         try {
             getStorage().flush();
             lines.fire();
@@ -373,9 +502,16 @@ class OutWriter extends PrintWriter {
     }
 
     @Override
-    public synchronized void write(int c) {
-        doWrite(new String(new char[]{(char)c}), null, 0, 1);
-        checkLimits();
+    public void write(int c) {
+        String s = new String(new char[]{(char)c});
+        if (SEQUENCED_WRITES) {
+            writeSequenced(s, 0, 1);
+            return;
+        }
+        synchronized (this) {
+            doWrite(s, null, 0, 1);
+            checkLimits();
+        }
     }
 
     private void checkLimits() {
@@ -386,9 +522,15 @@ class OutWriter extends PrintWriter {
     }
     
     @Override
-    public synchronized void write(char data[], int off, int len) {
-        doWrite(new CharArrayWrapper(data), null, off, len);
-        checkLimits();
+    public void write(char data[], int off, int len) {
+        if (SEQUENCED_WRITES) {
+            writeSequenced(new CharArrayWrapper(data), off, len);
+            return;
+        }
+        synchronized (this) {
+            doWrite(new CharArrayWrapper(data), null, off, len);
+            checkLimits();
+        }
     }
     
     /** write buffer size in chars */
@@ -410,8 +552,8 @@ class OutWriter extends PrintWriter {
          */
 
         int lineCLVT = 0; // Character Lenght With Tabs
+        clearBatch();
         try {
-            boolean written = false;
             char lastChar = 0;
             ByteBuffer byteBuff = getStorage().getWriteBuffer(WRITE_BUFF_SIZE * 2);
             CharBuffer charBuff = byteBuff.asCharBuffer();
@@ -420,14 +562,10 @@ class OutWriter extends PrintWriter {
             int tabLength = 0; // last tab length
             for (int i = off; i < off + len; i++) {
                 if (charBuff.position() + 1 >= WRITE_BUFF_SIZE) {
-                    write((ByteBuffer) byteBuff.position(charBuff.position() * 2), lineCLVT, false);
-                    written = true;
-                }
-                if (written) {
+                    write((ByteBuffer) byteBuff.position(charBuff.position() * 2), lineCLVT, true);
                     byteBuff = getStorage().getWriteBuffer(WRITE_BUFF_SIZE * 2);
                     charBuff = byteBuff.asCharBuffer();
                     lineCLVT = 0;
-                    written = false;
                 }
                 char c = s.charAt(i);
                 if (lastChar == '\r' && c != '\n') { // \r without following \n
@@ -438,7 +576,7 @@ class OutWriter extends PrintWriter {
                             break;
                         }
                         if (charP1 == '\t') {
-                            lineCLVT -= lines.removeLastTab();
+                            lineCLVT -= removeLastTab();
                         }
                         skipped++;
                         charBuff.position(p - 1);
@@ -449,16 +587,18 @@ class OutWriter extends PrintWriter {
                 }
                 if (c == '\t') {
                     charBuff.put(c);
-                    tabLength = WrappedTextView.TAB_SIZE - ((this.lineCharLengthWithTabs + lineCLVT) % WrappedTextView.TAB_SIZE);
+                    int lineBase = batchLineEnds.size() == 0 ? this.lineCharLengthWithTabs : 0;
+                    tabLength = WrappedTextView.TAB_SIZE - ((lineBase + lineCLVT) % WrappedTextView.TAB_SIZE);
                     LOG.log(Level.FINEST, "Going to add tab: charOffset = {0}, i = {1}, off = {2}," //NOI18N
                             + "tabLength = {3}, tabIndex = {4}, skipped = {5}", //NOI18N
                             new Object[]{charOffset, i, off, tabLength, charOffset + (i - off), skipped}); // #201450
-                    lines.addTabAt(charOffset + (i - off) - skipped, tabLength);
+                    batchTabOffsets.add(charOffset + (i - off) - skipped);
+                    batchTabLengths.add(tabLength);
                     lineCLVT += tabLength;
                 } else if (c == '\b') {
                     int skip = handleBackspace(charBuff);
                     if (skip == -2) {
-                        lineCLVT -= lines.removeLastTab();;
+                        lineCLVT -= removeLastTab();
                     } else if (skip == 2) {
                         lineCLVT--;
                     } else if (skip == 1) {
@@ -471,10 +611,9 @@ class OutWriter extends PrintWriter {
                     skipped += Math.abs(skip);
                 } else if (c == '\n') {
                     charBuff.put('\n');
-                    int pos = charBuff.position() * 2;
-                    ByteBuffer bf = (ByteBuffer) byteBuff.position(pos);
-                    write(bf, lineCLVT, true);
-                    written = true;
+                    batchLineEnds.add(charBuff.position());
+                    batchLineLengthsWithTabs.add(lineCLVT);
+                    lineCLVT = 0;
                 } else if (c != '\r') {
                     charBuff.put(c);
                     lineCLVT++;
@@ -484,9 +623,8 @@ class OutWriter extends PrintWriter {
                 }
                 lastChar = c;
             }
-            if (!written) {
-                write((ByteBuffer) byteBuff.position(charBuff.position() * 2), lineCLVT, false);
-            }
+            write((ByteBuffer) byteBuff.position(charBuff.position() * 2), lineCLVT,
+                    lastChar != '\n');
         } catch (IOException ioe) {
             onWriteException();
         } catch (RuntimeException ex) {
@@ -503,14 +641,18 @@ class OutWriter extends PrintWriter {
      * Update state of character buffer after a backspace character has been
      * read.
      *
-     * @return Value -2, 1 or 2: number of character that will be skipped (has
+     * @return Value -2, -1, 1 or 2: number of character that will be skipped (has
      * no corresponding visible character) in the resulting output. In standard
      * case, it is 2 (the last character + the \b character), if the buffer is
      * empty, it is 1 (only the \b character). If tab character was deleted,
-     * return -2.
+     * return -2. If the buffer ends with a finished line, nothing is deleted,
+     * return -1.
      */
     private int handleBackspace(CharBuffer charBuff) {
-        if (charBuff.position() > 0) {
+        if (charBuff.position() > 0
+                && charBuff.get(charBuff.position() - 1) == '\n') {
+            return -1; // cannot delete a finished line
+        } else if (charBuff.position() > 0) {
             char deletedChar = charBuff.get(charBuff.position() - 1);
             charBuff.position(charBuff.position() - 1);
             return deletedChar == '\t' ? -2 : 2;
@@ -519,16 +661,37 @@ class OutWriter extends PrintWriter {
         }
     }
 
+    /**
+     * Remove the last tab, from the write buffer or from the lines.
+     *
+     * @return Extra length of the tab (the length without the tab character).
+     */
+    private int removeLastTab() {
+        int n = batchTabOffsets.size();
+        if (n > 0) {
+            int extra = batchTabLengths.get(n - 1) - 1;
+            batchTabOffsets.shorten(n - 1);
+            batchTabLengths.shorten(n - 1);
+            return extra;
+        }
+        return lines.removeLastTab();
+    }
+
     @Override
-    public synchronized void write(char data[]) {
-        doWrite(new CharArrayWrapper(data), null, 0, data.length);
-        checkLimits();
+    public void write(char data[]) {
+        write(data, 0, data.length);
     }
 
     @Override
-    public synchronized void println() {
-        printLineEnd();
-        checkLimits();
+    public void println() {
+        if (SEQUENCED_WRITES) {
+            writeSequenced(LINE_SEPARATOR, 0, 1);
+            return;
+        }
+        synchronized (this) {
+            printLineEnd();
+            checkLimits();
+        }
     }
 
     private void printLineEnd() {
@@ -542,17 +705,174 @@ class OutWriter extends PrintWriter {
      * @param len Number of characters to write
      */
     @Override
-    public synchronized void write(String s, int off, int len) {
-        doWrite(s, null, off, len);
-        checkLimits();
+    public void write(String s, int off, int len) {
+        if (SEQUENCED_WRITES) {
+            writeSequenced(s, off, len);
+            return;
+        }
+        synchronized (this) {
+            doWrite(s, null, off, len);
+            checkLimits();
+        }
     }
 
     @Override
-    public synchronized void write(String s) {
-        doWrite(s, null, 0, s.length());
+    public void write(String s) {
+        write(s, 0, s.length());
+    }
+
+    /**
+     * Write text in sequenced mode. Text is collected in a buffer of the
+     * calling thread until a line is complete. Complete lines are put to a
+     * queue, and the first thread that finds the sequencer idle writes all
+     * queued lines in batches. Other threads do not wait for the writer lock,
+     * and lines from different threads are never mixed.
+     */
+    private void writeSequenced(CharSequence s, int off, int len) {
+        if (checkError() || len == 0) {
+            return;
+        }
+        PendingText p = pendingText.get();
+        String complete = null;
+        synchronized (p) {
+            StringBuilder sb = p.text;
+            sb.append(s, off, off + len);
+            int nl = sb.lastIndexOf(LINE_SEPARATOR);
+            if (nl >= 0) {
+                complete = sb.substring(0, nl + 1);
+                sb.delete(0, nl + 1);
+            }
+            if (sb.length() > 0 && !p.registered) {
+                p.registered = true;
+                pendingTexts.add(p);
+            }
+        }
+        if (complete != null) {
+            if (sequencerQueueSize.incrementAndGet() > SEQUENCER_QUEUE_SIZE) {
+                sequencerQueueSize.decrementAndGet();
+                writeSynchronously(complete);
+            } else {
+                sequencerQueue.offer(complete);
+                runSequencer();
+            }
+        }
+    }
+
+    /**
+     * Write lines of a thread that found the queue full. The lines queued
+     * before, including earlier lines of the thread, are written first.
+     */
+    private synchronized void writeSynchronously(String complete) {
+        writeQueuedText(sequencerQueueSize.get());
+        doWrite(complete, null, 0, complete.length());
         checkLimits();
     }
 
+    /**
+     * Write queued lines, unless another thread is already doing it. A thread
+     * writes at most {@link #SEQUENCER_DRAIN_SIZE} lines, lines left in the
+     * queue after the sequencer is released are written by a background
+     * task, so no line is left behind.
+     */
+    private void runSequencer() {
+        if (sequencerQueue.isEmpty()
+                || !sequencerBusy.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writeQueuedText(SEQUENCER_DRAIN_SIZE);
+        } finally {
+            sequencerBusy.set(false);
+        }
+        if (!sequencerQueue.isEmpty() && !checkError()) {
+            sequencerTask.schedule(0);
+        }
+    }
+
+    /**
+     * Write queued lines. Lines are concatenated, so that the storage and the
+     * line index are updated in batches.
+     *
+     * @param maxLines Max number of lines to write.
+     */
+    private synchronized void writeQueuedText(int maxLines) {
+        writingQueuedText = true;
+        try {
+            StringBuilder batch = new StringBuilder();
+            String text;
+            int count = 0;
+            while (count < maxLines && (text = sequencerQueue.poll()) != null) {
+                sequencerQueueSize.decrementAndGet();
+                count++;
+                batch.append(text);
+                if (batch.length() >= SEQUENCER_BATCH_SIZE) {
+                    doWrite(batch, null, 0, batch.length());
+                    batch.setLength(0);
+                }
+            }
+            if (batch.length() > 0) {
+                doWrite(batch, null, 0, batch.length());
+            }
+            checkLimits();
+        } finally {
+            writingQueuedText = false;
+        }
+    }
+
+    /**
+     * Write unfinished lines of all threads and all queued lines. Called
+     * before direct writes, flush and close, so that the output does not lose
+     * or reorder text written in sequenced mode.
+     */
+    private synchronized void flushPendingText() {
+        if (!SEQUENCED_WRITES || writingQueuedText) {
+            return; // nested call, e.g. from printANSI
+        }
+        for (PendingText p : pendingTexts) {
+            synchronized (p) {
+                if (p.text.length() > 0) {
+                    sequencerQueueSize.incrementAndGet();
+                    sequencerQueue.offer(p.text.toString());
+                    p.text.setLength(0);
+                }
+                p.registered = false;
+                pendingTexts.remove(p);
+            }
+        }
+        if (!sequencerQueue.isEmpty()) {
+            writeQueuedText(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Forget queued lines and unfinished lines of all threads, when the
+     * writer is disposed or reset.
+     */
+    synchronized void discardPendingText() {
+        if (!SEQUENCED_WRITES) {
+            return;
+        }
+        for (PendingText p : pendingTexts) {
+            synchronized (p) {
+                p.text.setLength(0);
+                p.registered = false;
+                pendingTexts.remove(p);
+            }
+        }
+        while (sequencerQueue.poll() != null) {
+            sequencerQueueSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * Text written by one thread that does not end with a new line yet.
+     */
+    private static final class PendingText {
+
+        final StringBuilder text = new StringBuilder();
+        boolean registered = false;
+    }
+
     public synchronized void println(String s, OutputListener l) {
         println(s, l, false);
     }
@@ -562,6 +882,7 @@ class OutWriter extends PrintWriter {
     }
 
     synchronized void print(CharSequence s, OutputListener l, boolean important, Color c, Color b, OutputKind outKind, boolean addLS) {
+        flushPendingText();
         if (c == null) {
             if (l == null && printANSI(s, null, important, outKind, addLS)) {
                 return;
@@ -708,6 +1029,7 @@ class OutWriter extends PrintWriter {
     }
 
     synchronized void print(CharSequence s, LineInfo info, boolean important) {
+        flushPendingText();
         int line = lines.getLineCount() - 1;
         doWrite(s, null, 0, s.length());
         if (info != null) {
@@ -716,6 +1038,44 @@ class OutWriter extends PrintWriter {
         checkLimits();
     }
 
+    /**
+     * Append a line whose text is provided by a {@link FilteredStorage}.
+     * Nothing is written to the storage, only the line index is updated.
+     *
+     * @param sourceLine Absolute index of the line in the source output.
+     * @param text Text of the line, including the trailing new line
+     * character if the line is finished.
+     */
+    synchronized void appendFilteredLine(int sourceLine, String text,
+            LineInfo info, boolean important) {
+        if (checkError() || text.isEmpty()) {
+            return;
+        }
+        FilteredStorage fs = (FilteredStorage) getStorage();
+        int start = fs.size();
+        int charStart = AbstractLines.toCharIndex(start);
+        fs.addLine(sourceLine, text.length());
+        int lengthWithTabs = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\t') {
+                int tabLength = WrappedTextView.TAB_SIZE
+                        - (lengthWithTabs % WrappedTextView.TAB_SIZE);
+                lines.addTabAt(charStart + i, tabLength);
+                lengthWithTabs += tabLength;
+            } else if (c != '\n') {
+                lengthWithTabs++;
+            }
+        }
+        int line = lines.getLineCount() - 1;
+        lines.lineUpdated(start, AbstractLines.toByteIndex(text.length()),
+                lengthWithTabs, text.charAt(text.length() - 1) == '\n');
+        if (info != null) {
+            lines.addLineInfo(line, info, important);
+        }
+        closed = false;
+    }
+
     /**
      * A useless writer object to pass to the superclass constructor.  We override all methods
      * of it anyway.
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.core.output2;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled search pattern for the Output window. Searches directly in a
+ * CharSequence (usually a CharBuffer over the storage), so no strings are
+ * created for the searched text.
+ *
+ * <p>Literal patterns are matched using the Boyer-Moore-Horspool algorithm,
+ * case insensitive search folds characters one by one. Regular expressions
+ * are matched by {@link Matcher} over the same sequence.</p>
+ */
+final class OutputFind {
+
+    private final String pattern;
+    private final boolean regExp;
+    private final boolean matchCase;
+    /** Compiled pattern, for regular expressions only. */
+    private final Pattern compiled;
+    /** Literal pattern, folded if the search is case insensitive. */
+    private final char[] needle;
+    /** Bad character shifts for forward search, indexed by (char & 0xFF). */
+    private final int[] shifts;
+    /** Bad character shifts for backward search, indexed by (char & 0xFF). */
+    private final int[] backShifts;
+
+    OutputFind(String pattern, boolean regExp, boolean matchCase) {
+        this.pattern = pattern;
+        this.regExp = regExp;
+        this.matchCase = matchCase;
+        if (regExp) {
+            compiled = matchCase
+                    ? Pattern.compile(pattern)
+                    : Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+            needle = null;
+            shifts = null;
+            backShifts = null;
+        } else {
+            compiled = null;
+            int m = pattern.length();
+            needle = new char[m];
+            for (int i = 0; i < m; i++) {
+                needle[i] = fold(pattern.charAt(i));
+            }
+            // Characters are hashed to 256 buckets. Each bucket keeps the
+            // smallest shift of its characters, so collisions only make the
+            // shift shorter, never incorrect.
+            shifts = new int[256];
+            backShifts = new int[256];
+            Arrays.fill(shifts, Math.max(1, m));
+            Arrays.fill(backShifts, Math.max(1, m));
+            for (int i = 0; i < m - 1; i++) {
+                shifts[needle[i] & 0xFF] = m - 1 - i;
+            }
+            for (int i = m - 1; i > 0; i--) {
+                backShifts[needle[i] & 0xFF] = i;
+            }
+        }
+    }
+
+    /**
+     * Check whether this object represents the given search.
+     */
+    boolean isFor(String pattern, boolean regExp, boolean matchCase) {
+        return this.regExp == regExp && this.matchCase == matchCase
+                && this.pattern.equals(pattern);
+    }
+
+    private char fold(char c) {
+        return matchCase ? c : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Find the first match in range [from, to) of the sequence.
+     *
+     * @param range Output parameter, start and end of the match.
+     * @return True if a match was found.
+     */
+    boolean findFirst(CharSequence cs, int from, int to, int[] range) {
+        if (regExp) {
+            Matcher matcher = compiled.matcher(cs);
+            matcher.region(from, to);
+            if (matcher.find()) {
+                range[0] = matcher.start();
+                range[1] = matcher.end();
+                return true;
+            }
+            return false;
+        }
+        int idx = indexOf(cs, from, to);
+        if (idx >= 0) {
+            range[0] = idx;
+            range[1] = idx + needle.length;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find the last match in range [from, to) of the sequence.
+     *
+     * @param range Output parameter, start and end of the match.
+     * @return True if a match was found.
+     */
+    boolean findLast(CharSequence cs, int from, int to, int[] range) {
+        if (regExp) {
+            Matcher matcher = compiled.matcher(cs);
+            matcher.region(from, to);
+            boolean found = false;
+            while (matcher.find()) {
+                range[0] = matcher.start();
+                range[1] = matcher.end();
+                found = true;
+            }
+            return found;
+        }
+        int m = needle.length;
+        if (m == 0) {
+            return false;
+        }
+        int i = to - m;
+        while (i >= from) {
+            int j = 0;
+            while (j < m && fold(cs.charAt(i + j)) == needle[j]) {
+                j++;
+            }
+            if (j == m) {
+                range[0] = i;
+                range[1] = i + m;
+                return true;
+            }
+            i -= backShifts[fold(cs.charAt(i)) & 0xFF];
+        }
+        return false;
+    }
+
+    /**
+     * Find all non-overlapping matches in range [from, to) of the sequence.
+     *
+     * @param base Value added to each returned offset.
+     * @param max Maximal number of matches to return.
+     * @return Start and end offsets of matches (two items per match), or
+     * null if there are more than {@code max} matches.
+     */
+    int[] findAll(CharSequence cs, int from, int to, int base, int max) {
+        int[] result = new int[16];
+        int count = 0;
+        int[] range = new int[2];
+        Matcher matcher = null;
+        if (regExp) {
+            matcher = compiled.matcher(cs);
+            matcher.region(from, to);
+        }
+        int pos = from;
+        while (true) {
+            if (regExp) {
+                if (!matcher.find()) {
+                    break;
+                }
+                range[0] = matcher.start();
+                range[1] = matcher.end();
+            } else {
+                int idx = indexOf(cs, pos, to);
+                if (idx < 0) {
+                    break;
+                }
+                range[0] = idx;
+                range[1] = idx + needle.length;
+                pos = range[1];
+            }
+            if (count / 2 >= max) {
+                return null;
+            }
+            if (count + 2 > result.length) {
+                result = Arrays.copyOf(result, result.length * 2);
+            }
+            result[count++] = base + range[0];
+            result[count++] = base + range[1];
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int indexOf(CharSequence cs, int from, int to) {
+        int m = needle.length;
+        if (m == 0) {
+            return -1;
+        }
+        int last = m - 1;
+        int i = from;
+        while (i <= to - m) {
+            int j = last;
+            while (j >= 0 && fold(cs.charAt(i + j)) == needle[j]) {
+                j--;
+            }
+            if (j < 0) {
+                return i;
+            }
+            i += shifts[fold(cs.charAt(i + last)) & 0xFF];
+        }
+        return -1;
+    }
+}
@@ -62,6 +62,15 @@ public class OutputLimits {
         return maxChars;
     }
 
+    /**
+     * Limit for number of bytes occupied in the storage, which is the size of
+     * {@link #getMaxChars()} characters in UTF-16. Storages that keep
+     * characters in one byte can hold more characters within this limit.
+     */
+    public long getMaxBytes() {
+        return 2L * maxChars;
+    }
+
     public int getRemoveLines() {
         return removeLines;
     }
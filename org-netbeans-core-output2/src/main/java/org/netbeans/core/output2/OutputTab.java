@@ -23,7 +23,6 @@ import java.awt.Color;
 import java.awt.Dialog;
 import java.awt.Component;
 import java.awt.Container;
-import java.awt.Cursor;
 import java.awt.EventQueue;
 import java.awt.FileDialog;
 import java.awt.Frame;
@@ -53,7 +52,6 @@ import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
 import javax.swing.KeyStroke;
-import javax.swing.RootPaneContainer;
 import javax.swing.SwingUtilities;
 import javax.swing.UIDefaults;
 import javax.swing.UIManager;
@@ -64,6 +62,7 @@ import javax.swing.text.JTextComponent;
 import org.netbeans.api.options.OptionsDisplayer;
 import org.netbeans.core.options.keymap.api.KeyStrokeUtils;
 import org.netbeans.core.output2.Controller.ControllerOutputEvent;
+import org.netbeans.core.output2.adito.IOutputTabFilterDescription;
 import org.netbeans.core.output2.ui.AbstractOutputPane;
 import org.netbeans.core.output2.ui.AbstractOutputTab;
 import org.openide.DialogDisplayer;
@@ -281,7 +280,7 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
 
     public void documentChanged(OutputPane pane) {
         if (filtOut != null && pane == origPane) {
-            filtOut.readFrom(outWriter);
+            filtOut.update();
         }
         boolean hadOutputListeners = hasOutputListeners;
         hasOutputListeners = getOut() != null && (getOut().getLines().firstListenerLine() >= 0 || getOut().getLines().firstImportantListenerLine() >= 0);
@@ -436,6 +435,19 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
      * @param reversed true for reverse search
      * @return true if found
      */
+    /** Repaints highlighted matches after they were indexed in background */
+    private final Runnable repaintMatches = new Runnable() {
+        @Override
+        public void run() {
+            EventQueue.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    getOutputPane().repaint();
+                }
+            });
+        }
+    };
+
     private boolean find(boolean reversed) {
         OutWriter out = getOut();
         if (out != null) {
@@ -449,6 +461,9 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
             }
             boolean regExp = FindDialogPanel.regExp();
             boolean matchCase = FindDialogPanel.matchCase();
+            if (out.getLines() instanceof AbstractLines) {
+                ((AbstractLines) out.getLines()).setMatchIndexListener(repaintMatches);
+            }
             int[] sel = reversed ? out.getLines().rfind(pos, lastPattern, regExp, matchCase)
                     : out.getLines().find(pos, lastPattern, regExp, matchCase);
             String appendMsg = null;
@@ -466,7 +481,20 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
                 ensureLineVisible(out, line);
                 getOutputPane().setSelection(sel[0], sel[1]);
                 int col = sel[0] - out.getLines().getLineStart(line);
-                msg = NbBundle.getMessage(OutputTab.class, "MSG_Found", lastPattern, line + 1, col + 1);
+                MatchIndex matches = out.getLines() instanceof AbstractLines
+                        ? ((AbstractLines) out.getLines()).getMatchIndex() : null;
+                // the number of matches is known when the whole output is indexed
+                int index = matches == null
+                        || matches.getSearchedTo() < out.getLines().getCharCount()
+                        ? -1 : matches.indexOf(sel[0]);
+                if (index >= 0) {
+                    msg = NbBundle.getMessage(OutputTab.class, "MSG_FoundOf", //NOI18N
+                            new Object[]{lastPattern, line + 1, col + 1,
+                                index + 1, matches.size()});
+                } else {
+                    msg = NbBundle.getMessage(OutputTab.class, "MSG_Found", lastPattern, line + 1, col + 1);
+                }
+                getOutputPane().repaint();
                 if (appendMsg != null) {
                     msg = msg + "; " + appendMsg;
                 }
@@ -721,7 +749,17 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
     AbstractOutputPane origPane;
 
     private void setFilter(String pattern, boolean regExp, boolean matchCase) {
-        if (pattern == null) {
+        setFilter(pattern == null ? null
+                : new PatternFilter(pattern, regExp, matchCase));
+    }
+
+    /**
+     * Show only lines accepted by the filter, or the whole output if the
+     * filter is null. Lines are filtered in background and added to the
+     * filtered pane as they are found.
+     */
+    private void setFilter(IOutputTabFilterDescription filter) {
+        if (filter == null) {
             assert origPane != null;
             setOutputPane(origPane);
             origPane = null;
@@ -730,28 +768,16 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
         } else {
             assert origPane == null;
             origPane = getOutputPane();
-            filtOut = new FilteredOutput(pattern, regExp, matchCase);
+            filtOut = new FilteredOutput(filter, outWriter);
             setOutputPane(filtOut.getPane());
-            try {
-                waitCursor(true);
-                filtOut.readFrom(outWriter);
-                installKBActions();
-            } finally {
-                waitCursor(false);
-            }
+            filtOut.update();
+            installKBActions();
         }
         validate();
         getOutputPane().repaint();
         requestFocus();
     }
 
-    private void waitCursor(boolean enable) {
-        RootPaneContainer root = ((RootPaneContainer) getTopLevelAncestor());
-        Cursor cursor = Cursor.getPredefinedCursor(enable ? Cursor.WAIT_CURSOR : Cursor.DEFAULT_CURSOR);
-        root.getGlassPane().setCursor(cursor);
-        root.getGlassPane().setVisible(enable);
-    }
-
     OutWriter getOut() {
         return origPane != null ? filtOut.getWriter() : outWriter;
     }
@@ -1186,10 +1212,24 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
                     if (origPane != null) {
                         setFilter(null, false, false);
                     } else {
-                        String pattern = getFindDlgResult(getOutputPane().getSelectedText(),
+                        IOutputTabFilterDescription description = io.getFilterOutputDescription();
+                        if (description != null && description.getPattern() == null) {
+                            setFilter(description);
+                            break;
+                        }
+                        // the pattern of the description is only a proposal,
+                        // lines still have to be accepted by the description
+                        String initial = getOutputPane().getSelectedText();
+                        if (initial == null && description != null) {
+                            initial = description.getPattern();
+                        }
+                        String pattern = getFindDlgResult(initial,
                                 "LBL_Filter_Title", "LBL_Filter_What", "BTN_Filter"); //NOI18N
                         if (pattern != null) {
-                            setFilter(pattern, FindDialogPanel.regExp(), FindDialogPanel.matchCase());
+                            IOutputTabFilterDescription filter = new PatternFilter(
+                                    pattern, FindDialogPanel.regExp(), FindDialogPanel.matchCase());
+                            setFilter(description == null ? filter
+                                    : new BothFilter(description, filter));
                         }
                     }
                     break;
@@ -1329,36 +1369,95 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
         }
     }
 
-    private class FilteredOutput {
-        String pattern;
-        OutWriter out;
-        OutputPane pane;
-        OutputDocument doc;
-        int readCount;
-        Pattern compPattern;
-        boolean regExp;
-        boolean matchCase;
-
-        public FilteredOutput(String pattern, boolean regExp, boolean matchCase) {
+    /**
+     * Filter created from a pattern entered in the filter dialog.
+     */
+    private static class PatternFilter implements IOutputTabFilterDescription {
+
+        private final String pattern;
+        private final boolean regExp;
+        private final boolean matchCase;
+        private Pattern compPattern;
+
+        PatternFilter(String pattern, boolean regExp, boolean matchCase) {
             this.pattern = (regExp || matchCase) ? pattern : pattern.toLowerCase();
             this.regExp = regExp;
             this.matchCase = matchCase;
-            out = new OutWriter();
-            pane = new OutputPane(OutputTab.this);
-            doc = new OutputDocument(out);
-            pane.setDocument(doc);
         }
 
-        boolean passFilter(String str) {
+        @Override
+        public void setup() {
+            if (regExp && compPattern == null) {
+                compPattern = matchCase ? Pattern.compile(pattern) : Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+            }
+        }
+
+        @Override
+        public boolean accepts(String str) {
             if (regExp) {
-                if (compPattern == null) {
-                    compPattern = matchCase ? Pattern.compile(pattern) : Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
-                }
+                setup();
                 return compPattern.matcher(str).find();
             } else {
                 return matchCase ? str.contains(pattern) : str.toLowerCase().contains(pattern);
             }
         }
+    }
+
+    /**
+     * Filter accepting lines accepted by two filters.
+     */
+    private static class BothFilter implements IOutputTabFilterDescription {
+
+        private final IOutputTabFilterDescription first;
+        private final IOutputTabFilterDescription second;
+
+        BothFilter(IOutputTabFilterDescription first, IOutputTabFilterDescription second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void setup() {
+            first.setup();
+            second.setup();
+        }
+
+        @Override
+        public boolean accepts(String str) {
+            return first.accepts(str) && second.accepts(str);
+        }
+    }
+
+    /**
+     * Filtered view of the output. Source lines are checked in a background
+     * task, new output is checked as it arrives. Text of accepted lines is not
+     * copied, the filtered writer reads it from the source lines, see
+     * {@link FilteredStorage}.
+     */
+    private class FilteredOutput implements Runnable {
+        /** Number of source lines checked before the view is refreshed. */
+        private static final int BATCH_SIZE = 4096;
+
+        private final IOutputTabFilterDescription filter;
+        private final OutWriter orig;
+        private final OutWriter out;
+        private final OutputPane pane;
+        private final RequestProcessor.Task task;
+        /** Absolute index of the next source line to check. */
+        private int readCount;
+        /** True if {@link IOutputTabFilterDescription#setup()} was called. */
+        private boolean setUp;
+        private volatile boolean disposed;
+
+        public FilteredOutput(IOutputTabFilterDescription filter, OutWriter orig) {
+            this.filter = filter;
+            this.orig = orig;
+            AbstractLines lines = (AbstractLines) orig.getLines();
+            out = new OutWriter(new FilteredStorage(lines));
+            pane = new OutputPane(OutputTab.this);
+            pane.setDocument(new OutputDocument(out));
+            task = RP.create(this);
+        }
 
         OutputPane getPane() {
             return pane;
@@ -1368,26 +1467,74 @@ final class OutputTab extends AbstractOutputTab implements IOContainer.CallBacks
             return out;
         }
 
-        synchronized void readFrom(OutWriter orig) {
+        /**
+         * Check source lines that have been added since the last update.
+         */
+        void update() {
+            if (!disposed) {
+                task.schedule(0);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!setUp) {
+                filter.setup();
+                setUp = true;
+            }
             AbstractLines lines = (AbstractLines) orig.getLines();
-            // Last line is not guaranteed to be finished, see #219839.
-            int lineCount = lines.getLineCount() - (orig.isClosed() ? 0 : 1);
-            while (readCount < lineCount) {
-                try {
-                    int line = readCount++;
-                    String str = lines.getLine(line);
-                    if (!passFilter(str)) {
-                        continue;
+            AbstractLines filtered = (AbstractLines) out.getLines();
+            boolean closed = false;
+            while (!disposed) {
+                int removed;
+                int lineCount;
+                synchronized (lines.readLock()) {
+                    if (orig.isDisposed()) {
+                        return;
+                    }
+                    removed = lines.getRemovedLineCount();
+                    closed = orig.isClosed();
+                    // Last line is not guaranteed to be finished, see #219839.
+                    lineCount = lines.getLineCount() - (closed ? 0 : 1);
+                }
+                int line = Math.max(0, readCount - removed);
+                if (line >= lineCount) {
+                    break;
+                }
+                int batchEnd = Math.min(lineCount, line + BATCH_SIZE);
+                for (; line < batchEnd && !disposed; line++) {
+                    String str;
+                    LineInfo info;
+                    boolean important;
+                    synchronized (lines.readLock()) {
+                        if (orig.isDisposed()
+                                || lines.getRemovedLineCount() != removed) {
+                            break;
+                        }
+                        try {
+                            str = lines.getLine(line);
+                        } catch (IOException ex) {
+                            Exceptions.printStackTrace(ex);
+                            continue;
+                        }
+                        info = lines.getExistingLineInfo(line);
+                        important = lines.isImportantLine(line);
+                    }
+                    if (filter.accepts(str)) {
+                        out.appendFilteredLine(line + removed, str, info, important);
                     }
-                    LineInfo info = lines.getExistingLineInfo(line);
-                    out.print(str, info, lines.isImportantLine(line));
-                } catch (IOException ex) {
-                    Exceptions.printStackTrace(ex);
                 }
+                readCount = line + removed;
+                filtered.delayedFire();
+            }
+            if (closed && !disposed) {
+                out.close();
             }
         }
 
         void dispose() {
+            disposed = true;
+            task.cancel();
             out.dispose();
         }
     }
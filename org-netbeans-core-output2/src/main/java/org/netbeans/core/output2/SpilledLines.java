@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.core.output2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Text of lines removed from the beginning of the output because an output
+ * limit was reached.
+ *
+ * <p>The text is split into segments of at most {@link #SEGMENT_CHARS}
+ * characters, which are compressed and appended to temporary files. Only a
+ * sparse index is kept in memory: the file, position, sizes and number of
+ * lines of each segment. Files are written up to {@link #MAX_FILE_BYTES}
+ * bytes; if there are more than {@link #MAX_FILES} of them, the oldest file
+ * is deleted together with its segments, so the history on disk is a ring
+ * buffer.</p>
+ *
+ * @see AbstractLines#saveAs(String)
+ */
+final class SpilledLines {
+
+    private static final Logger LOG = Logger.getLogger(SpilledLines.class.getName());
+
+    /** Maximal number of characters of one segment. */
+    static final int SEGMENT_CHARS = 1024 * 1024;
+    /** A new file is started when a file grows over this size. */
+    private static final long MAX_FILE_BYTES = 64L * 1024 * 1024;
+    /** Maximal number of files, the oldest one is deleted first. */
+    private static final int MAX_FILES = 8;
+
+    private final Deque<SpillFile> files = new ArrayDeque<SpillFile>();
+    /** Lines in the segments that are still available. */
+    private int lineCount = 0;
+    /** Reusable compressor. */
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private boolean disposed = false;
+
+    /**
+     * Append text of removed lines.
+     *
+     * @param text Text of the lines, including their line ends.
+     * @throws IOException If the text cannot be written. The text is lost
+     * then, as it would be without this class.
+     */
+    synchronized void add(CharBuffer text) throws IOException {
+        if (disposed) {
+            return;
+        }
+        while (text.hasRemaining()) {
+            int len = Math.min(SEGMENT_CHARS, text.remaining());
+            CharBuffer segmentText = text.slice();
+            segmentText.limit(len);
+            text.position(text.position() + len);
+            addSegment(segmentText);
+        }
+    }
+
+    private void addSegment(CharBuffer text) throws IOException {
+        int lines = 0;
+        for (int i = text.position(); i < text.limit(); i++) {
+            if (text.get(i) == '\n') {
+                lines++;
+            }
+        }
+        ByteBuffer utf8 = StandardCharsets.UTF_8.encode(text);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(
+                utf8.remaining() / 4 + 64);
+        deflater.reset();
+        DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater);
+        dos.write(utf8.array(), utf8.arrayOffset() + utf8.position(), utf8.remaining());
+        dos.finish();
+
+        SpillFile file = files.peekLast();
+        if (file == null || file.size >= MAX_FILE_BYTES) {
+            file = new SpillFile();
+            files.addLast(file);
+            if (files.size() > MAX_FILES) {
+                SpillFile oldest = files.removeFirst();
+                lineCount -= oldest.lineCount;
+                oldest.delete();
+            }
+        }
+        file.append(new Segment(lines, file.size,
+                compressed.size(), utf8.remaining()), compressed.toByteArray());
+        lineCount += lines;
+    }
+
+    /**
+     * Get number of lines that can be read from the disk.
+     */
+    synchronized int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Read all available text, oldest first.
+     *
+     * @param consumer Receives the text of the segments in order.
+     */
+    synchronized void read(SegmentConsumer consumer) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            for (SpillFile file : files) {
+                for (Segment segment : file.segments) {
+                    consumer.segment(file.read(segment, inflater));
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Delete all files.
+     */
+    synchronized void dispose() {
+        disposed = true;
+        for (SpillFile file : files) {
+            file.delete();
+        }
+        files.clear();
+        lineCount = 0;
+        deflater.end();
+    }
+
+    /**
+     * Receives text read by {@link #read(SegmentConsumer)}.
+     */
+    interface SegmentConsumer {
+
+        void segment(CharBuffer text) throws IOException;
+    }
+
+    /**
+     * Sparse index entry of a compressed segment.
+     */
+    private static final class Segment {
+
+        final int lineCount;
+        final long position;
+        final int compressedLength;
+        final int length;
+
+        Segment(int lineCount, long position, int compressedLength,
+                int length) {
+            this.lineCount = lineCount;
+            this.position = position;
+            this.compressedLength = compressedLength;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Temporary file holding a sequence of segments.
+     */
+    private static final class SpillFile {
+
+        private File file;
+        private RandomAccessFile raf;
+        final List<Segment> segments = new ArrayList<Segment>();
+        long size = 0;
+        int lineCount = 0;
+
+        void append(Segment segment, byte[] data) throws IOException {
+            if (raf == null) {
+                file = File.createTempFile("output-history", ".z"); //NOI18N
+                file.deleteOnExit();
+                raf = new RandomAccessFile(file, "rw"); //NOI18N
+            }
+            FileChannel ch = raf.getChannel();
+            ByteBuffer bb = ByteBuffer.wrap(data);
+            long pos = segment.position;
+            while (bb.hasRemaining()) {
+                pos += ch.write(bb, pos);
+            }
+            segments.add(segment);
+            size += data.length;
+            lineCount += segment.lineCount;
+        }
+
+        CharBuffer read(Segment segment, Inflater inflater) throws IOException {
+            ByteBuffer compressed = ByteBuffer.allocate(segment.compressedLength);
+            FileChannel ch = raf.getChannel();
+            long pos = segment.position;
+            while (compressed.hasRemaining()) {
+                int read = ch.read(compressed, pos);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file); //NOI18N
+                }
+                pos += read;
+            }
+            byte[] utf8 = new byte[segment.length];
+            inflater.reset();
+            inflater.setInput(compressed.array());
+            try {
+                int off = 0;
+                while (off < utf8.length && !inflater.finished()) {
+                    off += inflater.inflate(utf8, off, utf8.length - off);
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException(ex);
+            }
+            return StandardCharsets.UTF_8.decode(ByteBuffer.wrap(utf8));
+        }
+
+        void delete() {
+            try {
+                if (raf != null) {
+                    raf.close();
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, null, ex);
+            }
+            raf = null;
+            if (file != null && !file.delete()) {
+                LOG.log(Level.FINE, "Cannot delete {0}", file); //NOI18N
+            }
+        }
+    }
+}
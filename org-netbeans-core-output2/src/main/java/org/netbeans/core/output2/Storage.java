@@ -89,6 +89,14 @@ interface Storage {
      */
     public int size();
 
+    /**
+     * The number of bytes the written data occupy in the storage, which is
+     * less than {@link #size()} if the storage compacts the data.
+     *
+     * @return A byte count
+     */
+    public int storedSize();
+
     /**
      * For storages that implement a lazy writing scheme, force any pending data to be written to the storage.
      *
@@ -266,6 +266,8 @@ public class WrappedTextView extends View implements TabExpander {
             ln[0] = clip.y / charHeight;
             Lines lines = doc.getLines();
             lines.toPhysicalLineIndex(ln, charsPerLine);
+            MatchIndex matches = lines instanceof AbstractLines
+                    ? ((AbstractLines) lines).getMatchIndex() : null;
 
             int firstline = ln[0];
             g.setColor (comp.getForeground());
@@ -353,7 +355,7 @@ public class WrappedTextView extends View implements TabExpander {
                                     drawArrow(g, y, currLogicalLine == logicalLines - 2);
                                 }
                                 Color bg = ls.getCustomBackground();
-                                drawText(seg, g, x, y, lineStart, charpos, selStart, charsToDraw, selEnd, bg);
+                                drawText(seg, g, x, y, lineStart, charpos, selStart, charsToDraw, selEnd, bg, matches);
                                 if (ls.getListener() != null) {
                                     underline(g, seg, charpos, charsToDraw, x, y);
                                 }
@@ -413,9 +415,11 @@ public class WrappedTextView extends View implements TabExpander {
      * @param selStart The character index at which the selected range, if any, starts
      * @param lenToDraw The number of characters we'll draw before we're outside the clip rectangle
      * @param selEnd The end of the selected range of text, if any
+     * @param matches Matches of the last searched pattern, or null
      */
     private void drawText(Segment seg, Graphics g, int x, int y, int lineStart,
-            int charpos, int selStart, int lenToDraw, int selEnd, Color bg) {
+            int charpos, int selStart, int lenToDraw, int selEnd, Color bg,
+            MatchIndex matches) {
         Color clr = g.getColor();
         if (selStart != selEnd) {
             int realPos = lineStart + charpos;
@@ -442,6 +446,9 @@ public class WrappedTextView extends View implements TabExpander {
         seg.count = lenToDraw;
         seg.offset = charpos;
         drawTextBackground(g, clr, bg, selStart != selEnd, seg, x, y, charpos);
+        if (matches != null) {
+            drawMatches(g, matches, x, y, lineStart, charpos, lenToDraw);
+        }
         Utilities.drawTabbedText(seg, margin() + x, y, g, this, charpos);
         seg.count = count;
         seg.offset = offset;
@@ -460,6 +467,37 @@ public class WrappedTextView extends View implements TabExpander {
         g.setColor(fg);
     }
 
+    /**
+     * Paint background of matches of the last searched pattern that
+     * intersect the drawn text.
+     */
+    private void drawMatches(Graphics g, MatchIndex matches, int x, int y,
+            int lineStart, int charpos, int lenToDraw) {
+        int realPos = lineStart + charpos;
+        int[] found = matches.getMatches(realPos, realPos + lenToDraw);
+        if (found.length == 0) {
+            return;
+        }
+        Lines lines = odoc().getLines();
+        int logicalPos = lines.getNumLogicalChars(lineStart, charpos) + lineStart;
+        int w = charsPerLine * charWidth;
+        Color c = g.getColor();
+        g.setColor(ExtPlainView.MATCH_HIGHLIGHT);
+        for (int i = 0; i < found.length; i += 2) {
+            int a = Math.max(found[i], realPos);
+            int b = Math.min(found[i + 1], realPos + lenToDraw);
+            a = lines.getNumLogicalChars(lineStart, a - lineStart) + lineStart;
+            b = lines.getNumLogicalChars(lineStart, b - lineStart) + lineStart;
+            int start = x + margin() + (a - logicalPos) * charWidth;
+            int len = (b - a) * charWidth;
+            if (start - margin() + len > w) {
+                len = w - start + margin();
+            }
+            g.fillRect(start, y + fontDescent - charHeight, len, charHeight);
+        }
+        g.setColor(c);
+    }
+
     private void drawSelection(Graphics g, int x1, int x2, int y) {
         Color c = g.getColor();
         g.setColor (comp.getSelectionColor());
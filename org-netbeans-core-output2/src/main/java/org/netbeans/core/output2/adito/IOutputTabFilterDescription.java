@@ -12,4 +12,14 @@ public interface IOutputTabFilterDescription
 
   boolean accepts(String pStr);
 
+  /**
+   * Liefert das Suchmuster, mit dem der Filterdialog vorbelegt wird.
+   *
+   * @return das Suchmuster oder null
+   */
+  default String getPattern()
+  {
+    return null;
+  }
+
 }
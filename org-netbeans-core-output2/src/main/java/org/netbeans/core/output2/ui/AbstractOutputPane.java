@@ -119,9 +119,41 @@ public abstract class AbstractOutputPane extends JScrollPane implements Document
         if (isWrapped()) {
             //Saves having OutputEditorKit have to do its own listening
             getViewport().revalidate();
-            getViewport().repaint();
+            repaintChangedArea();
         }
     }
+
+    /** Offset of the first line changed by the last document event, or -1
+     * if the whole view should be repainted. */
+    private int changedOffset = -1;
+
+    /**
+     * Repaint the part of the viewport below the first changed line. Output
+     * is appended at the end, so lines above it do not need to be painted.
+     */
+    private void repaintChangedArea() {
+        int offset = changedOffset;
+        changedOffset = -1;
+        if (offset > 0 && offset <= getLength()) {
+            try {
+                Rectangle r = textView.modelToView(offset);
+                Rectangle visible = getViewport().getViewRect();
+                if (r != null) {
+                    int top = r.y - visible.y;
+                    if (top >= visible.height) {
+                        return; // changed lines are not visible
+                    } else if (top > 0) {
+                        getViewport().repaint(0, top, visible.width,
+                                visible.height - top);
+                        return;
+                    }
+                }
+            } catch (BadLocationException ex) {
+                // repaint everything
+            }
+        }
+        getViewport().repaint();
+    }
     
     public abstract boolean isWrapped();
     public abstract void setWrapped (boolean val);
@@ -597,6 +629,7 @@ public abstract class AbstractOutputPane extends JScrollPane implements Document
     public final void changedUpdate(DocumentEvent e) {
         //Ensure it is consumed
         e.getLength();
+        changedOffset = e.getOffset();
         documentChanged();
         if (e.getOffset() + e.getLength() >= getCaretPos() && (locked || !(e instanceof OutputDocument.DO))) {
             //#119985 only move caret when not in editable section
@@ -612,6 +645,7 @@ public abstract class AbstractOutputPane extends JScrollPane implements Document
     public final void insertUpdate(DocumentEvent e) {
         //Ensure it is consumed
         e.getLength();
+        changedOffset = e.getOffset();
         documentChanged();
         if (e.getOffset() + e.getLength() >= getCaretPos() && (locked || !(e instanceof OutputDocument.DO))) {
             //#119985 only move caret when not in editable section
@@ -94,6 +94,29 @@ public final class DBForeignKey extends DBObject<DBTable> {
         deferrability = rs.getShort(RS_DEFERRABILITY);
     }
 
+    /**
+     * Creates a foreign key with the given columns, e.g. from a metadata
+     * snapshot.
+     *
+     * @param fkColumnNames referencing columns in key order
+     * @param pkColumnNames referenced columns in key order
+     */
+    public DBForeignKey(String fkName, String pkName, String pkCatalog,
+            String pkSchema, String pkTable, List<String> fkColumnNames,
+            List<String> pkColumnNames, int updateRule, int deleteRule,
+            int deferrability) {
+        this.fkName = fkName;
+        this.pkName = pkName;
+        this.pkCatalog = pkCatalog;
+        this.pkSchema = pkSchema;
+        this.pkTable = pkTable;
+        this.fkColumnNames.addAll(fkColumnNames);
+        this.pkColumnNames.addAll(pkColumnNames);
+        this.updateRule = updateRule;
+        this.deleteRule = deleteRule;
+        this.deferrability = deferrability;
+    }
+
     private void addColumnNames(ResultSet rs) throws SQLException {
         String pkColName = rs.getString(RS_PKCOLUMN_NAME);
         if (!isNullString(pkColName)) {
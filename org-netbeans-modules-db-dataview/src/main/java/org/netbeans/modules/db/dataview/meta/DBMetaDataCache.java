@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.meta;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.db.explorer.DatabaseConnection;
+import org.netbeans.modules.db.explorer.DbMetaDataListener;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Primary keys, foreign keys and column defaults of tables, read by
+ * {@link DBMetaDataFactory#postprocessTables}. Reading them takes several
+ * dictionary queries per table, which can be slower than the query of the
+ * data view itself, so they are kept per connection for {@link #TTL} ms.
+ *
+ * Entries are dropped when the database explorer reports changed tables (see
+ * {@link Listener}) and when a data view executes DDL.
+ */
+public final class DBMetaDataCache {
+
+    private static final Logger LOGGER = Logger.getLogger(DBMetaDataCache.class.getName());
+    /** Time to live of an entry, in ms */
+    private static final long TTL = 5 * 60 * 1000;
+    private static final Map<DatabaseConnection, DBMetaDataCache> CACHES = new WeakHashMap<>();
+
+    private final Map<String, TableInfo> tables = new HashMap<>();
+    private long hits = 0;
+    private long misses = 0;
+
+    private DBMetaDataCache() {
+    }
+
+    /**
+     * Get the cache of a connection.
+     */
+    public static DBMetaDataCache forConnection(DatabaseConnection dc) {
+        synchronized (CACHES) {
+            DBMetaDataCache cache = CACHES.get(dc);
+            if (cache == null) {
+                cache = new DBMetaDataCache();
+                CACHES.put(dc, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Drop all entries of a connection.
+     */
+    public static void invalidate(DatabaseConnection dc) {
+        DBMetaDataCache cache;
+        synchronized (CACHES) {
+            cache = CACHES.get(dc);
+        }
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Drop entries of tables of the given name, in all schemas of the
+     * connection.
+     */
+    public static void invalidate(DatabaseConnection dc, String tableName) {
+        DBMetaDataCache cache;
+        synchronized (CACHES) {
+            cache = CACHES.get(dc);
+        }
+        if (cache != null) {
+            cache.remove(tableName);
+        }
+    }
+
+    synchronized TableInfo get(String catalog, String schema, String name) {
+        String key = getKey(catalog, schema, name);
+        TableInfo info = tables.get(key);
+        if (info != null && System.currentTimeMillis() - info.created > TTL) {
+            tables.remove(key);
+            info = null;
+        }
+        if (info != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Table metadata of {0}: {1}", // NOI18N
+                    new Object[]{key, info != null ? "hit" : "miss"}); // NOI18N
+        }
+        return info;
+    }
+
+    synchronized void put(String catalog, String schema, String name, TableInfo info) {
+        tables.put(getKey(catalog, schema, name), info);
+    }
+
+    private synchronized void remove(String tableName) {
+        for (Iterator<TableInfo> it = tables.values().iterator(); it.hasNext();) {
+            TableInfo info = it.next();
+            if (tableName == null || tableName.equalsIgnoreCase(info.name)) {
+                it.remove();
+            }
+        }
+    }
+
+    private synchronized void clear() {
+        tables.clear();
+    }
+
+    /**
+     * @return Number of lookups answered from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return Number of lookups which had to query the database.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DBMetaDataCache[tables=" + tables.size() // NOI18N
+                + ", hits=" + hits + ", misses=" + misses + "]"; // NOI18N
+    }
+
+    private static String getKey(String catalog, String schema, String name) {
+        return catalog + '\0' + schema + '\0' + name;
+    }
+
+    /**
+     * Metadata of one table. The keys are shared by all tables created from
+     * the same entry.
+     */
+    static final class TableInfo {
+
+        final String name;
+        final DBPrimaryKey primaryKey;
+        final Map<String, DBForeignKey> foreignKeys;
+        /** Default values by column name */
+        final Map<String, String> defaults;
+        final long created = System.currentTimeMillis();
+
+        TableInfo(String name, DBPrimaryKey primaryKey,
+                Map<String, DBForeignKey> foreignKeys, Map<String, String> defaults) {
+            this.name = name;
+            this.primaryKey = primaryKey;
+            this.foreignKeys = foreignKeys;
+            this.defaults = defaults;
+        }
+    }
+
+    /**
+     * Drops cached metadata of tables changed in the database explorer.
+     */
+    @ServiceProvider(service = DbMetaDataListener.class)
+    public static final class Listener implements DbMetaDataListener {
+
+        @Override
+        public void tablesChanged(DatabaseConnection dbconn) {
+            invalidate(dbconn);
+        }
+
+        @Override
+        public void tableChanged(DatabaseConnection dbconn, String tableName) {
+            invalidate(dbconn, tableName);
+        }
+    }
+}
@@ -31,6 +31,10 @@ import de.adito.aditoweb.nbm.nbide.nbaditointerface.database.specifier.*;
 import org.netbeans.api.db.sql.support.SQLIdentifiers;
 import org.netbeans.api.db.sql.support.SQLIdentifiers.Quoter;
 import org.netbeans.modules.db.dataview.util.DataViewUtils;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.ColumnInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.ForeignKeyInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.SchemaInfo;
 import org.openide.util.Lookup;
 
 /**
@@ -57,9 +61,32 @@ public final class DBMetaDataFactory {
     private final DatabaseMetaData dbmeta;
     private final Quoter sqlquoter;
     private final String identifierQuoteString;
+    private final DBMetaDataCache cache;
+    private final MetadataSnapshot snapshot;
 
     public DBMetaDataFactory(Connection dbconn) throws SQLException {
+        this(dbconn, null);
+    }
+
+    /**
+     * @param cache Cache of table metadata of the connection, or null if
+     * metadata should always be read from the database.
+     */
+    public DBMetaDataFactory(Connection dbconn, DBMetaDataCache cache) throws SQLException {
+        this(dbconn, cache, null);
+    }
+
+    /**
+     * @param cache Cache of table metadata of the connection, or null if
+     * metadata should always be read from the database.
+     * @param snapshot Metadata snapshot of the connection, used for tables
+     * missing in the cache, or null.
+     */
+    public DBMetaDataFactory(Connection dbconn, DBMetaDataCache cache,
+            MetadataSnapshot snapshot) throws SQLException {
         assert dbconn != null;
+        this.cache = cache;
+        this.snapshot = snapshot;
         dbmeta = dbconn.getMetaData();
         
         // get the database type based on the product name converted to lowercase
@@ -336,31 +363,104 @@ public final class DBMetaDataFactory {
             if (DataViewUtils.isNullString(tbl.getName())) {
                 continue;
             }
-            checkPrimaryKeys(tbl);
-            checkForeignKeys(tbl);
+            DBMetaDataCache.TableInfo info = cache == null ? null
+                    : cache.get(tbl.getCatalog(), tbl.getSchema(), tbl.getName());
+            if (info == null) {
+                info = getSnapshotInfo(tbl);
+            }
+            if (info == null) {
+                DBPrimaryKey keys = getPrimaryKeys(tbl.getCatalog(), tbl.getSchema(), tbl.getName());
+                Map<String, DBForeignKey> foreignKeys = getForeignKeys(tbl);
+                Map<String, String> defaults = getDefaults(tbl);
+                info = new DBMetaDataCache.TableInfo(tbl.getName(), keys,
+                        foreignKeys, defaults);
+                // incomplete metadata is read again next time
+                if (cache != null && keys != null && foreignKeys != null
+                        && defaults != null) {
+                    cache.put(tbl.getCatalog(), tbl.getSchema(), tbl.getName(), info);
+                }
+            }
+            checkPrimaryKeys(tbl, info.primaryKey);
+            checkForeignKeys(tbl, info.foreignKeys);
             dbModel.addTable(tbl);
-            populateDefaults(tbl);
+            populateDefaults(tbl, info.defaults);
         }
     }
 
-    private void populateDefaults(DBTable table) {
+    /**
+     * Get the metadata of a table from the snapshot. Only schemas compared
+     * to the database recently are used, the keys of an outdated schema
+     * could make edits hit the wrong rows. Views and synonyms have no keys
+     * in the snapshot, they are read from the dictionary.
+     *
+     * @return the metadata, or null if the table is not in the snapshot
+     */
+    private DBMetaDataCache.TableInfo getSnapshotInfo(DBTable table) {
+        if (snapshot == null) {
+            return null;
+        }
+        SchemaInfo schema = snapshot.getSchema(table.getCatalog(), table.getSchema());
+        if (schema == null || !schema.isVerified()) {
+            return null;
+        }
+        MetadataSnapshot.TableInfo info = schema.getTable(table.getName());
+        if (info == null || info.getType() == null || !info.getType().contains("TABLE")) { // NOI18N
+            return null;
+        }
+
+        DBPrimaryKey primaryKey = new DBPrimaryKey(info.getPrimaryKeyName(), info.getPrimaryKey());
+        Map<String, DBForeignKey> foreignKeys = new HashMap<>();
+        for (ForeignKeyInfo fk : info.getForeignKeys()) {
+            DBForeignKey key = new DBForeignKey(fk.getName(), fk.getPKName(),
+                    fk.getPKCatalog(), fk.getPKSchema(), fk.getPKTable(),
+                    fk.getColumns(), fk.getPKColumns(), fk.getUpdateRule(),
+                    fk.getDeleteRule(), fk.getDeferrability());
+            key.setParentObject(table);
+            foreignKeys.put(key.getName(), key);
+        }
+        Map<String, String> defaults = new HashMap<>();
+        for (ColumnInfo column : info.getColumns()) {
+            if (column.getDefaultValue() != null) {
+                defaults.put(column.getName(), column.getDefaultValue());
+            }
+        }
+        return new DBMetaDataCache.TableInfo(table.getName(), primaryKey,
+                foreignKeys, defaults);
+    }
+
+    private Map<String, String> getDefaults(DBTable table) {
+        Map<String, String> defaults = new HashMap<>();
         ResultSet rs = null;
         try {
             rs = dbmeta.getColumns(setToNullIfEmpty(table.getCatalog()), setToNullIfEmpty(table.getSchema()), table.getName(), "%");
             while (rs.next()) {
                 String defaultValue = rs.getString("COLUMN_DEF"); // NOI18N
-                DBColumn col = table.getColumn(rs.getString("COLUMN_NAME")); // NOI18N
+                String columnName = rs.getString("COLUMN_NAME"); // NOI18N
 
-                if (col != null && defaultValue != null && defaultValue.trim().length() != 0) {
-                    col.setDefaultValue(defaultValue.trim());
+                if (columnName != null && defaultValue != null && defaultValue.trim().length() != 0) {
+                    defaults.put(columnName, defaultValue.trim());
                 }
             }
         } catch (SQLException | NullPointerException e) {
             // NullPointerException is thrown by Microsoft SQL Server when
             // set showplan_* on is issued
+            return null;
         } finally {
             DataViewUtils.closeResources(rs);
         }
+        return defaults;
+    }
+
+    private void populateDefaults(DBTable table, Map<String, String> defaults) {
+        if (defaults == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : defaults.entrySet()) {
+            DBColumn col = table.getColumn(entry.getKey());
+            if (col != null) {
+                col.setDefaultValue(entry.getValue());
+            }
+        }
     }
 
     private void adjustTableMetadata(String sql, DBTable table) {
@@ -430,8 +530,7 @@ public final class DBMetaDataFactory {
         return id.replaceAll(identifierQuoteString, "");
     }
 
-    private void checkPrimaryKeys(DBTable newTable) {
-        DBPrimaryKey keys = getPrimaryKeys(newTable.getCatalog(), newTable.getSchema(), newTable.getName());
+    private void checkPrimaryKeys(DBTable newTable, DBPrimaryKey keys) {
         if (keys != null && keys.getColumnCount() != 0) {
             newTable.setPrimaryKey(keys);
 
@@ -448,9 +547,7 @@ public final class DBMetaDataFactory {
         }
     }
 
-    private void checkForeignKeys(DBTable newTable) {
-        // get the foreing keys
-        Map<String, DBForeignKey> foreignKeys = getForeignKeys(newTable);
+    private void checkForeignKeys(DBTable newTable, Map<String, DBForeignKey> foreignKeys) {
         if (foreignKeys != null && !foreignKeys.isEmpty()) {
             newTable.setForeignKeyMap(foreignKeys);
 
@@ -68,6 +68,17 @@ public final class DBPrimaryKey extends DBObject<DBTable> {
         }
     }
 
+    /**
+     * Creates a primary key with the given columns, e.g. from a metadata
+     * snapshot.
+     *
+     * @param columnNames column names in key order
+     */
+    public DBPrimaryKey(String name, List<String> columnNames) {
+        this.name = name;
+        this.columnNames = new ArrayList<String>(columnNames);
+    }
+
     public boolean contains(DBColumn col) {
         return contains(col.getName());
     }
@@ -40,6 +40,7 @@ import javax.swing.SwingUtilities;
 import org.netbeans.api.db.explorer.DatabaseConnection;
 import org.netbeans.modules.db.dataview.meta.DBColumn;
 import org.netbeans.modules.db.dataview.meta.DBException;
+import org.netbeans.modules.db.dataview.util.LobStorage;
 import org.openide.awt.StatusDisplayer;
 import org.openide.util.Mutex;
 import org.openide.util.NbBundle;
@@ -68,6 +69,7 @@ public class DataView {
     private SQLExecutionHelper execHelper;
     private final List<DataViewPageContext> dataPage = new ArrayList<>();
     private final List<DataViewUI> dataViewUI = new ArrayList<>();
+    private final LobStorage lobStorage = new LobStorage();
     private JComponent container;
     private int initialPageSize = org.netbeans.modules.db.dataview.api.DataViewPageContext.getStoredPageSize();
     private boolean nbOutputComponent = false;
@@ -313,6 +315,13 @@ public class DataView {
         return sqlString;
     }
 
+    /**
+     * Storage for BLOB and CLOB values of all pages of this view.
+     */
+    LobStorage getLobStorage() {
+        return lobStorage;
+    }
+
     SQLExecutionHelper getSQLExecutionHelper() {
         if (execHelper == null) {
             execHelper = new SQLExecutionHelper(this);
@@ -376,6 +385,10 @@ public class DataView {
                 }
             }
         });
+        if (execHelper != null) {
+            execHelper.cancelRowCount();
+        }
+        lobStorage.close();
     }
 
     void setInfoStatusText(String statusText) {
@@ -111,6 +111,12 @@ class DataViewActionHandler {
         }
     }
 
+    void lastActionPerformed() {
+        if (rejectModifications() && dataPage.last()) {
+            execHelper.executeQueryOffEDT();
+        }
+    }
+
     void commitActionPerformed(boolean selectedOnly) {
         assert dataPage.getTableMetaData().getTableCount() == 1 : "Only one table allowed in resultset if update is invoked";
 
@@ -155,6 +161,7 @@ class DataViewActionHandler {
     }
 
     void refreshActionPerformed() {
+        execHelper.recountRows();
         execHelper.executeQueryOffEDT();
     }
 
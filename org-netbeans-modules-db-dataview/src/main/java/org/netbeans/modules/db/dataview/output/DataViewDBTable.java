@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.netbeans.modules.db.dataview.meta.DBColumn;
+import org.netbeans.modules.db.dataview.meta.DBPrimaryKey;
 import org.netbeans.modules.db.dataview.meta.DBTable;
 
 /**
@@ -96,6 +97,41 @@ public class DataViewDBTable {
         return dbTables != null && realTables.size() == 1;
     }
 
+    /**
+     * Get positions of the primary key columns of the only real table.
+     *
+     * @return Indexes of the columns in key order, or null if there is not
+     * exactly one real table or its primary key is not complete in the
+     * columns.
+     */
+    public int[] getPrimaryKeyIndexes() {
+        if (!hasOneRealTable()) {
+            return null;
+        }
+        DBTable table = getFirstRealTable();
+        DBPrimaryKey key = table.getPrimaryKey();
+        if (key == null || key.getColumnCount() == 0) {
+            return null;
+        }
+        List<String> keyNames = key.getColumnNames();
+        int[] indexes = new int[keyNames.size()];
+        for (int k = 0; k < keyNames.size(); k++) {
+            indexes[k] = -1;
+            for (int i = 0; i < columns.size(); i++) {
+                DBColumn col = columns.get(i);
+                if (col.getParentObject() == table
+                        && col.getName().equals(keyNames.get(k))) {
+                    indexes[k] = i;
+                    break;
+                }
+            }
+            if (indexes[k] < 0) {
+                return null;
+            }
+        }
+        return indexes;
+    }
+
     public String getFullyQualifiedName(int index, boolean quoteAlways) {
         return dbTables[index].getFullyQualifiedName(quoteAlways);
     }
@@ -33,10 +33,15 @@ class DataViewPageContext {
     public static final String PROP_pageSize = "pageSize";
     public static final String PROP_currentPos = "currentPos";
     public static final String PROP_tableMetaData = "tableMetaData";
+    public static final String PROP_totalRowCount = "totalRowCount";
     private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
     private int pageSize = 10;
     private int currentPos = 1;
     private DataViewDBTable tableMetaData = null;
+    private volatile KeysetPaging keysetPaging = null;
+    /** False while pages are fetched by skipping rows, until the first page */
+    private volatile boolean keysetPagingUsed = false;
+    private volatile long totalRowCount = -1;
     private final DataViewTableUIModel model = new DataViewTableUIModel(new DBColumn[0]);
 
     DataViewPageContext(int pageSize) {
@@ -59,6 +64,34 @@ class DataViewPageContext {
         model.setEditable(tableMetaData != null && tableMetaData.hasOneRealTable());
     }
 
+    /**
+     * @return Keyset paging used to fetch pages, or null if pages are fetched
+     * by skipping rows.
+     */
+    KeysetPaging getKeysetPaging() {
+        return keysetPagingUsed ? keysetPaging : null;
+    }
+
+    void setKeysetPaging(KeysetPaging keysetPaging) {
+        this.keysetPaging = keysetPaging;
+        this.keysetPagingUsed = keysetPaging != null;
+    }
+
+    /**
+     * @return Number of rows of the whole result set, or -1 if it has not
+     * been counted. The count may be outdated, more rows are expected as
+     * long as the current page is full.
+     */
+    long getTotalRowCount() {
+        return totalRowCount;
+    }
+
+    void setTotalRowCount(long totalRowCount) {
+        long old = this.totalRowCount;
+        this.totalRowCount = totalRowCount;
+        firePropertyChange(PROP_totalRowCount, old, totalRowCount);
+    }
+
     int getPageSize() {
         return pageSize;
     }
@@ -66,6 +99,10 @@ class DataViewPageContext {
     synchronized void setPageSize(int pageSize) {
         int oldPageSize = this.pageSize;
         this.pageSize = pageSize;
+        if (keysetPaging != null) {
+            keysetPaging.first();
+            keysetPagingUsed = true;
+        }
         firePropertyChange(PROP_pageSize, oldPageSize, pageSize);
     }
 
@@ -80,17 +117,58 @@ class DataViewPageContext {
     }
 
     synchronized void first() {
+        if (keysetPaging != null) {
+            // keys of the first page are always known
+            keysetPaging.first();
+            keysetPagingUsed = true;
+        }
         setCurrentPos(1);
     }
 
     synchronized void previous() {
+        if (keysetPagingUsed) {
+            if (getCurrentPos() - pageSize <= 1) {
+                keysetPaging.first();
+            } else if (model.getRowCount() == 0
+                    || !keysetPaging.previous(model.getRowData(0))) {
+                // fall back to skipping rows until the first page
+                keysetPagingUsed = false;
+            }
+        }
         setCurrentPos(getCurrentPos() - pageSize);
     }
 
     synchronized void next() {
+        if (keysetPagingUsed && model.getRowCount() > 0
+                && !keysetPaging.next(model.getRowData(model.getRowCount() - 1))) {
+            // fall back to skipping rows until the first page
+            keysetPagingUsed = false;
+        }
         setCurrentPos(getCurrentPos() + pageSize);
     }
 
+    /**
+     * Move to the last page. Its position is computed from the total row
+     * count, so it is only possible once the rows have been counted. With
+     * keyset paging the rows of the last page are fetched in descending key
+     * order.
+     *
+     * @return False if the total row count is not known.
+     */
+    synchronized boolean last() {
+        long total = totalRowCount;
+        if (total < 0 || pageSize == 0) {
+            return false;
+        }
+        int pos = (int) Math.min(Integer.MAX_VALUE - pageSize,
+                Math.max(0, total - 1) / pageSize * pageSize) + 1;
+        if (keysetPagingUsed) {
+            keysetPaging.last((int) Math.max(1, total - (pos - 1)));
+        }
+        setCurrentPos(pos);
+        return true;
+    }
+
     DataViewTableUIModel getModel() {
         return model;
     }
@@ -103,6 +181,8 @@ class DataViewPageContext {
         if (pageSize == 0) {
             return false;
         }
+        // the total row count is only a lower bound, a full page may be
+        // followed by rows inserted after counting
         return getModel().getRowCount() >= pageSize;
     }
 
@@ -115,7 +195,7 @@ class DataViewPageContext {
     }
 
     boolean isLastPage() {
-        return pageSize == 0 || getModel().getRowCount() < pageSize;
+        return !hasNext();
     }
 
     boolean refreshRequiredOnInsert() {
@@ -463,6 +463,26 @@ final class DataViewTableUI extends ResultSetJXTable {
         });
         tablePopupMenu.add(miRefreshAction);
 
+        final JMenuItem miFirstPage = new JMenuItem(NbBundle.getMessage(DataViewTableUI.class, "TOOLTIP_first"));
+        miFirstPage.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handler.firstActionPerformed();
+            }
+        });
+        tablePopupMenu.add(miFirstPage);
+
+        final JMenuItem miLastPage = new JMenuItem(NbBundle.getMessage(DataViewTableUI.class, "TOOLTIP_last"));
+        miLastPage.addActionListener(new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handler.lastActionPerformed();
+            }
+        });
+        tablePopupMenu.add(miLastPage);
+
         tablePopupMenu.addSeparator();
 
         final JMenuItem miSetNull = new JMenuItem(NbBundle.getMessage(DataViewTableUI.class, "TOOLTIP_set_cell_to_null"));
@@ -575,6 +595,11 @@ final class DataViewTableUI extends ResultSetJXTable {
 
                     miCopyValue.setEnabled(cellUnderCursor);
 
+                    // the last page can only be found once the rows are counted
+                    miFirstPage.setEnabled(pageContext.hasPrevious());
+                    miLastPage.setEnabled(pageContext.getTotalRowCount() >= 0
+                            && !pageContext.isLastPage());
+
                     tablePopupMenu.show(DataViewTableUI.this, e.getX(), e.getY());
                 }
             }
@@ -57,6 +57,8 @@ import javax.swing.JTextField;
 import javax.swing.JToolBar;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import org.netbeans.modules.db.dataview.table.JXTableRowHeader;
 import org.netbeans.modules.db.dataview.table.MultiColPatternFilter;
 import org.netbeans.modules.db.dataview.table.ResultSetJXTable;
@@ -69,7 +71,10 @@ import org.openide.util.NbBundle;
  * @author Ahimanikya Satapathy
  */
 @NbBundle.Messages({
-    "LBL_fetched_rows=Fetched Rows:"
+    "LBL_fetched_rows=Fetched Rows:",
+    "# {0} - fetched rows",
+    "# {1} - total number of rows",
+    "LBL_fetched_of_total_rows={0} of {1}"
 })
 class DataViewUI extends JPanel {
     private static final String IMG_PREFIX = "/org/netbeans/modules/db/dataview/images/"; // NOI18N
@@ -99,6 +104,15 @@ class DataViewUI extends JPanel {
                 }
             };
 
+    // rows of a page are added while it is fetched
+    private final TableModelListener modelListener =
+            new TableModelListener() {
+                @Override
+                public void tableChanged(TableModelEvent e) {
+                    updateFetchedLabel();
+                }
+            };
+
     /** Shared mouse listener used for setting the border painting property
      * of the toolbar buttons and for invoking the popup menu.
      */
@@ -260,6 +274,7 @@ class DataViewUI extends JPanel {
 
         dataPanel.setModel(pageContext.getModel());
         pageContext.addPropertyChangeListener(pageContextListener);
+        pageContext.getModel().addTableModelListener(modelListener);
         updateFetchedLabel();
     }
 
@@ -279,7 +294,14 @@ class DataViewUI extends JPanel {
     final void updateFetchedLabel() {
         assert SwingUtilities.isEventDispatchThread() : "Must be called from AWT thread";  //NOI18N
 
-        fetchedRowsLabel.setText(Integer.toString(pageContext.getModel().getRowCount()));
+        int fetched = pageContext.getModel().getRowCount();
+        long total = pageContext.getTotalRowCount();
+        if (total >= 0) {
+            fetchedRowsLabel.setText(NbBundle.getMessage(DataViewUI.class,
+                    "LBL_fetched_of_total_rows", fetched, total));
+        } else {
+            fetchedRowsLabel.setText(Integer.toString(fetched));
+        }
     }
 
     boolean isCommitEnabled() {
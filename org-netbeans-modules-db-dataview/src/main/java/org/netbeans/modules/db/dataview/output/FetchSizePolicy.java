@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.output;
+
+import java.sql.Types;
+import org.netbeans.api.db.explorer.DatabaseConnection;
+import org.netbeans.modules.db.dataview.meta.DBColumn;
+import org.netbeans.modules.db.dataview.util.DBReadWriteHelper;
+import org.openide.util.NbPreferences;
+
+/**
+ * Chooses the JDBC fetch size of the queries of a data view. A page should be
+ * fetched in as few round trips as possible, but one round trip should not
+ * transfer more than a byte budget, so wide rows (long strings, binary data)
+ * use smaller fetch sizes than narrow ones.
+ *
+ * The width of a row is estimated from the column types when the result set
+ * is opened. The budget is adjusted after each page from the measured fetch
+ * time: slow round trips (remote databases) double it, very fast ones (local
+ * databases) halve it.
+ *
+ * A fixed fetch size can be set per connection in the preferences of this
+ * module, node {@code fetchSize}, key = name of the connection.
+ */
+final class FetchSizePolicy {
+
+    private static final int DEFAULT_FETCH_SIZE = 50;
+    private static final int MIN_FETCH_SIZE = 10;
+    private static final int MAX_FETCH_SIZE = 5000;
+    /**
+     * Oracle allocates buffers for the declared width of each column times
+     * the fetch size before the rows are read.
+     */
+    private static final int MAX_FETCH_SIZE_ORACLE = 1000;
+    private static final int MIN_BUDGET = 256 * 1024;
+    private static final int MAX_BUDGET = 8 * 1024 * 1024;
+    /** Round trips slower than this (ms) enlarge the budget */
+    private static final double SLOW_ROUND_TRIP = 20;
+    /** Round trips faster than this (ms) reduce the budget */
+    private static final double FAST_ROUND_TRIP = 2;
+    /** Width assumed for columns of unknown or unlimited size */
+    private static final int MAX_COLUMN_BYTES = 4000;
+    private static final String PREF_NODE = "fetchSize"; // NOI18N
+
+    /** Fetch size set by the user, 0 if not set */
+    private final int override;
+    private final int maxFetchSize;
+    /** Bytes transferred by one round trip */
+    private int budget = 1024 * 1024;
+    /** Estimated width of a row, 0 if not known yet */
+    private int rowBytes = 0;
+
+    FetchSizePolicy(DatabaseConnection dc) {
+        String driver = dc.getDriverClass();
+        maxFetchSize = driver != null && driver.startsWith("oracle.") // NOI18N
+                ? MAX_FETCH_SIZE_ORACLE : MAX_FETCH_SIZE;
+        int userValue = 0;
+        try {
+            userValue = NbPreferences.forModule(FetchSizePolicy.class)
+                    .node(PREF_NODE).getInt(dc.getName(), 0);
+        } catch (RuntimeException ex) {
+            // no preferences, e.g. outside of the IDE
+        }
+        override = Math.max(0, userValue);
+    }
+
+    /**
+     * Fetch size of a query.
+     *
+     * @param rows Number of rows which are going to be read, 0 if all rows
+     * of the result are read.
+     */
+    synchronized int getFetchSize(int rows) {
+        if (override > 0) {
+            return rows > 0 ? Math.min(override, rows) : override;
+        }
+        int size = rowBytes > 0
+                ? Math.max(MIN_FETCH_SIZE, budget / rowBytes)
+                : DEFAULT_FETCH_SIZE;
+        size = Math.min(size, maxFetchSize);
+        return rows > 0 ? Math.min(size, rows) : size;
+    }
+
+    /**
+     * Estimate the width of rows from the columns of an opened result set.
+     */
+    synchronized void setColumns(DataViewDBTable tableMeta) {
+        int width = 16;
+        for (int i = 0; i < tableMeta.getColumnCount(); i++) {
+            width += getColumnBytes(tableMeta.getColumn(i));
+        }
+        rowBytes = width;
+    }
+
+    /**
+     * Adjust the budget to the time needed to read rows.
+     *
+     * @param rows Number of read rows, including skipped ones
+     * @param fetchSize Fetch size used to read them
+     * @param millis Time spent reading them
+     */
+    synchronized void recordFetch(int rows, int fetchSize, long millis) {
+        if (override > 0 || fetchSize <= 0 || rows <= fetchSize) {
+            return; // single round trip, nothing to gain
+        }
+        double roundTrips = Math.ceil((double) rows / fetchSize);
+        double perRoundTrip = millis / roundTrips;
+        if (perRoundTrip > SLOW_ROUND_TRIP) {
+            budget = Math.min(MAX_BUDGET, budget * 2);
+        } else if (perRoundTrip < FAST_ROUND_TRIP) {
+            budget = Math.max(MIN_BUDGET, budget / 2);
+        }
+    }
+
+    private static int getColumnBytes(DBColumn col) {
+        int precision = col.getPrecision();
+        switch (col.getJdbcType()) {
+            case Types.BOOLEAN:
+            case Types.BIT:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return 4;
+            case Types.BIGINT:
+            case Types.DOUBLE:
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DATE:
+            case Types.TIME:
+                return 8;
+            case Types.TIMESTAMP:
+            case DBReadWriteHelper.SQL_TYPE_ORACLE_TIMESTAMP:
+            case DBReadWriteHelper.SQL_TYPE_ORACLE_TIMESTAMP_WITH_TZ:
+                return 12;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return 22;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                // two bytes per character
+                return precision > 0
+                        ? 2 * Math.min(precision, MAX_COLUMN_BYTES / 2)
+                        : MAX_COLUMN_BYTES;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return precision > 0
+                        ? Math.min(precision, MAX_COLUMN_BYTES)
+                        : MAX_COLUMN_BYTES;
+            case Types.BLOB:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return 100; // locator
+            default:
+                return 32;
+        }
+    }
+}
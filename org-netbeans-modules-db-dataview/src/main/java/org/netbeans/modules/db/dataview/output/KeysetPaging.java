@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.output;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.netbeans.modules.db.dataview.meta.DBColumn;
+import org.netbeans.modules.db.dataview.meta.DBException;
+import org.netbeans.modules.db.dataview.util.DBReadWriteHelper;
+
+/**
+ * Keyset (seek) paging of a query over a single table. Pages are selected by
+ * a condition on the primary key instead of skipping the rows of previous
+ * pages:
+ * <pre>
+ * SELECT ... WHERE (original condition) AND (key &gt; key of last row) ORDER BY key
+ * </pre>
+ * so the cost of fetching a page does not depend on its position. The
+ * previous page and the last page are fetched in descending key order:
+ * <pre>
+ * SELECT ... WHERE (original condition) AND (key &lt; key of first row) ORDER BY key DESC
+ * </pre>
+ * and their rows are reversed after reading.
+ *
+ * Only simple queries are rewritten: a single SELECT from exactly one table
+ * (no joins, no table lists, no subqueries) without ordering, grouping, set
+ * operations, row limits or comments.
+ */
+final class KeysetPaging {
+
+    /** Queries containing these keywords or comments are not rewritten */
+    private static final Pattern UNSUPPORTED = Pattern.compile(
+            "\\b(ORDER|GROUP|HAVING|UNION|INTERSECT|EXCEPT|MINUS|DISTINCT|TOP" // NOI18N
+            + "|FETCH|OFFSET|LIMIT|ROWNUM|FOR|INTO|CONNECT|START|WINDOW|QUALIFY)\\b" // NOI18N
+            + "|--|/\\*|;", Pattern.CASE_INSENSITIVE); // NOI18N
+    private static final Pattern SELECT = Pattern.compile("\\bSELECT\\b", // NOI18N
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b", // NOI18N
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern FROM = Pattern.compile("\\bFROM\\b", // NOI18N
+            Pattern.CASE_INSENSITIVE);
+    /** A single table name with an optional alias */
+    private static final Pattern TABLE_REFERENCE = Pattern.compile(
+            "[\\w$#.\"`\\[\\]]+(\\s+(AS\\s+)?[\\w$#\"`\\[\\]]+)?", // NOI18N
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern JOIN = Pattern.compile(
+            "\\b(JOIN|NATURAL|CROSS|APPLY|LATERAL)\\b", // NOI18N
+            Pattern.CASE_INSENSITIVE);
+
+    private final String sql;
+    /** Position of the WHERE keyword in the query, or -1 */
+    private final int whereIndex;
+    private final DBColumn[] keyColumns;
+    private final int[] keyIndexes;
+    /** Current page */
+    private Page page = new Page(null, false, 0);
+
+    private KeysetPaging(String sql, int whereIndex, DBColumn[] keyColumns,
+            int[] keyIndexes) {
+        this.sql = sql;
+        this.whereIndex = whereIndex;
+        this.keyColumns = keyColumns;
+        this.keyIndexes = keyIndexes;
+    }
+
+    /**
+     * @return Keyset paging of the query, or null if the query cannot be
+     * rewritten or the primary key of its table is not selected.
+     */
+    static KeysetPaging create(String sql, DataViewDBTable tableMeta) {
+        int[] keyIndexes = tableMeta == null ? null
+                : tableMeta.getPrimaryKeyIndexes();
+        if (keyIndexes == null) {
+            return null;
+        }
+        String query = sql.trim();
+        while (query.endsWith(";")) { // NOI18N
+            query = query.substring(0, query.length() - 1).trim();
+        }
+        if (UNSUPPORTED.matcher(query).find()) {
+            return null;
+        }
+        Matcher select = SELECT.matcher(query);
+        if (!select.find() || select.start() != 0 || select.find()) {
+            // not a select or contains subqueries
+            return null;
+        }
+        Matcher where = WHERE.matcher(query);
+        int whereIndex = where.find() ? where.start() : -1;
+        if (!isSingleTable(query, whereIndex)) {
+            return null;
+        }
+        DBColumn[] keyColumns = new DBColumn[keyIndexes.length];
+        for (int k = 0; k < keyIndexes.length; k++) {
+            keyColumns[k] = tableMeta.getColumn(keyIndexes[k]);
+        }
+        return new KeysetPaging(query, whereIndex, keyColumns, keyIndexes);
+    }
+
+    /**
+     * @return True if the FROM clause of the query names exactly one table.
+     */
+    private static boolean isSingleTable(String query, int whereIndex) {
+        int fromIndex = topLevelFrom(query);
+        if (fromIndex < 0 || (whereIndex >= 0 && whereIndex < fromIndex)) {
+            return false;
+        }
+        String tables = query.substring(fromIndex + 4,
+                whereIndex < 0 ? query.length() : whereIndex).trim();
+        return TABLE_REFERENCE.matcher(tables).matches()
+                && !JOIN.matcher(tables).find();
+    }
+
+    /**
+     * @return Position of the first FROM keyword outside of parentheses and
+     * quotes (e.g. not the one of {@code EXTRACT(YEAR FROM d)}), or -1.
+     */
+    private static int topLevelFrom(String query) {
+        Matcher from = FROM.matcher(query);
+        while (from.find()) {
+            int depth = 0;
+            char quote = 0;
+            for (int i = 0; i < from.start(); i++) {
+                char c = query.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '\'' || c == '"' || c == '`') { // NOI18N
+                    quote = c;
+                } else if (c == '(') { // NOI18N
+                    depth++;
+                } else if (c == ')') { // NOI18N
+                    depth--;
+                }
+            }
+            if (depth == 0 && quote == 0) {
+                return from.start();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Move to the next page.
+     *
+     * @param lastRow Last row of the current page.
+     * @return False if the row has no complete key, keyset paging cannot be
+     * used then.
+     */
+    synchronized boolean next(Object[] lastRow) {
+        Object[] key = getKey(lastRow);
+        if (key == null) {
+            return false;
+        }
+        page = new Page(key, false, 0);
+        return true;
+    }
+
+    /**
+     * Move to the previous page.
+     *
+     * @param firstRow First row of the current page.
+     * @return False if the row has no complete key, keyset paging cannot be
+     * used then.
+     */
+    synchronized boolean previous(Object[] firstRow) {
+        Object[] key = getKey(firstRow);
+        if (key == null) {
+            return false;
+        }
+        page = new Page(key, true, 0);
+        return true;
+    }
+
+    synchronized void first() {
+        page = new Page(null, false, 0);
+    }
+
+    /**
+     * Move to the last page.
+     *
+     * @param rowCount Number of rows of the last page.
+     */
+    synchronized void last(int rowCount) {
+        page = new Page(null, true, rowCount);
+    }
+
+    synchronized Page getPage() {
+        return page;
+    }
+
+    private Object[] getKey(Object[] row) {
+        Object[] key = new Object[keyIndexes.length];
+        for (int k = 0; k < keyIndexes.length; k++) {
+            key[k] = row[keyIndexes[k]];
+            if (key[k] == null) {
+                return null;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Get the query of a page.
+     *
+     * @param page Result of {@link #getPage()}.
+     */
+    String getSQL(Page page) {
+        StringBuilder result = new StringBuilder(sql.length() + 100);
+        String op = page.descending ? " < ?)" : " > ?)"; // NOI18N
+        if (page.key == null) {
+            result.append(sql);
+        } else {
+            if (whereIndex < 0) {
+                result.append(sql).append(" WHERE "); // NOI18N
+            } else {
+                result.append(sql, 0, whereIndex).append("WHERE ("); // NOI18N
+                result.append(sql, whereIndex + 5, sql.length()).append(") AND "); // NOI18N
+            }
+            // (k1 > ?) OR (k1 = ? AND k2 > ?) OR ..., < for descending pages
+            result.append('(');
+            for (int k = 0; k < keyColumns.length; k++) {
+                if (k > 0) {
+                    result.append(" OR "); // NOI18N
+                }
+                result.append('(');
+                for (int j = 0; j < k; j++) {
+                    result.append(keyColumns[j].getQualifiedName(true)).append(" = ? AND "); // NOI18N
+                }
+                result.append(keyColumns[k].getQualifiedName(true)).append(op);
+            }
+            result.append(')');
+        }
+        result.append(" ORDER BY "); // NOI18N
+        for (int k = 0; k < keyColumns.length; k++) {
+            if (k > 0) {
+                result.append(", "); // NOI18N
+            }
+            result.append(keyColumns[k].getQualifiedName(true));
+            if (page.descending) {
+                result.append(" DESC"); // NOI18N
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Set parameters of the query returned by {@link #getSQL(Page)}.
+     */
+    void bind(PreparedStatement stmt, Page page) throws SQLException {
+        if (page.key == null) {
+            return;
+        }
+        try {
+            int pos = 1;
+            for (int k = 0; k < keyColumns.length; k++) {
+                for (int j = 0; j <= k; j++) {
+                    DBReadWriteHelper.setAttributeValue(stmt, pos++,
+                            keyColumns[j].getJdbcType(), page.key[j]);
+                }
+            }
+        } catch (DBException ex) {
+            throw new SQLException(ex);
+        }
+    }
+
+    /**
+     * Position of a page, immutable.
+     */
+    static final class Page {
+
+        /** Key next to the page, or null for the first or last page */
+        private final Object[] key;
+        private final boolean descending;
+        private final int rowCount;
+
+        private Page(Object[] key, boolean descending, int rowCount) {
+            this.key = key;
+            this.descending = descending;
+            this.rowCount = rowCount;
+        }
+
+        /**
+         * @return True if rows of the page are fetched in descending key
+         * order and have to be reversed.
+         */
+        boolean isDescending() {
+            return descending;
+        }
+
+        /**
+         * @return Number of rows of the page.
+         */
+        int getRowCount(int pageSize) {
+            return rowCount > 0 ? rowCount : pageSize;
+        }
+    }
+}
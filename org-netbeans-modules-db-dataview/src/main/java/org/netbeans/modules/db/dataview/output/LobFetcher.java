@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.output;
+
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.Callable;
+import org.netbeans.modules.db.dataview.meta.DBColumn;
+import org.netbeans.modules.db.dataview.meta.DBConnectionFactory;
+import org.netbeans.modules.db.dataview.meta.DBException;
+import org.netbeans.modules.db.dataview.meta.DBTable;
+import org.netbeans.modules.db.dataview.util.DBReadWriteHelper;
+import org.netbeans.modules.db.dataview.util.DataViewUtils;
+import org.netbeans.modules.db.dataview.util.DeferredBlob;
+import org.netbeans.modules.db.dataview.util.DeferredClob;
+import org.openide.util.NbBundle;
+
+/**
+ * Reads BLOB and CLOB columns of a page as deferred values. Only the length
+ * (and the beginning of CLOBs) is read with the page, the content is fetched
+ * by the primary key of the row when it is needed.
+ *
+ * Deferring is only possible if the result set contains columns of a single
+ * table, including all primary key columns.
+ */
+final class LobFetcher {
+
+    /** Number of CLOB characters read with the page */
+    private static final int PREVIEW_LENGTH = 255;
+
+    private final DataView dataView;
+    private final DBTable table;
+    private final DBColumn[] keyColumns;
+    /** Indexes of primary key columns in the rows */
+    private final int[] keyIndexes;
+
+    private LobFetcher(DataView dataView, DBTable table, DBColumn[] keyColumns,
+            int[] keyIndexes) {
+        this.dataView = dataView;
+        this.table = table;
+        this.keyColumns = keyColumns;
+        this.keyIndexes = keyIndexes;
+    }
+
+    /**
+     * @return Fetcher for the page, or null if LOB columns of the page cannot
+     * be deferred.
+     */
+    static LobFetcher create(DataView dataView, DataViewDBTable tableMeta) {
+        int[] keyIndexes = tableMeta == null ? null
+                : tableMeta.getPrimaryKeyIndexes();
+        if (keyIndexes == null) {
+            return null;
+        }
+        DBColumn[] keyColumns = new DBColumn[keyIndexes.length];
+        for (int k = 0; k < keyIndexes.length; k++) {
+            keyColumns[k] = tableMeta.getColumn(keyIndexes[k]);
+        }
+        return new LobFetcher(dataView, tableMeta.getFirstRealTable(),
+                keyColumns, keyIndexes);
+    }
+
+    /**
+     * Only LOB locator types are deferred, reading their length does not
+     * transfer the content.
+     */
+    boolean isDeferred(DBColumn col) {
+        if (col.getParentObject() != table) {
+            return false;
+        }
+        switch (col.getJdbcType()) {
+            case Types.BLOB:
+            case Types.CLOB:
+            case Types.NCLOB:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read a deferred value of the current row.
+     *
+     * @param row Row being read. Primary key values are taken from it when
+     * the content is fetched, so they can be read after the LOB column.
+     */
+    Object read(ResultSet rs, DBColumn col, int index, Object[] row)
+            throws SQLException {
+        if (col.getJdbcType() == Types.BLOB) {
+            Blob blob = rs.getBlob(index);
+            if (blob == null || rs.wasNull()) {
+                return null;
+            }
+            long length = blob.length();
+            free(blob);
+            return new DeferredBlob(length, new Fetch<Blob>(col, row));
+        } else {
+            Clob clob = rs.getClob(index);
+            if (clob == null || rs.wasNull()) {
+                return null;
+            }
+            long length = clob.length();
+            String preview = clob.getSubString(1,
+                    (int) Math.min(length, PREVIEW_LENGTH));
+            free(clob);
+            return new DeferredClob(length, preview, new Fetch<Clob>(col, row));
+        }
+    }
+
+    private static void free(Blob blob) {
+        try {
+            blob.free();
+        } catch (AbstractMethodError | SQLException ex) {
+            // not supported by the driver, the locator is released with the
+            // result set
+        }
+    }
+
+    private static void free(Clob clob) {
+        try {
+            clob.free();
+        } catch (AbstractMethodError | SQLException ex) {
+            // not supported by the driver, the locator is released with the
+            // result set
+        }
+    }
+
+    /**
+     * Fetch content of one value by the primary key of its row.
+     */
+    private final class Fetch<T> implements Callable<T> {
+
+        private final DBColumn column;
+        private final Object[] row;
+
+        Fetch(DBColumn column, Object[] row) {
+            this.column = column;
+            this.row = row;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T call() throws SQLException, DBException {
+            StringBuilder sql = new StringBuilder("SELECT "); // NOI18N
+            sql.append(column.getQualifiedName(true));
+            sql.append(" FROM ").append(table.getFullyQualifiedName(true)); // NOI18N
+            sql.append(" WHERE "); // NOI18N
+            for (int k = 0; k < keyColumns.length; k++) {
+                if (k > 0) {
+                    sql.append(" AND "); // NOI18N
+                }
+                sql.append(keyColumns[k].getQualifiedName(true));
+                sql.append(row[keyIndexes[k]] == null ? " IS NULL" : " = ?"); // NOI18N
+            }
+            Connection conn = DBConnectionFactory.getInstance().getConnection(
+                    dataView.getDatabaseConnection());
+            if (conn == null) {
+                Throwable t = DBConnectionFactory.getInstance().getLastException();
+                throw t != null ? new SQLException(t.getMessage(), t)
+                        : new SQLException(NbBundle.getMessage(SQLExecutionHelper.class,
+                                "MSG_connection_failure", // NOI18N
+                                dataView.getDatabaseConnection()));
+            }
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+            try {
+                stmt = conn.prepareStatement(sql.toString());
+                int pos = 1;
+                for (int k = 0; k < keyColumns.length; k++) {
+                    if (row[keyIndexes[k]] != null) {
+                        DBReadWriteHelper.setAttributeValue(stmt, pos++,
+                                keyColumns[k].getJdbcType(), row[keyIndexes[k]]);
+                    }
+                }
+                rs = stmt.executeQuery();
+                if (!rs.next()) {
+                    throw new SQLException("Row of the value does not exist anymore: " // NOI18N
+                            + table.getDisplayName());
+                }
+                return (T) DBReadWriteHelper.readResultSet(rs, column, 1,
+                        dataView.getLobStorage());
+            } finally {
+                DataViewUtils.closeResources(rs);
+                DataViewUtils.closeResources(stmt);
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.output;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.prefs.Preferences;
+import java.util.regex.Pattern;
+import org.netbeans.api.db.explorer.DatabaseConnection;
+import org.netbeans.modules.db.dataview.util.DataViewUtils;
+import org.netbeans.modules.db.explorer.ConnectionPool;
+import org.netbeans.modules.db.explorer.DatabaseConnectionAccessor;
+import org.netbeans.modules.db.explorer.DbDriverManager;
+import org.openide.util.Cancellable;
+import org.openide.util.NbPreferences;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Counts the rows of a query in the background:
+ * <pre>
+ * SELECT COUNT(*) FROM (query) cnt
+ * </pre>
+ * The count runs on a connection of the {@link ConnectionPool} of the database
+ * connection (or on a connection of its own if there is no pool), so it does
+ * not block fetching of the first page on the connection of the data view.
+ * It is limited by a query timeout and can be cancelled. Results are cached
+ * per connection and SQL text for {@link #TTL} ms, so opening the same query
+ * again shows the total immediately. Other sessions may change the table in
+ * the meantime, so the count is only an estimate.
+ *
+ * If the count fails (the driver cannot open a second connection, the
+ * database rejects the derived table, the timeout elapses...), the total
+ * just stays unknown.
+ *
+ * Counting runs the whole query a second time, so it is off by default. It
+ * is switched on for all connections by the key {@code countRows} in the
+ * preferences of this module, or per connection in node {@code countRows},
+ * key = name of the connection. Only plain single SELECT statements are
+ * counted.
+ */
+final class RowCounter implements Runnable, Cancellable {
+
+    private static final Logger LOGGER = Logger.getLogger(RowCounter.class.getName());
+    private static final RequestProcessor RP = new RequestProcessor(
+            RowCounter.class.getName(), 2, true);
+    /** Query timeout of the count, in seconds */
+    private static final int TIMEOUT = 30;
+    /** Maximum wait for a free connection of the pool, in ms */
+    private static final long POOL_TIMEOUT = 5 * 1000;
+    private static final int CACHE_SIZE = 100;
+    /** Time to live of a cached count, in ms */
+    private static final long TTL = 60 * 1000;
+    private static final String PREF_COUNT_ROWS = "countRows"; // NOI18N
+    private static final Pattern SELECT = Pattern.compile("^SELECT\\b", // NOI18N
+            Pattern.CASE_INSENSITIVE);
+    /** Queries containing these keywords or comments are not counted */
+    private static final Pattern UNSUPPORTED = Pattern.compile(
+            "\\b(UNION|INTERSECT|EXCEPT|MINUS|INTO|FOR\\s+UPDATE)\\b" // NOI18N
+            + "|--|/\\*|;", Pattern.CASE_INSENSITIVE); // NOI18N
+    /**
+     * Counts and the times they were counted by connection and SQL text, the
+     * least recently used is dropped
+     */
+    private static final Map<String, long[]> CACHE = new LinkedHashMap<String, long[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private final DatabaseConnection dc;
+    private final Connection conn;
+    private final String key;
+    private final String countSql;
+    private RequestProcessor.Task task;
+    private volatile Statement stmt;
+    private volatile boolean cancelled = false;
+    /** Counted rows, or -1 if not known (yet) */
+    private long count = -1;
+    /** Page context receiving the count */
+    private DataViewPageContext target;
+
+    private RowCounter(DatabaseConnection dc, Connection conn, String key,
+            String countSql) {
+        this.dc = dc;
+        this.conn = conn;
+        this.key = key;
+        this.countSql = countSql;
+    }
+
+    /**
+     * Start counting rows of the query. A cached count is used if there is
+     * one.
+     *
+     * @param dc Connection of the data view
+     * @param conn JDBC connection of the data view, used to find its driver
+     * @param sql SELECT statement of the data view
+     * @return The counter, or null if counting is switched off or the query
+     * cannot be counted.
+     */
+    static RowCounter start(DatabaseConnection dc, Connection conn, String sql) {
+        if (!isEnabled(dc)) {
+            return null;
+        }
+        String query = sql.trim();
+        while (query.endsWith(";")) { // NOI18N
+            query = query.substring(0, query.length() - 1).trim();
+        }
+        if (!SELECT.matcher(query).find() || UNSUPPORTED.matcher(query).find()) {
+            // not a plain single select
+            return null;
+        }
+        String key = getKey(dc, sql);
+        RowCounter counter = new RowCounter(dc, conn, key,
+                "SELECT COUNT(*) FROM (" + query + "\n) cnt"); // NOI18N
+        long[] cached;
+        synchronized (CACHE) {
+            cached = CACHE.get(key);
+            if (cached != null && System.currentTimeMillis() - cached[1] > TTL) {
+                CACHE.remove(key);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            counter.count = cached[0];
+        } else {
+            counter.task = RP.post(counter);
+        }
+        return counter;
+    }
+
+    /**
+     * Forget the cached count of the query, e.g. after rows were inserted or
+     * deleted.
+     */
+    static void invalidate(DatabaseConnection dc, String sql) {
+        synchronized (CACHE) {
+            CACHE.remove(getKey(dc, sql));
+        }
+    }
+
+    /**
+     * @return True if the rows of queries of the connection are counted.
+     */
+    private static boolean isEnabled(DatabaseConnection dc) {
+        try {
+            Preferences prefs = NbPreferences.forModule(RowCounter.class);
+            return prefs.node(PREF_COUNT_ROWS).getBoolean(dc.getName(),
+                    prefs.getBoolean(PREF_COUNT_ROWS, false));
+        } catch (RuntimeException ex) {
+            // no preferences, e.g. outside of the IDE
+            return false;
+        }
+    }
+
+    private static String getKey(DatabaseConnection dc, String sql) {
+        return dc.getDatabaseURL() + '\n' + dc.getUser() + '\n' + sql;
+    }
+
+    /**
+     * Set the total row count of the page context when the count is known.
+     */
+    synchronized void attach(DataViewPageContext pageContext) {
+        target = pageContext;
+        if (count >= 0) {
+            pageContext.setTotalRowCount(count);
+        }
+    }
+
+    @Override
+    public void run() {
+        if (cancelled) {
+            return;
+        }
+        long result = -1;
+        ConnectionPool pool = DatabaseConnectionAccessor.DEFAULT.getDelegate(dc).getConnectionPool();
+        Connection countConn = null;
+        ResultSet rs = null;
+        try {
+            countConn = pool != null
+                    ? pool.acquire(ConnectionPool.Lane.USER, POOL_TIMEOUT)
+                    : openConnection();
+            stmt = countConn.createStatement();
+            try {
+                stmt.setQueryTimeout(TIMEOUT);
+            } catch (SQLException ex) {
+                LOGGER.log(Level.FINE, "Query timeout not supported", ex); // NOI18N
+            }
+            if (!cancelled) {
+                rs = stmt.executeQuery(countSql);
+                if (rs.next()) {
+                    result = rs.getLong(1);
+                }
+            }
+        } catch (SQLException | RuntimeException ex) {
+            // IllegalArgumentException if the driver of the view is not known
+            LOGGER.log(Level.FINE, "Failed to count rows: " + countSql, ex); // NOI18N
+        } finally {
+            DataViewUtils.closeResources(rs);
+            DataViewUtils.closeResources(stmt);
+            stmt = null;
+            if (countConn != null && pool != null) {
+                pool.release(countConn);
+            } else if (countConn != null) {
+                try {
+                    countConn.close();
+                } catch (SQLException ex) {
+                    LOGGER.log(Level.FINE, null, ex);
+                }
+            }
+        }
+        if (result >= 0 && !cancelled) {
+            synchronized (CACHE) {
+                CACHE.put(key, new long[]{result, System.currentTimeMillis()});
+            }
+            synchronized (this) {
+                count = result;
+                if (target != null) {
+                    target.setTotalRowCount(result);
+                }
+            }
+        }
+    }
+
+    private Connection openConnection() throws SQLException {
+        Properties props = dc.getConnectionProperties();
+        if (props == null) {
+            props = new Properties();
+        }
+        String user = dc.getUser();
+        String password = dc.getPassword();
+        if (user != null && user.length() > 0) {
+            props.put("user", user); // NOI18N
+        }
+        if (password != null && password.length() > 0) {
+            props.put("password", password); // NOI18N
+        }
+        return DbDriverManager.getDefault().getSameDriverConnection(
+                conn, dc.getDatabaseURL(), props);
+    }
+
+    @Override
+    public boolean cancel() {
+        cancelled = true;
+        if (task != null) {
+            task.cancel();
+        }
+        Statement s = stmt;
+        if (s != null) {
+            try {
+                s.cancel();
+            } catch (SQLException sqlEx) {
+                LOGGER.log(Level.FINE, null, sqlEx);
+                // Ok! The DBMS might not support Statement-Canceling
+            }
+        }
+        return true;
+    }
+}
@@ -28,6 +28,7 @@ import java.sql.Statement;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -41,10 +42,12 @@ import org.netbeans.api.db.explorer.DatabaseConnection;
 import org.netbeans.modules.db.dataview.meta.DBColumn;
 import org.netbeans.modules.db.dataview.meta.DBConnectionFactory;
 import org.netbeans.modules.db.dataview.meta.DBException;
+import org.netbeans.modules.db.dataview.meta.DBMetaDataCache;
 import org.netbeans.modules.db.dataview.meta.DBMetaDataFactory;
 import org.netbeans.modules.db.dataview.meta.DBTable;
 import org.netbeans.modules.db.dataview.util.DBReadWriteHelper;
 import org.netbeans.modules.db.dataview.util.DataViewUtils;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshotManager;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 import org.openide.util.Cancellable;
@@ -67,13 +70,19 @@ class SQLExecutionHelper {
     private static final String LIMIT_CLAUSE = "LIMIT ";               // NOI18N
     public static final String OFFSET_CLAUSE = "OFFSET ";              // NOI18N
     private static Pattern GROUP_BY_IN_SELECT = null;
+    private static final Pattern DDL = Pattern.compile(
+            "\\b(CREATE|ALTER|DROP|RENAME)\\b", Pattern.CASE_INSENSITIVE); // NOI18N
     private boolean limitSupported = false;
     private boolean useScrollableCursors = false;
     private int resultSetScrollType = ResultSet.TYPE_FORWARD_ONLY;
     private boolean supportesMultipleResultSets = false;
+    // background count of the rows of the query, if any
+    private volatile RowCounter rowCounter = null;
+    private final FetchSizePolicy fetchSizePolicy;
 
     SQLExecutionHelper(DataView dataView) {
         this.dataView = dataView;
+        this.fetchSizePolicy = new FetchSizePolicy(dataView.getDatabaseConnection());
     }
 
     void initialDataLoad() {
@@ -104,16 +113,27 @@ class SQLExecutionHelper {
                     conn = DBConnectionFactory.getInstance().getConnection(dc);
                     checkNonNullConnection(conn);
                     checkSupportForMultipleResultSets(conn);
-                    DBMetaDataFactory dbMeta = new DBMetaDataFactory(conn);
+                    DBMetaDataFactory dbMeta = new DBMetaDataFactory(conn,
+                            DBMetaDataCache.forConnection(dc),
+                            MetadataSnapshotManager.get(dc));
                     limitSupported = dbMeta.supportsLimit();
                     String sql = dataView.getSQLString();
                     boolean isSelect = isSelectStatement(sql);
+                    if (!isSelect && DDL.matcher(sql).find()) {
+                        // tables may change, metadata is read again
+                        DBMetaDataCache.invalidate(dc);
+                        MetadataSnapshotManager.invalidate(dc);
+                    }
 
                     updateScrollableSupport(conn, dc, sql);
 
                     if (Thread.interrupted()) {
                         throw new InterruptedException();
                     }
+
+                    if (isSelect) {
+                        startRowCount(dc, conn, sql);
+                    }
                     
                     stmt = prepareSQLStatement(conn, sql);
 
@@ -133,6 +153,7 @@ class SQLExecutionHelper {
                     }
 
                     ResultSet rs;
+                    List<Object[]> firstPage = null;
 
                     while (true) {
                         if (isResultSet) {
@@ -142,7 +163,10 @@ class SQLExecutionHelper {
                             DataViewDBTable dvTable = new DataViewDBTable(tables);
                             DataViewPageContext pageContext = dataView.addPageContext(dvTable);
 
-                            loadDataFrom(pageContext, rs);
+                            List<Object[]> rows = loadDataFrom(pageContext, rs);
+                            if (firstPage == null) {
+                                firstPage = rows;
+                            }
 
                             DataViewUtils.closeResources(rs);
 
@@ -162,7 +186,15 @@ class SQLExecutionHelper {
                             break;
                         }
                     }
+
+                    if (isSelect && dataView.getPageContexts().size() == 1) {
+                        initKeysetPaging(dataView.getPageContext(0), firstPage);
+                        attachRowCount(dataView.getPageContext(0));
+                    } else {
+                        cancelRowCount();
+                    }
                 } catch (final SQLException | RuntimeException sqlEx) {
+                    cancelRowCount();
                     try {
                         SwingUtilities.invokeAndWait(new Runnable() {
                             @Override
@@ -175,6 +207,7 @@ class SQLExecutionHelper {
                         // Ok - we were denied access to Swing EDT
                     }
                 } catch (InterruptedException ex) {
+                    cancelRowCount();
                     // Expected when interrupted while waiting to get enter to
                     // the swing EDT
                 } finally {
@@ -189,6 +222,7 @@ class SQLExecutionHelper {
 
             @Override
             public boolean cancel() {
+                cancelRowCount();
                 if (stmt != null) {
                     try {
                         stmt.cancel();
@@ -208,6 +242,34 @@ class SQLExecutionHelper {
                 return true;
             }
 
+            /**
+             * Use keyset paging if the query allows it. The primary key is
+             * only known after the first page has been read, so the first
+             * page is fetched again in key order if it is not the only page.
+             * Rows which happen to be ascending are not enough, rows with
+             * smaller keys may follow them.
+             */
+            private void initKeysetPaging(DataViewPageContext pageContext,
+                    List<Object[]> firstPage) throws SQLException, InterruptedException {
+                KeysetPaging keyset = KeysetPaging.create(dataView.getSQLString(),
+                        pageContext.getTableMetaData());
+                int pageSize = pageContext.getPageSize();
+                if (keyset == null || pageSize <= 0) {
+                    return;
+                }
+                pageContext.setKeysetPaging(keyset);
+                if (firstPage != null && firstPage.size() >= pageSize) {
+                    DataViewUtils.closeResources(stmt);
+                    KeysetPaging.Page page = keyset.getPage();
+                    stmt = prepareKeysetStatement(conn, keyset, page, pageSize);
+                    if (executeSQLStatementForExtraction(stmt, keyset.getSQL(page))) {
+                        ResultSet rs = stmt.getResultSet();
+                        loadDataFrom(pageContext, rs);
+                        DataViewUtils.closeResources(rs);
+                    }
+                }
+            }
+
             /**
              * Check that the connection is not null. If it is null, try to find
              * cause of the failure and throw an exception.
@@ -289,29 +351,39 @@ class SQLExecutionHelper {
             Connection conn = dataView.getDatabaseConnection().getJDBCConnection();
             List<DBColumn> columns = table.getColumnList();
 
+            List<StatementBatch.RowStatement> rows = new ArrayList<>();
             for (int j = 0; j < insertSQLs.length; j++) {
-                try (PreparedStatement pstmt = conn.prepareStatement(insertSQLs[j])) {
-                    int pos = 1;
-                    for (int i = 0; i < insertedRows[j].length; i++) {
-                        Object val = insertedRows[j][i];
-
-                        // Check for Constant e.g <NULL>, <DEFAULT>, <CURRENT_TIMESTAMP> etc
-                        if (DataViewUtils.isSQLConstantString(val, columns.get(i))) {
-                            continue;
-                        }
-
-                        // literals
-                        int colType = columns.get(i).getJdbcType();
-                        DBReadWriteHelper.setAttributeValue(pstmt, pos++, colType, val);
+                StatementBatch.RowStatement row = new StatementBatch.RowStatement();
+                row.sql = insertSQLs[j];
+                for (int i = 0; i < insertedRows[j].length; i++) {
+                    Object val = insertedRows[j][i];
+
+                    // Check for Constant e.g <NULL>, <DEFAULT>, <CURRENT_TIMESTAMP> etc
+                    if (DataViewUtils.isSQLConstantString(val, columns.get(i))) {
+                        continue;
                     }
 
-                    int rows = pstmt.executeUpdate();
+                    // literals
+                    row.values.add(val);
+                    row.types.add(columns.get(i).getJdbcType());
+                }
+                rows.add(row);
+            }
 
-                    if (rows != 1) {
-                        throw new SQLException("MSG_failure_insert_rows");
-                    }
-                    done++;
+            StatementBatch batch = new StatementBatch(conn, false);
+            int[] counts;
+            try {
+                counts = batch.execute(rows);
+            } catch (SQLException ex) {
+                // rows before the failed one are inserted
+                done = batch.getExecutedCount();
+                throw ex;
+            }
+            for (int count : counts) {
+                if (count != 1) {
+                    throw new SQLException("MSG_failure_insert_rows");
                 }
+                done++;
             }
         } catch (DBException | SQLException ex) {
             LOGGER.log(Level.INFO, ex.getLocalizedMessage(), ex);
@@ -340,6 +412,9 @@ class SQLExecutionHelper {
             needRequery = true;
         }
         
+        if (done > 0) {
+            recountRows();
+        }
         if (needRequery) {
             SQLExecutionHelper.this.executeQuery();
         } else {
@@ -362,16 +437,10 @@ class SQLExecutionHelper {
         SQLStatementGenerator generator = dataView.getSQLStatementGenerator();
         String title = NbBundle.getMessage(SQLExecutionHelper.class, "LBL_sql_delete");
 
-        class DeleteElement {
-            public List<Object> values = new ArrayList<>();
-            public List<Integer> types = new ArrayList<>();
-            public String sql;
-        }
-
-        final List<DeleteElement> rows = new ArrayList<>();
+        final List<StatementBatch.RowStatement> rows = new ArrayList<>();
         for(int viewRow: rsTable.getSelectedRows()) {
             int modelRow = rsTable.convertRowIndexToModel(viewRow);
-            DeleteElement de = new DeleteElement();
+            StatementBatch.RowStatement de = new StatementBatch.RowStatement();
             de.sql = generator.generateDeleteStatement(table, de.types, de.values, modelRow, rsTable.getModel());
             rows.add(de);
         }
@@ -380,33 +449,19 @@ class SQLExecutionHelper {
             @Override
             public void execute() throws SQLException, DBException {
                 dataView.setEditable(false);
-                for (DeleteElement de: rows) {
-                    if (Thread.currentThread().isInterrupted() || error) {
-                        break;
-                    }
-                    deleteARow(de);
-                }
-            }
-
-            private void deleteARow(DeleteElement deleteRow) throws SQLException, DBException {
-                PreparedStatement pstmt = conn.prepareStatement(deleteRow.sql);
-                try {
-                    int pos = 1;
-                    for (Object val : deleteRow.values) {
-                        DBReadWriteHelper.setAttributeValue(pstmt, pos, deleteRow.types.get(pos - 1), val);
-                        pos++;
-                    }
-
-                    int rows = executePreparedStatement(pstmt);
-                    if (rows == 0) {
+                long startTime = System.currentTimeMillis();
+                int[] counts = new StatementBatch(conn, true).execute(rows);
+                setExecutionSuccessStatus(startTime);
+                for (int count : counts) {
+                    if (count == 0) {
                         error = true;
                         errorMsg += NbBundle.getMessage(SQLExecutionHelper.class, "MSG_no_match_to_delete");
-                    } else if (rows > 1) {
+                        break;
+                    } else if (count > 1) {
                         error = true;
                         errorMsg += NbBundle.getMessage(SQLExecutionHelper.class, "MSG_no_unique_row_for_match");
+                        break;
                     }
-                } finally {
-                    DataViewUtils.closeResources(pstmt);
                 }
             }
 
@@ -418,6 +473,7 @@ class SQLExecutionHelper {
 
             @Override
             protected void executeOnSuccess() {
+                recountRows();
                 SQLExecutionHelper.this.executeQuery();
             }
         };
@@ -434,10 +490,7 @@ class SQLExecutionHelper {
         final DataViewTableUIModel dataViewTableUIModel = rsTable.getModel();
         String title = NbBundle.getMessage(SQLExecutionHelper.class, "LBL_sql_update");
 
-        class UpdateElement {
-            public List<Object> values = new ArrayList<>();
-            public List<Integer> types = new ArrayList<>();
-            public String sql;
+        class UpdateElement extends StatementBatch.RowStatement {
             public Integer key;
         }
 
@@ -467,39 +520,22 @@ class SQLExecutionHelper {
 
         SQLStatementExecutor executor = new SQLStatementExecutor(dataView, title, "", true) {
 
-            private PreparedStatement pstmt;
             private final Set<Integer> keysToRemove = new HashSet<>();
 
             @Override
             public void execute() throws SQLException, DBException {
-                for (UpdateElement ue : updateSet) {
-                    if(Thread.interrupted()) {
-                        break;
-                    }
-                    updateARow(ue);
-                    keysToRemove.add(ue.key);
-                }
-            }
-
-            private void updateARow(UpdateElement ue) throws SQLException, DBException {
-                pstmt = conn.prepareStatement(ue.sql);
-                int pos = 1;
-                for (Object val : ue.values) {
-                    DBReadWriteHelper.setAttributeValue(pstmt, pos, ue.types.get(pos - 1), val);
-                    pos++;
-                }
-
-                try {
-                    int rows = executePreparedStatement(pstmt);
-                    if (rows == 0) {
+                long startTime = System.currentTimeMillis();
+                int[] counts = new StatementBatch(conn, true).execute(updateSet);
+                setExecutionSuccessStatus(startTime);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
                         error = true;
                         errorMsg += NbBundle.getMessage(SQLExecutionHelper.class, "MSG_no_match_to_update");
-                    } else if (rows > 1) {
+                    } else if (counts[i] > 1) {
                         error = true;
                         errorMsg += NbBundle.getMessage(SQLExecutionHelper.class, "MSG_no_unique_row_for_match");
                     }
-                } finally {
-                    DataViewUtils.closeResources(pstmt);
+                    keysToRemove.add(updateSet.get(i).key);
                 }
             }
 
@@ -562,6 +598,7 @@ class SQLExecutionHelper {
             @Override
             protected void executeOnSuccess() {
                 pageContext.first();
+                recountRows();
                 SQLExecutionHelper.this.executeQuery();
             }
         };
@@ -571,6 +608,46 @@ class SQLExecutionHelper {
         task.schedule(0);
     }
 
+    /**
+     * Count rows of the query in the background, replacing a running count.
+     */
+    private void startRowCount(DatabaseConnection dc, Connection conn, String sql) {
+        cancelRowCount();
+        rowCounter = RowCounter.start(dc, conn, sql);
+    }
+
+    private void attachRowCount(DataViewPageContext pageContext) {
+        RowCounter counter = rowCounter;
+        if (counter != null) {
+            counter.attach(pageContext);
+        }
+    }
+
+    void cancelRowCount() {
+        RowCounter counter = rowCounter;
+        rowCounter = null;
+        if (counter != null) {
+            counter.cancel();
+        }
+    }
+
+    /**
+     * Count rows of the query again, ignoring the cached count. Does nothing
+     * if the rows of the query are not counted.
+     */
+    void recountRows() {
+        if (rowCounter == null) {
+            return;
+        }
+        DatabaseConnection dc = dataView.getDatabaseConnection();
+        String sql = dataView.getSQLString();
+        RowCounter.invalidate(dc, sql);
+        DataViewPageContext pageContext = dataView.getPageContext(0);
+        pageContext.setTotalRowCount(-1);
+        startRowCount(dc, dc.getJDBCConnection(), sql);
+        attachRowCount(pageContext);
+    }
+
     void executeQueryOffEDT() {
         rp.post(new Runnable() {
             @Override
@@ -598,7 +675,19 @@ class SQLExecutionHelper {
                     return;
                 }
 
-                stmt = prepareSQLStatement(conn, sql);
+                List<DataViewPageContext> pageContexts = dataView.getPageContexts();
+                KeysetPaging keyset = pageContexts.size() == 1
+                        ? pageContexts.get(0).getKeysetPaging() : null;
+                boolean descending = false;
+                if (keyset != null) {
+                    KeysetPaging.Page page = keyset.getPage();
+                    sql = keyset.getSQL(page);
+                    descending = page.isDescending();
+                    stmt = prepareKeysetStatement(conn, keyset, page,
+                            pageContexts.get(0).getPageSize());
+                } else {
+                    stmt = prepareSQLStatement(conn, sql);
+                }
 
                 // Execute the query and retrieve all resultsets
                 try {
@@ -620,7 +709,7 @@ class SQLExecutionHelper {
                             res++;
                             DataViewPageContext pageContext = dataView.getPageContext(res);
                             rs = stmt.getResultSet();
-                            loadDataFrom(pageContext, rs);
+                            loadDataFrom(pageContext, rs, descending);
                             DataViewUtils.closeResources(rs);
                         } else {
                             synchronized (dataView) {
@@ -681,14 +770,32 @@ class SQLExecutionHelper {
         task.schedule(0);
     }
 
-    private void loadDataFrom(final DataViewPageContext pageContext, ResultSet rs) throws SQLException, InterruptedException {
+    /**
+     * Read the current page of the result set into the page context.
+     *
+     * @return Rows of the page.
+     */
+    private List<Object[]> loadDataFrom(final DataViewPageContext pageContext, ResultSet rs) throws SQLException, InterruptedException {
+        return loadDataFrom(pageContext, rs, false);
+    }
+
+    /**
+     * Read the current page of the result set into the page context.
+     *
+     * @param reversed True if the rows are read in reverse order, they are
+     * shown after the whole page has been read then.
+     * @return Rows of the page.
+     */
+    private List<Object[]> loadDataFrom(final DataViewPageContext pageContext, ResultSet rs, boolean reversed) throws SQLException, InterruptedException {
         if (rs == null) {
-            return;
+            return null;
         }
 
         int pageSize = pageContext.getPageSize();
         int startFrom;
-        if (useScrollableCursors ) {
+        if (pageContext.getKeysetPaging() != null) {
+            startFrom = 0; // page selected by the query
+        } else if (useScrollableCursors ) {
             startFrom = pageContext.getCurrentPos(); // will use rs.absolute
         } else if (!limitSupported || isLimitUsedInSelect(dataView.getSQLString())) {
             startFrom = pageContext.getCurrentPos(); // need to use slow skip
@@ -696,8 +803,21 @@ class SQLExecutionHelper {
             startFrom = 0; // limit added to select, can start from first item
         }
 
+        // the width of the rows is known now, applies to rows which have not
+        // been fetched yet
+        fetchSizePolicy.setColumns(pageContext.getTableMetaData());
+        int fetchSize = fetchSizePolicy.getFetchSize(pageSize > 0 ? startFrom + pageSize : 0);
+        try {
+            rs.setFetchSize(fetchSize);
+        } catch (SQLException ex) {
+            LOGGER.log(Level.FINE, "Unable to set Fetch size", ex); // NOI18N
+        }
+
         final List<Object[]> rows = new ArrayList<>();
+        PageStream stream = new PageStream(pageContext);
         int colCnt = pageContext.getTableMetaData().getColumnCount();
+        LobFetcher lobFetcher = LobFetcher.create(dataView,
+                pageContext.getTableMetaData());
         int curRowPos = 0;
         try {
             long start = System.currentTimeMillis();
@@ -738,10 +858,18 @@ class SQLExecutionHelper {
 
                 Object[] row = new Object[colCnt];
                 for (int i = 0; i < colCnt; i++) {
-                    row[i] = DBReadWriteHelper.readResultSet(rs,
-                            pageContext.getTableMetaData().getColumn(i), i + 1);
+                    DBColumn col = pageContext.getTableMetaData().getColumn(i);
+                    if (lobFetcher != null && lobFetcher.isDeferred(col)) {
+                        row[i] = lobFetcher.read(rs, col, i + 1, row);
+                    } else {
+                        row[i] = DBReadWriteHelper.readResultSet(rs, col, i + 1,
+                                dataView.getLobStorage());
+                    }
                 }
                 rows.add(row);
+                if (!reversed) {
+                    stream.add(row);
+                }
                 rowCnt++;
                 try {
                     hasNext = rs.next();
@@ -755,20 +883,95 @@ class SQLExecutionHelper {
             long end = System.currentTimeMillis();
             
             dataView.addFetchTime(end - start);
+            fetchSizePolicy.recordFetch(curRowPos, fetchSize, end - start);
+
+            if (reversed) {
+                Collections.reverse(rows);
+                for (Object[] row : rows) {
+                    stream.add(row);
+                }
+            }
         } catch (SQLException e) {
             LOGGER.log(Level.INFO, "Failed to set up table model.", e); // NOI18N
             throw e;
         } finally {
+            stream.flush();
+        }
+        return rows;
+    }
+
+    /**
+     * Publishes rows of a page to its model while they are read. Rows are
+     * passed to the EDT in batches of {@link #BATCH_ROWS} rows, or after
+     * {@link #BATCH_MILLIS} ms on slow connections, so the first rows are
+     * shown before the whole page is fetched. The first batch replaces the
+     * previous page.
+     */
+    private final class PageStream {
+
+        private static final int BATCH_ROWS = 500;
+        private static final long BATCH_MILLIS = 100;
+        private final DataViewPageContext pageContext;
+        private List<Object[]> batch = new ArrayList<>();
+        private boolean started = false;
+        private long lastFlush = System.currentTimeMillis();
+
+        PageStream(DataViewPageContext pageContext) {
+            this.pageContext = pageContext;
+        }
+
+        void add(Object[] row) {
+            batch.add(row);
+            if (batch.size() >= BATCH_ROWS
+                    || System.currentTimeMillis() - lastFlush >= BATCH_MILLIS) {
+                flush();
+            }
+        }
+
+        void flush() {
+            final List<Object[]> rows = batch;
+            final boolean first = !started;
+            if (!first && rows.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>();
+            started = true;
+            lastFlush = System.currentTimeMillis();
             Mutex.EVENT.writeAccess(new Runnable() {
                 @Override
                 public void run() {
-                    pageContext.getModel().setData(rows);
-                    pageContext.getModel().setRowOffset(pageContext.getCurrentPos() - 1);
+                    DataViewTableUIModel model = pageContext.getModel();
+                    if (first) {
+                        // LOBs of the replaced page are not referenced anymore
+                        List<Object> oldLobs = model.getLobValues();
+                        model.setData(rows);
+                        model.setRowOffset(pageContext.getCurrentPos() - 1);
+                        dataView.getLobStorage().release(oldLobs);
+                    } else {
+                        model.addRows(rows);
+                    }
                 }
             });
         }
     }
 
+    /**
+     * Create statement of the current page of a keyset paged query.
+     */
+    private PreparedStatement prepareKeysetStatement(Connection conn,
+            KeysetPaging keyset, KeysetPaging.Page page, int pageSize) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(keyset.getSQL(page));
+        int rowCount = page.getRowCount(Math.max(pageSize, 0));
+        setFetchSize(stmt, fetchSizePolicy.getFetchSize(rowCount));
+        try {
+            stmt.setMaxRows(rowCount);
+        } catch (SQLException exc) {
+            LOGGER.log(Level.WARNING, "Unable to set Max row count", exc); // NOI18N
+        }
+        keyset.bind(stmt, page);
+        return stmt;
+    }
+
     private Statement prepareSQLStatement(Connection conn, String sql) throws SQLException {
         Statement stmt;
         if (sql.startsWith("{")) { // NOI18N
@@ -780,9 +983,6 @@ class SQLExecutionHelper {
                     ? conn.createStatement(resultSetScrollType, ResultSet.CONCUR_READ_ONLY)
                     : conn.createStatement();
 
-            // set a reasonable fetchsize
-            setFetchSize(stmt, 50);
-
             // hint to only query a certain number of rows -> potentially
             // improve performance for low page numbers
             // only usable for "non-total" resultsets
@@ -805,6 +1005,10 @@ class SQLExecutionHelper {
                     stmt.setMaxRows(0);
                 } catch (SQLException ex) {}
             }
+
+            // fetch size adapted to page size and width of the rows, must
+            // not exceed the row limit
+            setFetchSize(stmt, fetchSizePolicy.getFetchSize(stmt.getMaxRows()));
         } else {
             stmt = useScrollableCursors
                     ? conn.createStatement(resultSetScrollType, ResultSet.CONCUR_READ_ONLY)
@@ -850,11 +1054,15 @@ class SQLExecutionHelper {
         
         stmt.execute();
 
+        setExecutionSuccessStatus(startTime);
+        
+        return stmt.getUpdateCount();
+    }
+
+    private void setExecutionSuccessStatus(long startTime) {
         long executionTime = System.currentTimeMillis() - startTime;
         String execTimeStr = SQLExecutionHelper.millisecondsToSeconds(executionTime);
         dataView.setInfoStatusText(NbBundle.getMessage(SQLExecutionHelper.class, "MSG_execution_success", execTimeStr));
-        
-        return stmt.getUpdateCount();
     }
 
     private boolean isSelectStatement(String queryString) {
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.output;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.db.dataview.meta.DBException;
+import org.netbeans.modules.db.dataview.util.DBReadWriteHelper;
+import org.netbeans.modules.db.dataview.util.DataViewUtils;
+
+/**
+ * Executes DML statements generated for rows of a data view. Rows with the
+ * same SQL text share one PreparedStatement, and consecutive rows with the
+ * same SQL text are sent as one JDBC batch if the driver supports it.
+ *
+ * Update counts of the rows are returned, so callers can still detect
+ * statements that did not match exactly one row. If counts are required
+ * and the driver does not report them for a batch, the batch is rolled back
+ * to a savepoint and the rows are executed one by one.
+ *
+ * Batches are only used if the connection is not in auto-commit mode, as
+ * drivers differ in which rows of a failed batch they commit. If a statement
+ * fails, {@link #getExecutedCount()} tells how many rows were executed
+ * before it.
+ */
+final class StatementBatch {
+
+    private static final Logger LOG = Logger.getLogger(StatementBatch.class.getName());
+    /** Maximal number of rows sent in one batch */
+    private static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * Statement of one row.
+     */
+    static class RowStatement {
+        String sql;
+        final List<Object> values = new ArrayList<>();
+        final List<Integer> types = new ArrayList<>();
+    }
+
+    private final Connection conn;
+    private final boolean countsRequired;
+    private boolean batchEnabled;
+    private int executed;
+
+    /**
+     * @param countsRequired True if statements have to be verified by their
+     * update counts. Batches are then only used if savepoints are supported.
+     */
+    StatementBatch(Connection conn, boolean countsRequired) {
+        this.conn = conn;
+        this.countsRequired = countsRequired;
+        this.batchEnabled = isBatchSupported(conn, countsRequired);
+    }
+
+    private static boolean isBatchSupported(Connection conn, boolean countsRequired) {
+        try {
+            if (conn.getAutoCommit() || !conn.getMetaData().supportsBatchUpdates()) {
+                return false;
+            }
+            return !countsRequired || conn.getMetaData().supportsSavepoints();
+        } catch (SQLException | AbstractMethodError ex) {
+            LOG.log(Level.FINE, "Unable to check support of batch updates", ex); // NOI18N
+            return false;
+        }
+    }
+
+    /**
+     * Execute statements of the rows in order. Execution stops after the
+     * batch (or row) in which a statement did not update exactly one row,
+     * and when the thread is interrupted.
+     *
+     * @return Update counts of the executed rows, may be shorter than the
+     * list of rows.
+     */
+    int[] execute(List<? extends RowStatement> rows) throws SQLException, DBException {
+        int[] counts = new int[rows.size()];
+        Map<String, PreparedStatement> statements = new HashMap<>();
+        executed = 0;
+        try {
+            while (executed < rows.size()
+                    && !Thread.currentThread().isInterrupted()) {
+                String sql = rows.get(executed).sql;
+                int end = executed + 1;
+                if (batchEnabled) {
+                    while (end < rows.size() && end - executed < MAX_BATCH_SIZE
+                            && rows.get(end).sql.equals(sql)) {
+                        end++;
+                    }
+                }
+                PreparedStatement pstmt = statements.get(sql);
+                if (pstmt == null) {
+                    pstmt = conn.prepareStatement(sql);
+                    statements.put(sql, pstmt);
+                }
+                if (end - executed == 1) {
+                    bind(pstmt, rows.get(executed));
+                    counts[executed] = pstmt.executeUpdate();
+                } else if (!executeBatch(pstmt, rows, executed, end, counts)) {
+                    // rolled back, execute the rows one by one
+                    batchEnabled = false;
+                    continue;
+                }
+                boolean matched = true;
+                for (int i = executed; i < end; i++) {
+                    matched &= counts[i] == 1;
+                }
+                executed = end;
+                if (!matched) {
+                    break;
+                }
+            }
+        } finally {
+            for (PreparedStatement pstmt : statements.values()) {
+                DataViewUtils.closeResources(pstmt);
+            }
+        }
+        return Arrays.copyOf(counts, executed);
+    }
+
+    /**
+     * @return Number of rows executed by the last call of
+     * {@link #execute(List)}, also if it failed. Rows of a failed batch that
+     * were executed before the failed statement are included.
+     */
+    int getExecutedCount() {
+        return executed;
+    }
+
+    /**
+     * @return False if the driver did not report update counts and the batch
+     * has been rolled back.
+     */
+    private boolean executeBatch(PreparedStatement pstmt,
+            List<? extends RowStatement> rows, int start, int end, int[] counts)
+            throws SQLException, DBException {
+        Savepoint savepoint = countsRequired ? conn.setSavepoint() : null;
+        for (int i = start; i < end; i++) {
+            bind(pstmt, rows.get(i));
+            pstmt.addBatch();
+        }
+        int[] result;
+        try {
+            result = pstmt.executeBatch();
+        } catch (BatchUpdateException ex) {
+            // some drivers continue after the failed statement, only the
+            // rows before it are known to be executed
+            int[] partial = ex.getUpdateCounts();
+            int i = 0;
+            while (partial != null && i < partial.length && start + i < end
+                    && partial[i] != Statement.EXECUTE_FAILED) {
+                counts[start + i] = partial[i] == Statement.SUCCESS_NO_INFO ? 1 : partial[i];
+                i++;
+            }
+            executed = start + i;
+            throw ex;
+        }
+        boolean known = result.length == end - start;
+        for (int i = 0; known && i < result.length; i++) {
+            known = result[i] != Statement.SUCCESS_NO_INFO;
+        }
+        if (!known && countsRequired) {
+            LOG.log(Level.FINE, "Driver does not report update counts of batches"); // NOI18N
+            conn.rollback(savepoint);
+            return false;
+        }
+        if (savepoint != null) {
+            try {
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException ex) {
+                // released with the transaction
+            }
+        }
+        for (int i = start; i < end; i++) {
+            // without counts a successful batch is expected to match
+            counts[i] = known ? result[i - start] : 1;
+        }
+        return true;
+    }
+
+    private static void bind(PreparedStatement pstmt, RowStatement row)
+            throws DBException {
+        int pos = 1;
+        for (Object val : row.values) {
+            DBReadWriteHelper.setAttributeValue(pstmt, pos, row.types.get(pos - 1), val);
+            pos++;
+        }
+    }
+}
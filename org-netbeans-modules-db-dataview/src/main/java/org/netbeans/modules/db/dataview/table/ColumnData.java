@@ -0,0 +1,513 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.table;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.netbeans.modules.db.dataview.meta.DBColumn;
+import org.netbeans.modules.db.dataview.util.DBReadWriteHelper;
+
+/**
+ * Values of one column of a {@link ResultSetTableModel}. Numbers, booleans
+ * and dates are kept in primitive arrays with a bit set of nulls, strings of
+ * columns with few distinct values are dictionary encoded, so large results
+ * do not need an object per cell.
+ *
+ * The storage is chosen by the JDBC type of the column and holds only values
+ * of the class {@link DBReadWriteHelper#readResultSet} returns for that type.
+ * Any other value (an unsigned number read as a wider type, a SQL constant
+ * entered by the user...) converts the column to plain object storage, so
+ * {@link #add(Object)} and {@link #set(int, Object)} return the column which
+ * holds the data from then on.
+ */
+abstract class ColumnData {
+
+    /** Number of rows */
+    protected int size = 0;
+
+    static ColumnData create(DBColumn col) {
+        if (col == null) {
+            return new ObjectColumn();
+        }
+        int colType = col.getJdbcType();
+
+        if (colType == Types.BIT && col.getPrecision() <= 1) {
+            colType = Types.BOOLEAN;
+        }
+
+        switch (colType) {
+            case Types.BOOLEAN:
+                return new BooleanColumn();
+            case Types.TIME:
+                return new LongColumn(Time.class);
+            case Types.DATE:
+                return new LongColumn(Date.class);
+            case Types.TIMESTAMP:
+            case DBReadWriteHelper.SQL_TYPE_ORACLE_TIMESTAMP:
+            case DBReadWriteHelper.SQL_TYPE_ORACLE_TIMESTAMP_WITH_TZ:
+                return new TimestampColumn();
+            case Types.BIGINT:
+                return new LongColumn(Long.class);
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                return new LongColumn(Integer.class);
+            case Types.DOUBLE:
+                return new DoubleColumn(Double.class);
+            case Types.FLOAT:
+            case Types.REAL:
+                return new DoubleColumn(Float.class);
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+                return new StringColumn();
+            default:
+                return new ObjectColumn();
+        }
+    }
+
+    final int size() {
+        return size;
+    }
+
+    final Object get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size); // NOI18N
+        }
+        return read(row);
+    }
+
+    /**
+     * Replace value of a row.
+     *
+     * @return The column holding the data after the change.
+     */
+    final ColumnData set(int row, Object value) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size); // NOI18N
+        }
+        ColumnData target = accepts(value) ? this : toObjects();
+        target.store(row, value);
+        return target;
+    }
+
+    /**
+     * Append a row.
+     *
+     * @return The column holding the data after the change.
+     */
+    final ColumnData add(Object value) {
+        ColumnData target = accepts(value) ? this : toObjects();
+        target.ensureCapacity(target.size + 1);
+        target.size++;
+        target.store(target.size - 1, value);
+        return target;
+    }
+
+    final void remove(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size); // NOI18N
+        }
+        shiftLeft(row);
+        size--;
+    }
+
+    final void clear() {
+        size = 0;
+        release();
+    }
+
+    abstract Object read(int row);
+
+    /**
+     * @return True if the value can be stored in this column. Nulls are
+     * always accepted.
+     */
+    abstract boolean accepts(Object value);
+
+    abstract void store(int row, Object value);
+
+    abstract void ensureCapacity(int capacity);
+
+    /** Move rows after the row one position down */
+    abstract void shiftLeft(int row);
+
+    /** Drop the arrays, after all rows were removed */
+    abstract void release();
+
+    private ColumnData toObjects() {
+        ObjectColumn objects = new ObjectColumn();
+        objects.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            objects.values[i] = get(i);
+        }
+        objects.size = size;
+        return objects;
+    }
+
+    static int newCapacity(int length, int capacity) {
+        return Math.max(capacity, Math.max(16, length + (length >> 1)));
+    }
+
+    private static final class ObjectColumn extends ColumnData {
+
+        private Object[] values = new Object[0];
+
+        @Override
+        Object read(int row) {
+            return values[row];
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void store(int row, Object value) {
+            values[row] = value;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        void shiftLeft(int row) {
+            System.arraycopy(values, row + 1, values, row, size - row - 1);
+            values[size - 1] = null;
+        }
+
+        @Override
+        void release() {
+            values = new Object[0];
+        }
+    }
+
+    /**
+     * Column of values of a single class, with nulls kept in a bit set.
+     */
+    private abstract static class PrimitiveColumn extends ColumnData {
+
+        private final Class<?> type;
+        private final BitSet nulls = new BitSet();
+
+        PrimitiveColumn(Class<?> type) {
+            this.type = type;
+        }
+
+        final Class<?> getType() {
+            return type;
+        }
+
+        @Override
+        final Object read(int row) {
+            return nulls.get(row) ? null : load(row);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return value == null || value.getClass() == type;
+        }
+
+        @Override
+        final void store(int row, Object value) {
+            nulls.set(row, value == null);
+            if (value != null) {
+                storeValue(row, value);
+            }
+        }
+
+        @Override
+        final void shiftLeft(int row) {
+            for (int i = row; i < size - 1; i++) {
+                nulls.set(i, nulls.get(i + 1));
+            }
+            nulls.clear(size - 1);
+            shiftValues(row);
+        }
+
+        @Override
+        void release() {
+            nulls.clear();
+        }
+
+        /** Read a non-null value */
+        abstract Object load(int row);
+
+        abstract void storeValue(int row, Object value);
+
+        abstract void shiftValues(int row);
+    }
+
+    private static final class BooleanColumn extends PrimitiveColumn {
+
+        private final BitSet values = new BitSet();
+
+        BooleanColumn() {
+            super(Boolean.class);
+        }
+
+        @Override
+        Object load(int row) {
+            return values.get(row);
+        }
+
+        @Override
+        void storeValue(int row, Object value) {
+            values.set(row, (Boolean) value);
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+        }
+
+        @Override
+        void shiftValues(int row) {
+            for (int i = row; i < size - 1; i++) {
+                values.set(i, values.get(i + 1));
+            }
+            values.clear(size - 1);
+        }
+
+        @Override
+        void release() {
+            super.release();
+            values.clear();
+        }
+    }
+
+    /**
+     * Integers, longs, dates and times (as milliseconds).
+     */
+    private static class LongColumn extends PrimitiveColumn {
+
+        long[] values = new long[0];
+
+        LongColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        Object load(int row) {
+            long value = values[row];
+            Class<?> type = getType();
+            if (type == Integer.class) {
+                return (int) value;
+            } else if (type == Long.class) {
+                return value;
+            } else if (type == Date.class) {
+                return new Date(value);
+            } else {
+                return new Time(value);
+            }
+        }
+
+        @Override
+        void storeValue(int row, Object value) {
+            if (value instanceof Number) {
+                values[row] = ((Number) value).longValue();
+            } else {
+                values[row] = ((java.util.Date) value).getTime();
+            }
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        void shiftValues(int row) {
+            System.arraycopy(values, row + 1, values, row, size - row - 1);
+        }
+
+        @Override
+        void release() {
+            super.release();
+            values = new long[0];
+        }
+    }
+
+    /**
+     * Timestamps as milliseconds and nanoseconds.
+     */
+    private static final class TimestampColumn extends LongColumn {
+
+        private int[] nanos = new int[0];
+
+        TimestampColumn() {
+            super(Timestamp.class);
+        }
+
+        @Override
+        Object load(int row) {
+            Timestamp ts = new Timestamp(values[row]);
+            ts.setNanos(nanos[row]);
+            return ts;
+        }
+
+        @Override
+        void storeValue(int row, Object value) {
+            Timestamp ts = (Timestamp) value;
+            values[row] = ts.getTime();
+            nanos[row] = ts.getNanos();
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            super.ensureCapacity(capacity);
+            if (values.length > nanos.length) {
+                nanos = Arrays.copyOf(nanos, values.length);
+            }
+        }
+
+        @Override
+        void shiftValues(int row) {
+            super.shiftValues(row);
+            System.arraycopy(nanos, row + 1, nanos, row, size - row - 1);
+        }
+
+        @Override
+        void release() {
+            super.release();
+            nanos = new int[0];
+        }
+    }
+
+    /**
+     * Doubles and floats. Floats are widened exactly, so they are read back
+     * unchanged.
+     */
+    private static final class DoubleColumn extends PrimitiveColumn {
+
+        private double[] values = new double[0];
+
+        DoubleColumn(Class<?> type) {
+            super(type);
+        }
+
+        @Override
+        Object load(int row) {
+            double value = values[row];
+            return getType() == Float.class ? (Object) (float) value : (Object) value;
+        }
+
+        @Override
+        void storeValue(int row, Object value) {
+            values[row] = ((Number) value).doubleValue();
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, newCapacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        void shiftValues(int row) {
+            System.arraycopy(values, row + 1, values, row, size - row - 1);
+        }
+
+        @Override
+        void release() {
+            super.release();
+            values = new double[0];
+        }
+    }
+
+    /**
+     * Strings encoded as indexes into a dictionary of distinct values. A
+     * column with mostly distinct values gains nothing from the dictionary,
+     * so it is converted to object storage when the dictionary grows beyond
+     * {@link #MIN_DICTIONARY} entries and half of the rows.
+     */
+    private static final class StringColumn extends PrimitiveColumn {
+
+        private static final int MIN_DICTIONARY = 1024;
+        private int[] codes = new int[0];
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+
+        StringColumn() {
+            super(String.class);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            if (!super.accepts(value)) {
+                return false;
+            }
+            return value == null || index.containsKey((String) value)
+                    || dictionary.size() < Math.max(MIN_DICTIONARY, size / 2);
+        }
+
+        @Override
+        Object load(int row) {
+            return dictionary.get(codes[row]);
+        }
+
+        @Override
+        void storeValue(int row, Object value) {
+            String s = (String) value;
+            Integer code = index.get(s);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(s);
+                index.put(s, code);
+            }
+            codes[row] = code;
+        }
+
+        @Override
+        void ensureCapacity(int capacity) {
+            if (capacity > codes.length) {
+                codes = Arrays.copyOf(codes, newCapacity(codes.length, capacity));
+            }
+        }
+
+        @Override
+        void shiftValues(int row) {
+            System.arraycopy(codes, row + 1, codes, row, size - row - 1);
+        }
+
+        @Override
+        void release() {
+            super.release();
+            codes = new int[0];
+            dictionary.clear();
+            index.clear();
+        }
+    }
+}
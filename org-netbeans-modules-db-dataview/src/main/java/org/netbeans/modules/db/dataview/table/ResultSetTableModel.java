@@ -41,13 +41,18 @@ import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 
 /**
+ * Table model of a result set page. Values are stored column by column (see
+ * {@link ColumnData}), rows are only materialized by {@link #getRowData(int)}
+ * and {@link #getData()}.
+ *
  * @author Ahimanikya Satapathy
  */
 public class ResultSetTableModel extends AbstractTableModel {
 
     private boolean editable = false;
     private DBColumn[] columns;
-    private final List<Object[]> data = new ArrayList<Object[]>();
+    private ColumnData[] data;
+    private int rowCount = 0;
     private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 
     protected static Class<? extends Object> getTypeClass(DBColumn col) {
@@ -111,12 +116,22 @@ public class ResultSetTableModel extends AbstractTableModel {
     public ResultSetTableModel(DBColumn[] columns) {
         super();
         this.columns = columns;
+        this.data = createColumnData(columns);
+    }
+
+    private static ColumnData[] createColumnData(DBColumn[] columns) {
+        ColumnData[] result = new ColumnData[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            result[i] = ColumnData.create(columns[i]);
+        }
+        return result;
     }
 
     public void setColumns(DBColumn[] columns) {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        this.data.clear();
         this.columns = columns;
+        this.data = createColumnData(columns);
+        this.rowCount = 0;
         fireTableStructureChanged();
     }
 
@@ -158,7 +173,7 @@ public class ResultSetTableModel extends AbstractTableModel {
             if (!DataViewUtils.isSQLConstantString(value, columns[col])) {
                 value = DBReadWriteHelper.validate(value, columns[col]);
             }
-            data.get(row)[col] = value;
+            data[col] = data[col].set(row, value);
             fireTableCellUpdated(row, col);
         } catch (Exception dbe) {
             NotifyDescriptor nd = new NotifyDescriptor.Message(dbe.getMessage(),
@@ -213,56 +228,122 @@ public class ResultSetTableModel extends AbstractTableModel {
     @Override
     public int getRowCount() {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        return data.size();
+        return rowCount;
     }
         
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        Object[] dataRow = data.get(rowIndex);
-        return dataRow[columnIndex];
+        return data[columnIndex].get(rowIndex);
     }
 
     public Object[] getRowData(int rowIndex) {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        Object[] dataRow = data.get(rowIndex);
-        return Arrays.copyOf(dataRow, dataRow.length);
+        if (rowIndex < 0 || rowIndex >= rowCount) {
+            throw new IndexOutOfBoundsException("Row: " + rowIndex + ", Size: " + rowCount); // NOI18N
+        }
+        Object[] dataRow = new Object[data.length];
+        for (int i = 0; i < data.length; i++) {
+            dataRow[i] = data[i].get(rowIndex);
+        }
+        return dataRow;
     }
 
     public void setData(List<Object[]> data) {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        this.data.clear();
+        this.data = createColumnData(columns);
+        this.rowCount = 0;
+        for (ColumnData column : this.data) {
+            column.ensureCapacity(data.size());
+        }
         for (Object[] dataRow : data) {
-            this.data.add(Arrays.copyOf(dataRow, dataRow.length));
+            appendRow(dataRow);
         }
         fireTableDataChanged();
     }
 
     public List<Object[]> getData() {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        ArrayList<Object[]> result = new ArrayList<Object[]>();
-        for (Object[] dataRow : this.data) {
-            result.add(Arrays.copyOf(dataRow, dataRow.length));
+        ArrayList<Object[]> result = new ArrayList<Object[]>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            result.add(getRowData(i));
+        }
+        return result;
+    }
+
+    /**
+     * Values of the columns which can hold large objects (blobs, clobs and
+     * values of unknown type), e.g. to release them when the page is
+     * replaced. Rows are not materialized and other columns are not read.
+     */
+    public List<Object> getLobValues() {
+        assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
+        ArrayList<Object> result = new ArrayList<Object>();
+        for (int i = 0; i < columns.length; i++) {
+            Class<?> type = getTypeClass(columns[i]);
+            if (type == Blob.class || type == Clob.class || type == Object.class) {
+                for (int row = 0; row < rowCount; row++) {
+                    Object value = data[i].get(row);
+                    if (value != null) {
+                        result.add(value);
+                    }
+                }
+            }
         }
         return result;
     }
 
     public void addRow(Object[] dataRow) {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        int addedRowIndex = this.data.size();
-        this.data.add(Arrays.copyOf(dataRow, dataRow.length));
+        int addedRowIndex = rowCount;
+        appendRow(dataRow);
         fireTableRowsInserted(addedRowIndex, addedRowIndex);
     }
 
+    /**
+     * Append rows, e.g. the next batch of a page which is still being
+     * fetched.
+     */
+    public void addRows(List<Object[]> dataRows) {
+        assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
+        if (dataRows.isEmpty()) {
+            return;
+        }
+        int firstRowIndex = rowCount;
+        for (ColumnData column : data) {
+            column.ensureCapacity(rowCount + dataRows.size());
+        }
+        for (Object[] dataRow : dataRows) {
+            appendRow(dataRow);
+        }
+        fireTableRowsInserted(firstRowIndex, rowCount - 1);
+    }
+
+    private void appendRow(Object[] dataRow) {
+        for (int i = 0; i < data.length; i++) {
+            data[i] = data[i].add(i < dataRow.length ? dataRow[i] : null);
+        }
+        rowCount++;
+    }
+
     public void removeRow(int row) {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        this.data.remove(row);
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + rowCount); // NOI18N
+        }
+        for (ColumnData column : data) {
+            column.remove(row);
+        }
+        rowCount--;
         fireTableRowsDeleted(row, row);
     }
 
     public void clear() {
         assert SwingUtilities.isEventDispatchThread() : "Not on EDT";
-        this.data.clear();
+        for (ColumnData column : data) {
+            column.clear();
+        }
+        rowCount = 0;
         fireTableDataChanged();
     }
 
@@ -42,6 +42,7 @@ import javax.swing.table.TableCellEditor;
 import org.netbeans.api.progress.ProgressUtils;
 import org.netbeans.modules.db.dataview.util.CharsetSelector;
 import org.netbeans.modules.db.dataview.util.EncodingHelper;
+import org.netbeans.modules.db.dataview.util.DeferredLob;
 import org.netbeans.modules.db.dataview.util.FileBackedBlob;
 import org.netbeans.modules.db.dataview.util.LobHelper;
 import org.openide.DialogDisplayer;
@@ -165,6 +166,10 @@ public class BlobFieldTableCellEditor extends AbstractCellEditor
     @Override
     public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
         currentValue = (java.sql.Blob) value;
+        if (currentValue instanceof DeferredLob) {
+            // start fetching while the user chooses an action
+            ((DeferredLob<?>) currentValue).load();
+        }
         int modelRow = table.convertRowIndexToModel(row);
         int modelColumn = table.convertColumnIndexToModel(column);
         boolean editable = table.getModel().isCellEditable(modelRow, modelColumn);
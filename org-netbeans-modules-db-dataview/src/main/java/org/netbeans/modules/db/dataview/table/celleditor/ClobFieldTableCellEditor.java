@@ -33,6 +33,7 @@ import java.util.logging.Logger;
 import javax.swing.*;
 import javax.swing.table.TableCellEditor;
 import org.netbeans.api.progress.ProgressUtils;
+import org.netbeans.modules.db.dataview.util.DeferredLob;
 import org.netbeans.modules.db.dataview.util.FileBackedClob;
 import org.netbeans.modules.db.dataview.util.LobHelper;
 import org.openide.DialogDisplayer;
@@ -161,6 +162,10 @@ public class ClobFieldTableCellEditor extends AbstractCellEditor
     @Override
     public Component getTableCellEditorComponent(JTable table, Object value, boolean isSelected, int row, int column) {
         currentValue = (java.sql.Clob) value;
+        if (currentValue instanceof DeferredLob) {
+            // start fetching while the user chooses an action
+            ((DeferredLob<?>) currentValue).load();
+        }
         this.currentColumn = column;
         this.currentRow = row;
         this.table = table;
@@ -44,8 +44,19 @@ public class DBReadWriteHelper {
     private static final short maxUnsignedByte = 255;
     private static final Logger mLogger = Logger.getLogger(DBReadWriteHelper.class.getName());
 
-    @SuppressWarnings(value = "fallthrough") // NOI18N
     public static Object readResultSet(ResultSet rs, DBColumn col, int index) throws SQLException {
+        return readResultSet(rs, col, index, null);
+    }
+
+    /**
+     * Read a value of the current row.
+     *
+     * @param lobStorage Storage for BLOB and CLOB values, or null if each of
+     * these values should be backed by its own file.
+     */
+    @SuppressWarnings(value = "fallthrough") // NOI18N
+    public static Object readResultSet(ResultSet rs, DBColumn col, int index,
+            LobStorage lobStorage) throws SQLException {
         int colType = col.getJdbcType();
 
         if (colType == Types.BIT && col.getPrecision() <= 1) {
@@ -199,7 +210,9 @@ public class DBReadWriteHelper {
                     if (is == null) {
                         return null;
                     } else {
-                        return new FileBackedBlob(is);
+                        return lobStorage != null
+                                ? lobStorage.createBlob(is)
+                                : new FileBackedBlob(is);
                     }
                 } catch (NullPointerException ex) {
                     // The xerial sqlite-jdbc driver fails to return null and instead throws a NullPointer Exception
@@ -222,7 +235,9 @@ public class DBReadWriteHelper {
                     Object result = null;
                     
                     if (! rs.wasNull()) {
-                        result =  new FileBackedClob(clob.getCharacterStream());
+                        result = lobStorage != null
+                                ? lobStorage.createClob(clob.getCharacterStream())
+                                : new FileBackedClob(clob.getCharacterStream());
                     }
                     
                     try {
@@ -245,7 +260,9 @@ public class DBReadWriteHelper {
                 if (rs.wasNull()) {
                     return null;
                 } else {
-                    return new FileBackedClob(sdata);
+                    return lobStorage != null
+                            ? lobStorage.createClob(sdata)
+                            : new FileBackedClob(sdata);
                 }
             }
             case Types.OTHER:
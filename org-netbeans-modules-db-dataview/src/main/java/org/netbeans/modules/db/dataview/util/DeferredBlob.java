@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * BLOB whose content is fetched from the database when it is read for the
+ * first time. The length is known without fetching.
+ */
+public final class DeferredBlob extends DeferredLob<Blob> implements Blob {
+
+    private static final Logger LOG = Logger.getLogger(DeferredBlob.class.getName());
+
+    public DeferredBlob(long length, Callable<Blob> loader) {
+        super(length, loader);
+    }
+
+    @Override
+    public long length() throws SQLException {
+        return getLength();
+    }
+
+    @Override
+    public byte[] getBytes(long pos, int length) throws SQLException {
+        return getContent().getBytes(pos, length);
+    }
+
+    @Override
+    public InputStream getBinaryStream() throws SQLException {
+        return getContent().getBinaryStream();
+    }
+
+    @Override
+    public InputStream getBinaryStream(long pos, long length) throws SQLException {
+        return getContent().getBinaryStream(pos, length);
+    }
+
+    @Override
+    public long position(byte[] pattern, long start) throws SQLException {
+        return getContent().position(pattern, start);
+    }
+
+    @Override
+    public long position(Blob pattern, long start) throws SQLException {
+        return getContent().position(pattern, start);
+    }
+
+    @Override
+    public int setBytes(long pos, byte[] bytes) throws SQLException {
+        throw new UnsupportedOperationException("Read-only BLOB");
+    }
+
+    @Override
+    public int setBytes(long pos, byte[] bytes, int offset, int len) throws SQLException {
+        throw new UnsupportedOperationException("Read-only BLOB");
+    }
+
+    @Override
+    public OutputStream setBinaryStream(long pos) throws SQLException {
+        throw new UnsupportedOperationException("Read-only BLOB");
+    }
+
+    @Override
+    public void truncate(long len) throws SQLException {
+        throw new UnsupportedOperationException("Read-only BLOB");
+    }
+
+    @Override
+    protected void freeContent(Blob value) {
+        try {
+            value.free();
+        } catch (SQLException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+    }
+}
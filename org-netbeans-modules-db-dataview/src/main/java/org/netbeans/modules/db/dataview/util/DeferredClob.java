@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.util;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * CLOB whose content is fetched from the database when it is read for the
+ * first time. The length and the beginning of the text (used for previews in
+ * the grid, see {@link LobHelper#clobToString(Clob)}) are known without
+ * fetching.
+ */
+public final class DeferredClob extends DeferredLob<Clob> implements Clob {
+
+    private static final Logger LOG = Logger.getLogger(DeferredClob.class.getName());
+
+    private final String preview;
+
+    public DeferredClob(long length, String preview, Callable<Clob> loader) {
+        super(length, loader);
+        this.preview = preview;
+    }
+
+    @Override
+    public long length() throws SQLException {
+        return getLength();
+    }
+
+    @Override
+    public String getSubString(long pos, int length) throws SQLException {
+        if (pos >= 1 && length >= 0 && (pos - 1) + length <= preview.length()) {
+            getLength();
+            return preview.substring((int) pos - 1, (int) pos - 1 + length);
+        }
+        return getContent().getSubString(pos, length);
+    }
+
+    @Override
+    public Reader getCharacterStream() throws SQLException {
+        return getContent().getCharacterStream();
+    }
+
+    @Override
+    public Reader getCharacterStream(long pos, long length) throws SQLException {
+        return getContent().getCharacterStream(pos, length);
+    }
+
+    @Override
+    public InputStream getAsciiStream() throws SQLException {
+        return getContent().getAsciiStream();
+    }
+
+    @Override
+    public long position(String searchstr, long start) throws SQLException {
+        return getContent().position(searchstr, start);
+    }
+
+    @Override
+    public long position(Clob searchstr, long start) throws SQLException {
+        return getContent().position(searchstr, start);
+    }
+
+    @Override
+    public int setString(long pos, String str) throws SQLException {
+        throw new UnsupportedOperationException("Read-only CLOB");
+    }
+
+    @Override
+    public int setString(long pos, String str, int offset, int len) throws SQLException {
+        throw new UnsupportedOperationException("Read-only CLOB");
+    }
+
+    @Override
+    public OutputStream setAsciiStream(long pos) throws SQLException {
+        throw new UnsupportedOperationException("Read-only CLOB");
+    }
+
+    @Override
+    public Writer setCharacterStream(long pos) throws SQLException {
+        throw new UnsupportedOperationException("Read-only CLOB");
+    }
+
+    @Override
+    public void truncate(long len) throws SQLException {
+        throw new UnsupportedOperationException("Read-only CLOB");
+    }
+
+    @Override
+    protected void freeContent(Clob value) {
+        try {
+            value.free();
+        } catch (SQLException ex) {
+            LOG.log(Level.FINE, null, ex);
+        }
+    }
+}
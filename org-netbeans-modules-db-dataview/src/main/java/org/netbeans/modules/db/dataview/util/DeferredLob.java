@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.util;
+
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import org.netbeans.api.progress.ProgressUtils;
+import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Base of BLOB and CLOB values whose content has not been read from the
+ * database yet. Only the length of the value is known when the page is loaded,
+ * the content is fetched by a background task when it is needed for the first
+ * time.
+ *
+ * @param <T> Type of the fetched content
+ */
+public abstract class DeferredLob<T> {
+
+    private static final RequestProcessor RP = new RequestProcessor(
+            DeferredLob.class.getName(), 2, true);
+    private final long length;
+    private final Callable<T> loader;
+    private Future<T> future;
+    /** Fetched content, until the value is freed */
+    private T content;
+    private boolean freed = false;
+
+    protected DeferredLob(long length, Callable<T> loader) {
+        this.length = length;
+        this.loader = loader;
+    }
+
+    protected final long getLength() throws SQLException {
+        checkFreed();
+        return length;
+    }
+
+    /**
+     * Start fetching of the content in background, if it has not been
+     * started yet.
+     */
+    public final synchronized Future<T> load() {
+        if (future == null) {
+            future = RP.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    T value = loader.call();
+                    synchronized (DeferredLob.this) {
+                        if (freed) {
+                            freeContent(value);
+                        } else {
+                            content = value;
+                        }
+                    }
+                    return value;
+                }
+            });
+        }
+        return future;
+    }
+
+    public final synchronized boolean isLoaded() {
+        return content != null;
+    }
+
+    /**
+     * Get the content, fetch it if needed. If called in the event dispatch
+     * thread, a cancellable progress dialog is shown until the content is
+     * fetched.
+     */
+    protected final T getContent() throws SQLException {
+        checkFreed();
+        final Future<T> f = load();
+        if (!f.isDone() && SwingUtilities.isEventDispatchThread()) {
+            AtomicBoolean cancel = new AtomicBoolean();
+            ProgressUtils.runOffEventDispatchThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        f.get();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        // reported by the caller
+                    }
+                }
+            }, NbBundle.getMessage(DeferredLob.class, "MSG_fetching_lob"), cancel, false);
+            if (cancel.get() && !f.isDone()) {
+                throw new SQLException(NbBundle.getMessage(DeferredLob.class,
+                        "MSG_fetching_lob_cancelled"));
+            }
+        }
+        try {
+            return f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(ex);
+        } catch (ExecutionException ex) {
+            synchronized (this) {
+                if (future == f) {
+                    // allow another attempt
+                    future = null;
+                }
+            }
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        }
+    }
+
+    /**
+     * Free the fetched content. The value cannot be used afterwards.
+     */
+    public final void free() {
+        T value;
+        synchronized (this) {
+            freed = true;
+            value = content;
+            content = null;
+        }
+        if (value != null) {
+            freeContent(value);
+        }
+    }
+
+    protected abstract void freeContent(T value);
+
+    private synchronized void checkFreed() throws SQLException {
+        if (freed) {
+            throw new SQLException("LOB already freed");
+        }
+    }
+}
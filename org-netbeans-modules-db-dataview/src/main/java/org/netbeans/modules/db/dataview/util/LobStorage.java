@@ -0,0 +1,565 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.dataview.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storage for BLOB and CLOB values read from the result sets of one data view.
+ *
+ * Values smaller than {@link #INLINE_LIMIT} bytes are kept in memory. Larger
+ * values are appended to a single temporary file shared by all values of the
+ * storage, and are referenced by offset and length. CLOBs are stored as
+ * UTF-16BE, so a substring can be read without decoding the preceding text.
+ *
+ * Values created by this storage are read-only. The spill file is truncated
+ * when all spilled values have been freed, and deleted when the storage is
+ * closed.
+ */
+public final class LobStorage {
+
+    private static final Logger LOG = Logger.getLogger(LobStorage.class.getName());
+
+    /** Values up to this number of bytes are kept in memory */
+    static final int INLINE_LIMIT = 32 * 1024;
+
+    /** Copy buffers, shared by all values read into this storage */
+    private final byte[] byteBuffer = new byte[INLINE_LIMIT];
+    private final char[] charBuffer = new char[INLINE_LIMIT / 2];
+    private final ByteBuffer encodeBuffer = ByteBuffer.allocate(INLINE_LIMIT);
+    private File spillFile;
+    private volatile FileChannel channel;
+    private long spillEnd = 0;
+    /** Number of spilled values that have not been freed */
+    private int spilledValues = 0;
+    private boolean closed = false;
+
+    /**
+     * Read a BLOB value from a stream. The stream is closed.
+     */
+    public synchronized Blob createBlob(InputStream is) throws SQLException {
+        checkClosed();
+        try {
+            try {
+                int length = fill(is, byteBuffer);
+                if (length < byteBuffer.length) {
+                    return new StoredBlob(Arrays.copyOf(byteBuffer, length));
+                }
+                spilledValues++;
+                long offset = spillEnd;
+                while (length > 0) {
+                    append(ByteBuffer.wrap(byteBuffer, 0, length));
+                    length = fill(is, byteBuffer);
+                }
+                return new StoredBlob(offset, spillEnd - offset);
+            } finally {
+                is.close();
+            }
+        } catch (IOException ex) {
+            throw new SQLException(ex);
+        }
+    }
+
+    /**
+     * Read a CLOB value from a reader. The reader is closed.
+     */
+    public synchronized Clob createClob(Reader r) throws SQLException {
+        checkClosed();
+        try {
+            try {
+                int length = fill(r, charBuffer);
+                if (length < charBuffer.length) {
+                    return new StoredClob(Arrays.copyOf(charBuffer, length));
+                }
+                spilledValues++;
+                long offset = spillEnd;
+                while (length > 0) {
+                    encodeBuffer.clear();
+                    encodeBuffer.asCharBuffer().put(charBuffer, 0, length);
+                    encodeBuffer.limit(length * 2);
+                    append(encodeBuffer);
+                    length = fill(r, charBuffer);
+                }
+                return new StoredClob(offset, (spillEnd - offset) / 2);
+            } finally {
+                r.close();
+            }
+        } catch (IOException ex) {
+            throw new SQLException(ex);
+        }
+    }
+
+    public Clob createClob(String s) throws SQLException {
+        if (s.length() < charBuffer.length) {
+            return new StoredClob(s.toCharArray());
+        }
+        return createClob(new StringReader(s));
+    }
+
+    /**
+     * Free values of this storage and deferred values that are contained in
+     * a replaced page. Other values are ignored.
+     */
+    public void release(Collection<?> values) {
+        for (Object value : values) {
+            if (value instanceof StoredBlob
+                    && ((StoredBlob) value).getStorage() == this) {
+                ((StoredBlob) value).free();
+            } else if (value instanceof StoredClob
+                    && ((StoredClob) value).getStorage() == this) {
+                ((StoredClob) value).free();
+            } else if (value instanceof DeferredLob) {
+                ((DeferredLob<?>) value).free();
+            }
+        }
+    }
+
+    /**
+     * Delete the spill file. Spilled values cannot be read afterwards.
+     */
+    public synchronized void close() {
+        closed = true;
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        FileChannel c = channel;
+        channel = null;
+        spillEnd = 0;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, null, ex);
+            }
+        }
+        if (spillFile != null) {
+            spillFile.delete();
+            spillFile = null;
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        close();
+        super.finalize();
+    }
+
+    private void checkClosed() throws SQLException {
+        if (closed) {
+            throw new SQLException("LOB storage already closed");
+        }
+    }
+
+    private synchronized void valueFreed() {
+        spilledValues--;
+        if (spilledValues == 0 && channel != null) {
+            try {
+                channel.truncate(0);
+                spillEnd = 0;
+            } catch (IOException ex) {
+                LOG.log(Level.INFO, "Failed to truncate LOB spill file", ex);
+                closeChannel();
+            }
+        }
+    }
+
+    private void append(ByteBuffer data) throws IOException {
+        if (channel == null) {
+            spillFile = File.createTempFile("netbeans-db-lob", null);
+            spillFile.deleteOnExit();
+            channel = new RandomAccessFile(spillFile, "rw").getChannel();
+        }
+        while (data.hasRemaining()) {
+            spillEnd += channel.write(data, spillEnd);
+        }
+    }
+
+    /**
+     * Read bytes of a spilled value. Positional reads do not change state of
+     * the channel, so reading does not block writing of other values.
+     */
+    private int read(long offset, byte[] dst, int dstOffset, int length)
+            throws IOException {
+        FileChannel c = channel;
+        if (c == null) {
+            throw new IOException("LOB storage already closed");
+        }
+        ByteBuffer bb = ByteBuffer.wrap(dst, dstOffset, length);
+        while (bb.hasRemaining()) {
+            int read = c.read(bb, offset + bb.position() - dstOffset);
+            if (read < 0) {
+                break;
+            }
+        }
+        return bb.position() - dstOffset;
+    }
+
+    private static int fill(InputStream is, byte[] buffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < buffer.length
+                && (read = is.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+        }
+        return length;
+    }
+
+    private static int fill(Reader r, char[] buffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < buffer.length
+                && (read = r.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+        }
+        return length;
+    }
+
+    private static void checkPos(long pos) throws SQLException {
+        if (pos < 1) {
+            throw new SQLException("Illegal Value for position: " + Long.toString(pos));
+        }
+    }
+
+    private static void checkLength(long length) throws SQLException {
+        if (length < 0) {
+            throw new SQLException("Illegal Value for length: " + Long.toString(length));
+        }
+    }
+
+    /**
+     * Stream of a range of the spill file.
+     */
+    private class SpillInputStream extends InputStream {
+
+        private long pos;
+        private final long end;
+
+        SpillInputStream(long pos, long end) {
+            this.pos = pos;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (pos >= end) {
+                return -1;
+            }
+            int read = LobStorage.this.read(pos, b, off,
+                    (int) Math.min(len, end - pos));
+            if (read == 0) {
+                return -1;
+            }
+            pos += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - pos));
+            pos += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - pos);
+        }
+    }
+
+    /**
+     * BLOB kept in memory or in the spill file.
+     */
+    private final class StoredBlob implements Blob {
+
+        private final byte[] data;
+        private final long offset;
+        private final long length;
+        private boolean freed = false;
+
+        StoredBlob(byte[] data) {
+            this.data = data;
+            this.offset = -1;
+            this.length = data.length;
+        }
+
+        StoredBlob(long offset, long length) {
+            this.data = null;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        LobStorage getStorage() {
+            return LobStorage.this;
+        }
+
+        @Override
+        public long length() throws SQLException {
+            checkFreed();
+            return length;
+        }
+
+        @Override
+        public byte[] getBytes(long pos, int len) throws SQLException {
+            checkFreed();
+            checkPos(pos);
+            checkLength(len);
+            int count = (int) Math.max(0, Math.min(len, length - (pos - 1)));
+            if (data != null) {
+                return Arrays.copyOfRange(data, (int) (pos - 1),
+                        (int) (pos - 1) + count);
+            }
+            byte[] result = new byte[count];
+            try {
+                read(offset + pos - 1, result, 0, count);
+            } catch (IOException ex) {
+                throw new SQLException(ex);
+            }
+            return result;
+        }
+
+        @Override
+        public InputStream getBinaryStream() throws SQLException {
+            return getBinaryStream(1, length);
+        }
+
+        @Override
+        public InputStream getBinaryStream(long pos, long len) throws SQLException {
+            checkFreed();
+            checkPos(pos);
+            checkLength(len);
+            long count = Math.max(0, Math.min(len, length - (pos - 1)));
+            if (data != null) {
+                return new ByteArrayInputStream(data, (int) Math.min(pos - 1,
+                        length), (int) count);
+            }
+            return new SpillInputStream(offset + pos - 1,
+                    offset + pos - 1 + count);
+        }
+
+        @Override
+        public long position(byte[] pattern, long start) throws SQLException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public long position(Blob pattern, long start) throws SQLException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public int setBytes(long pos, byte[] bytes) throws SQLException {
+            throw new UnsupportedOperationException("Read-only BLOB");
+        }
+
+        @Override
+        public int setBytes(long pos, byte[] bytes, int off, int len) throws SQLException {
+            throw new UnsupportedOperationException("Read-only BLOB");
+        }
+
+        @Override
+        public OutputStream setBinaryStream(long pos) throws SQLException {
+            throw new UnsupportedOperationException("Read-only BLOB");
+        }
+
+        @Override
+        public void truncate(long len) throws SQLException {
+            throw new UnsupportedOperationException("Read-only BLOB");
+        }
+
+        @Override
+        public void free() {
+            synchronized (LobStorage.this) {
+                if (!freed) {
+                    freed = true;
+                    if (data == null) {
+                        valueFreed();
+                    }
+                }
+            }
+        }
+
+        private void checkFreed() throws SQLException {
+            synchronized (LobStorage.this) {
+                if (freed) {
+                    throw new SQLException("Blob already freed");
+                }
+            }
+        }
+    }
+
+    /**
+     * CLOB kept in memory or in the spill file.
+     */
+    private final class StoredClob implements Clob {
+
+        private final char[] data;
+        private final long offset;
+        private final long length;
+        private boolean freed = false;
+
+        StoredClob(char[] data) {
+            this.data = data;
+            this.offset = -1;
+            this.length = data.length;
+        }
+
+        StoredClob(long offset, long length) {
+            this.data = null;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        LobStorage getStorage() {
+            return LobStorage.this;
+        }
+
+        @Override
+        public long length() throws SQLException {
+            checkFreed();
+            return length;
+        }
+
+        @Override
+        public String getSubString(long pos, int len) throws SQLException {
+            checkFreed();
+            checkPos(pos);
+            checkLength(len);
+            int count = (int) Math.max(0, Math.min(len, length - (pos - 1)));
+            if (data != null) {
+                return new String(data, (int) (pos - 1), count);
+            }
+            byte[] bytes = new byte[count * 2];
+            try {
+                int read = read(offset + (pos - 1) * 2, bytes, 0, bytes.length);
+                return new String(bytes, 0, read, StandardCharsets.UTF_16BE);
+            } catch (IOException ex) {
+                throw new SQLException(ex);
+            }
+        }
+
+        @Override
+        public Reader getCharacterStream() throws SQLException {
+            return getCharacterStream(1, length);
+        }
+
+        @Override
+        public Reader getCharacterStream(long pos, long len) throws SQLException {
+            checkFreed();
+            checkPos(pos);
+            checkLength(len);
+            long count = Math.max(0, Math.min(len, length - (pos - 1)));
+            if (data != null) {
+                return new CharArrayReader(data, (int) Math.min(pos - 1,
+                        length), (int) count);
+            }
+            long start = offset + (pos - 1) * 2;
+            return new InputStreamReader(new SpillInputStream(start,
+                    start + count * 2), StandardCharsets.UTF_16BE);
+        }
+
+        @Override
+        public InputStream getAsciiStream() throws SQLException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public long position(String searchstr, long start) throws SQLException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public long position(Clob searchstr, long start) throws SQLException {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
+        @Override
+        public int setString(long pos, String str) throws SQLException {
+            throw new UnsupportedOperationException("Read-only CLOB");
+        }
+
+        @Override
+        public int setString(long pos, String str, int off, int len) throws SQLException {
+            throw new UnsupportedOperationException("Read-only CLOB");
+        }
+
+        @Override
+        public OutputStream setAsciiStream(long pos) throws SQLException {
+            throw new UnsupportedOperationException("Read-only CLOB");
+        }
+
+        @Override
+        public Writer setCharacterStream(long pos) throws SQLException {
+            throw new UnsupportedOperationException("Read-only CLOB");
+        }
+
+        @Override
+        public void truncate(long len) throws SQLException {
+            throw new UnsupportedOperationException("Read-only CLOB");
+        }
+
+        @Override
+        public void free() {
+            synchronized (LobStorage.this) {
+                if (!freed) {
+                    freed = true;
+                    if (data == null) {
+                        valueFreed();
+                    }
+                }
+            }
+        }
+
+        private void checkFreed() throws SQLException {
+            synchronized (LobStorage.this) {
+                if (freed) {
+                    throw new SQLException("Clob already freed");
+                }
+            }
+        }
+    }
+}
@@ -5,7 +5,6 @@ import org.netbeans.modules.db.metadata.model.api.*;
 import org.netbeans.modules.db.metadata.model.jdbc.*;
 import org.netbeans.modules.db.metadata.model.spi.CatalogImplementation;
 
-import java.lang.reflect.Method;
 import java.sql.*;
 import java.util.*;
 import java.util.logging.*;
@@ -19,6 +18,7 @@ public class JDBCSynonymSchema extends JDBCSchema
 {
 
   private static final Logger LOGGER = Logger.getLogger(JDBCSchema.class.getName());
+  private static final int SYNONYM_FETCH_SIZE = 1000;
   protected Map<String, Table> synonyms;
 
 
@@ -70,7 +70,7 @@ public class JDBCSynonymSchema extends JDBCSchema
       ResultSet rs;
       boolean isOracleConnection = Objects.equals(jdbcCatalog.getJDBCMetadata().getDmd().getClass().getName(), "oracle.jdbc.driver.OracleDatabaseMetaData");
       if (isOracleConnection)
-        rs = _getTablesHACKED(jdbcCatalog.getJDBCMetadata().getDmd(), name); // NOI18N
+        rs = _getOracleSynonyms(jdbcCatalog.getJDBCMetadata().getDmd(), name);
       else
         rs = MetadataUtilities.getTables(jdbcCatalog.getJDBCMetadata().getDmd(), jdbcCatalog.getName(), name, "%", new String[]{"SYNONYM"});
 
@@ -98,94 +98,33 @@ public class JDBCSynonymSchema extends JDBCSchema
   }
 
   /**
-   * Dirty-Hack, damit das ResultSet aus "getTableData" wieder geschlossen wird und nicht offen bleibt
+   * Liest die Synonyme eines Oracle-Schemas mit einer einzigen Abfrage auf ALL_SYNONYMS, statt der getTables-Abfrage
+   * des Treibers. Wie dort werden nur Synonyme auf sichtbare Tabellen und Views geliefert.
+   * Das Statement wird zusammen mit dem ResultSet geschlossen.
    */
-  @Deprecated
-  private ResultSet _getTablesHACKED(DatabaseMetaData pDMD, String var2) throws SQLException
+  private ResultSet _getOracleSynonyms(DatabaseMetaData pDMD, String pSchema) throws SQLException
   {
-    String var6 = "       c.comments AS remarks\n";
-    String var7 = "       NULL AS remarks\n";
-    String var8 = "  FROM all_objects o, all_tab_comments c\n";
-    String var9 = "  FROM all_objects o\n";
-    String var10 = "  WHERE o.owner LIKE :1 ESCAPE \'/\'\n    AND o.object_name LIKE :2 ESCAPE \'/\'\n";
-    String var11 = "    AND o.owner = c.owner (+)\n    AND o.object_name = c.table_name (+)\n";
-    String var13 = "    AND o.object_type IN (\'xxx\', \'SYNONYM\')\n";
-    String var14 = "    AND o.object_type IN (\'xxx\')\n";
-    String var25 = "  ORDER BY table_type, table_schem, table_name\n";
-    String var26 = "SELECT NULL AS table_cat,\n       s.owner AS table_schem,\n       s.synonym_name AS table_name,\n       \'SYNONYM\' AS table_table_type,\n";
-    String var27 = "       c.comments AS remarks\n";
-    String var28 = "       NULL AS remarks\n";
-    String var29 = "  FROM all_synonyms s, all_objects o, all_tab_comments c\n";
-    String var20 = "  FROM all_synonyms s, all_objects o\n";
-    String var30 = "  WHERE s.owner LIKE :3 ESCAPE \'/\'\n    AND s.synonym_name LIKE :4 ESCAPE \'/\'\n    AND s.table_owner = o.owner\n    AND s.table_name = o.object_name\n    AND o.object_type IN (\'TABLE\', \'VIEW\')\n";
-    String var22 = "SELECT NULL AS table_cat,\n       o.owner AS table_schem,\n       o.object_name AS table_name,\n       o.object_type AS table_type,\n";
-
-    Connection connection = pDMD.getConnection();
-
-    boolean remarksReporting;
-    boolean restrictGetTables;
-
+    PreparedStatement stmt = pDMD.getConnection().prepareStatement(
+        "SELECT s.synonym_name AS table_name\n" + // NOI18N
+            "  FROM all_synonyms s, all_objects o\n" + // NOI18N
+            "  WHERE s.owner LIKE ? ESCAPE '/'\n" + // NOI18N
+            "    AND s.table_owner = o.owner\n" + // NOI18N
+            "    AND s.table_name = o.object_name\n" + // NOI18N
+            "    AND o.object_type IN ('TABLE', 'VIEW')\n" + // NOI18N
+            "  ORDER BY s.synonym_name"); // NOI18N
     try
     {
-      Method remarksReportingMeth = connection.getClass().getMethod("getRemarksReporting");
-      Method restrictGetTablesMeth = connection.getClass().getMethod("getRestrictGetTables");
-      remarksReportingMeth.setAccessible(true);
-      restrictGetTablesMeth.setAccessible(true);
-      remarksReporting = (boolean) remarksReportingMeth.invoke(connection);
-      restrictGetTables = (boolean) restrictGetTablesMeth.invoke(connection);
-      remarksReportingMeth.setAccessible(false);
-      restrictGetTablesMeth.setAccessible(false);
-    }
-    catch (Exception e)
-    {
-      //Sollte nicht auftreten
-      throw new RuntimeException("Methods of \'OracleConnection\' could not be found!", e);
+      // der Treiber holt sonst nur 10 Zeilen pro Roundtrip
+      stmt.setFetchSize(SYNONYM_FETCH_SIZE);
+      stmt.setString(1, pSchema == null ? "%" : pSchema); // NOI18N
+      stmt.closeOnCompletion();
+      return stmt.executeQuery();
     }
-
-    ResultSet var16 = pDMD.getTableTypes();
-    while (var16.next())
-      var16.getString(1);
-    var16.close();
-
-    if (remarksReporting)
-      var22 = var22 + var6 + var8;
-    else
-      var22 = var22 + var7 + var9;
-
-    var22 = var22 + var10;
-    if (remarksReporting)
-      var22 = var22 + var14;
-    else
-      var22 = var22 + var13;
-
-    if (remarksReporting)
-      var22 = var22 + var11;
-
-    if (restrictGetTables)
-    {
-      var22 = var22 + "UNION\n" + var26;
-      if (remarksReporting)
-        var22 = var22 + var27 + var29;
-      else
-        var22 = var22 + var28 + var20;
-
-      var22 = var22 + var30;
-      if (remarksReporting)
-        var22 = var22 + var11;
-    }
-
-    var22 = var22 + var25;
-    PreparedStatement var23 = connection.prepareStatement(var22);
-    var23.setString(1, var2 == null ? "%" : var2);
-    var23.setString(2, "%");
-    if (restrictGetTables)
+    catch (SQLException e)
     {
-      var23.setString(3, var2 == null ? "%" : var2);
-      var23.setString(4, "%");
+      stmt.close();
+      throw e;
     }
-
-    var23.closeOnCompletion();
-    return var23.executeQuery();
   }
 
   private Map<String, Table> initSynonyms()
@@ -67,7 +67,12 @@ public final class DatabaseConnection {
             @Override
             public DatabaseConnection createDatabaseConnection(org.netbeans.modules.db.explorer.DatabaseConnection conn) {
                 return new DatabaseConnection(conn);
-            }    
+            }
+
+            @Override
+            public org.netbeans.modules.db.explorer.DatabaseConnection getDelegate(DatabaseConnection conn) {
+                return conn.getDelegate();
+            }
         };
     }
     
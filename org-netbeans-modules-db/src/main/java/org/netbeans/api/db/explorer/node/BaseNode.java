@@ -245,6 +245,16 @@ public abstract class BaseNode extends AbstractNode {
         return nodeRegistry.getNodes();
     }
 
+    /**
+     * Read the keys of the child nodes again and wait for them. Unlike
+     * {@link #getChildNodesSync()}, this does not create the child nodes.
+     */
+    public void refreshChildKeysSync() {
+        if (childNodeFactory != null) {
+            childNodeFactory.refreshSync();
+        }
+    }
+
     public Collection<? extends Node> getChildNodes() {
         return nodeRegistry.getNodes();
     }
@@ -19,7 +19,6 @@
 
 package org.netbeans.api.db.explorer.node;
 
-import java.util.Collection;
 import java.util.List;
 import org.netbeans.modules.db.explorer.node.BaseFilterNode;
 import org.netbeans.modules.db.explorer.node.NodeRegistry;
@@ -82,12 +81,9 @@ public class ChildNodeFactory extends ChildFactory<Lookup> {
         
         // the node registry is in the data lookup
         NodeRegistry registry = dataLookup.lookup(NodeRegistry.class);
-        Collection<? extends Node> nodes = registry.getNodes();
-        for (Node node : nodes) {
-            // the key for each node is its lookup
-            Lookup lookup = node.getLookup();
-            toPopulate.add(lookup);
-        }
+        // the key for each node is its lookup, or a key creating the node
+        // on demand (see LazyNodeProvider)
+        toPopulate.addAll(registry.getKeys());
 
         return true;
     }
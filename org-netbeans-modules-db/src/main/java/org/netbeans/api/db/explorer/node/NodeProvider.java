@@ -109,6 +109,21 @@ public abstract class NodeProvider implements Lookup.Provider {
         }
     }
 
+    /**
+     * Get the keys of the child nodes, as used by {@link ChildNodeFactory}.
+     * These are the lookups of the nodes; providers of many nodes may return
+     * keys which create their node only when it is displayed.
+     *
+     * @return the list of keys
+     */
+    public Collection<? extends Lookup> getKeys() {
+        List<Lookup> keys = new ArrayList<Lookup>();
+        for (Node node : getNodes()) {
+            keys.add(node.getLookup());
+        }
+        return keys;
+    }
+
     public synchronized void refresh() {
         initialized = false;
         @SuppressWarnings("unchecked")
@@ -205,6 +220,13 @@ public abstract class NodeProvider implements Lookup.Provider {
         changeSupport.fireChange();
     }
     
+    /**
+     * Notify the listeners that the nodes changed.
+     */
+    protected void fireChange() {
+        changeSupport.fireChange();
+    }
+
     /**
      * Add a change listener.
      * 
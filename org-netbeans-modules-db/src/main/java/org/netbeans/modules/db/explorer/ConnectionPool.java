@@ -0,0 +1,448 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.explorer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Additional JDBC connections of a connected {@link DatabaseConnection},
+ * opened with the driver of its primary connection (see
+ * {@link DbDriverManager#getSameDriverConnection}).
+ *
+ * Work which does not need the session of the primary connection (reading
+ * metadata for the explorer, counting rows of a data view...) runs on pooled
+ * connections, so it does not queue behind statements of the user. Each
+ * {@link Lane} has its own limit, so long running user queries cannot starve
+ * the metadata reads of the explorer and vice versa.
+ *
+ * Idle connections are closed after {@link #IDLE_TIMEOUT} ms and validated
+ * before reuse if they were idle for more than {@link #VALIDATE_AFTER} ms.
+ * Connections of the {@link Lane#USER} lane held for more than
+ * {@link #LEAK_TIMEOUT} ms are logged with the stack of the caller which
+ * acquired them.
+ *
+ * The pool is closed, with all its connections, when the primary connection
+ * is disconnected.
+ */
+public final class ConnectionPool {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+    private static final RequestProcessor RP = new RequestProcessor(ConnectionPool.class.getName());
+    /** Idle connections are closed after this time, in ms */
+    private static final long IDLE_TIMEOUT = 5 * 60 * 1000;
+    /** Connections idle for longer than this (ms) are validated before reuse */
+    private static final long VALIDATE_AFTER = 30 * 1000;
+    /** Timeout of the validation, in seconds */
+    private static final int VALIDATION_TIMEOUT = 5;
+    /** User leases held for longer than this (ms) are reported as leaks */
+    private static final long LEAK_TIMEOUT = 10 * 60 * 1000;
+    /** Interval of the eviction of idle connections, in ms */
+    private static final int EVICTION_INTERVAL = 60 * 1000;
+
+    /**
+     * Kinds of work sharing the connections of the pool.
+     */
+    public enum Lane {
+        /** Metadata of the explorer, held by a metadata model */
+        METADATA(1),
+        /** Short background queries of data views */
+        USER(4),
+        /** Refresh of the metadata snapshot, see MetadataSnapshotManager */
+        BACKGROUND(2);
+
+        private final int maxSize;
+
+        private Lane(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * @return Maximum number of connections of the lane.
+         */
+        public int getMaxSize() {
+            return maxSize;
+        }
+    }
+
+    private final DatabaseConnection owner;
+    private final Map<Lane, Deque<Idle>> idle = new EnumMap<>(Lane.class);
+    private final Map<Connection, Lease> leases = new IdentityHashMap<>();
+    /** Open connections (leased, idle or being opened) by lane */
+    private final Map<Lane, Integer> open = new EnumMap<>(Lane.class);
+    private final RequestProcessor.Task evictor;
+    private boolean closed = false;
+    private long waits = 0;
+    private long waitMillis = 0;
+    private long maxWaitMillis = 0;
+    private long created = 0;
+
+    ConnectionPool(DatabaseConnection owner) {
+        this.owner = owner;
+        for (Lane lane : Lane.values()) {
+            idle.put(lane, new ArrayDeque<Idle>());
+            open.put(lane, 0);
+        }
+        evictor = RP.create(new Runnable() {
+            @Override
+            public void run() {
+                evict();
+            }
+        });
+    }
+
+    /**
+     * Get a connection of a lane. Waits while all connections of the lane are
+     * in use. The connection must be returned by {@link #release}.
+     *
+     * @param lane Lane of the work
+     * @param timeout Maximum wait for a free connection, in ms
+     * @return An open connection
+     * @throws SQLException if the pool is closed, no connection became free in
+     * time or a new connection could not be opened
+     */
+    public Connection acquire(Lane lane, long timeout) throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean waited = false;
+        while (true) {
+            Idle candidate = null;
+            synchronized (this) {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool of " + owner.getName() + " is closed"); // NOI18N
+                    }
+                    candidate = idle.get(lane).pollFirst();
+                    if (candidate != null || open.get(lane) < lane.getMaxSize()) {
+                        break;
+                    }
+                    long remaining = start + timeout - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        recordWait(start);
+                        throw new SQLTimeoutException("No free connection in lane " + lane // NOI18N
+                                + " of " + owner.getName() + " after " + timeout + " ms"); // NOI18N
+                    }
+                    waited = true;
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection", ex); // NOI18N
+                    }
+                }
+                if (candidate == null) {
+                    open.put(lane, open.get(lane) + 1); // reserve
+                }
+                if (waited) {
+                    recordWait(start);
+                    waited = false;
+                }
+            }
+            Connection conn;
+            if (candidate != null) {
+                if (!isUsable(candidate)) {
+                    discard(lane, candidate.conn);
+                    continue;
+                }
+                conn = candidate.conn;
+            } else {
+                try {
+                    conn = openConnection();
+                } catch (SQLException | RuntimeException ex) {
+                    discard(lane, null);
+                    throw ex;
+                }
+            }
+            synchronized (this) {
+                if (closed) {
+                    close(conn);
+                    continue; // throws
+                }
+                leases.put(conn, new Lease(lane));
+            }
+            evictor.schedule(EVICTION_INTERVAL);
+            return conn;
+        }
+    }
+
+    /**
+     * Return a connection obtained from {@link #acquire}. Connections which
+     * are closed or still in a transaction are not reused.
+     */
+    public void release(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        Lease lease;
+        synchronized (this) {
+            lease = leases.remove(conn);
+        }
+        if (lease == null) {
+            LOGGER.log(Level.FINE, "Connection not leased from the pool of {0}", owner.getName()); // NOI18N
+            return;
+        }
+        boolean reusable;
+        try {
+            reusable = !conn.isClosed() && conn.getAutoCommit();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+            reusable = false;
+        }
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.get(lease.lane).addFirst(new Idle(conn));
+                notifyAll();
+                return;
+            }
+        }
+        discard(lease.lane, conn);
+    }
+
+    /**
+     * Close all connections. Leased connections are closed too, so their
+     * users get exceptions instead of hanging on a dead session.
+     */
+    void close() {
+        List<Connection> toClose = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Deque<Idle> queue : idle.values()) {
+                for (Idle i : queue) {
+                    toClose.add(i.conn);
+                }
+                queue.clear();
+            }
+            toClose.addAll(leases.keySet());
+            leases.clear();
+            for (Lane lane : Lane.values()) {
+                open.put(lane, 0);
+            }
+            notifyAll();
+        }
+        evictor.cancel();
+        for (Connection conn : toClose) {
+            close(conn);
+        }
+        LOGGER.log(Level.FINE, "Closed {0}", this); // NOI18N
+    }
+
+    /**
+     * @return Number of connections of the lane in use.
+     */
+    public synchronized int getActiveCount(Lane lane) {
+        return open.get(lane) - idle.get(lane).size();
+    }
+
+    /**
+     * @return Number of open connections of the lane not in use.
+     */
+    public synchronized int getIdleCount(Lane lane) {
+        return idle.get(lane).size();
+    }
+
+    /**
+     * @return Number of calls of {@link #acquire} which had to wait for a
+     * free connection.
+     */
+    public synchronized long getWaitCount() {
+        return waits;
+    }
+
+    /**
+     * @return Total time spent waiting for free connections, in ms.
+     */
+    public synchronized long getWaitMillis() {
+        return waitMillis;
+    }
+
+    /**
+     * @return Longest wait for a free connection, in ms.
+     */
+    public synchronized long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return Number of connections opened by the pool.
+     */
+    public synchronized long getCreatedCount() {
+        return created;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("ConnectionPool[").append(owner.getName()); // NOI18N
+        for (Lane lane : Lane.values()) {
+            sb.append(", ").append(lane).append('=') // NOI18N
+                    .append(open.get(lane) - idle.get(lane).size()).append(" active/") // NOI18N
+                    .append(idle.get(lane).size()).append(" idle"); // NOI18N
+        }
+        sb.append(", created=").append(created) // NOI18N
+                .append(", waits=").append(waits) // NOI18N
+                .append(", waitMillis=").append(waitMillis) // NOI18N
+                .append(", maxWaitMillis=").append(maxWaitMillis).append(']'); // NOI18N
+        return sb.toString();
+    }
+
+    private void recordWait(long start) {
+        long millis = System.currentTimeMillis() - start;
+        waits++;
+        waitMillis += millis;
+        maxWaitMillis = Math.max(maxWaitMillis, millis);
+    }
+
+    private Connection openConnection() throws SQLException {
+        Connection primary = owner.getJDBCConnection();
+        if (primary == null) {
+            throw new SQLException(owner.getName() + " is not connected"); // NOI18N
+        }
+        Properties props = owner.getConnectionProperties();
+        String user = owner.getUser();
+        String password = owner.getPassword();
+        if (user != null && user.length() > 0) {
+            props.put("user", user); //NOI18N
+        }
+        if (password != null && password.length() > 0) {
+            props.put("password", password); //NOI18N
+        }
+        Connection conn = DbDriverManager.getDefault().getSameDriverConnection(
+                primary, owner.getDatabase(), props);
+        synchronized (this) {
+            created++;
+        }
+        LOGGER.log(Level.FINE, "Opened pooled connection of {0}", owner.getName()); // NOI18N
+        return conn;
+    }
+
+    private static boolean isUsable(Idle candidate) {
+        if (System.currentTimeMillis() - candidate.since < VALIDATE_AFTER) {
+            return true;
+        }
+        try {
+            return candidate.conn.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException | AbstractMethodError ex) {
+            // old drivers without isValid
+            try {
+                return !candidate.conn.isClosed();
+            } catch (SQLException ex2) {
+                return false;
+            }
+        }
+    }
+
+    private void discard(Lane lane, Connection conn) {
+        synchronized (this) {
+            if (!closed) {
+                open.put(lane, open.get(lane) - 1);
+            }
+            notifyAll();
+        }
+        if (conn != null) {
+            close(conn);
+        }
+    }
+
+    private static void close(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ex) {
+            LOGGER.log(Level.FINE, null, ex);
+        }
+    }
+
+    /**
+     * Close connections idle for too long and report leaked user leases.
+     */
+    private void evict() {
+        List<Connection> toClose = new ArrayList<>();
+        boolean reschedule;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (Lane lane : Lane.values()) {
+                for (Iterator<Idle> it = idle.get(lane).iterator(); it.hasNext();) {
+                    Idle i = it.next();
+                    if (now - i.since > IDLE_TIMEOUT) {
+                        it.remove();
+                        open.put(lane, open.get(lane) - 1);
+                        toClose.add(i.conn);
+                    }
+                }
+            }
+            for (Lease lease : leases.values()) {
+                if (lease.lane == Lane.USER && !lease.reported
+                        && now - lease.since > LEAK_TIMEOUT) {
+                    lease.reported = true;
+                    LOGGER.log(Level.INFO, "Connection of " + owner.getName() // NOI18N
+                            + " held for more than " + LEAK_TIMEOUT / 1000 + " s", lease.caller); // NOI18N
+                }
+            }
+            reschedule = !leases.isEmpty();
+            for (Deque<Idle> queue : idle.values()) {
+                reschedule |= !queue.isEmpty();
+            }
+        }
+        for (Connection conn : toClose) {
+            close(conn);
+        }
+        if (reschedule) {
+            evictor.schedule(EVICTION_INTERVAL);
+        }
+    }
+
+    private static final class Idle {
+
+        final Connection conn;
+        final long since = System.currentTimeMillis();
+
+        Idle(Connection conn) {
+            this.conn = conn;
+        }
+    }
+
+    private static final class Lease {
+
+        final Lane lane;
+        final long since = System.currentTimeMillis();
+        /** Stack of the caller of {@link #acquire}, for leak reports */
+        final Throwable caller = new Throwable("Connection acquired here"); // NOI18N
+        boolean reported = false;
+
+        Lease(Lane lane) {
+            this.lane = lane;
+        }
+    }
+}
@@ -41,6 +41,7 @@ import java.util.logging.Logger;
 import org.netbeans.api.db.explorer.DatabaseException;
 import org.netbeans.api.db.explorer.JDBCDriver;
 import org.netbeans.api.db.explorer.JDBCDriverManager;
+import org.netbeans.api.db.explorer.node.BaseNode;
 import org.netbeans.api.keyring.Keyring;
 import org.netbeans.lib.ddl.CommandNotSupportedException;
 import org.netbeans.lib.ddl.DBConnection;
@@ -50,6 +51,7 @@ import org.netbeans.modules.db.ExceptionListener;
 import org.netbeans.modules.db.explorer.action.ConnectAction;
 import org.netbeans.modules.db.explorer.node.ConnectionNode;
 import org.netbeans.modules.db.explorer.node.DDLHelper;
+import org.netbeans.modules.db.explorer.node.NodeRegistry;
 import org.netbeans.modules.db.explorer.node.RootNode;
 import org.netbeans.modules.db.metadata.model.api.Action;
 import org.netbeans.modules.db.metadata.model.api.Metadata;
@@ -60,6 +62,7 @@ import org.netbeans.spi.db.explorer.DatabaseRuntime;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 import org.openide.explorer.ExplorerManager;
+import org.openide.nodes.Children;
 import org.openide.nodes.Node;
 import org.openide.util.*;
 import org.openide.util.RequestProcessor.Task;
@@ -140,6 +143,9 @@ public final class DatabaseConnection implements DBConnection {
      */
     private MetadataModel metadataModel = null;
 
+    /** Additional connections, created on first use while connected */
+    private ConnectionPool connectionPool = null;
+
     /** Properties for connection
      */
     private Properties connectionProperties = new Properties();
@@ -1039,6 +1045,21 @@ public final class DatabaseConnection implements DBConnection {
         return jdbcConnection;
     }
 
+    /**
+     * Get the pool of additional connections of this connection.
+     *
+     * @return The pool, or null if not connected.
+     */
+    public synchronized ConnectionPool getConnectionPool() {
+        if (jdbcConnection == null) {
+            return null;
+        }
+        if (connectionPool == null) {
+            connectionPool = new ConnectionPool(this);
+        }
+        return connectionPool;
+    }
+
     /** Add property change listener
      * Registers a listener for the PropertyChange event. The connection object
      * should fire a PropertyChange event whenever somebody changes driver, database,
@@ -1142,6 +1163,22 @@ public final class DatabaseConnection implements DBConnection {
     }
 
     public void selectInExplorer(final boolean activateTopComponent) {
+        selectInExplorer(activateTopComponent, Collections.<String>emptyList());
+    }
+
+    /**
+     * Select a node below the node of this connection, e.g. a table or a
+     * column. The path lists the names of the nodes from the connection
+     * node down to the node to select; a catalog node between the connection
+     * and a schema may be left out. If a node of the path is not found, its
+     * parent is selected. As the children of the nodes on the path are read,
+     * this should not be called in the event dispatch thread if the
+     * path is not empty.
+     *
+     * @param activateTopComponent activate the services tab
+     * @param path names of the nodes below the connection node
+     */
+    public void selectInExplorer(final boolean activateTopComponent, List<String> path) {
         TopComponent servicesTab = null;
         ExplorerManager explorer = null;
         for (TopComponent component : TopComponent.getRegistry().getOpened()) {
@@ -1177,17 +1214,84 @@ public final class DatabaseConnection implements DBConnection {
                 break;
             }
         }
+        if (connectionNode == null) {
+            return;
+        }
+        Node selected = connectionNode;
+        for (String name : path) {
+            // only schemas may be below a catalog node
+            Node child = findChild(selected, name, selected == connectionNode);
+            if (child == null) {
+                break;
+            }
+            selected = child;
+        }
         // select node
-        try {
-            if (connectionNode != null) {
-                explorer.setSelectedNodes(new Node[] { connectionNode });
-                if (activateTopComponent && servicesTab != null) {
-                    servicesTab.requestActive();
+        final ExplorerManager selectIn = explorer;
+        final TopComponent activate = activateTopComponent ? servicesTab : null;
+        final Node toSelect = selected;
+        Mutex.EVENT.readAccess(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    selectIn.setSelectedNodes(new Node[] { toSelect });
+                    if (activate != null) {
+                        activate.requestActive();
+                    }
+                } catch (PropertyVetoException e) {
+                    Exceptions.printStackTrace(e);
                 }
             }
-        } catch (PropertyVetoException e) {
-            Exceptions.printStackTrace(e);
+        });
+    }
+
+    /**
+     * Find a child of a node by name, or optionally a grandchild if there is
+     * no such child.
+     */
+    private static Node findChild(Node parent, String name, boolean grandChildren) {
+        BaseNode baseNode = parent.getLookup().lookup(BaseNode.class);
+        if (baseNode != null && baseNode.getNodeRegistry().isNameFilterSupported()) {
+            return findLazyChild(parent, baseNode, name);
+        }
+        Node[] children = parent.getChildren().getNodes(true);
+        for (Node child : children) {
+            if (name.equals(child.getName())) {
+                return child;
+            }
+        }
+        if (!grandChildren) {
+            return null;
         }
+        for (Node child : children) {
+            for (Node grandChild : child.getChildren().getNodes(true)) {
+                if (name.equals(grandChild.getName())) {
+                    return grandChild;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find a child of a list of tables, views or procedures by name. Only the
+     * node of the child is created, not the nodes of all elements of the
+     * list. The name filter of the list is cleared if it hides the child.
+     */
+    private static Node findLazyChild(Node parent, BaseNode baseNode, String name) {
+        NodeRegistry registry = baseNode.getNodeRegistry();
+        String prefix = registry.getNameFilter();
+        if (prefix != null && !name.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            registry.setNameFilter(null);
+        }
+        baseNode.refreshChildKeysSync();
+        int index = registry.indexOf(name);
+        Children children = parent.getChildren();
+        if (index < 0 || index >= children.getNodesCount(true)) {
+            return null;
+        }
+        Node child = children.getNodeAt(index);
+        return child != null && name.equals(child.getName()) ? child : null;
     }
     
     public void refreshInExplorer() throws DatabaseException {
@@ -1245,6 +1349,14 @@ public final class DatabaseConnection implements DBConnection {
     }
 
     public void disconnect() throws DatabaseException {
+        ConnectionPool pool;
+        synchronized (this) {
+            pool = connectionPool;
+            connectionPool = null;
+        }
+        if (pool != null) {
+            pool.close();
+        }
         if (jdbcConnection != null) {
             try {
                 jdbcConnection.close();
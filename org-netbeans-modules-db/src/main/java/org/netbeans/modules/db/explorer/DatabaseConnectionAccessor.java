@@ -21,7 +21,8 @@ package org.netbeans.modules.db.explorer;
 
 /**
  * Provides access to the api.DatabaseConnection constructor by the
- * {@link #createDatabaseConnection} method.
+ * {@link #createDatabaseConnection} method and to the connection it
+ * delegates to by the {@link #getDelegate} method.
  *
  *
  * @author Andrei Badea
@@ -40,4 +41,6 @@ public abstract class DatabaseConnectionAccessor {
     }
     
     public abstract org.netbeans.api.db.explorer.DatabaseConnection createDatabaseConnection(DatabaseConnection conn);
+
+    public abstract DatabaseConnection getDelegate(org.netbeans.api.db.explorer.DatabaseConnection conn);
 }
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.db.explorer.action;
+
+import org.netbeans.api.db.explorer.node.BaseNode;
+import org.netbeans.modules.db.explorer.node.NodeRegistry;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+import org.openide.nodes.Node;
+import org.openide.util.HelpCtx;
+import org.openide.util.NbBundle;
+
+/**
+ * Shows only the tables, views or procedures of a list node whose names
+ * start with a prefix entered by the user.
+ */
+public class FilterAction extends BaseAction {
+
+    @Override
+    public String getName() {
+        return NbBundle.getMessage (FilterAction.class, "Filter"); // NOI18N
+    }
+
+    @Override
+    public HelpCtx getHelpCtx() {
+        return new HelpCtx(FilterAction.class);
+    }
+
+    @Override
+    protected boolean enable(Node[] activatedNodes) {
+        if (activatedNodes.length != 1) {
+            return false;
+        }
+        BaseNode baseNode = activatedNodes[0].getLookup().lookup(BaseNode.class);
+        return baseNode != null && baseNode.getNodeRegistry().isNameFilterSupported();
+    }
+
+    @Override
+    public void performAction(Node[] activatedNodes) {
+        BaseNode baseNode = activatedNodes[0].getLookup().lookup(BaseNode.class);
+        if (baseNode == null) {
+            return;
+        }
+        NodeRegistry registry = baseNode.getNodeRegistry();
+
+        NotifyDescriptor.InputLine input = new NotifyDescriptor.InputLine(
+                NbBundle.getMessage(FilterAction.class, "FilterLabel"), // NOI18N
+                NbBundle.getMessage(FilterAction.class, "FilterTitle")); // NOI18N
+        String current = registry.getNameFilter();
+        input.setInputText(current == null ? "" : current); // NOI18N
+        if (DialogDisplayer.getDefault().notify(input) == NotifyDescriptor.OK_OPTION) {
+            // the providers fire a change, which updates the node
+            registry.setNameFilter(input.getInputText().trim());
+        }
+    }
+}
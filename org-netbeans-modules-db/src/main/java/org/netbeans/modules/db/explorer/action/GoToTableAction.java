@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.db.explorer.action;
+
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.JList;
+import javax.swing.JScrollPane;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import org.netbeans.modules.db.explorer.metadata.MetadataSearchIndex;
+import org.netbeans.modules.db.explorer.metadata.MetadataSearchIndex.Match;
+import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+import org.openide.nodes.Node;
+import org.openide.util.HelpCtx;
+import org.openide.util.NbBundle;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Finds tables and columns by name in all connections, using the
+ * {@link MetadataSearchIndex}, and selects the chosen one in the explorer.
+ */
+public class GoToTableAction extends BaseAction {
+
+    private static final RequestProcessor RP = new RequestProcessor(GoToTableAction.class.getName());
+    /** Maximum number of matches shown */
+    private static final int MAX_MATCHES = 100;
+
+    @Override
+    public String getName() {
+        return NbBundle.getMessage (GoToTableAction.class, "GoToTable"); // NOI18N
+    }
+
+    @Override
+    public HelpCtx getHelpCtx() {
+        return new HelpCtx(GoToTableAction.class);
+    }
+
+    @Override
+    protected boolean enable(Node[] activatedNodes) {
+        return activatedNodes.length == 1;
+    }
+
+    @Override
+    public void performAction(Node[] activatedNodes) {
+        NotifyDescriptor.InputLine input = new NotifyDescriptor.InputLine(
+                NbBundle.getMessage(GoToTableAction.class, "GoToTableLabel"), // NOI18N
+                NbBundle.getMessage(GoToTableAction.class, "GoToTableTitle")); // NOI18N
+        if (DialogDisplayer.getDefault().notify(input) != NotifyDescriptor.OK_OPTION) {
+            return;
+        }
+        final String text = input.getInputText().trim();
+        if (text.isEmpty()) {
+            return;
+        }
+
+        // may load snapshots from disk
+        RP.post(new Runnable() {
+            @Override
+            public void run() {
+                final List<Match> matches = MetadataSearchIndex.getDefault().search(text, MAX_MATCHES);
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showMatches(text, matches);
+                    }
+                });
+            }
+        });
+    }
+
+    private static void showMatches(String text, List<Match> matches) {
+        if (matches.isEmpty()) {
+            DialogDisplayer.getDefault().notify(new NotifyDescriptor.Message(
+                    NbBundle.getMessage(GoToTableAction.class, "GoToTableNoMatches", text))); // NOI18N
+            return;
+        }
+
+        final JList<Match> list = new JList<Match>(matches.toArray(new Match[matches.size()]));
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setSelectedIndex(0);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value,
+                    int index, boolean isSelected, boolean cellHasFocus) {
+                return super.getListCellRendererComponent(list, getDisplayName((Match) value),
+                        index, isSelected, cellHasFocus);
+            }
+        });
+
+        DialogDescriptor descriptor = new DialogDescriptor(new JScrollPane(list),
+                NbBundle.getMessage(GoToTableAction.class, "GoToTableMatchesTitle", text)); // NOI18N
+        if (DialogDisplayer.getDefault().notify(descriptor) != DialogDescriptor.OK_OPTION) {
+            return;
+        }
+        final Match match = list.getSelectedValue();
+        if (match == null) {
+            return;
+        }
+
+        // creates the nodes on the path
+        RP.post(new Runnable() {
+            @Override
+            public void run() {
+                match.getDatabaseConnection().selectInExplorer(true, getPath(match));
+            }
+        });
+    }
+
+    private static String getDisplayName(Match match) {
+        String schema = match.getSchema() != null ? match.getSchema() : match.getCatalog();
+        String connection = match.getDatabaseConnection().getDisplayName();
+        if (match.getColumn() == null) {
+            return NbBundle.getMessage(GoToTableAction.class, "GoToTableTableMatch", // NOI18N
+                    match.getTable(), schema, connection);
+        }
+        return NbBundle.getMessage(GoToTableAction.class, "GoToTableColumnMatch", // NOI18N
+                match.getTable(), match.getColumn(), schema, connection);
+    }
+
+    /**
+     * @return the names of the explorer nodes from the connection to the match
+     */
+    private static List<String> getPath(Match match) {
+        List<String> path = new ArrayList<String>();
+        String schema = match.getSchema() != null ? match.getSchema() : match.getCatalog();
+        if (schema != null) {
+            path.add(schema);
+        }
+        // synonyms are not shown in the explorer
+        if ("SYNONYM".equals(match.getTableType())) { // NOI18N
+            return path;
+        }
+        if ("VIEW".equals(match.getTableType())) { // NOI18N
+            path.add("Views"); // NOI18N
+        } else if ("SYSTEM TABLE".equals(match.getTableType())) { // NOI18N
+            path.add("SystemTables"); // NOI18N
+        } else {
+            path.add("Tables"); // NOI18N
+        }
+        path.add(match.getTable());
+        if (match.getColumn() != null) {
+            path.add(match.getColumn());
+        }
+        return path;
+    }
+}
@@ -21,6 +21,7 @@ package org.netbeans.modules.db.explorer.action;
 
 import org.netbeans.api.db.explorer.node.BaseNode;
 import org.netbeans.modules.db.explorer.DatabaseConnection;
+import org.netbeans.modules.db.explorer.DbMetaDataListenerSupport;
 import org.netbeans.modules.db.metadata.model.api.Action;
 import org.netbeans.modules.db.metadata.model.api.Metadata;
 import org.netbeans.modules.db.metadata.model.api.MetadataModel;
@@ -68,7 +69,8 @@ public class RefreshAction extends BaseAction {
             new Runnable() {
                 @Override
                 public void run() {
-                    MetadataModel model = baseNode.getLookup().lookup(DatabaseConnection.class).getMetadataModel();
+                    DatabaseConnection connection = baseNode.getLookup().lookup(DatabaseConnection.class);
+                    MetadataModel model = connection.getMetadataModel();
                     if (model != null) {
                         try {
                             model.runReadAction(
@@ -83,6 +85,7 @@ public class RefreshAction extends BaseAction {
                             Exceptions.printStackTrace(e);
                         }
                     }
+                    DbMetaDataListenerSupport.fireTablesChanged(connection.getDatabaseConnection());
 
                     baseNode.refresh();
                 }
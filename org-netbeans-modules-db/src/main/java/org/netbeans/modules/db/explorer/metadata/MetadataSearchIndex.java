@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.explorer.metadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.db.explorer.ConnectionList;
+import org.netbeans.modules.db.explorer.DatabaseConnection;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.ColumnInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.SchemaInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.TableInfo;
+
+/**
+ * Finds tables, views, synonyms and columns by name in all connections of the
+ * {@link ConnectionList}, without expanding the explorer.
+ *
+ * The index is built from the {@link MetadataSnapshot} of each connection, so
+ * it covers the schemas kept in the snapshot, also of connections which are
+ * not connected. Each schema has its own index of the trigrams of the
+ * lowercase names; a schema is indexed again when the snapshot manager read
+ * it again, e.g. after the explorer reported changed tables.
+ */
+public final class MetadataSearchIndex {
+
+    private static final Logger LOGGER = Logger.getLogger(MetadataSearchIndex.class.getName());
+    private static final MetadataSearchIndex DEFAULT = new MetadataSearchIndex();
+    /** Length of the substrings indexed */
+    private static final int GRAM = 3;
+
+    /** Match kinds, in ranking order */
+    private static final int EXACT = 0;
+    private static final int PREFIX = 1;
+    private static final int WORD_PREFIX = 2;
+    private static final int SUBSTRING = 3;
+
+    private static final Comparator<Hit> HIT_COMPARATOR = new Comparator<Hit>() {
+
+        @Override
+        public int compare(Hit hit1, Hit hit2) {
+            if (hit1.rank != hit2.rank) {
+                return hit1.rank - hit2.rank;
+            }
+            String name1 = hit1.index.names[hit1.entry];
+            String name2 = hit2.index.names[hit2.entry];
+            if (name1.length() != name2.length()) {
+                return name1.length() - name2.length();
+            }
+            // tables before their columns
+            boolean table1 = hit1.index.tables[hit1.entry] < 0;
+            boolean table2 = hit2.index.tables[hit2.entry] < 0;
+            if (table1 != table2) {
+                return table1 ? -1 : 1;
+            }
+            return name1.compareTo(name2);
+        }
+    };
+
+    // @GuardedBy("this")
+    private final Map<DatabaseConnection, Map<String, SchemaIndex>> indexes = new HashMap<>();
+
+    private MetadataSearchIndex() {
+    }
+
+    public static MetadataSearchIndex getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Find tables and columns whose names contain the given text, ignoring
+     * case. Exact matches come first, then names starting with the text,
+     * names with a word (e.g. after an underscore) starting with the text and
+     * finally the other names containing it.
+     *
+     * May load snapshots from disk, so it should not be called in the event
+     * dispatch thread.
+     *
+     * @param text the text to search
+     * @param limit maximum number of results
+     * @return the best matches, in ranking order
+     */
+    public List<Match> search(String text, int limit) {
+        String query = text == null ? "" : text.trim().toLowerCase(Locale.ROOT); // NOI18N
+        if (query.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        long start = System.currentTimeMillis();
+        // best hits at the head, so the worst is at the head of the reversed queue
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Collections.reverseOrder(HIT_COMPARATOR));
+        for (SchemaIndex index : update()) {
+            index.search(query, best, limit);
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        Collections.sort(hits, HIT_COMPARATOR);
+        List<Match> result = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            result.add(hit.index.createMatch(hit.entry));
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Found {0} matches of \"{1}\" in {2} ms", // NOI18N
+                    new Object[]{result.size(), query, System.currentTimeMillis() - start});
+        }
+        return result;
+    }
+
+    /**
+     * Index the schemas of all connections which changed since the last
+     * search.
+     *
+     * @return the indexes of all schemas
+     */
+    private synchronized List<SchemaIndex> update() {
+        List<SchemaIndex> result = new ArrayList<>();
+        Map<DatabaseConnection, Map<String, SchemaIndex>> updated = new HashMap<>();
+        for (DatabaseConnection dbconn : ConnectionList.getDefault().getConnections()) {
+            MetadataSnapshot snapshot = MetadataSnapshotManager.load(dbconn);
+            if (snapshot == null) {
+                continue;
+            }
+            Map<String, SchemaIndex> old = indexes.get(dbconn);
+            Map<String, SchemaIndex> schemas = new HashMap<>();
+            for (SchemaInfo schema : snapshot.getSchemas()) {
+                String key = schema.getCatalog() + '\0' + schema.getName();
+                SchemaIndex index = old == null ? null : old.get(key);
+                if (index == null || index.created != schema.getCreated()) {
+                    index = new SchemaIndex(dbconn, schema);
+                }
+                schemas.put(key, index);
+                result.add(index);
+            }
+            updated.put(dbconn, schemas);
+        }
+        // removed connections are dropped
+        indexes.clear();
+        indexes.putAll(updated);
+        return result;
+    }
+
+    /**
+     * @return the lowercase substrings of the index in a name
+     */
+    private static Set<String> getGrams(String lowerName) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= lowerName.length(); i++) {
+            grams.add(lowerName.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    /**
+     * @return the rank of a name containing the query
+     */
+    private static int getRank(String name, String lowerName, String query) {
+        if (lowerName.length() == query.length()) {
+            return EXACT;
+        }
+        int pos = lowerName.indexOf(query);
+        if (pos == 0) {
+            return PREFIX;
+        }
+        // lowercasing may change the length of names in rare cases
+        while (pos > 0 && pos < name.length()) {
+            char before = name.charAt(pos - 1);
+            char first = name.charAt(pos);
+            if (!Character.isLetterOrDigit(before)
+                    || (Character.isLowerCase(before) && Character.isUpperCase(first))) {
+                return WORD_PREFIX;
+            }
+            pos = lowerName.indexOf(query, pos + 1);
+        }
+        return SUBSTRING;
+    }
+
+    /**
+     * Names of the tables and columns of one schema. Entries are numbered, the
+     * entry of a table is followed by the entries of its columns.
+     */
+    private static final class SchemaIndex {
+
+        private final DatabaseConnection dbconn;
+        private final String catalog;
+        private final String schema;
+        private final long created;
+        private final String[] names;
+        private final String[] lowerNames;
+        /** Entry of the table of a column entry, -1 for table entries */
+        private final int[] tables;
+        private final String[] types;
+        /** Ascending entries containing a trigram */
+        private final Map<String, int[]> grams;
+
+        SchemaIndex(DatabaseConnection dbconn, SchemaInfo info) {
+            this.dbconn = dbconn;
+            this.catalog = info.getCatalog();
+            this.schema = info.getName();
+            this.created = info.getCreated();
+
+            List<String> nameList = new ArrayList<>();
+            List<Integer> tableList = new ArrayList<>();
+            List<String> typeList = new ArrayList<>();
+            for (TableInfo table : info.getTables()) {
+                int tableEntry = nameList.size();
+                nameList.add(table.getName());
+                tableList.add(-1);
+                typeList.add(table.getType());
+                for (ColumnInfo column : table.getColumns()) {
+                    nameList.add(column.getName());
+                    tableList.add(tableEntry);
+                    typeList.add(null);
+                }
+            }
+
+            int count = nameList.size();
+            names = nameList.toArray(new String[count]);
+            lowerNames = new String[count];
+            tables = new int[count];
+            types = typeList.toArray(new String[count]);
+            Map<String, int[]> postings = new HashMap<>();
+            Map<String, Integer> sizes = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                lowerNames[i] = names[i].toLowerCase(Locale.ROOT);
+                tables[i] = tableList.get(i);
+                for (String gram : getGrams(lowerNames[i])) {
+                    int[] list = postings.get(gram);
+                    Integer size = sizes.get(gram);
+                    int n = size == null ? 0 : size;
+                    if (list == null) {
+                        list = new int[4];
+                    } else if (n == list.length) {
+                        list = Arrays.copyOf(list, n * 2);
+                    }
+                    list[n] = i;
+                    postings.put(gram, list);
+                    sizes.put(gram, n + 1);
+                }
+            }
+            for (Map.Entry<String, int[]> entry : postings.entrySet()) {
+                entry.setValue(Arrays.copyOf(entry.getValue(), sizes.get(entry.getKey())));
+            }
+            grams = postings;
+        }
+
+        void search(String query, PriorityQueue<Hit> best, int limit) {
+            if (query.length() < GRAM) {
+                for (int i = 0; i < names.length; i++) {
+                    check(i, query, best, limit);
+                }
+                return;
+            }
+
+            // candidates contain all trigrams of the query, start with the rarest
+            int[] candidates = null;
+            for (String gram : getGrams(query)) {
+                int[] list = grams.get(gram);
+                if (list == null) {
+                    return;
+                }
+                if (candidates == null || list.length < candidates.length) {
+                    candidates = list;
+                }
+            }
+            for (int i : candidates) {
+                check(i, query, best, limit);
+            }
+        }
+
+        private void check(int entry, String query, PriorityQueue<Hit> best, int limit) {
+            if (!lowerNames[entry].contains(query)) {
+                return;
+            }
+            Hit hit = new Hit(this, entry, getRank(names[entry], lowerNames[entry], query));
+            if (best.size() < limit) {
+                best.add(hit);
+            } else if (HIT_COMPARATOR.compare(hit, best.peek()) < 0) {
+                best.poll();
+                best.add(hit);
+            }
+        }
+
+        Match createMatch(int entry) {
+            int table = tables[entry];
+            if (table < 0) {
+                return new Match(dbconn, catalog, schema, names[entry], types[entry], null);
+            }
+            return new Match(dbconn, catalog, schema, names[table], types[table], names[entry]);
+        }
+    }
+
+    private static final class Hit {
+
+        final SchemaIndex index;
+        final int entry;
+        final int rank;
+
+        Hit(SchemaIndex index, int entry, int rank) {
+            this.index = index;
+            this.entry = entry;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * A table, view, synonym or column found by {@link #search}.
+     */
+    public static final class Match {
+
+        private final DatabaseConnection dbconn;
+        private final String catalog;
+        private final String schema;
+        private final String table;
+        private final String tableType;
+        private final String column;
+
+        Match(DatabaseConnection dbconn, String catalog, String schema,
+                String table, String tableType, String column) {
+            this.dbconn = dbconn;
+            this.catalog = catalog;
+            this.schema = schema;
+            this.table = table;
+            this.tableType = tableType;
+            this.column = column;
+        }
+
+        public DatabaseConnection getDatabaseConnection() {
+            return dbconn;
+        }
+
+        public String getCatalog() {
+            return catalog;
+        }
+
+        public String getSchema() {
+            return schema;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * @return TABLE_TYPE of the table as reported by the driver, e.g.
+         * TABLE, VIEW or SYNONYM
+         */
+        public String getTableType() {
+            return tableType;
+        }
+
+        /**
+         * @return the column name, or null if the table itself matched
+         */
+        public String getColumn() {
+            return column;
+        }
+
+        @Override
+        public String toString() {
+            return "Match[" + dbconn.getName() + ", " + schema + "." + table // NOI18N
+                    + (column == null ? "" : "." + column) + "]"; // NOI18N
+        }
+    }
+}
@@ -0,0 +1,659 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.explorer.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tables, columns, keys, indexes and synonyms of some schemas of a
+ * connection, as read from the data dictionary by {@link SchemaReader}. The
+ * snapshot is stored in a binary file, so it is available right after
+ * connecting, before anything is read from the database.
+ *
+ * Schemas read from a file may be out of date; {@link SchemaInfo#isVerified}
+ * tells whether a schema was compared to the database recently.
+ *
+ * Instances are immutable, {@link MetadataSnapshotManager} replaces the
+ * snapshot of a connection when schemas are read again.
+ */
+public final class MetadataSnapshot {
+
+    /** Version of the file format, files of other versions are ignored */
+    static final int VERSION = 1;
+    private static final int MAGIC = 0x44424d53; // "DBMS"
+
+    private final Map<String, SchemaInfo> schemas;
+
+    MetadataSnapshot(Collection<SchemaInfo> schemas) {
+        Map<String, SchemaInfo> map = new LinkedHashMap<>();
+        for (SchemaInfo schema : schemas) {
+            map.put(getKey(schema.catalog, schema.name), schema);
+        }
+        this.schemas = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * @return the schemas of the snapshot
+     */
+    public Collection<SchemaInfo> getSchemas() {
+        return schemas.values();
+    }
+
+    /**
+     * @param catalog catalog name, null or empty if the database has no
+     * catalogs
+     * @param schema schema name, null or empty if the database has no schemas
+     * @return the schema, or null if it is not in the snapshot
+     */
+    public SchemaInfo getSchema(String catalog, String schema) {
+        return schemas.get(getKey(catalog, schema));
+    }
+
+    /**
+     * @return the table, view or synonym, or null if it is not in the
+     * snapshot
+     */
+    public TableInfo getTable(String catalog, String schema, String table) {
+        SchemaInfo info = getSchema(catalog, schema);
+        return info == null ? null : info.getTable(table);
+    }
+
+    /**
+     * @return a snapshot with the given schema added or replaced
+     */
+    MetadataSnapshot with(SchemaInfo schema) {
+        Map<String, SchemaInfo> map = new LinkedHashMap<>(schemas);
+        map.put(getKey(schema.catalog, schema.name), schema);
+        return new MetadataSnapshot(map.values());
+    }
+
+    /**
+     * @return a snapshot with all schemas marked as not compared to the
+     * database
+     */
+    MetadataSnapshot unverified() {
+        List<SchemaInfo> list = new ArrayList<>(schemas.size());
+        for (SchemaInfo schema : schemas.values()) {
+            list.add(schema.withVerified(0));
+        }
+        return new MetadataSnapshot(list);
+    }
+
+    @Override
+    public String toString() {
+        return "MetadataSnapshot[schemas=" + schemas.keySet() + "]"; // NOI18N
+    }
+
+    private static String getKey(String catalog, String schema) {
+        return (catalog == null ? "" : catalog) + '\0' + (schema == null ? "" : schema); // NOI18N
+    }
+
+    void write(File file) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp"); // NOI18N
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(schemas.size());
+            for (SchemaInfo schema : schemas.values()) {
+                schema.write(out);
+            }
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Cannot replace " + file); // NOI18N
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmp + " to " + file); // NOI18N
+        }
+    }
+
+    /**
+     * @return the snapshot, or null if the file does not exist or has another
+     * version
+     */
+    static MetadataSnapshot read(File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            int count = in.readInt();
+            List<SchemaInfo> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(SchemaInfo.read(in));
+            }
+            return new MetadataSnapshot(list);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+        for (String s : list) {
+            writeString(out, s);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(readString(in));
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Schema with its tables, views and synonyms.
+     */
+    public static final class SchemaInfo {
+
+        /** Time a comparison to the database is trusted, in ms */
+        static final long VERIFIED_TTL = 5 * 60 * 1000;
+
+        private final String catalog;
+        private final String name;
+        private final Signature signature;
+        private final long created;
+        private final Map<String, TableInfo> tables;
+        /** Time of the last comparison to the database in ms, 0 if none */
+        private final long verified;
+
+        SchemaInfo(String catalog, String name, Signature signature, long created,
+                Collection<TableInfo> tables, long verified) {
+            this.catalog = catalog;
+            this.name = name;
+            this.signature = signature;
+            this.created = created;
+            Map<String, TableInfo> map = new LinkedHashMap<>();
+            for (TableInfo table : tables) {
+                map.put(table.name, table);
+            }
+            this.tables = Collections.unmodifiableMap(map);
+            this.verified = verified;
+        }
+
+        public String getCatalog() {
+            return catalog;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        Signature getSignature() {
+            return signature;
+        }
+
+        /**
+         * @return time when the schema was read from the database, in ms
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * @return true if the schema was read or compared to the database in
+         * the last {@link #VERIFIED_TTL} ms. DDL of other sessions is only
+         * noticed by the next comparison, so keys of schemas compared earlier
+         * should not be used to modify data.
+         */
+        public boolean isVerified() {
+            return verified > 0 && System.currentTimeMillis() - verified < VERIFIED_TTL;
+        }
+
+        /**
+         * @return time of the last comparison to the database in ms, 0 if
+         * the schema was not compared
+         */
+        long getVerified() {
+            return verified;
+        }
+
+        public Collection<TableInfo> getTables() {
+            return tables.values();
+        }
+
+        public TableInfo getTable(String table) {
+            return tables.get(table);
+        }
+
+        /**
+         * @param newVerified time of the comparison to the database, 0 to
+         * mark the schema as not compared
+         * @return this schema with the time of the comparison
+         */
+        SchemaInfo withVerified(long newVerified) {
+            return verified == newVerified ? this
+                    : new SchemaInfo(catalog, name, signature, created, tables.values(), newVerified);
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            writeString(out, catalog);
+            writeString(out, name);
+            out.writeInt(signature.objectCount);
+            out.writeLong(signature.lastDdl);
+            out.writeLong(created);
+            out.writeInt(tables.size());
+            for (TableInfo table : tables.values()) {
+                table.write(out);
+            }
+        }
+
+        private static SchemaInfo read(DataInputStream in) throws IOException {
+            String catalog = readString(in);
+            String name = readString(in);
+            Signature signature = new Signature(in.readInt(), in.readLong());
+            long created = in.readLong();
+            int count = in.readInt();
+            List<TableInfo> tables = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                tables.add(TableInfo.read(in));
+            }
+            return new SchemaInfo(catalog, name, signature, created, tables, 0);
+        }
+    }
+
+    /**
+     * Number of objects and time of the last DDL statement of a schema, or a
+     * checksum of the column definitions if the database does not record DDL
+     * times. A schema is read again when its signature changes.
+     */
+    static final class Signature {
+
+        /** Number of objects of the schema */
+        final int objectCount;
+        /** Time of the last DDL statement in ms or checksum, -1 if not known */
+        final long lastDdl;
+
+        Signature(int objectCount, long lastDdl) {
+            this.objectCount = objectCount;
+            this.lastDdl = lastDdl;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) obj;
+            return objectCount == other.objectCount && lastDdl == other.lastDdl;
+        }
+
+        @Override
+        public int hashCode() {
+            return objectCount * 31 + (int) (lastDdl ^ (lastDdl >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return "Signature[objects=" + objectCount + ", lastDdl=" + lastDdl + "]"; // NOI18N
+        }
+    }
+
+    /**
+     * Table, view or synonym.
+     */
+    public static final class TableInfo {
+
+        private final String name;
+        private final String type;
+        private final List<ColumnInfo> columns;
+        private final String primaryKeyName;
+        private final List<String> primaryKey;
+        private final List<ForeignKeyInfo> foreignKeys;
+        private final List<IndexInfo> indexes;
+
+        TableInfo(String name, String type, List<ColumnInfo> columns,
+                String primaryKeyName, List<String> primaryKey,
+                List<ForeignKeyInfo> foreignKeys, List<IndexInfo> indexes) {
+            this.name = name;
+            this.type = type;
+            this.columns = Collections.unmodifiableList(columns);
+            this.primaryKeyName = primaryKeyName;
+            this.primaryKey = Collections.unmodifiableList(primaryKey);
+            this.foreignKeys = Collections.unmodifiableList(foreignKeys);
+            this.indexes = Collections.unmodifiableList(indexes);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the TABLE_TYPE reported by the driver, e.g. TABLE, VIEW or
+         * SYNONYM
+         */
+        public String getType() {
+            return type;
+        }
+
+        public List<ColumnInfo> getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return name of the primary key, null if it has none or no name
+         */
+        public String getPrimaryKeyName() {
+            return primaryKeyName;
+        }
+
+        /**
+         * @return names of the primary key columns in key order, empty if the
+         * table has no primary key
+         */
+        public List<String> getPrimaryKey() {
+            return primaryKey;
+        }
+
+        public List<ForeignKeyInfo> getForeignKeys() {
+            return foreignKeys;
+        }
+
+        public List<IndexInfo> getIndexes() {
+            return indexes;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            writeString(out, name);
+            writeString(out, type);
+            out.writeInt(columns.size());
+            for (ColumnInfo column : columns) {
+                column.write(out);
+            }
+            writeString(out, primaryKeyName);
+            writeStrings(out, primaryKey);
+            out.writeInt(foreignKeys.size());
+            for (ForeignKeyInfo fk : foreignKeys) {
+                fk.write(out);
+            }
+            out.writeInt(indexes.size());
+            for (IndexInfo index : indexes) {
+                index.write(out);
+            }
+        }
+
+        private static TableInfo read(DataInputStream in) throws IOException {
+            String name = readString(in);
+            String type = readString(in);
+            int count = in.readInt();
+            List<ColumnInfo> columns = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                columns.add(ColumnInfo.read(in));
+            }
+            String primaryKeyName = readString(in);
+            List<String> primaryKey = readStrings(in);
+            count = in.readInt();
+            List<ForeignKeyInfo> foreignKeys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                foreignKeys.add(ForeignKeyInfo.read(in));
+            }
+            count = in.readInt();
+            List<IndexInfo> indexes = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                indexes.add(IndexInfo.read(in));
+            }
+            return new TableInfo(name, type, columns, primaryKeyName, primaryKey,
+                    foreignKeys, indexes);
+        }
+    }
+
+    /**
+     * Column of a table.
+     */
+    public static final class ColumnInfo {
+
+        private final String name;
+        private final int jdbcType;
+        private final String typeName;
+        private final int size;
+        private final int scale;
+        private final boolean nullable;
+        private final String defaultValue;
+
+        ColumnInfo(String name, int jdbcType, String typeName, int size,
+                int scale, boolean nullable, String defaultValue) {
+            this.name = name;
+            this.jdbcType = jdbcType;
+            this.typeName = typeName;
+            this.size = size;
+            this.scale = scale;
+            this.nullable = nullable;
+            this.defaultValue = defaultValue;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return type as defined in {@link java.sql.Types}
+         */
+        public int getJdbcType() {
+            return jdbcType;
+        }
+
+        public String getTypeName() {
+            return typeName;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getScale() {
+            return scale;
+        }
+
+        public boolean isNullable() {
+            return nullable;
+        }
+
+        /**
+         * @return the default value, null if the column has none
+         */
+        public String getDefaultValue() {
+            return defaultValue;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            writeString(out, name);
+            out.writeInt(jdbcType);
+            writeString(out, typeName);
+            out.writeInt(size);
+            out.writeInt(scale);
+            out.writeBoolean(nullable);
+            writeString(out, defaultValue);
+        }
+
+        private static ColumnInfo read(DataInputStream in) throws IOException {
+            return new ColumnInfo(readString(in), in.readInt(), readString(in),
+                    in.readInt(), in.readInt(), in.readBoolean(), readString(in));
+        }
+    }
+
+    /**
+     * Foreign key of a table.
+     */
+    public static final class ForeignKeyInfo {
+
+        private final String name;
+        private final String pkCatalog;
+        private final String pkSchema;
+        private final String pkTable;
+        private final String pkName;
+        private final List<String> columns;
+        private final List<String> pkColumns;
+        private final int updateRule;
+        private final int deleteRule;
+        private final int deferrability;
+
+        ForeignKeyInfo(String name, String pkCatalog, String pkSchema,
+                String pkTable, String pkName, List<String> columns,
+                List<String> pkColumns, int updateRule, int deleteRule,
+                int deferrability) {
+            this.name = name;
+            this.pkCatalog = pkCatalog;
+            this.pkSchema = pkSchema;
+            this.pkTable = pkTable;
+            this.pkName = pkName;
+            this.columns = Collections.unmodifiableList(columns);
+            this.pkColumns = Collections.unmodifiableList(pkColumns);
+            this.updateRule = updateRule;
+            this.deleteRule = deleteRule;
+            this.deferrability = deferrability;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPKCatalog() {
+            return pkCatalog;
+        }
+
+        public String getPKSchema() {
+            return pkSchema;
+        }
+
+        public String getPKTable() {
+            return pkTable;
+        }
+
+        public String getPKName() {
+            return pkName;
+        }
+
+        /**
+         * @return the referencing columns, in key order
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * @return the referenced columns, in key order
+         */
+        public List<String> getPKColumns() {
+            return pkColumns;
+        }
+
+        public int getUpdateRule() {
+            return updateRule;
+        }
+
+        public int getDeleteRule() {
+            return deleteRule;
+        }
+
+        public int getDeferrability() {
+            return deferrability;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            writeString(out, name);
+            writeString(out, pkCatalog);
+            writeString(out, pkSchema);
+            writeString(out, pkTable);
+            writeString(out, pkName);
+            writeStrings(out, columns);
+            writeStrings(out, pkColumns);
+            out.writeInt(updateRule);
+            out.writeInt(deleteRule);
+            out.writeInt(deferrability);
+        }
+
+        private static ForeignKeyInfo read(DataInputStream in) throws IOException {
+            return new ForeignKeyInfo(readString(in), readString(in),
+                    readString(in), readString(in), readString(in),
+                    readStrings(in), readStrings(in), in.readInt(),
+                    in.readInt(), in.readInt());
+        }
+    }
+
+    /**
+     * Index of a table.
+     */
+    public static final class IndexInfo {
+
+        private final String name;
+        private final boolean unique;
+        private final List<String> columns;
+
+        IndexInfo(String name, boolean unique, List<String> columns) {
+            this.name = name;
+            this.unique = unique;
+            this.columns = Collections.unmodifiableList(columns);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isUnique() {
+            return unique;
+        }
+
+        /**
+         * @return the indexed columns, in index order
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            writeString(out, name);
+            out.writeBoolean(unique);
+            writeStrings(out, columns);
+        }
+
+        private static IndexInfo read(DataInputStream in) throws IOException {
+            return new IndexInfo(readString(in), in.readBoolean(), readStrings(in));
+        }
+    }
+}
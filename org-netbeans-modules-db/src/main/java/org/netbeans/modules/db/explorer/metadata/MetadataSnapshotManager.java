@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.explorer.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.api.db.explorer.DatabaseConnection;
+import org.netbeans.modules.db.explorer.ConnectionPool;
+import org.netbeans.modules.db.explorer.DbMetaDataListener;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.SchemaInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.Signature;
+import org.openide.modules.Places;
+import org.openide.util.RequestProcessor;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Keeps a {@link MetadataSnapshot} of the schema of each connection and of
+ * its important schemas. The snapshot is loaded from the cache directory when
+ * the connection is opened, so it is available at once, even for dictionaries
+ * which take minutes to read.
+ *
+ * After loading, the snapshot is refreshed in the background: the signature
+ * of each schema (number of objects, time of the last DDL) is read from the
+ * database and only schemas whose signature changed are read again. Schemas
+ * of databases without a DDL timestamp are read again when they are older
+ * than {@link #MAX_AGE} ms. Changed schemas are read in parallel by the
+ * {@link #WORKERS}, on up to {@link ConnectionPool.Lane#BACKGROUND}
+ * connections of the pool.
+ *
+ * DDL of other sessions is not reported, so the signatures are compared
+ * again when the snapshot is requested and the last comparison is older than
+ * {@link #RECHECK_INTERVAL} ms. Schemas not compared for
+ * {@link SchemaInfo#VERIFIED_TTL} ms are no longer verified.
+ */
+public final class MetadataSnapshotManager {
+
+    private static final Logger LOGGER = Logger.getLogger(MetadataSnapshotManager.class.getName());
+    private static final RequestProcessor RP = new RequestProcessor(MetadataSnapshotManager.class.getName(), 4, true);
+    /** Reads schemas, shared by all connections */
+    private static final RequestProcessor WORKERS = new RequestProcessor(MetadataSnapshotManager.class.getName() + ".workers", 4, true); // NOI18N
+    private static final String CACHE_DIR = "db-metadata"; // NOI18N
+    /** Maximum age of schemas which cannot be checked for DDL, in ms */
+    private static final long MAX_AGE = 24 * 60 * 60 * 1000;
+    /** Time to wait for a pooled connection, in ms */
+    private static final long POOL_TIMEOUT = 30 * 1000;
+    /** Delay of a refresh after changes were reported, in ms */
+    private static final int REFRESH_DELAY = 2000;
+    /** Minimum time between comparisons of the signatures, in ms */
+    private static final long RECHECK_INTERVAL = 60 * 1000;
+
+    private static final Map<DatabaseConnection, State> STATES = new WeakHashMap<>();
+
+    private MetadataSnapshotManager() {
+    }
+
+    /**
+     * Get the snapshot of a connection. If the signatures were not compared
+     * recently, they are compared in the background, so the returned
+     * snapshot may contain schemas which are no longer verified.
+     *
+     * @return the snapshot, or null if none was loaded or read yet
+     */
+    public static MetadataSnapshot get(DatabaseConnection dbconn) {
+        State state;
+        synchronized (STATES) {
+            state = STATES.get(dbconn);
+        }
+        if (state == null) {
+            return null;
+        }
+        state.recheck();
+        return state.snapshot;
+    }
+
+    /**
+     * Load the snapshot of a connection which was just opened and refresh it
+     * in the background.
+     */
+    public static void connected(org.netbeans.modules.db.explorer.DatabaseConnection dbconn) {
+        getState(dbconn).task.schedule(0);
+    }
+
+    /**
+     * Get the snapshot of a connection, loading it from the cache directory
+     * if this was not done yet. The connection need not be connected, the
+     * snapshot is not refreshed.
+     *
+     * @return the snapshot, or null if there is none
+     */
+    public static MetadataSnapshot load(org.netbeans.modules.db.explorer.DatabaseConnection dbconn) {
+        State state = getState(dbconn);
+        state.ensureLoaded();
+        return state.snapshot;
+    }
+
+    private static State getState(org.netbeans.modules.db.explorer.DatabaseConnection dbconn) {
+        synchronized (STATES) {
+            State state = STATES.get(dbconn.getDatabaseConnection());
+            if (state == null) {
+                state = new State(dbconn);
+                STATES.put(dbconn.getDatabaseConnection(), state);
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Stop refreshing the snapshot of a connection which was closed. The
+     * snapshot is kept for the next connect.
+     */
+    public static void disconnected(org.netbeans.modules.db.explorer.DatabaseConnection dbconn) {
+        State state;
+        synchronized (STATES) {
+            state = STATES.get(dbconn.getDatabaseConnection());
+        }
+        if (state != null) {
+            state.task.cancel();
+        }
+    }
+
+    /**
+     * Mark all schemas of a connection as possibly out of date, e.g. after
+     * DDL was executed, and read them again in the background.
+     */
+    public static void invalidate(DatabaseConnection dbconn) {
+        State state;
+        synchronized (STATES) {
+            state = STATES.get(dbconn);
+        }
+        if (state != null) {
+            state.invalidate();
+        }
+    }
+
+    private static File getFile(org.netbeans.modules.db.explorer.DatabaseConnection dbconn) {
+        String key = dbconn.getDatabase() + '\0' + dbconn.getUser() + '\0' + dbconn.getSchema();
+        UUID uuid = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8));
+        return new File(Places.getCacheSubdirectory(CACHE_DIR), uuid + ".bin"); // NOI18N
+    }
+
+    /**
+     * Snapshot and refresh task of one connection.
+     */
+    private static final class State implements Runnable {
+
+        private final org.netbeans.modules.db.explorer.DatabaseConnection dbconn;
+        private final RequestProcessor.Task task;
+        private volatile MetadataSnapshot snapshot;
+        /** Read all schemas again on the next refresh */
+        // @GuardedBy("this")
+        private boolean force = false;
+        // @GuardedBy("this")
+        private boolean loaded = false;
+        /** Time the last refresh started, in ms */
+        // @GuardedBy("this")
+        private long checked = 0;
+
+        State(org.netbeans.modules.db.explorer.DatabaseConnection dbconn) {
+            this.dbconn = dbconn;
+            this.task = RP.create(this);
+        }
+
+        void invalidate() {
+            synchronized (this) {
+                if (snapshot != null) {
+                    snapshot = snapshot.unverified();
+                }
+                force = true;
+            }
+            if (dbconn.isConnected()) {
+                task.schedule(REFRESH_DELAY);
+            }
+        }
+
+        /**
+         * Compare the signatures again if this was not done recently.
+         */
+        void recheck() {
+            synchronized (this) {
+                if (System.currentTimeMillis() - checked < RECHECK_INTERVAL) {
+                    return;
+                }
+                // a single refresh for concurrent requests
+                checked = System.currentTimeMillis();
+            }
+            if (dbconn.isConnected()) {
+                task.schedule(0);
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                checked = System.currentTimeMillis();
+            }
+            ensureLoaded();
+            ConnectionPool pool = dbconn.getConnectionPool();
+            if (pool == null) {
+                return;
+            }
+            try {
+                List<PendingSchema> changed;
+                Connection conn = pool.acquire(ConnectionPool.Lane.BACKGROUND, POOL_TIMEOUT);
+                try {
+                    changed = checkSignatures(conn);
+                } finally {
+                    pool.release(conn);
+                }
+                if (!changed.isEmpty() && readSchemas(pool, changed)) {
+                    snapshot.write(getFile(dbconn));
+                }
+            } catch (SQLException | IOException ex) {
+                LOGGER.log(Level.FINE, "Refresh of the metadata snapshot of " + dbconn + " failed", ex); // NOI18N
+            }
+        }
+
+        synchronized void ensureLoaded() {
+            if (!loaded) {
+                loaded = true;
+                load(getFile(dbconn));
+            }
+        }
+
+        private void load(File file) {
+            try {
+                long start = System.currentTimeMillis();
+                MetadataSnapshot read = MetadataSnapshot.read(file);
+                if (read == null) {
+                    return;
+                }
+                synchronized (this) {
+                    if (snapshot != null) {
+                        return;
+                    }
+                    snapshot = read;
+                }
+                LOGGER.log(Level.FINE, "Loaded {0} of {1} in {2} ms", // NOI18N
+                        new Object[]{read, dbconn, System.currentTimeMillis() - start});
+            } catch (IOException ex) {
+                // the snapshot is read from the database again
+                LOGGER.log(Level.INFO, "Cannot read metadata snapshot " + file, ex); // NOI18N
+            }
+        }
+
+        /**
+         * Compare the signatures of the schemas to the snapshot. Unchanged
+         * schemas are marked as verified.
+         *
+         * @return the schemas which have to be read again
+         */
+        private List<PendingSchema> checkSignatures(Connection conn) throws SQLException {
+            boolean readAll;
+            synchronized (this) {
+                readAll = force;
+                force = false;
+            }
+
+            SchemaReader reader = SchemaReader.create(conn);
+            String catalog = conn.getCatalog();
+            List<PendingSchema> changed = new ArrayList<>();
+            for (String schema : getSchemaNames()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return Collections.emptyList();
+                }
+                MetadataSnapshot current = snapshot;
+                SchemaInfo old = current == null ? null : current.getSchema(catalog, schema);
+                long now = System.currentTimeMillis();
+                Signature signature = reader.readSignature(catalog, schema);
+                if (!readAll && old != null && old.getSignature().equals(signature)
+                        && (reader.isSignatureExact()
+                        || System.currentTimeMillis() - old.getCreated() < MAX_AGE)) {
+                    // schemas without exact signature are only shown, not trusted
+                    if (!update(old.withVerified(reader.isSignatureExact() ? now : 0))) {
+                        // invalidated meanwhile, the next refresh reads all schemas
+                        return Collections.emptyList();
+                    }
+                } else {
+                    changed.add(new PendingSchema(catalog, schema, signature));
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Read schemas on the {@link #WORKERS}, each worker with its own
+         * connection of the pool.
+         *
+         * @return true if schemas were read
+         */
+        private boolean readSchemas(final ConnectionPool pool, List<PendingSchema> schemas) {
+            final Queue<PendingSchema> queue = new ConcurrentLinkedQueue<>(schemas);
+            final AtomicBoolean changed = new AtomicBoolean();
+            int count = Math.min(schemas.size(), ConnectionPool.Lane.BACKGROUND.getMaxSize());
+            List<Callable<Void>> workers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                workers.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws SQLException {
+                        Connection conn = pool.acquire(ConnectionPool.Lane.BACKGROUND, POOL_TIMEOUT);
+                        try {
+                            SchemaReader reader = SchemaReader.create(conn);
+                            PendingSchema pending;
+                            while ((pending = queue.poll()) != null) {
+                                SchemaInfo info = reader.readSchema(pending.catalog,
+                                        pending.schema, pending.signature);
+                                if (info == null || !update(info)) {
+                                    // interrupted or invalidated
+                                    queue.clear();
+                                    break;
+                                }
+                                changed.set(true);
+                            }
+                        } finally {
+                            pool.release(conn);
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            try {
+                for (Future<Void> result : WORKERS.invokeAll(workers)) {
+                    try {
+                        result.get();
+                    } catch (ExecutionException ex) {
+                        LOGGER.log(Level.FINE, "Reading a schema of " + dbconn + " failed", ex.getCause()); // NOI18N
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // disconnected, invokeAll cancelled the workers
+                Thread.currentThread().interrupt();
+            }
+            return changed.get();
+        }
+
+        /**
+         * @return false if the snapshot was invalidated since the refresh
+         * started
+         */
+        private synchronized boolean update(SchemaInfo info) {
+            if (force) {
+                return false;
+            }
+            snapshot = snapshot == null
+                    ? new MetadataSnapshot(Collections.singleton(info))
+                    : snapshot.with(info);
+            return true;
+        }
+
+        private List<String> getSchemaNames() {
+            Set<String> names = new LinkedHashSet<>();
+            String schema = dbconn.getSchema();
+            names.add(schema == null || schema.isEmpty() ? null : schema);
+            names.addAll(dbconn.getImportantSchemas());
+            return new ArrayList<>(names);
+        }
+    }
+
+    /**
+     * Schema whose signature changed, to be read again.
+     */
+    private static final class PendingSchema {
+
+        final String catalog;
+        final String schema;
+        final Signature signature;
+
+        PendingSchema(String catalog, String schema, Signature signature) {
+            this.catalog = catalog;
+            this.schema = schema;
+            this.signature = signature;
+        }
+    }
+
+    /**
+     * Reads the snapshot again when the explorer reports changed tables.
+     */
+    @ServiceProvider(service = DbMetaDataListener.class)
+    public static final class Listener implements DbMetaDataListener {
+
+        @Override
+        public void tablesChanged(DatabaseConnection dbconn) {
+            invalidate(dbconn);
+        }
+
+        @Override
+        public void tableChanged(DatabaseConnection dbconn, String tableName) {
+            invalidate(dbconn);
+        }
+    }
+}
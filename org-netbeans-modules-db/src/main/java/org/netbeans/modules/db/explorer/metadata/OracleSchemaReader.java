@@ -0,0 +1,448 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.explorer.metadata;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.ColumnInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.ForeignKeyInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.IndexInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.SchemaInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.Signature;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.TableInfo;
+
+/**
+ * Reads an Oracle schema from the data dictionary with one query per kind of
+ * object (columns, primary keys, foreign keys, indexes, synonyms) instead of
+ * one {@link DatabaseMetaData} call per table, which takes several minutes
+ * for schemas with thousands of tables.
+ *
+ * The columns of synonyms are those of their target tables and views, which
+ * may be owned by other schemas.
+ */
+class OracleSchemaReader extends SchemaReader {
+
+    private static final Logger LOGGER = Logger.getLogger(OracleSchemaReader.class.getName());
+    /** Rows per round-trip, the driver fetches only 10 by default */
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String TABLES
+            = "SELECT object_name, object_type FROM all_objects" // NOI18N
+            + " WHERE owner = ? AND object_type IN ('TABLE', 'VIEW', 'SYNONYM') AND secondary = 'N'"; // NOI18N
+
+    private static final String COLUMN_SELECT
+            = " c.column_name, c.data_type, c.data_length, c.char_length," // NOI18N
+            + " c.data_precision, c.data_scale, c.nullable, c.column_id"; // NOI18N
+
+    private static final String COLUMNS
+            = "SELECT c.table_name," + COLUMN_SELECT // NOI18N
+            + " FROM all_tab_columns c WHERE c.owner = ?"; // NOI18N
+
+    private static final String SYNONYM_COLUMNS
+            = "SELECT s.synonym_name," + COLUMN_SELECT // NOI18N
+            + " FROM all_synonyms s JOIN all_tab_columns c" // NOI18N
+            + " ON c.owner = s.table_owner AND c.table_name = s.table_name" // NOI18N
+            + " WHERE s.owner = ?"; // NOI18N
+
+    // DATA_DEFAULT is a LONG, which makes the driver fetch row by row, so
+    // only columns having a default are read
+    private static final String DEFAULTS
+            = "SELECT table_name, column_name, data_default FROM all_tab_columns" // NOI18N
+            + " WHERE owner = ? AND default_length > 0"; // NOI18N
+
+    private static final String PRIMARY_KEYS
+            = "SELECT c.table_name, c.constraint_name, cc.column_name, cc.position" // NOI18N
+            + " FROM all_constraints c JOIN all_cons_columns cc" // NOI18N
+            + " ON cc.owner = c.owner AND cc.constraint_name = c.constraint_name" // NOI18N
+            + " WHERE c.owner = ? AND c.constraint_type = 'P'"; // NOI18N
+
+    private static final String FOREIGN_KEYS
+            = "SELECT c.table_name, c.constraint_name, cc.column_name, cc.position," // NOI18N
+            + " r.owner, r.table_name, r.constraint_name, rc.column_name," // NOI18N
+            + " c.delete_rule, c.deferrable, c.deferred" // NOI18N
+            + " FROM all_constraints c" // NOI18N
+            + " JOIN all_cons_columns cc" // NOI18N
+            + " ON cc.owner = c.owner AND cc.constraint_name = c.constraint_name" // NOI18N
+            + " JOIN all_constraints r" // NOI18N
+            + " ON r.owner = c.r_owner AND r.constraint_name = c.r_constraint_name" // NOI18N
+            + " JOIN all_cons_columns rc" // NOI18N
+            + " ON rc.owner = r.owner AND rc.constraint_name = r.constraint_name AND rc.position = cc.position" // NOI18N
+            + " WHERE c.owner = ? AND c.constraint_type = 'R'"; // NOI18N
+
+    private static final String INDEXES
+            = "SELECT i.table_name, i.index_name, i.uniqueness, ic.column_name, ic.column_position" // NOI18N
+            + " FROM all_indexes i JOIN all_ind_columns ic" // NOI18N
+            + " ON ic.index_owner = i.owner AND ic.index_name = i.index_name" // NOI18N
+            + " WHERE i.table_owner = ?"; // NOI18N
+
+    OracleSchemaReader(Connection conn) throws SQLException {
+        super(conn);
+    }
+
+    @Override
+    SchemaInfo readSchema(String catalog, String schema, Signature signature) throws SQLException {
+        long start = System.currentTimeMillis();
+        String owner = schema != null ? schema : dmd.getUserName();
+
+        Map<String, String> types = new TreeMap<>();
+        try (PreparedStatement stmt = prepare(TABLES, owner);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                types.put(rs.getString(1), rs.getString(2));
+            }
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+
+        Map<String, List<ColumnInfo>> columns = readColumns(COLUMNS, owner, readDefaults(owner));
+        columns.putAll(readColumns(SYNONYM_COLUMNS, owner, Collections.<String, String>emptyMap()));
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+
+        Map<String, String> pkNames = new HashMap<>();
+        Map<String, List<String>> primaryKeys = readPrimaryKeys(owner, pkNames);
+        Map<String, List<ForeignKeyInfo>> foreignKeys = readForeignKeys(owner);
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        Map<String, List<IndexInfo>> indexes = readIndexes(owner);
+
+        List<TableInfo> tables = new ArrayList<>(types.size());
+        for (Map.Entry<String, String> entry : types.entrySet()) {
+            String name = entry.getKey();
+            tables.add(new TableInfo(name, entry.getValue(),
+                    orEmpty(columns.get(name)), pkNames.get(name),
+                    orEmpty(primaryKeys.get(name)), orEmpty(foreignKeys.get(name)),
+                    orEmpty(indexes.get(name))));
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Read {0} tables of schema {1} in {2} ms", // NOI18N
+                    new Object[]{tables.size(), owner, System.currentTimeMillis() - start});
+        }
+        return new SchemaInfo(catalog, schema, signature, start, tables, start);
+    }
+
+    private PreparedStatement prepare(String sql, String owner) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(sql);
+        stmt.setFetchSize(FETCH_SIZE);
+        stmt.setString(1, owner);
+        return stmt;
+    }
+
+    /**
+     * @return default values by table name and column name, separated by
+     * a null character
+     */
+    private Map<String, String> readDefaults(String owner) throws SQLException {
+        Map<String, String> defaults = new HashMap<>();
+        try (PreparedStatement stmt = prepare(DEFAULTS, owner);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String defaultValue = trimmed(rs.getString(3));
+                if (defaultValue != null && !defaultValue.isEmpty()) {
+                    defaults.put(rs.getString(1) + '\0' + rs.getString(2), defaultValue);
+                }
+            }
+        }
+        return defaults;
+    }
+
+    /**
+     * @return columns by table or synonym name, in column order
+     */
+    private Map<String, List<ColumnInfo>> readColumns(String sql, String owner,
+            Map<String, String> defaults) throws SQLException {
+        Map<String, Map<Integer, ColumnInfo>> ordered = new HashMap<>();
+        try (PreparedStatement stmt = prepare(sql, owner);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String table = rs.getString(1);
+                String name = rs.getString(2);
+                String type = rs.getString(3);
+                int length = rs.getInt(4);
+                int charLength = rs.getInt(5);
+                int precision = rs.getInt(6);
+                boolean noPrecision = rs.wasNull();
+                int scale = rs.getInt(7);
+                boolean noScale = rs.wasNull();
+                boolean nullable = "Y".equals(rs.getString(8)); // NOI18N
+                int position = rs.getInt(9);
+
+                // sizes as reported by the driver's getColumns
+                int size;
+                if (!noPrecision) {
+                    size = precision;
+                } else if ("NUMBER".equals(type)) { // NOI18N
+                    size = noScale ? 0 : 38;
+                } else if (isCharType(type)) {
+                    size = charLength;
+                } else {
+                    size = length;
+                }
+
+                ColumnInfo column = new ColumnInfo(name, getJdbcType(type), type,
+                        size, scale, nullable, defaults.get(table + '\0' + name));
+                Map<Integer, ColumnInfo> tableColumns = ordered.get(table);
+                if (tableColumns == null) {
+                    tableColumns = new TreeMap<>();
+                    ordered.put(table, tableColumns);
+                }
+                tableColumns.put(position, column);
+            }
+        }
+
+        Map<String, List<ColumnInfo>> result = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, ColumnInfo>> entry : ordered.entrySet()) {
+            result.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+        }
+        return result;
+    }
+
+    /**
+     * @param names receives the names of the primary keys by table name
+     * @return primary key columns by table name, in key order
+     */
+    private Map<String, List<String>> readPrimaryKeys(String owner, Map<String, String> names) throws SQLException {
+        Map<String, Map<Integer, String>> ordered = new HashMap<>();
+        try (PreparedStatement stmt = prepare(PRIMARY_KEYS, owner);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String table = rs.getString(1);
+                names.put(table, rs.getString(2));
+                Map<Integer, String> columns = ordered.get(table);
+                if (columns == null) {
+                    columns = new TreeMap<>();
+                    ordered.put(table, columns);
+                }
+                columns.put(rs.getInt(4), rs.getString(3));
+            }
+        }
+
+        Map<String, List<String>> result = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, String>> entry : ordered.entrySet()) {
+            result.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+        }
+        return result;
+    }
+
+    /**
+     * @return foreign keys by table name
+     */
+    private Map<String, List<ForeignKeyInfo>> readForeignKeys(String owner) throws SQLException {
+        Map<String, Map<String, ForeignKeyRows>> keys = new HashMap<>();
+        try (PreparedStatement stmt = prepare(FOREIGN_KEYS, owner);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String table = rs.getString(1);
+                String name = rs.getString(2);
+                Map<String, ForeignKeyRows> tableKeys = keys.get(table);
+                if (tableKeys == null) {
+                    tableKeys = new LinkedHashMap<>();
+                    keys.put(table, tableKeys);
+                }
+                ForeignKeyRows fk = tableKeys.get(name);
+                if (fk == null) {
+                    fk = new ForeignKeyRows(name, rs.getString(5), rs.getString(6),
+                            rs.getString(7), getDeleteRule(rs.getString(9)),
+                            getDeferrability(rs.getString(10), rs.getString(11)));
+                    tableKeys.put(name, fk);
+                }
+                fk.columns.put(rs.getInt(4), new String[]{rs.getString(3), rs.getString(8)});
+            }
+        }
+
+        Map<String, List<ForeignKeyInfo>> result = new HashMap<>();
+        for (Map.Entry<String, Map<String, ForeignKeyRows>> entry : keys.entrySet()) {
+            List<ForeignKeyInfo> list = new ArrayList<>(entry.getValue().size());
+            for (ForeignKeyRows fk : entry.getValue().values()) {
+                list.add(fk.build());
+            }
+            result.put(entry.getKey(), list);
+        }
+        return result;
+    }
+
+    /**
+     * @return indexes by table name
+     */
+    private Map<String, List<IndexInfo>> readIndexes(String owner) throws SQLException {
+        Map<String, Map<String, Boolean>> unique = new HashMap<>();
+        Map<String, Map<Integer, String>> columns = new HashMap<>();
+        try (PreparedStatement stmt = prepare(INDEXES, owner);
+                ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String table = rs.getString(1);
+                String name = rs.getString(2);
+                Map<String, Boolean> tableIndexes = unique.get(table);
+                if (tableIndexes == null) {
+                    tableIndexes = new LinkedHashMap<>();
+                    unique.put(table, tableIndexes);
+                }
+                String key = table + '\0' + name;
+                if (!tableIndexes.containsKey(name)) {
+                    tableIndexes.put(name, "UNIQUE".equals(rs.getString(3))); // NOI18N
+                    columns.put(key, new TreeMap<Integer, String>());
+                }
+                columns.get(key).put(rs.getInt(5), rs.getString(4));
+            }
+        }
+
+        Map<String, List<IndexInfo>> result = new HashMap<>();
+        for (Map.Entry<String, Map<String, Boolean>> entry : unique.entrySet()) {
+            List<IndexInfo> list = new ArrayList<>(entry.getValue().size());
+            for (Map.Entry<String, Boolean> index : entry.getValue().entrySet()) {
+                list.add(new IndexInfo(index.getKey(), index.getValue(), new ArrayList<>(
+                        columns.get(entry.getKey() + '\0' + index.getKey()).values())));
+            }
+            result.put(entry.getKey(), list);
+        }
+        return result;
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? Collections.<T>emptyList() : list;
+    }
+
+    private static boolean isCharType(String type) {
+        return "CHAR".equals(type) || "NCHAR".equals(type) // NOI18N
+                || "VARCHAR".equals(type) || "VARCHAR2".equals(type) // NOI18N
+                || "NVARCHAR2".equals(type); // NOI18N
+    }
+
+    /**
+     * @return the type as reported by the driver's getColumns
+     */
+    private static int getJdbcType(String type) {
+        if (type == null) {
+            return Types.OTHER;
+        }
+        if (type.startsWith("TIMESTAMP")) { // NOI18N
+            return Types.TIMESTAMP;
+        }
+        switch (type) {
+            case "CHAR": // NOI18N
+                return Types.CHAR;
+            case "VARCHAR": // NOI18N
+            case "VARCHAR2": // NOI18N
+                return Types.VARCHAR;
+            case "NCHAR": // NOI18N
+                return Types.NCHAR;
+            case "NVARCHAR2": // NOI18N
+                return Types.NVARCHAR;
+            case "NUMBER": // NOI18N
+                return Types.DECIMAL;
+            case "FLOAT": // NOI18N
+                return Types.FLOAT;
+            case "BINARY_FLOAT": // NOI18N
+                return Types.REAL;
+            case "BINARY_DOUBLE": // NOI18N
+                return Types.DOUBLE;
+            case "DATE": // NOI18N
+                return Types.TIMESTAMP;
+            case "LONG": // NOI18N
+                return Types.LONGVARCHAR;
+            case "RAW": // NOI18N
+                return Types.VARBINARY;
+            case "LONG RAW": // NOI18N
+                return Types.LONGVARBINARY;
+            case "BLOB": // NOI18N
+                return Types.BLOB;
+            case "CLOB": // NOI18N
+                return Types.CLOB;
+            case "NCLOB": // NOI18N
+                return Types.NCLOB;
+            case "ROWID": // NOI18N
+                return Types.ROWID;
+            default:
+                return Types.OTHER;
+        }
+    }
+
+    private static int getDeleteRule(String rule) {
+        if ("CASCADE".equals(rule)) { // NOI18N
+            return DatabaseMetaData.importedKeyCascade;
+        } else if ("SET NULL".equals(rule)) { // NOI18N
+            return DatabaseMetaData.importedKeySetNull;
+        }
+        return DatabaseMetaData.importedKeyNoAction;
+    }
+
+    private static int getDeferrability(String deferrable, String deferred) {
+        if (!"DEFERRABLE".equals(deferrable)) { // NOI18N
+            return DatabaseMetaData.importedKeyNotDeferrable;
+        }
+        return "DEFERRED".equals(deferred) // NOI18N
+                ? DatabaseMetaData.importedKeyInitiallyDeferred
+                : DatabaseMetaData.importedKeyInitiallyImmediate;
+    }
+
+    /**
+     * Collects the columns of a foreign key, which the query returns one per
+     * row.
+     */
+    private static final class ForeignKeyRows {
+
+        private final String name;
+        private final String pkSchema;
+        private final String pkTable;
+        private final String pkName;
+        private final int deleteRule;
+        private final int deferrability;
+        private final Map<Integer, String[]> columns = new TreeMap<>();
+
+        ForeignKeyRows(String name, String pkSchema, String pkTable, String pkName,
+                int deleteRule, int deferrability) {
+            this.name = name;
+            this.pkSchema = pkSchema;
+            this.pkTable = pkTable;
+            this.pkName = pkName;
+            this.deleteRule = deleteRule;
+            this.deferrability = deferrability;
+        }
+
+        ForeignKeyInfo build() {
+            List<String> fkColumns = new ArrayList<>(columns.size());
+            List<String> pkColumns = new ArrayList<>(columns.size());
+            for (String[] pair : columns.values()) {
+                fkColumns.add(pair[0]);
+                pkColumns.add(pair[1]);
+            }
+            // Oracle has no ON UPDATE actions
+            return new ForeignKeyInfo(name, null, pkSchema, pkTable, pkName,
+                    fkColumns, pkColumns, DatabaseMetaData.importedKeyNoAction,
+                    deleteRule, deferrability);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.netbeans.modules.db.explorer.metadata;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.ColumnInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.ForeignKeyInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.IndexInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.SchemaInfo;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.Signature;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshot.TableInfo;
+
+/**
+ * Reads schemas for a {@link MetadataSnapshot} through
+ * {@link DatabaseMetaData}. The columns of all tables of a schema are read by
+ * one query, keys and indexes by one query per table.
+ *
+ * The {@link Signature} of a schema is read from the data dictionary of
+ * Oracle and MySQL; for other databases it is just the number of tables.
+ * Oracle records the time of the last DDL of each object, including objects
+ * of other schemas which synonyms refer to. MySQL does not update the
+ * creation time of tables altered in place, so a checksum of the column
+ * definitions (including their key membership) is used instead.
+ *
+ * Use {@link #create} to get the reader of a database, Oracle schemas are
+ * read by {@link OracleSchemaReader}.
+ */
+class SchemaReader {
+
+    private static final Logger LOGGER = Logger.getLogger(SchemaReader.class.getName());
+    private static final String[] TABLE_TYPES = {"TABLE", "VIEW", "SYNONYM"}; // NOI18N
+
+    private static final String ORACLE_SIGNATURE
+            = "SELECT COUNT(*), MAX(LAST_DDL_TIME) FROM ALL_OBJECTS " // NOI18N
+            + "WHERE OWNER = ? OR (OWNER, OBJECT_NAME) IN " // NOI18N
+            + "(SELECT TABLE_OWNER, TABLE_NAME FROM ALL_SYNONYMS WHERE OWNER = ?)"; // NOI18N
+    private static final String MYSQL_SIGNATURE
+            = "SELECT COUNT(*), SUM(CRC32(CONCAT_WS('|', TABLE_NAME, COLUMN_NAME, " // NOI18N
+            + "ORDINAL_POSITION, COLUMN_TYPE, IS_NULLABLE, COLUMN_DEFAULT, COLUMN_KEY, EXTRA))) " // NOI18N
+            + "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ?"; // NOI18N
+
+    protected final Connection conn;
+    protected final DatabaseMetaData dmd;
+    private final String signatureQuery;
+    /** True if the signature query returns a checksum instead of a time */
+    private final boolean signatureChecksum;
+    /** Number of parameters of the signature query, each is the schema */
+    private final int signatureParams;
+
+    /**
+     * Create the reader for the database of a connection.
+     */
+    static SchemaReader create(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName();
+        if (product != null && product.toLowerCase().contains("oracle")) { // NOI18N
+            return new OracleSchemaReader(conn);
+        }
+        return new SchemaReader(conn);
+    }
+
+    SchemaReader(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.dmd = conn.getMetaData();
+        String product = dmd.getDatabaseProductName();
+        product = product == null ? "" : product.toLowerCase(); // NOI18N
+        if (product.contains("oracle")) { // NOI18N
+            signatureQuery = ORACLE_SIGNATURE;
+        } else if (product.contains("mysql") || product.contains("mariadb")) { // NOI18N
+            signatureQuery = MYSQL_SIGNATURE;
+        } else {
+            signatureQuery = null;
+        }
+        signatureChecksum = signatureQuery == MYSQL_SIGNATURE;
+        signatureParams = signatureQuery == ORACLE_SIGNATURE ? 2 : 1;
+    }
+
+    /**
+     * @return true if the signature changes with every DDL statement, false
+     * if it only changes when tables are added or removed
+     */
+    boolean isSignatureExact() {
+        return signatureQuery != null;
+    }
+
+    /**
+     * Read the signature of a schema, which is compared to the signature
+     * stored in the snapshot.
+     */
+    Signature readSignature(String catalog, String schema) throws SQLException {
+        if (signatureQuery == null) {
+            int count = 0;
+            try (ResultSet rs = dmd.getTables(catalog, schema, "%", TABLE_TYPES)) { // NOI18N
+                while (rs.next()) {
+                    count++;
+                }
+            }
+            return new Signature(count, -1);
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(signatureQuery)) {
+            // MySQL keeps databases as catalogs
+            String owner = schema != null ? schema : catalog;
+            for (int i = 1; i <= signatureParams; i++) {
+                stmt.setString(i, owner);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new Signature(0, -1);
+                }
+                if (signatureChecksum) {
+                    long checksum = rs.getLong(2);
+                    return new Signature(rs.getInt(1), rs.wasNull() ? -1 : checksum);
+                }
+                Timestamp lastDdl = rs.getTimestamp(2);
+                return new Signature(rs.getInt(1), lastDdl == null ? -1 : lastDdl.getTime());
+            }
+        }
+    }
+
+    /**
+     * Read the tables, views and synonyms of a schema.
+     *
+     * @return the schema, or null if the thread was interrupted
+     */
+    SchemaInfo readSchema(String catalog, String schema, Signature signature) throws SQLException {
+        long start = System.currentTimeMillis();
+
+        Map<String, String> types = new TreeMap<>();
+        try (ResultSet rs = dmd.getTables(catalog, schema, "%", TABLE_TYPES)) { // NOI18N
+            while (rs.next()) {
+                String name = trimmed(rs.getString("TABLE_NAME")); // NOI18N
+                if (name != null) {
+                    types.put(name, trimmed(rs.getString("TABLE_TYPE"))); // NOI18N
+                }
+            }
+        }
+
+        Map<String, List<ColumnInfo>> columns = readColumns(catalog, schema);
+
+        List<TableInfo> tables = new ArrayList<>(types.size());
+        for (Map.Entry<String, String> entry : types.entrySet()) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            String name = entry.getKey();
+            String type = entry.getValue();
+            List<ColumnInfo> tableColumns = columns.get(name);
+            if (tableColumns == null) {
+                tableColumns = Collections.emptyList();
+            }
+            if (type != null && type.contains("TABLE")) { // NOI18N
+                List<String> pkColumns = new ArrayList<>();
+                String pkName = readPrimaryKey(catalog, schema, name, pkColumns);
+                tables.add(new TableInfo(name, type, tableColumns, pkName, pkColumns,
+                        readForeignKeys(catalog, schema, name),
+                        readIndexes(catalog, schema, name)));
+            } else {
+                tables.add(new TableInfo(name, type, tableColumns, null,
+                        Collections.<String>emptyList(),
+                        Collections.<ForeignKeyInfo>emptyList(),
+                        Collections.<IndexInfo>emptyList()));
+            }
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Read {0} tables of schema {1} in {2} ms", // NOI18N
+                    new Object[]{tables.size(), schema != null ? schema : catalog,
+                        System.currentTimeMillis() - start});
+        }
+        return new SchemaInfo(catalog, schema, signature, start, tables, start);
+    }
+
+    /**
+     * @return columns by table name, in column order
+     */
+    protected Map<String, List<ColumnInfo>> readColumns(String catalog, String schema) throws SQLException {
+        Map<String, Map<Integer, ColumnInfo>> ordered = new HashMap<>();
+        try (ResultSet rs = dmd.getColumns(catalog, schema, "%", "%")) { // NOI18N
+            while (rs.next()) {
+                String table = trimmed(rs.getString("TABLE_NAME")); // NOI18N
+                String name = trimmed(rs.getString("COLUMN_NAME")); // NOI18N
+                if (table == null || name == null) {
+                    continue;
+                }
+                String defaultValue = trimmed(rs.getString("COLUMN_DEF")); // NOI18N
+                if (defaultValue != null && defaultValue.isEmpty()) {
+                    defaultValue = null;
+                }
+                ColumnInfo column = new ColumnInfo(name,
+                        rs.getInt("DATA_TYPE"), // NOI18N
+                        rs.getString("TYPE_NAME"), // NOI18N
+                        rs.getInt("COLUMN_SIZE"), // NOI18N
+                        rs.getInt("DECIMAL_DIGITS"), // NOI18N
+                        rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls, // NOI18N
+                        defaultValue);
+                Map<Integer, ColumnInfo> tableColumns = ordered.get(table);
+                if (tableColumns == null) {
+                    tableColumns = new TreeMap<>();
+                    ordered.put(table, tableColumns);
+                }
+                tableColumns.put(rs.getInt("ORDINAL_POSITION"), column); // NOI18N
+            }
+        }
+
+        Map<String, List<ColumnInfo>> result = new HashMap<>();
+        for (Map.Entry<String, Map<Integer, ColumnInfo>> entry : ordered.entrySet()) {
+            result.put(entry.getKey(), new ArrayList<>(entry.getValue().values()));
+        }
+        return result;
+    }
+
+    /**
+     * @param columns receives the primary key columns in key order
+     * @return the name of the primary key
+     */
+    protected String readPrimaryKey(String catalog, String schema, String table,
+            List<String> columns) throws SQLException {
+        String name = null;
+        Map<Integer, String> ordered = new TreeMap<>();
+        try (ResultSet rs = dmd.getPrimaryKeys(catalog, schema, table)) {
+            while (rs.next()) {
+                ordered.put((int) rs.getShort("KEY_SEQ"), trimmed(rs.getString("COLUMN_NAME"))); // NOI18N
+                if (name == null) {
+                    name = trimmed(rs.getString("PK_NAME")); // NOI18N
+                }
+            }
+        }
+        columns.addAll(ordered.values());
+        return name;
+    }
+
+    protected List<ForeignKeyInfo> readForeignKeys(String catalog, String schema, String table) throws SQLException {
+        Map<String, ForeignKeyBuilder> keys = new LinkedHashMap<>();
+        try (ResultSet rs = dmd.getImportedKeys(catalog, schema, table)) {
+            while (rs.next()) {
+                String name = trimmed(rs.getString("FK_NAME")); // NOI18N
+                String pkTable = trimmed(rs.getString("PKTABLE_NAME")); // NOI18N
+                String key = name != null ? name : pkTable;
+                ForeignKeyBuilder fk = keys.get(key);
+                if (fk == null) {
+                    fk = new ForeignKeyBuilder(name,
+                            trimmed(rs.getString("PKTABLE_CAT")), // NOI18N
+                            trimmed(rs.getString("PKTABLE_SCHEM")), // NOI18N
+                            pkTable,
+                            trimmed(rs.getString("PK_NAME")), // NOI18N
+                            rs.getShort("UPDATE_RULE"), // NOI18N
+                            rs.getShort("DELETE_RULE"), // NOI18N
+                            rs.getShort("DEFERRABILITY")); // NOI18N
+                    keys.put(key, fk);
+                }
+                fk.add(rs.getShort("KEY_SEQ"), // NOI18N
+                        trimmed(rs.getString("FKCOLUMN_NAME")), // NOI18N
+                        trimmed(rs.getString("PKCOLUMN_NAME"))); // NOI18N
+            }
+        }
+
+        List<ForeignKeyInfo> result = new ArrayList<>(keys.size());
+        for (ForeignKeyBuilder fk : keys.values()) {
+            result.add(fk.build());
+        }
+        return result;
+    }
+
+    protected List<IndexInfo> readIndexes(String catalog, String schema, String table) throws SQLException {
+        Map<String, Boolean> unique = new LinkedHashMap<>();
+        Map<String, Map<Integer, String>> columns = new HashMap<>();
+        // approximate, the statistics of the table are not needed
+        try (ResultSet rs = dmd.getIndexInfo(catalog, schema, table, false, true)) {
+            while (rs.next()) {
+                String name = trimmed(rs.getString("INDEX_NAME")); // NOI18N
+                String column = trimmed(rs.getString("COLUMN_NAME")); // NOI18N
+                if (name == null || column == null) {
+                    // table statistics
+                    continue;
+                }
+                if (!unique.containsKey(name)) {
+                    unique.put(name, !rs.getBoolean("NON_UNIQUE")); // NOI18N
+                    columns.put(name, new TreeMap<Integer, String>());
+                }
+                columns.get(name).put((int) rs.getShort("ORDINAL_POSITION"), column); // NOI18N
+            }
+        }
+
+        List<IndexInfo> result = new ArrayList<>(unique.size());
+        for (Map.Entry<String, Boolean> entry : unique.entrySet()) {
+            result.add(new IndexInfo(entry.getKey(), entry.getValue(),
+                    new ArrayList<>(columns.get(entry.getKey()).values())));
+        }
+        return result;
+    }
+
+    protected static String trimmed(String s) {
+        return s == null ? null : s.trim();
+    }
+
+    /**
+     * Collects the columns of a foreign key, which the driver returns one per
+     * row.
+     */
+    private static final class ForeignKeyBuilder {
+
+        private final String name;
+        private final String pkCatalog;
+        private final String pkSchema;
+        private final String pkTable;
+        private final String pkName;
+        private final int updateRule;
+        private final int deleteRule;
+        private final int deferrability;
+        private final Map<Integer, String[]> columns = new TreeMap<>();
+
+        ForeignKeyBuilder(String name, String pkCatalog, String pkSchema,
+                String pkTable, String pkName, int updateRule, int deleteRule,
+                int deferrability) {
+            this.name = name;
+            this.pkCatalog = pkCatalog;
+            this.pkSchema = pkSchema;
+            this.pkTable = pkTable;
+            this.pkName = pkName;
+            this.updateRule = updateRule;
+            this.deleteRule = deleteRule;
+            this.deferrability = deferrability;
+        }
+
+        void add(int keySeq, String column, String pkColumn) {
+            columns.put(keySeq, new String[]{column, pkColumn});
+        }
+
+        ForeignKeyInfo build() {
+            List<String> fkColumns = new ArrayList<>(columns.size());
+            List<String> pkColumns = new ArrayList<>(columns.size());
+            for (String[] pair : columns.values()) {
+                fkColumns.add(pair[0]);
+                pkColumns.add(pair[1]);
+            }
+            return new ForeignKeyInfo(name, pkCatalog, pkSchema, pkTable, pkName,
+                    fkColumns, pkColumns, updateRule, deleteRule, deferrability);
+        }
+    }
+}
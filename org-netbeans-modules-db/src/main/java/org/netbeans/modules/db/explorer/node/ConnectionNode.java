@@ -25,6 +25,7 @@ import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,11 +38,13 @@ import org.netbeans.api.db.explorer.node.NodeProvider;
 import org.netbeans.lib.ddl.adaptors.DefaultAdaptor;
 import org.netbeans.lib.ddl.impl.Specification;
 import org.netbeans.modules.db.explorer.ConnectionList;
+import org.netbeans.modules.db.explorer.ConnectionPool;
 import org.netbeans.modules.db.explorer.DatabaseConnection;
 import org.netbeans.modules.db.explorer.DatabaseConnectionAccessor;
 import org.netbeans.modules.db.explorer.DatabaseMetaDataTransferAccessor;
 import org.netbeans.modules.db.explorer.action.ConnectAction;
 import org.netbeans.modules.db.explorer.metadata.MetadataModelManager;
+import org.netbeans.modules.db.explorer.metadata.MetadataSnapshotManager;
 import org.netbeans.modules.db.metadata.model.api.MetadataModel;
 import org.netbeans.modules.db.metadata.model.api.MetadataModels;
 import org.netbeans.modules.db.util.PropertiesEditor;
@@ -76,6 +79,8 @@ public class ConnectionNode extends BaseNode implements PropertyChangeListener {
     private static final String NBDRIVER = "NBDriver"; // NOI18N
     private static final String NBDRIVERDESC = "NBDriverDescription"; // NOI18N
     private static final RequestProcessor RP = new RequestProcessor(ConnectionNode.class.getName());
+    /** Maximum wait for the metadata connection of the pool, in ms */
+    private static final long METADATA_CONNECTION_TIMEOUT = 10 * 1000;
     
     /** 
      * Create an instance of ConnectionNode.
@@ -92,6 +97,9 @@ public class ConnectionNode extends BaseNode implements PropertyChangeListener {
     // the connection
     private final DatabaseConnection connection;
 
+    // pooled connection read by the metadata model, null if it reads the primary connection
+    private Connection metadataConnection;
+
     /**
      * Constructor
      * 
@@ -326,6 +334,37 @@ public class ConnectionNode extends BaseNode implements PropertyChangeListener {
         return connection;
     }
     
+    /**
+     * Get a connection for a new metadata model. Metadata is read on a
+     * connection of the pool, so browsing the explorer does not wait for
+     * statements running on the primary connection. The connection of the
+     * previous model is returned to the pool first.
+     */
+    private synchronized Connection getMetadataConnection() {
+        releaseMetadataConnection();
+        ConnectionPool pool = connection.getConnectionPool();
+        if (pool != null) {
+            try {
+                metadataConnection = pool.acquire(ConnectionPool.Lane.METADATA, METADATA_CONNECTION_TIMEOUT);
+                return metadataConnection;
+            } catch (SQLException ex) {
+                // e.g. embedded databases allowing a single connection
+                LOG.log(Level.FINE, "Reading metadata of " + connection.getName() + " on the primary connection", ex);
+            }
+        }
+        return connection.getJDBCConnection();
+    }
+
+    private synchronized void releaseMetadataConnection() {
+        if (metadataConnection != null) {
+            ConnectionPool pool = connection.getConnectionPool();
+            if (pool != null) {
+                pool.release(metadataConnection);
+            }
+            metadataConnection = null;
+        }
+    }
+
     private synchronized void updateModel() {
         RP.post(
             new Runnable() {
@@ -334,12 +373,15 @@ public class ConnectionNode extends BaseNode implements PropertyChangeListener {
                     boolean connected = connection.isConnected();
 
                     if (connected) {
-                        MetadataModel model = MetadataModels.createModel(connection.getJDBCConnection(), connection.getSchema());
+                        MetadataModel model = MetadataModels.createModel(getMetadataConnection(), connection.getSchema());
                         connection.setMetadataModel(model);
                         MetadataModelManager.update(connection.getDatabaseConnection(), model);
+                        MetadataSnapshotManager.connected(connection);
                         refresh();
 
                     } else {
+                        MetadataSnapshotManager.disconnected(connection);
+                        releaseMetadataConnection();
                         connection.setMetadataModel(null);
                         ConnectionNode.this.getNodeRegistry().removeAllNodes();  //#170935 - workaround
                         refresh();
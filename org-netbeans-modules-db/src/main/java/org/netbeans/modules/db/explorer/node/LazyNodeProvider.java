@@ -0,0 +1,396 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.netbeans.modules.db.explorer.node;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.netbeans.api.db.explorer.node.BaseNode;
+import org.netbeans.api.db.explorer.node.NodeProvider;
+import org.netbeans.modules.db.metadata.model.api.MetadataElementHandle;
+import org.openide.nodes.Node;
+import org.openide.util.Lookup;
+import org.openide.util.NbBundle;
+import org.openide.util.lookup.Lookups;
+
+/**
+ * Node provider for the elements of a schema (tables, views, procedures),
+ * which can be very many. The provider keeps only the names and handles of
+ * the elements; the node of an element is created when the explorer asks for
+ * it, i.e. when it gets displayed. Lists of up to {@link #EAGER_LIMIT}
+ * elements are still created at once, on the thread initializing the
+ * provider.
+ *
+ * The elements can be filtered by a name prefix, see
+ * {@link #setNameFilter}.
+ */
+public abstract class LazyNodeProvider extends NodeProvider {
+
+    /** Nodes of lists up to this size are created with the list */
+    private static final int EAGER_LIMIT = 500;
+
+    private static final Comparator<Key> KEY_COMPARATOR = new Comparator<Key>() {
+
+        @Override
+        public int compare(Key key1, Key key2) {
+            return key1.getName().compareTo(key2.getName());
+        }
+
+    };
+
+    private final Object lock = new Object();
+    // @GuardedBy("lock")
+    private List<Key> keys = Collections.emptyList();
+    // @GuardedBy("lock")
+    private List<Key> filteredKeys = keys;
+    // @GuardedBy("lock")
+    private String nameFilter = null;
+    // @GuardedBy("lock")
+    private final Map<Key, Node> nodes = new HashMap<Key, Node>();
+
+    /**
+     * Constructor
+     *
+     * @param lookup the associated lookup
+     */
+    protected LazyNodeProvider(Lookup lookup) {
+        super(lookup);
+    }
+
+    /**
+     * Create the node of an element.
+     *
+     * @param handle the handle of the element
+     * @return the node
+     */
+    protected abstract Node createNode(MetadataElementHandle<?> handle);
+
+    /**
+     * Create the key of an element, to be passed to {@link #setKeys}.
+     *
+     * @param name the name of the element, shown as name of its node
+     * @param handle the handle of the element
+     * @return the key
+     */
+    protected final Key createKey(String name, MetadataElementHandle<?> handle) {
+        return new Key(this, name, handle);
+    }
+
+    /**
+     * Sets the elements of this provider. Nodes already created for elements
+     * which are still present are kept.
+     *
+     * @param newKeys keys created by {@link #createKey}
+     */
+    protected final void setKeys(Collection<Key> newKeys) {
+        List<Key> sorted = new ArrayList<Key>(newKeys);
+        Collections.sort(sorted, KEY_COMPARATOR);
+        sorted = Collections.unmodifiableList(sorted);
+
+        synchronized (lock) {
+            keys = sorted;
+            filteredKeys = filter(sorted, nameFilter);
+            nodes.keySet().retainAll(new HashSet<Key>(sorted));
+        }
+
+        if (sorted.size() <= EAGER_LIMIT) {
+            for (Key key : sorted) {
+                getNode(key);
+            }
+        }
+
+        fireChange();
+    }
+
+    /**
+     * Show only elements whose names start with the given prefix, ignoring
+     * case. A prefix extending the current one only searches the elements
+     * shown so far.
+     *
+     * @param prefix the prefix, null or empty to show all elements
+     */
+    public void setNameFilter(String prefix) {
+        if (prefix != null && prefix.isEmpty()) {
+            prefix = null;
+        }
+
+        synchronized (lock) {
+            if (prefix == null ? nameFilter == null : prefix.equals(nameFilter)) {
+                return;
+            }
+            List<Key> base = keys;
+            if (prefix != null && nameFilter != null
+                    && prefix.regionMatches(true, 0, nameFilter, 0, nameFilter.length())) {
+                base = filteredKeys;
+            }
+            filteredKeys = filter(base, prefix);
+            nameFilter = prefix;
+        }
+
+        fireChange();
+    }
+
+    /**
+     * @return the current name prefix, or null if all elements are shown
+     */
+    public String getNameFilter() {
+        synchronized (lock) {
+            return nameFilter;
+        }
+    }
+
+    /**
+     * Get the display name of a node listing elements, with the name filter
+     * of its providers appended.
+     */
+    static String getFilteredDisplayName(BaseNode node, String displayName) {
+        NodeRegistry registry = node.getNodeRegistry();
+        String prefix = registry == null ? null : registry.getNameFilter();
+        if (prefix == null) {
+            return displayName;
+        }
+        return NbBundle.getMessage(LazyNodeProvider.class, "FilteredListNode_DISPLAYNAME", displayName, prefix); // NOI18N
+    }
+
+    private static List<Key> filter(List<Key> list, String prefix) {
+        if (prefix == null) {
+            return list;
+        }
+        List<Key> result = new ArrayList<Key>();
+        for (Key key : list) {
+            if (key.getName().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                result.add(key);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Get the position of a shown element among the keys of this provider.
+     * No node is created.
+     *
+     * @param name the name of the element
+     * @return the index of its key in {@link #getKeys()}, or -1 if there is no
+     * such element or it is hidden by the name filter
+     */
+    int indexOf(String name) {
+        ensureInitialized();
+        synchronized (lock) {
+            int index = Collections.binarySearch(filteredKeys,
+                    new Key(this, name, null), KEY_COMPARATOR);
+            return index >= 0 ? index : -1;
+        }
+    }
+
+    /**
+     * Get the node of an element, creating it if needed.
+     */
+    private Node getNode(Key key) {
+        synchronized (lock) {
+            Node node = nodes.get(key);
+            if (node != null) {
+                return node;
+            }
+        }
+
+        // may read metadata, don't hold the lock
+        Node node = createNode(key.handle);
+
+        synchronized (lock) {
+            Node other = nodes.get(key);
+            if (other != null) {
+                return other;
+            }
+            nodes.put(key, node);
+        }
+
+        return node;
+    }
+
+    private synchronized void ensureInitialized() {
+        if (!initialized) {
+            initialize();
+            initialized = true;
+        }
+    }
+
+    /**
+     * Get the keys of the shown elements. The nodes are created when the
+     * keys are asked for them.
+     */
+    @Override
+    public Collection<? extends Lookup> getKeys() {
+        ensureInitialized();
+        synchronized (lock) {
+            return filteredKeys;
+        }
+    }
+
+    /**
+     * Get the nodes of all elements, regardless of the name filter. This
+     * creates the nodes of all elements, so it is only meant for finding a
+     * node by name.
+     */
+    @Override
+    public Collection<Node> getNodes() {
+        ensureInitialized();
+        List<Key> all;
+        synchronized (lock) {
+            all = keys;
+        }
+        List<Node> result = new ArrayList<Node>(all.size());
+        for (Key key : all) {
+            result.add(getNode(key));
+        }
+        return Collections.unmodifiableCollection(result);
+    }
+
+    @Override
+    protected Collection<Node> getNodes(Object dataObject) {
+        List<Node> results = new ArrayList<Node>();
+        synchronized (lock) {
+            for (Map.Entry<Key, Node> entry : nodes.entrySet()) {
+                if (entry.getKey().handle.equals(dataObject)) {
+                    results.add(entry.getValue());
+                }
+            }
+        }
+        return Collections.unmodifiableCollection(results);
+    }
+
+    @Override
+    public synchronized void refresh() {
+        super.refresh();
+
+        List<Node> created;
+        synchronized (lock) {
+            created = new ArrayList<Node>(nodes.values());
+        }
+        for (Node child : created) {
+            if (child instanceof BaseNode) {
+                ((BaseNode) child).refresh();
+            }
+        }
+    }
+
+    @Override
+    public void removeNode(Node node) {
+        synchronized (lock) {
+            Key removed = null;
+            for (Iterator<Map.Entry<Key, Node>> it = nodes.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Key, Node> entry = it.next();
+                if (entry.getValue() == node) {
+                    removed = entry.getKey();
+                    it.remove();
+                    break;
+                }
+            }
+            if (removed != null) {
+                List<Key> newKeys = new ArrayList<Key>(keys);
+                newKeys.remove(removed);
+                keys = Collections.unmodifiableList(newKeys);
+                List<Key> newFiltered = new ArrayList<Key>(filteredKeys);
+                newFiltered.remove(removed);
+                filteredKeys = Collections.unmodifiableList(newFiltered);
+            }
+        }
+
+        fireChange();
+    }
+
+    @Override
+    public void removeAllNodes() {
+        synchronized (lock) {
+            keys = Collections.emptyList();
+            filteredKeys = keys;
+            nodes.clear();
+        }
+
+        fireChange();
+    }
+
+    /**
+     * Key of an element, used by {@link org.netbeans.api.db.explorer.node.ChildNodeFactory}.
+     * It holds only the name and the handle of the element; looking up a
+     * {@link Node} in it creates the node.
+     */
+    protected static final class Key extends Lookup {
+
+        private final LazyNodeProvider provider;
+        private final String name;
+        private final MetadataElementHandle<?> handle;
+
+        private Key(LazyNodeProvider provider, String name, MetadataElementHandle<?> handle) {
+            this.provider = provider;
+            this.name = name == null ? "" : name; // NOI18N
+            this.handle = handle;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public <T> T lookup(Class<T> clazz) {
+            if (clazz.isInstance(handle)) {
+                return clazz.cast(handle);
+            }
+            if (Node.class.isAssignableFrom(clazz)) {
+                Node node = provider.getNode(this);
+                return clazz.isInstance(node) ? clazz.cast(node) : null;
+            }
+            return null;
+        }
+
+        @Override
+        public <T> Result<T> lookup(Template<T> template) {
+            T instance = lookup(template.getType());
+            if (instance == null) {
+                return Lookup.EMPTY.lookup(template);
+            }
+            return Lookups.singleton(instance).lookup(template);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return provider == other.provider && handle.equals(other.handle);
+        }
+
+        @Override
+        public int hashCode() {
+            return handle.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Key[" + name + "]"; // NOI18N
+        }
+    }
+}
@@ -151,6 +151,92 @@ public class NodeRegistry implements ChangeListener {
         return Collections.unmodifiableCollection(results);
     }
     
+    /**
+     * Get the keys of the nodes from all of the registered providers.
+     *
+     * @return the keys
+     */
+    public synchronized Collection<? extends Lookup> getKeys() {
+        List<Lookup> results = new ArrayList<Lookup>();
+
+        for (NodeProvider provider : providers) {
+            results.addAll(provider.getKeys());
+        }
+
+        return Collections.unmodifiableCollection(results);
+    }
+
+    /**
+     * Get the position of a node among the keys of all registered providers.
+     * The nodes of {@link LazyNodeProvider}s are not created.
+     *
+     * @param name the name of the node
+     * @return the index of the key of the node in {@link #getKeys()}, or -1
+     * if no such node is shown
+     */
+    public synchronized int indexOf(String name) {
+        int offset = 0;
+        for (NodeProvider provider : providers) {
+            Collection<? extends Lookup> keys = provider.getKeys();
+            if (provider instanceof LazyNodeProvider) {
+                int index = ((LazyNodeProvider) provider).indexOf(name);
+                if (index >= 0) {
+                    return offset + index;
+                }
+            } else {
+                int index = offset;
+                for (Lookup key : keys) {
+                    Node node = key.lookup(Node.class);
+                    if (node != null && name.equals(node.getName())) {
+                        return index;
+                    }
+                    index++;
+                }
+            }
+            offset += keys.size();
+        }
+        return -1;
+    }
+
+    /**
+     * Show only nodes of the registered {@link LazyNodeProvider}s whose names
+     * start with the given prefix.
+     *
+     * @param prefix the prefix, null or empty to show all nodes
+     */
+    public void setNameFilter(String prefix) {
+        for (NodeProvider provider : providers) {
+            if (provider instanceof LazyNodeProvider) {
+                ((LazyNodeProvider) provider).setNameFilter(prefix);
+            }
+        }
+    }
+
+    /**
+     * @return the name prefix of the registered {@link LazyNodeProvider}s,
+     * or null if their nodes are not filtered
+     */
+    public String getNameFilter() {
+        for (NodeProvider provider : providers) {
+            if (provider instanceof LazyNodeProvider) {
+                return ((LazyNodeProvider) provider).getNameFilter();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if nodes of the registry can be filtered by name
+     */
+    public boolean isNameFilterSupported() {
+        for (NodeProvider provider : providers) {
+            if (provider instanceof LazyNodeProvider) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void addChangeListener(ChangeListener listener) {
         changeSupport.addChangeListener(listener);
     }
@@ -59,7 +59,8 @@ public class ProcedureListNode extends BaseNode {
 
     @Override
     public String getDisplayName() {
-        return NbBundle.getMessage (ProcedureListNode.class, "ProcedureListNode_DISPLAYNAME");
+        return LazyNodeProvider.getFilteredDisplayName(this,
+                NbBundle.getMessage (ProcedureListNode.class, "ProcedureListNode_DISPLAYNAME"));
     }
 
     public String getIconBase() {
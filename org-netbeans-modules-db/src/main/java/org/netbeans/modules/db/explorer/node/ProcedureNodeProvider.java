@@ -24,7 +24,6 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -32,7 +31,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import org.netbeans.api.db.explorer.node.NodeProvider;
 import org.netbeans.api.db.explorer.node.NodeProviderFactory;
 import org.netbeans.modules.db.DatabaseModule;
 import org.netbeans.modules.db.explorer.DatabaseConnection;
@@ -50,7 +48,7 @@ import org.openide.util.Lookup;
  *
  * @author Rob Englander, Jiri Rechtacek
  */
-public class ProcedureNodeProvider extends NodeProvider {
+public class ProcedureNodeProvider extends LazyNodeProvider {
     private static final Logger LOG = Logger.getLogger(ProcedureNodeProvider.class.getName());
 
     // lazy initialization holder class idiom for static fields is used
@@ -75,7 +73,7 @@ public class ProcedureNodeProvider extends NodeProvider {
 
     @SuppressWarnings("unchecked")
     private ProcedureNodeProvider(Lookup lookup) {
-        super(lookup, procedureComparator);
+        super(lookup);
         connection = getLookup().lookup(DatabaseConnection.class);
         schemaHandle = getLookup().lookup(MetadataElementHandle.class);
     }
@@ -83,7 +81,7 @@ public class ProcedureNodeProvider extends NodeProvider {
     @Override
     protected synchronized void initialize() {
 
-        final List<Node> newList = new ArrayList<Node>();
+        final List<Key> newList = new ArrayList<Key>();
 
         boolean connected = connection.isConnected();
         MetadataModel metaDataModel = connection.getMetadataModel();
@@ -99,16 +97,7 @@ public class ProcedureNodeProvider extends NodeProvider {
                                 Collection<Procedure> procedures = schema.getProcedures();
                                 for (Procedure procedure : procedures) {
                                     MetadataElementHandle<Procedure> handle = MetadataElementHandle.create(procedure);
-                                    Collection<Node> matches = getNodes(handle);
-                                    if (matches.size() > 0) {
-                                        newList.addAll(matches);
-                                    } else {
-                                        NodeDataLookup lookup = new NodeDataLookup();
-                                        lookup.add(connection);
-                                        lookup.add(handle);
-
-                                        newList.add(ProcedureNode.create(lookup, ProcedureNodeProvider.this, schema.getName()));
-                                    }
+                                    newList.add(createKey(procedure.getName(), handle));
                                 }
                             } else {
                                 schemaName = null;
@@ -122,17 +111,16 @@ public class ProcedureNodeProvider extends NodeProvider {
             }
         }
 
-        setNodes(newList);
+        setKeys(newList);
     }
 
-    private static final Comparator<Node> procedureComparator = new Comparator<Node>() {
-
-        @Override
-        public int compare(Node model1, Node model2) {
-            return model1.getDisplayName().compareTo(model2.getDisplayName());
-        }
-
-    };
+    @Override
+    protected Node createNode(MetadataElementHandle<?> handle) {
+        NodeDataLookup lookup = new NodeDataLookup();
+        lookup.add(connection);
+        lookup.add(handle);
+        return ProcedureNode.create(lookup, this, schemaName);
+    }
 
     @Override
     public synchronized void refresh() {
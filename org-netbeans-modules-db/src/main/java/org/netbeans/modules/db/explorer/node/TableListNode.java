@@ -88,6 +88,10 @@ public class TableListNode extends BaseNode implements SchemaNameProvider {
 
     @Override
     public String getDisplayName() {
+        return LazyNodeProvider.getFilteredDisplayName(this, getUnfilteredDisplayName());
+    }
+
+    private String getUnfilteredDisplayName() {
         switch (type) {
             case SYSTEM:
                 return NbBundle.getMessage(TableListNode.class,
@@ -21,9 +21,7 @@ package org.netbeans.modules.db.explorer.node;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
-import org.netbeans.api.db.explorer.node.NodeProvider;
 import org.netbeans.api.db.explorer.node.NodeProviderFactory;
 import org.netbeans.modules.db.explorer.DatabaseConnection;
 import org.netbeans.modules.db.metadata.model.api.Action;
@@ -40,7 +38,7 @@ import org.openide.util.Lookup;
  *
  * @author Rob Englander
  */
-public class TableNodeProvider extends NodeProvider {
+public class TableNodeProvider extends LazyNodeProvider {
 
     // lazy initialization holder class idiom for static fields is used
     // for retrieving the factory
@@ -80,7 +78,7 @@ public class TableNodeProvider extends NodeProvider {
 
     @SuppressWarnings("unchecked")
     private TableNodeProvider(Lookup lookup, boolean system) {
-        super(lookup, tableComparator);
+        super(lookup);
         this.system = system;
         connection = getLookup().lookup(DatabaseConnection.class);
         schemaHandle = getLookup().lookup(MetadataElementHandle.class);
@@ -89,7 +87,7 @@ public class TableNodeProvider extends NodeProvider {
     @Override
     protected void initialize() {
         
-        final List<Node> newList = new ArrayList<Node>();
+        final List<Key> newList = new ArrayList<Key>();
 
         boolean connected = connection.isConnected();
         MetadataModel metaDataModel = connection.getMetadataModel();
@@ -108,15 +106,7 @@ public class TableNodeProvider extends NodeProvider {
                                         continue;
                                     }
                                     MetadataElementHandle<Table> handle = MetadataElementHandle.create(table);
-                                    Collection<Node> matches = getNodes(handle);
-                                    if (matches.size() > 0) {
-                                        newList.addAll(matches);
-                                    } else {
-                                        NodeDataLookup lookup = new NodeDataLookup();
-                                        lookup.add(connection);
-                                        lookup.add(handle);
-                                        newList.add(TableNode.create(lookup, TableNodeProvider.this));
-                                    }
+                                    newList.add(createKey(table.getName(), handle));
                                 }
                             }
                         }
@@ -127,15 +117,14 @@ public class TableNodeProvider extends NodeProvider {
             }
         }
 
-        setNodes(newList);
+        setKeys(newList);
     }
 
-    private static final Comparator<Node> tableComparator = new Comparator<Node>() {
-
-        @Override
-        public int compare(Node node1, Node node2) {
-            return node1.getDisplayName().compareTo(node2.getDisplayName());
-        }
-
-    };
+    @Override
+    protected Node createNode(MetadataElementHandle<?> handle) {
+        NodeDataLookup lookup = new NodeDataLookup();
+        lookup.add(connection);
+        lookup.add(handle);
+        return TableNode.create(lookup, this);
+    }
 }
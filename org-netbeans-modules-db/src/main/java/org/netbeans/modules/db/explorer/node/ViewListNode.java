@@ -69,7 +69,8 @@ public class ViewListNode extends BaseNode {
 
     @Override
     public String getDisplayName() {
-        return NbBundle.getMessage (ViewListNode.class, "ViewListNode_DISPLAYNAME"); // NOI18N
+        return LazyNodeProvider.getFilteredDisplayName(this,
+                NbBundle.getMessage (ViewListNode.class, "ViewListNode_DISPLAYNAME")); // NOI18N
     }
 
     @Override
@@ -21,9 +21,7 @@ package org.netbeans.modules.db.explorer.node;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
-import org.netbeans.api.db.explorer.node.NodeProvider;
 import org.netbeans.api.db.explorer.node.NodeProviderFactory;
 import org.netbeans.modules.db.explorer.DatabaseConnection;
 import org.netbeans.modules.db.metadata.model.api.Action;
@@ -40,7 +38,7 @@ import org.openide.util.Lookup;
  *
  * @author Rob Englander
  */
-public class ViewNodeProvider extends NodeProvider {
+public class ViewNodeProvider extends LazyNodeProvider {
 
     // lazy initialization holder class idiom for static fields is used
     // for retrieving the factory
@@ -63,7 +61,7 @@ public class ViewNodeProvider extends NodeProvider {
 
     @SuppressWarnings("unchecked")
     private ViewNodeProvider(Lookup lookup) {
-        super(lookup, viewComparator);
+        super(lookup);
         connection = getLookup().lookup(DatabaseConnection.class);
         schemaHandle = getLookup().lookup(MetadataElementHandle.class);
     }
@@ -71,7 +69,7 @@ public class ViewNodeProvider extends NodeProvider {
     @Override
     protected synchronized void initialize() {
         
-        final List<Node> newList = new ArrayList<>();
+        final List<Key> newList = new ArrayList<>();
 
         boolean connected = connection.isConnected();
         MetadataModel metaDataModel = connection.getMetadataModel();
@@ -86,16 +84,7 @@ public class ViewNodeProvider extends NodeProvider {
                                 Collection<View> views = schema.getViews();
                                 for (View view : views) {
                                     MetadataElementHandle<View> handle = MetadataElementHandle.create(view);
-                                    Collection<Node> matches = getNodes(handle);
-                                    if (matches.size() > 0) {
-                                        newList.addAll(matches);
-                                    } else {
-                                        NodeDataLookup lookup = new NodeDataLookup();
-                                        lookup.add(connection);
-                                        lookup.add(handle);
-
-                                        newList.add(ViewNode.create(lookup, ViewNodeProvider.this));
-                                    }
+                                    newList.add(createKey(view.getName(), handle));
                                 }
                             }
                         }
@@ -106,15 +95,14 @@ public class ViewNodeProvider extends NodeProvider {
             }
         }
 
-        setNodes(newList);
+        setKeys(newList);
     }
 
-    private static final Comparator<Node> viewComparator = new Comparator<Node>() {
-
-        @Override
-        public int compare(Node model1, Node model2) {
-            return model1.getDisplayName().compareTo(model2.getDisplayName());
-        }
-
-    };
+    @Override
+    protected Node createNode(MetadataElementHandle<?> handle) {
+        NodeDataLookup lookup = new NodeDataLookup();
+        lookup.add(connection);
+        lookup.add(handle);
+        return ViewNode.create(lookup, this);
+    }
 }